@@ -0,0 +1,76 @@
+package uniandes.dpoo.taller1.benchmark;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uniandes.dpoo.taller1.exceptions.SomeAuthorsNotFoundException;
+import uniandes.dpoo.taller1.modelo.Libreria;
+
+/**
+ * Prueba de rendimiento del borrado de los libros de varios autores.
+ *
+ * El borrado cambia la librería, así que antes de cada ejecución se abre una
+ * librería nueva desde la copia binaria, sin medir ese tiempo.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BenchmarksBorrado {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Cantidad de autores cuyos libros se borran en cada ejecución
+	 */
+	private static final int AUTORES_POR_BORRADO = 10;
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	private String[] autores;
+
+	private Libreria libreria;
+
+	// ************************************************************************
+	// Preparación
+	// ************************************************************************
+
+	@Setup(Level.Trial)
+	public void elegirAutores(CatalogoPrueba catalogo) throws IOException {
+		autores = CatalogoPrueba.elegirAutores(catalogo.abrir().darLibros(), AUTORES_POR_BORRADO,
+				new Random(CatalogoPrueba.SEMILLA));
+	}
+
+	@Setup(Level.Invocation)
+	public void abrir(CatalogoPrueba catalogo) throws IOException {
+		libreria = catalogo.abrir();
+	}
+
+	// ************************************************************************
+	// Pruebas
+	// ************************************************************************
+
+	@Benchmark
+	public Libreria borrarLibrosPorAutor() throws SomeAuthorsNotFoundException {
+		libreria.borrarLibrosPorAutor(autores);
+		return libreria;
+	}
+}
@@ -0,0 +1,109 @@
+package uniandes.dpoo.taller1.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uniandes.dpoo.taller1.modelo.Categoria;
+import uniandes.dpoo.taller1.modelo.Libreria;
+import uniandes.dpoo.taller1.modelo.Libro;
+import uniandes.dpoo.taller1.modelo.ModoBusquedaTitulo;
+
+/**
+ * Pruebas de rendimiento de la búsqueda por título y por autor.
+ *
+ * Antes de medir se eligen al azar, con una semilla fija, CONSULTAS libros del
+ * catálogo, y cada ejecución busca el siguiente, para que las búsquedas no
+ * encuentren siempre lo mismo en la caché.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BenchmarksBusquedas {
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	private Libreria libreria;
+
+	private String[] titulos;
+
+	private String[] cadenasAutor;
+
+	private String[] nombresAutor;
+
+	private int siguiente;
+
+	// ************************************************************************
+	// Preparación
+	// ************************************************************************
+
+	@Setup(Level.Trial)
+	public void preparar(CatalogoPrueba catalogo) throws IOException {
+		libreria = catalogo.abrir();
+		Random azar = new Random(CatalogoPrueba.SEMILLA);
+		List<Libro> libros = libreria.darLibros();
+		titulos = new String[CatalogoPrueba.CONSULTAS];
+		cadenasAutor = new String[CatalogoPrueba.CONSULTAS];
+		nombresAutor = new String[CatalogoPrueba.CONSULTAS];
+		for (int i = 0; i < CatalogoPrueba.CONSULTAS; i++) {
+			Libro libro = libros.get(azar.nextInt(libros.size()));
+			titulos[i] = libro.darTitulo();
+			cadenasAutor[i] = CatalogoPrueba.parteDelNombre(libro.darAutor(), azar);
+			nombresAutor[i] = libro.darAutor();
+		}
+		// Los índices de títulos se construyen en la primera búsqueda de cada modo
+		libreria.buscarLibro(titulos[0]);
+		libreria.buscarLibro(titulos[0], ModoBusquedaTitulo.NORMALIZADO);
+	}
+
+	private int siguiente() {
+		return siguiente++ & (CatalogoPrueba.CONSULTAS - 1);
+	}
+
+	// ************************************************************************
+	// Pruebas
+	// ************************************************************************
+
+	@Benchmark
+	public Libro buscarLibroExacto() {
+		return libreria.buscarLibro(titulos[siguiente()]);
+	}
+
+	@Benchmark
+	public Libro buscarLibroNormalizado() {
+		return libreria.buscarLibro(titulos[siguiente()].toUpperCase(), ModoBusquedaTitulo.NORMALIZADO);
+	}
+
+	@Benchmark
+	public Libro buscarLibroInexistente() {
+		return libreria.buscarLibro(titulos[siguiente()] + "#");
+	}
+
+	@Benchmark
+	public ArrayList<Libro> buscarLibrosAutor() {
+		return libreria.buscarLibrosAutor(cadenasAutor[siguiente()]);
+	}
+
+	@Benchmark
+	public ArrayList<Categoria> buscarCategoriasAutor() {
+		return libreria.buscarCategoriasAutor(nombresAutor[siguiente()]);
+	}
+}
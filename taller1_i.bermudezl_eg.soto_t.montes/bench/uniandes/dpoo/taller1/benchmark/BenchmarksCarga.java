@@ -0,0 +1,50 @@
+package uniandes.dpoo.taller1.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uniandes.dpoo.taller1.modelo.Libreria;
+import uniandes.dpoo.taller1.modelo.ModoCarga;
+
+/**
+ * Pruebas de rendimiento de la carga del catálogo con cada modo de carga y a
+ * partir de la copia binaria.
+ *
+ * Cada ejecución carga la librería completa una sola vez, así que se mide en
+ * modo SingleShotTime: el tiempo de cada carga, sin repetirla en un ciclo.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BenchmarksCarga {
+
+	@Benchmark
+	public Libreria cargaSecuencial(CatalogoPrueba catalogo) throws IOException {
+		return new Libreria(catalogo.categorias, catalogo.libros, ModoCarga.SECUENCIAL);
+	}
+
+	@Benchmark
+	public Libreria cargaParalela(CatalogoPrueba catalogo) throws IOException {
+		return new Libreria(catalogo.categorias, catalogo.libros, ModoCarga.PARALELO);
+	}
+
+	@Benchmark
+	public Libreria cargaColumnar(CatalogoPrueba catalogo) throws IOException {
+		return new Libreria(catalogo.categorias, catalogo.libros, ModoCarga.COLUMNAR);
+	}
+
+	@Benchmark
+	public Libreria cargaSnapshot(CatalogoPrueba catalogo) throws IOException {
+		return catalogo.abrir();
+	}
+}
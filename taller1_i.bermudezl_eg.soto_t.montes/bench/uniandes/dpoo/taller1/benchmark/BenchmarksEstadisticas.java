@@ -0,0 +1,108 @@
+package uniandes.dpoo.taller1.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uniandes.dpoo.taller1.modelo.Categoria;
+import uniandes.dpoo.taller1.modelo.Libreria;
+import uniandes.dpoo.taller1.modelo.Libro;
+
+/**
+ * Pruebas de rendimiento de las estadísticas del catálogo y de las consultas
+ * por calificación.
+ *
+ * El índice de calificaciones se construye antes de medir, así que se mide el
+ * costo de cada consulta y no el de la primera.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BenchmarksEstadisticas {
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	private Libreria libreria;
+
+	/**
+	 * La categoría del primer libro del catálogo, para las consultas por
+	 * categoría
+	 */
+	private String categoria;
+
+	// ************************************************************************
+	// Preparación
+	// ************************************************************************
+
+	@Setup(Level.Trial)
+	public void preparar(CatalogoPrueba catalogo) throws IOException {
+		libreria = catalogo.abrir();
+		categoria = libreria.darLibros().get(0).darCategoria().darNombre();
+		libreria.mejoresLibros(1);
+	}
+
+	// ************************************************************************
+	// Pruebas
+	// ************************************************************************
+
+	@Benchmark
+	public double calificacionPromedio() {
+		return libreria.calificacionPromedio();
+	}
+
+	@Benchmark
+	public Categoria categoriaConMasLibros() {
+		return libreria.categoriaConMasLibros();
+	}
+
+	@Benchmark
+	public Categoria categoriaConMejoresLibros() {
+		return libreria.categoriaConMejoresLibros();
+	}
+
+	@Benchmark
+	public int contarLibrosSinPortada() {
+		return libreria.contarLibrosSinPortada();
+	}
+
+	@Benchmark
+	public boolean hayAutorEnVariasCategorias() {
+		return libreria.hayAutorEnVariasCategorias();
+	}
+
+	@Benchmark
+	public ArrayList<Libro> mejoresLibros100() {
+		return libreria.mejoresLibros(100);
+	}
+
+	@Benchmark
+	public ArrayList<Libro> mejoresLibrosCategoria50() {
+		return libreria.mejoresLibros(categoria, 50);
+	}
+
+	@Benchmark
+	public int contarLibrosPorCalificacion() {
+		return libreria.contarLibrosPorCalificacion(null, 4.2, 4.6);
+	}
+
+	@Benchmark
+	public double percentilCalificacion() {
+		return libreria.percentilCalificacion(categoria, 90);
+	}
+}
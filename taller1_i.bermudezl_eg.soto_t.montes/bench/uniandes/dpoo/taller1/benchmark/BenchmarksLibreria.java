@@ -0,0 +1,124 @@
+package uniandes.dpoo.taller1.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Ejecuta con JMH las pruebas de rendimiento del modelo de la librería: carga
+ * del catálogo, búsqueda por título, búsqueda por parte del nombre del autor,
+ * borrado de los libros de varios autores y estadísticas, para catálogos de
+ * varios tamaños.
+ *
+ * Las pruebas están en BenchmarksCarga, BenchmarksBusquedas,
+ * BenchmarksEstadisticas y BenchmarksBorrado, y los datos en CatalogoPrueba.
+ * Esta clase solo arma las opciones de JMH: siempre agrega el perfilador de
+ * recolección de basura (-prof gc), que reporta los bytes asignados por
+ * operación (gc.alloc.rate.norm) y por segundo (gc.alloc.rate) junto a cada
+ * puntaje.
+ *
+ * Con el módulo de Maven del proyecto:
+ *
+ * <pre>
+ * mvn -B package
+ * java -cp target/benchmarks.jar uniandes.dpoo.taller1.benchmark.BenchmarksLibreria --salida nuevo.csv
+ * java -cp target/benchmarks.jar uniandes.dpoo.taller1.benchmark.CompararResultados anterior.csv nuevo.csv
+ * </pre>
+ *
+ * También se puede usar JMH directamente, indicando la carpeta de datos:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar -prof gc -p tamanio=1000,100000 -jvmArgsAppend -Dlibreria.datos=carpeta
+ * </pre>
+ *
+ * Parámetros, todos opcionales:
+ *
+ * <pre>
+ * --tamanios 1000,10000,100000,1000000,10000000   tamaños de los catálogos
+ * --pruebas carga,titulo,autor,borrar,estadisticas
+ * --datos carpeta      dónde se escriben los CSV y las portadas de prueba
+ * --heap 8g            heap de las JVM de las pruebas
+ * --salida archivo.csv dónde se guardan los resultados, en el formato CSV de JMH
+ * </pre>
+ *
+ * Un catálogo de 10M libros necesita alrededor de 8 GB de heap, así que en un
+ * equipo con menos memoria se deben pedir tamaños más pequeños.
+ */
+public class BenchmarksLibreria {
+
+	/**
+	 * Retorna la expresión de JMH que selecciona las pruebas de un grupo
+	 */
+	private static String seleccion(String prueba) {
+		switch (prueba) {
+		case "carga":
+			return Pattern.quote(BenchmarksCarga.class.getName()) + "\\.";
+		case "titulo":
+			return Pattern.quote(BenchmarksBusquedas.class.getName()) + "\\.buscarLibro[A-Z]";
+		case "autor":
+			return Pattern.quote(BenchmarksBusquedas.class.getName()) + "\\.buscar(LibrosAutor|CategoriasAutor)$";
+		case "borrar":
+			return Pattern.quote(BenchmarksBorrado.class.getName()) + "\\.";
+		case "estadisticas":
+			return Pattern.quote(BenchmarksEstadisticas.class.getName()) + "\\.";
+		default:
+			throw new IllegalArgumentException("Prueba desconocida: " + prueba);
+		}
+	}
+
+	/**
+	 * Ejecuta las pruebas
+	 *
+	 * @param args Los parámetros descritos en la documentación de la clase
+	 * @throws Exception Si alguna prueba falla
+	 */
+	public static void main(String[] args) throws Exception {
+		String tamanios = "1000,10000,100000,1000000,10000000";
+		String pruebas = "carga,titulo,autor,borrar,estadisticas";
+		Path datos = Paths.get(System.getProperty("java.io.tmpdir"), "benchmarks-libreria");
+		String heap = "8g";
+		Path archivoSalida = null;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+			case "--tamanios":
+				tamanios = args[i + 1];
+				break;
+			case "--pruebas":
+				pruebas = args[i + 1];
+				break;
+			case "--datos":
+				datos = Paths.get(args[i + 1]);
+				break;
+			case "--heap":
+				heap = args[i + 1];
+				break;
+			case "--salida":
+				archivoSalida = Paths.get(args[i + 1]);
+				break;
+			default:
+				throw new IllegalArgumentException("Parámetro desconocido: " + args[i]);
+			}
+		}
+
+		Files.createDirectories(datos);
+		ChainedOptionsBuilder opciones = new OptionsBuilder()
+				.param("tamanio", tamanios.trim().split("\\s*,\\s*"))
+				.addProfiler(GCProfiler.class)
+				// La librería busca las portadas en su carpeta de datos
+				.jvmArgsAppend("-Dlibreria.datos=" + datos.toAbsolutePath(), "-Xms" + heap, "-Xmx" + heap);
+		for (String prueba : pruebas.split(",")) {
+			opciones.include(seleccion(prueba.trim()));
+		}
+		if (archivoSalida != null) {
+			opciones.result(archivoSalida.toString()).resultFormat(ResultFormatType.CSV);
+		}
+		new Runner(opciones.build()).run();
+	}
+}
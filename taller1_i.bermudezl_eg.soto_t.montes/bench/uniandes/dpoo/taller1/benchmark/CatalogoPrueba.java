@@ -0,0 +1,153 @@
+package uniandes.dpoo.taller1.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import uniandes.dpoo.taller1.modelo.Libreria;
+import uniandes.dpoo.taller1.modelo.Libro;
+import uniandes.dpoo.taller1.modelo.ModoCarga;
+
+/**
+ * Estado de JMH con los archivos de un catálogo de prueba, compartido por
+ * todas las pruebas de rendimiento.
+ *
+ * Los catálogos se generan con GeneradorCatalogo a partir de una semilla fija,
+ * así que dos ejecuciones miden exactamente los mismos datos. Los archivos y
+ * las portadas se escriben en la carpeta de datos de la librería, que se indica
+ * con -Dlibreria.datos=carpeta en la JVM de las pruebas (BenchmarksLibreria lo
+ * hace con --datos). Si los archivos ya existen, no se vuelven a escribir.
+ */
+@State(Scope.Benchmark)
+public class CatalogoPrueba {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Semilla para los datos y las consultas, para que las ejecuciones se puedan
+	 * comparar
+	 */
+	static final long SEMILLA = 42;
+
+	/**
+	 * Cantidad de consultas distintas que se preparan para cada prueba de
+	 * búsqueda. Es una potencia de dos para recorrerlas con una máscara.
+	 */
+	static final int CONSULTAS = 1024;
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * La cantidad de libros del catálogo
+	 */
+	@Param({ "1000", "10000", "100000", "1000000", "10000000" })
+	public int tamanio;
+
+	/**
+	 * El archivo de categorías
+	 */
+	String categorias;
+
+	/**
+	 * El archivo de libros
+	 */
+	String libros;
+
+	/**
+	 * La copia binaria de la librería, al día con los archivos
+	 */
+	String snapshot;
+
+	// ************************************************************************
+	// Preparación
+	// ************************************************************************
+
+	/**
+	 * Escribe los archivos del catálogo y las portadas si no existen, y la copia
+	 * binaria si no está al día
+	 *
+	 * @throws IOException Si hay algún problema escribiendo los archivos
+	 */
+	@Setup(Level.Trial)
+	public void preparar() throws IOException {
+		String carpetaDatos = System.getProperty("libreria.datos");
+		if (carpetaDatos == null) {
+			throw new IllegalStateException(
+					"Falta -Dlibreria.datos=carpeta: use BenchmarksLibreria o agregue -jvmArgsAppend a JMH");
+		}
+		Path carpeta = Paths.get(carpetaDatos);
+		Files.createDirectories(carpeta);
+		Path archivoCategorias = carpeta.resolve("categorias-" + tamanio + ".csv");
+		Path archivoLibros = carpeta.resolve("libros-" + tamanio + ".csv");
+		GeneradorCatalogo generador = new GeneradorCatalogo(SEMILLA, tamanio);
+		generador.escribirPortadas(carpeta);
+		if (!Files.exists(archivoCategorias) || !Files.exists(archivoLibros)) {
+			generador.escribirCategorias(archivoCategorias);
+			generador.escribirLibros(archivoLibros);
+		}
+		categorias = archivoCategorias.toString();
+		libros = archivoLibros.toString();
+		snapshot = carpeta.resolve("libros-" + tamanio + ".snapshot").toString();
+		// abrir escribe la copia si no existe o si no está al día
+		Libreria.abrir(categorias, libros, snapshot, ModoCarga.PARALELO);
+	}
+
+	// ************************************************************************
+	// Consultas
+	// ************************************************************************
+
+	/**
+	 * Carga la librería con el modo más rápido que permite cambiarla
+	 *
+	 * @return La librería
+	 * @throws IOException Si hay algún problema leyendo los archivos
+	 */
+	Libreria abrir() throws IOException {
+		return Libreria.abrir(categorias, libros, snapshot, ModoCarga.PARALELO);
+	}
+
+	/**
+	 * Retorna una parte del nombre de un autor, como la que escribiría un usuario
+	 */
+	static String parteDelNombre(String autor, Random azar) {
+		if (autor.length() <= 4) {
+			return autor;
+		}
+		int inicio = azar.nextInt(autor.length() - 4);
+		return autor.substring(inicio, inicio + 4 + azar.nextInt(Math.min(4, autor.length() - inicio - 4) + 1));
+	}
+
+	/**
+	 * Elige autores distintos del catálogo
+	 *
+	 * @param catalogo Los libros del catálogo
+	 * @param cantidad Cantidad de autores
+	 * @param azar     El generador de números al azar
+	 * @return Los autores, o todos si el catálogo tiene menos
+	 */
+	static String[] elegirAutores(List<Libro> catalogo, int cantidad, Random azar) {
+		HashSet<String> distintos = new HashSet<String>();
+		for (Libro l : catalogo) {
+			distintos.add(l.darAutor());
+		}
+		LinkedHashSet<String> elegidos = new LinkedHashSet<String>();
+		while (elegidos.size() < Math.min(cantidad, distintos.size())) {
+			elegidos.add(catalogo.get(azar.nextInt(catalogo.size())).darAutor());
+		}
+		return elegidos.toArray(new String[0]);
+	}
+}
@@ -0,0 +1,146 @@
+package uniandes.dpoo.taller1.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compara dos archivos de resultados de JMH en formato CSV, por ejemplo los que
+ * escribe BenchmarksLibreria con --salida para dos versiones, e imprime cuánto
+ * cambió cada prueba.
+ *
+ * Uso: CompararResultados anterior.csv nuevo.csv [umbral en %, 5 por defecto]
+ *
+ * Se comparan el puntaje de cada prueba y los bytes asignados por operación
+ * (gc.alloc.rate.norm, del perfilador -prof gc). Las otras métricas del
+ * perfilador dependen del puntaje y no se comparan. Las pruebas que empeoraron
+ * más que el umbral se marcan con "REGRESION".
+ */
+public class CompararResultados {
+
+	/**
+	 * Sufijo de la métrica secundaria con los bytes asignados por operación
+	 */
+	private static final String BYTES_POR_OPERACION = ":gc.alloc.rate.norm";
+
+	/**
+	 * Una fila del archivo de resultados
+	 */
+	private static final class Fila {
+		final String prueba;
+		final String modo;
+		final double puntaje;
+		final String unidad;
+
+		Fila(String prueba, String modo, double puntaje, String unidad) {
+			this.prueba = prueba;
+			this.modo = modo;
+			this.puntaje = puntaje;
+			this.unidad = unidad;
+		}
+
+		/**
+		 * Indica si un puntaje más alto es mejor: solo en el modo de rendimiento y
+		 * sin contar los bytes por operación
+		 */
+		boolean masAltoEsMejor() {
+			return "thrpt".equals(modo) && !prueba.endsWith(BYTES_POR_OPERACION);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Uso: CompararResultados anterior.csv nuevo.csv [umbral %]");
+			System.exit(2);
+		}
+		double umbral = args.length > 2 ? Double.parseDouble(args[2]) : 5;
+		LinkedHashMap<String, Fila> anteriores = leer(args[0]);
+		LinkedHashMap<String, Fila> nuevos = leer(args[1]);
+
+		int regresiones = 0;
+		System.out.println(String.join("\t", "prueba", "parametros", "unidad", "anterior", "nuevo", "cambio %", ""));
+		for (var entrada : nuevos.entrySet()) {
+			Fila nuevo = entrada.getValue();
+			Fila anterior = anteriores.get(entrada.getKey());
+			if (anterior == null) {
+				continue;
+			}
+			double cambio = (nuevo.puntaje - anterior.puntaje) / anterior.puntaje * 100;
+			// Un cambio positivo es una mejora sin importar la unidad
+			double mejora = (nuevo.masAltoEsMejor() ? cambio : -cambio) + 0.0;
+			String marca = mejora < -umbral ? "REGRESION" : "";
+			if (!marca.isEmpty()) {
+				regresiones++;
+			}
+			String parametros = entrada.getKey().substring(entrada.getKey().indexOf('@') + 1);
+			System.out.println(String.join("\t", nuevo.prueba, parametros, nuevo.unidad, formatear(anterior.puntaje),
+					formatear(nuevo.puntaje), Double.isNaN(mejora) ? "" : String.format(Locale.ROOT, "%+.1f", mejora),
+					marca));
+		}
+		System.out.println(regresiones + " regresiones con un umbral de " + umbral + "%");
+		if (regresiones > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Lee los puntajes y los bytes por operación de un archivo, por prueba y
+	 * parámetros
+	 */
+	private static LinkedHashMap<String, Fila> leer(String archivo) throws IOException {
+		LinkedHashMap<String, Fila> filas = new LinkedHashMap<String, Fila>();
+		List<String> lineas = Files.readAllLines(Paths.get(archivo));
+		List<String> encabezado = columnas(lineas.get(0));
+		int puntaje = encabezado.indexOf("Score");
+		int unidad = encabezado.indexOf("Unit");
+		for (String linea : lineas.subList(1, lineas.size())) {
+			if (linea.isBlank()) {
+				continue;
+			}
+			List<String> valores = columnas(linea);
+			String prueba = valores.get(0);
+			if (prueba.contains(":") && !prueba.endsWith(BYTES_POR_OPERACION)) {
+				continue;
+			}
+			// Los parámetros están en las columnas "Param: nombre", después de la unidad
+			StringBuilder parametros = new StringBuilder();
+			for (int i = unidad + 1; i < valores.size(); i++) {
+				parametros.append(parametros.length() == 0 ? "" : ",")
+						.append(encabezado.get(i).replace("Param: ", "")).append('=').append(valores.get(i));
+			}
+			filas.put(prueba + "@" + parametros, new Fila(prueba, valores.get(1),
+					Double.parseDouble(valores.get(puntaje)), valores.get(unidad)));
+		}
+		return filas;
+	}
+
+	/**
+	 * Separa una línea del CSV de JMH en sus columnas, quitando las comillas
+	 */
+	private static List<String> columnas(String linea) {
+		ArrayList<String> columnas = new ArrayList<String>();
+		StringBuilder actual = new StringBuilder();
+		boolean entreComillas = false;
+		for (int i = 0; i < linea.length(); i++) {
+			char c = linea.charAt(i);
+			if (c == '"') {
+				entreComillas = !entreComillas;
+			} else if (c == ',' && !entreComillas) {
+				columnas.add(actual.toString());
+				actual.setLength(0);
+			} else {
+				actual.append(c);
+			}
+		}
+		columnas.add(actual.toString());
+		return columnas;
+	}
+
+	private static String formatear(double valor) {
+		return String.format(Locale.ROOT, "%.4g", valor);
+	}
+}
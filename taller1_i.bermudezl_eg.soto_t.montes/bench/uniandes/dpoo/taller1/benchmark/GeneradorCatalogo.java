@@ -0,0 +1,531 @@
+package uniandes.dpoo.taller1.benchmark;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Genera archivos de categorías y de libros sintéticos, con el mismo formato
+ * que leen Libreria.cargarCategorias y Libreria.cargarCatalogo, para probar la
+ * librería con catálogos de cualquier tamaño.
+ *
+ * Los datos siguen distribuciones parecidas a las de un catálogo real:
+ * <ul>
+ * <li>Las categorías tienen popularidad de Zipf: unas pocas tienen la mayoría
+ * de los libros.</li>
+ * <li>Dentro de cada categoría, los autores siguen una distribución de Zipf:
+ * unos pocos autores escriben muchos libros y la mayoría escribe uno o dos. Un
+ * mismo autor puede aparecer en varias categorías.</li>
+ * <li>Las calificaciones se cargan hacia las notas altas.</li>
+ * <li>Una fracción configurable de libros apunta a portadas que no existen y
+ * otra fracción usa categorías que no están en el archivo de categorías.</li>
+ * </ul>
+ *
+ * Las filas se escriben a medida que se generan, sin guardarlas en memoria, así
+ * que el tamaño del catálogo solo está limitado por el disco. La misma semilla
+ * con la misma configuración produce siempre los mismos archivos.
+ */
+public class GeneradorCatalogo {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	private static final String[] NOMBRES = { "Ana", "Andrés", "Beatriz", "Camilo", "Carolina", "Daniel", "Diana",
+			"Eduardo", "Elena", "Felipe", "Gabriela", "Gonzalo", "Isabel", "Jaime", "Juliana", "Julio", "Laura",
+			"Lucía", "Manuel", "María", "Mateo", "Natalia", "Pablo", "Paula", "Rafael", "Sara", "Sergio", "Sofía",
+			"Tomás", "Valentina", "Jane", "John", "Mary", "Peter", "Agatha", "Arthur", "Virginia", "George",
+			"Emily", "Oscar" };
+
+	private static final String[] APELLIDOS = { "Álvarez", "Bermúdez", "Castro", "Díaz", "Duarte", "Escobar",
+			"Fernández", "García", "Gómez", "Herrera", "Jiménez", "López", "Márquez", "Martínez", "Montes", "Moreno",
+			"Navarro", "Ortiz", "Pérez", "Quintero", "Ramírez", "Restrepo", "Rivas", "Rodríguez", "Salazar",
+			"Soto", "Torres", "Vargas", "Verne", "Zapata", "Austen", "Christie", "Doyle", "Woolf", "Orwell",
+			"Brontë", "Wilde", "Dickens", "Tolkien", "Shelley" };
+
+	private static final String[] SUSTANTIVOS = { "Amor", "Mar", "Sombra", "Ciudad", "Noche", "Guerra", "Jardín",
+			"Río", "Viaje", "Memoria", "Silencio", "Casa", "Reino", "Tiempo", "Espejo", "Fuego", "Bosque", "Puerta",
+			"Isla", "Camino", "Secreto", "Tormenta", "Luz", "Sueño" };
+
+	private static final String[] ADJETIVOS = { "Perdido", "Eterno", "Oscuro", "Último", "Dorado", "Escondido",
+			"Infinito", "Roto", "Salvaje", "Prohibido", "Lejano", "Silencioso", "Olvidado", "Antiguo", "Rojo",
+			"Blanco" };
+
+	private static final String[] GENEROS = { "Novela", "Ciencia ficción", "Fantasía", "Misterio", "Historia",
+			"Biografía", "Poesía", "Ensayo", "Infantil", "Juvenil", "Terror", "Romance", "Filosofía", "Ciencia",
+			"Arte", "Cocina", "Viajes", "Autoayuda", "Economía", "Política" };
+
+	/**
+	 * Carpeta, relativa a la carpeta de datos, en la que quedan las portadas
+	 * sintéticas
+	 */
+	public static final String CARPETA_PORTADAS = "imagenes-sinteticas/";
+
+	/**
+	 * Carpeta en la que main escribe los archivos si no se indica otra. No es la
+	 * carpeta de datos de la aplicación, para no reemplazar sus archivos.
+	 */
+	private static final String CARPETA_POR_DEFECTO = "datos-sinteticos";
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	private final long semilla;
+
+	private final long cantidadLibros;
+
+	private int cantidadCategorias = 20;
+
+	private double exponenteCategorias = 0.8;
+
+	private int autoresPorCategoria = 2000;
+
+	private double exponenteAutores = 1.1;
+
+	private double sesgoCalificacion = 2.0;
+
+	private double fraccionSinPortada = 0.1;
+
+	private double fraccionCategoriaDesconocida = 0.01;
+
+	private int categoriasDesconocidas = 5;
+
+	private int portadasDistintas = 100;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye un generador con la configuración por defecto
+	 *
+	 * @param semilla        La semilla de los números aleatorios
+	 * @param cantidadLibros Cantidad de libros que se generan
+	 */
+	public GeneradorCatalogo(long semilla, long cantidadLibros) {
+		this.semilla = semilla;
+		this.cantidadLibros = cantidadLibros;
+	}
+
+	// ************************************************************************
+	// Métodos para cambiar la configuración
+	// ************************************************************************
+
+	/**
+	 * @param cantidad Cantidad de categorías del archivo de categorías. Por
+	 *                 defecto, 20.
+	 */
+	public void cambiarCantidadCategorias(int cantidad) {
+		cantidadCategorias = cantidad;
+	}
+
+	/**
+	 * @param exponente Exponente de la distribución de Zipf de la popularidad de
+	 *                  las categorías. Por defecto, 0.8.
+	 */
+	public void cambiarExponenteCategorias(double exponente) {
+		exponenteCategorias = exponente;
+	}
+
+	/**
+	 * @param cantidad Cantidad de autores distintos que pueden aparecer en cada
+	 *                 categoría. Por defecto, 2000.
+	 */
+	public void cambiarAutoresPorCategoria(int cantidad) {
+		autoresPorCategoria = cantidad;
+	}
+
+	/**
+	 * @param exponente Exponente de la distribución de Zipf de los autores dentro
+	 *                  de cada categoría. Por defecto, 1.1.
+	 */
+	public void cambiarExponenteAutores(double exponente) {
+		exponenteAutores = exponente;
+	}
+
+	/**
+	 * @param sesgo Qué tanto se cargan las calificaciones hacia 5. Con 1 son
+	 *              uniformes entre 1 y 5; con 2, el promedio es cercano a 3.7. Por
+	 *              defecto, 2.
+	 */
+	public void cambiarSesgoCalificacion(double sesgo) {
+		sesgoCalificacion = sesgo;
+	}
+
+	/**
+	 * @param fraccion Fracción de los libros cuya portada no existe. Por defecto,
+	 *                 0.1.
+	 */
+	public void cambiarFraccionSinPortada(double fraccion) {
+		fraccionSinPortada = fraccion;
+	}
+
+	/**
+	 * @param fraccion Fracción de los libros cuya categoría no está en el archivo
+	 *                 de categorías. Por defecto, 0.01.
+	 */
+	public void cambiarFraccionCategoriaDesconocida(double fraccion) {
+		fraccionCategoriaDesconocida = fraccion;
+	}
+
+	// ************************************************************************
+	// Generación
+	// ************************************************************************
+
+	/**
+	 * Escribe el archivo de categorías
+	 *
+	 * @param archivo El archivo en el que se escriben las categorías
+	 * @throws IOException Si hay algún problema escribiendo el archivo
+	 */
+	public void escribirCategorias(Path archivo) throws IOException {
+		try (Writer out = abrir(archivo)) {
+			out.write("Nombre,Ficcion\n");
+			for (int c = 0; c < cantidadCategorias; c++) {
+				out.write(nombreCategoria(c) + "," + (c % 3 != 1) + "\n");
+			}
+		}
+	}
+
+	/**
+	 * Escribe el archivo de libros, fila por fila
+	 *
+	 * @param archivo El archivo en el que se escriben los libros
+	 * @throws IOException Si hay algún problema escribiendo el archivo
+	 */
+	public void escribirLibros(Path archivo) throws IOException {
+		SplittableRandom azar = new SplittableRandom(semilla);
+		MuestreadorZipf categorias = new MuestreadorZipf(cantidadCategorias, exponenteCategorias);
+		MuestreadorZipf autores = new MuestreadorZipf(autoresPorCategoria, exponenteAutores);
+		long autoresTotales = (long) cantidadCategorias * autoresPorCategoria;
+		StringBuilder fila = new StringBuilder(128);
+
+		try (Writer out = abrir(archivo)) {
+			out.write("Titulo,Autor,Calificacion,Categoria,Portada,Ancho,Alto\n");
+			for (long i = 0; i < cantidadLibros; i++) {
+				fila.setLength(0);
+
+				agregarTitulo(fila, i, azar);
+				fila.append(',');
+
+				int categoria = categorias.muestrear(azar) - 1;
+				// El mismo puesto en dos categorías corresponde a autores distintos,
+				// pero un autor puede quedar en varias categorías
+				long autor = Math.floorMod(mezclar(categoria, autores.muestrear(azar)), autoresTotales);
+				agregarAutor(fila, autor);
+				fila.append(',');
+
+				agregarCalificacion(fila, 5 - 4 * Math.pow(azar.nextDouble(), sesgoCalificacion));
+				fila.append(',');
+
+				if (azar.nextDouble() < fraccionCategoriaDesconocida) {
+					fila.append("Desconocida ").append(azar.nextInt(categoriasDesconocidas));
+				} else {
+					fila.append(nombreCategoria(categoria));
+				}
+				fila.append(',');
+
+				if (azar.nextDouble() < fraccionSinPortada) {
+					fila.append(CARPETA_PORTADAS).append("no-existe-").append(i).append(".png");
+				} else {
+					fila.append(CARPETA_PORTADAS).append("portada").append(azar.nextInt(portadasDistintas))
+							.append(".png");
+				}
+				fila.append(",100,150\n");
+
+				out.append(fila);
+			}
+		}
+	}
+
+	/**
+	 * Escribe las imágenes de las portadas que existen, para que la librería las
+	 * encuentre. Las portadas quedan en la subcarpeta CARPETA_PORTADAS.
+	 *
+	 * @param carpetaDatos La carpeta de datos de la librería
+	 * @throws IOException Si hay algún problema escribiendo las imágenes
+	 */
+	public void escribirPortadas(Path carpetaDatos) throws IOException {
+		Path carpeta = carpetaDatos.resolve(CARPETA_PORTADAS);
+		Files.createDirectories(carpeta);
+		SplittableRandom azar = new SplittableRandom(semilla);
+		for (int i = 0; i < portadasDistintas; i++) {
+			Path archivo = carpeta.resolve("portada" + i + ".png");
+			if (Files.exists(archivo)) {
+				continue;
+			}
+			BufferedImage imagen = new BufferedImage(100, 150, BufferedImage.TYPE_INT_RGB);
+			Graphics2D g = imagen.createGraphics();
+			g.setColor(new Color(azar.nextInt(0x1000000)));
+			g.fillRect(0, 0, 100, 150);
+			g.dispose();
+			ImageIO.write(imagen, "png", archivo.toFile());
+		}
+	}
+
+	private static Writer abrir(Path archivo) throws IOException {
+		// El mismo juego de caracteres que usa FileReader al leer
+		return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(archivo), Charset.defaultCharset()),
+				1 << 20);
+	}
+
+	private static String nombreCategoria(int c) {
+		String genero = GENEROS[c % GENEROS.length];
+		return c < GENEROS.length ? genero : genero + " " + (c / GENEROS.length + 1);
+	}
+
+	/**
+	 * Agrega un título formado por palabras comunes y el número del libro, para
+	 * que cada título sea único
+	 */
+	private static void agregarTitulo(StringBuilder fila, long i, SplittableRandom azar) {
+		fila.append(SUSTANTIVOS[azar.nextInt(SUSTANTIVOS.length)]).append(' ')
+				.append(ADJETIVOS[azar.nextInt(ADJETIVOS.length)]).append(' ').append(i);
+	}
+
+	/**
+	 * Agrega la calificación con dos decimales y punto decimal, sin importar la
+	 * configuración regional
+	 */
+	private static void agregarCalificacion(StringBuilder fila, double calificacion) {
+		long centesimas = Math.round(calificacion * 100);
+		fila.append(centesimas / 100).append('.');
+		long decimales = centesimas % 100;
+		if (decimales < 10) {
+			fila.append('0');
+		}
+		fila.append(decimales);
+	}
+
+	/**
+	 * Agrega el nombre del autor con el identificador dado. Cada identificador
+	 * tiene un nombre distinto.
+	 */
+	private static void agregarAutor(StringBuilder fila, long autor) {
+		long resto = autor;
+		fila.append(NOMBRES[(int) (resto % NOMBRES.length)]).append(' ');
+		resto /= NOMBRES.length;
+		fila.append(APELLIDOS[(int) (resto % APELLIDOS.length)]).append(' ');
+		resto /= APELLIDOS.length;
+		fila.append(APELLIDOS[(int) (resto % APELLIDOS.length)]);
+		resto /= APELLIDOS.length;
+		if (resto > 0) {
+			fila.append(' ').append(resto + 1);
+		}
+	}
+
+	/**
+	 * Mezcla la categoría y el puesto del autor dentro de ella en un solo número
+	 */
+	private static long mezclar(int categoria, int puesto) {
+		long x = ((long) categoria << 32) ^ puesto;
+		x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+		x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return x ^ (x >>> 33);
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * Genera números entre 1 y n con distribución de Zipf, usando el método de
+	 * rechazo-inversión de Hörmann y Derflinger. No necesita tablas, así que sirve
+	 * para cualquier n.
+	 */
+	static final class MuestreadorZipf {
+		private final int n;
+		private final double exponente;
+		private final double hIntegralX1;
+		private final double hIntegralN;
+		private final double s;
+
+		MuestreadorZipf(int n, double exponente) {
+			if (n < 1 || exponente <= 0) {
+				throw new IllegalArgumentException("Se necesita n >= 1 y un exponente positivo");
+			}
+			this.n = n;
+			this.exponente = exponente;
+			hIntegralX1 = hIntegral(1.5) - 1;
+			hIntegralN = hIntegral(n + 0.5);
+			s = 2 - hIntegralInversa(hIntegral(2.5) - h(2));
+		}
+
+		int muestrear(SplittableRandom azar) {
+			while (true) {
+				double u = hIntegralN + azar.nextDouble() * (hIntegralX1 - hIntegralN);
+				double x = hIntegralInversa(u);
+				int k = (int) (x + 0.5);
+				if (k < 1) {
+					k = 1;
+				} else if (k > n) {
+					k = n;
+				}
+				if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+					return k;
+				}
+			}
+		}
+
+		private double h(double x) {
+			return Math.exp(-exponente * Math.log(x));
+		}
+
+		private double hIntegral(double x) {
+			double logX = Math.log(x);
+			return auxiliar2((1 - exponente) * logX) * logX;
+		}
+
+		private double hIntegralInversa(double x) {
+			double t = x * (1 - exponente);
+			if (t < -1) {
+				t = -1;
+			}
+			return Math.exp(auxiliar1(t) * x);
+		}
+
+		/**
+		 * log(1 + x) / x, estable cerca de 0
+		 */
+		private static double auxiliar1(double x) {
+			if (Math.abs(x) > 1e-8) {
+				return Math.log1p(x) / x;
+			}
+			return 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+		}
+
+		/**
+		 * (exp(x) - 1) / x, estable cerca de 0
+		 */
+		private static double auxiliar2(double x) {
+			if (Math.abs(x) > 1e-8) {
+				return Math.expm1(x) / x;
+			}
+			return 1 + x * 0.5 * (1 + x * (1.0 / 3) * (1 + 0.25 * x));
+		}
+	}
+
+	// ************************************************************************
+	// Main
+	// ************************************************************************
+
+	/**
+	 * Genera los archivos.
+	 *
+	 * Por defecto se escriben en una carpeta propia, no en la carpeta de datos de
+	 * la aplicación. Si en la carpeta ya hay archivos de categorías o de libros,
+	 * no se reemplazan a menos que se use --forzar.
+	 *
+	 * <pre>
+	 * --libros 1000000          cantidad de libros
+	 * --semilla 42
+	 * --categorias 20
+	 * --autores-por-categoria 2000
+	 * --zipf-autores 1.1
+	 * --zipf-categorias 0.8
+	 * --sesgo 2
+	 * --sin-portada 0.1         fracción de portadas que no existen
+	 * --desconocidas 0.01       fracción de categorías desconocidas
+	 * --carpeta ./datos-sinteticos   dónde se escriben los archivos
+	 * --forzar                  reemplaza los archivos que ya existan
+	 * </pre>
+	 *
+	 * @param args Los parámetros
+	 * @throws IOException Si hay algún problema escribiendo los archivos
+	 */
+	public static void main(String[] args) throws IOException {
+		long libros = 1_000_000;
+		long semilla = 42;
+		Path carpeta = Paths.get(CARPETA_POR_DEFECTO);
+		boolean forzar = false;
+		ArrayList<String> opciones = new ArrayList<String>();
+		for (String arg : args) {
+			if (arg.equals("--forzar")) {
+				forzar = true;
+			} else {
+				opciones.add(arg);
+			}
+		}
+		args = opciones.toArray(new String[0]);
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("--libros")) {
+				libros = Long.parseLong(args[i + 1]);
+			} else if (args[i].equals("--semilla")) {
+				semilla = Long.parseLong(args[i + 1]);
+			} else if (args[i].equals("--carpeta")) {
+				carpeta = Paths.get(args[i + 1]);
+			}
+		}
+
+		GeneradorCatalogo generador = new GeneradorCatalogo(semilla, libros);
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			generador.configurar(args[i], args[i + 1]);
+		}
+
+		Path categorias = carpeta.resolve("categorias.csv");
+		Path archivoLibros = carpeta.resolve("libros.csv");
+		if (!forzar && (Files.exists(categorias) || Files.exists(archivoLibros))) {
+			System.err.println("Ya hay archivos de la librería en " + carpeta.toAbsolutePath()
+					+ ". Use otra --carpeta o agregue --forzar para reemplazarlos.");
+			System.exit(1);
+		}
+
+		Files.createDirectories(carpeta);
+		long inicio = System.nanoTime();
+		generador.escribirCategorias(categorias);
+		generador.escribirLibros(archivoLibros);
+		generador.escribirPortadas(carpeta);
+		double segundos = (System.nanoTime() - inicio) / 1e9;
+		System.out.printf(Locale.ROOT, "%d libros en %.1f s (%.0f filas/s)%n", libros, segundos, libros / segundos);
+	}
+
+	/**
+	 * Cambia una opción de la configuración a partir de su nombre en la línea de
+	 * comandos
+	 */
+	private void configurar(String opcion, String valor) {
+		switch (opcion) {
+		case "--libros":
+		case "--semilla":
+		case "--carpeta":
+			// Se usan al construir el generador
+			break;
+		case "--categorias":
+			cambiarCantidadCategorias(Integer.parseInt(valor));
+			break;
+		case "--autores-por-categoria":
+			cambiarAutoresPorCategoria(Integer.parseInt(valor));
+			break;
+		case "--zipf-autores":
+			cambiarExponenteAutores(Double.parseDouble(valor));
+			break;
+		case "--zipf-categorias":
+			cambiarExponenteCategorias(Double.parseDouble(valor));
+			break;
+		case "--sesgo":
+			cambiarSesgoCalificacion(Double.parseDouble(valor));
+			break;
+		case "--sin-portada":
+			cambiarFraccionSinPortada(Double.parseDouble(valor));
+			break;
+		case "--desconocidas":
+			cambiarFraccionCategoriaDesconocida(Double.parseDouble(valor));
+			break;
+		default:
+			throw new IllegalArgumentException("Parámetro desconocido: " + opcion);
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package uniandes.dpoo.taller1.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+import uniandes.dpoo.taller1.modelo.Libreria;
+import uniandes.dpoo.taller1.modelo.ModoCarga;
+
+/**
+ * Mide cuánta memoria ocupa una librería cargada con el catálogo como objetos
+ * (ModoCarga.PARALELO) y por columnas (ModoCarga.COLUMNAR).
+ *
+ * La memoria se mide con el heap usado que reporta la JVM después de forzar la
+ * recolección de basura, antes y después de cargar la librería, así que cuenta
+ * todo lo que la librería retiene y no una estimación. Con objetos se mide dos
+ * veces: recién cargada y después de una búsqueda por título y una por
+ * calificación, porque esas consultas construyen sus índices la primera vez que
+ * se usan. La librería por columnas ya tiene todo lo que necesita al terminar
+ * de cargar.
+ *
+ * La primera carga del proceso no se mide. Para que los números sean estables
+ * conviene correrlo con un heap fijo, por ejemplo -Xms4g -Xmx4g.
+ *
+ * Parámetros, todos opcionales:
+ *
+ * <pre>
+ * --tamanios 100000,1000000   tamaños del catálogo
+ * --datos carpeta             dónde se escriben los CSV de prueba
+ * </pre>
+ */
+public class MemoriaCatalogo {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	private static final long SEMILLA = 42;
+
+	/**
+	 * Veces que se pide la recolección de basura antes de cada medición
+	 */
+	private static final int RECOLECCIONES = 4;
+
+	private static final MemoryMXBean MEMORIA = ManagementFactory.getMemoryMXBean();
+
+	// ************************************************************************
+	// Métodos
+	// ************************************************************************
+
+	/**
+	 * Mide la memoria de una librería cargada de la forma indicada
+	 *
+	 * @param categorias    El archivo de categorías
+	 * @param libros        El archivo de libros
+	 * @param modo          El modo de carga
+	 * @param conConsultas  Indica si se hacen las consultas que construyen los
+	 *                      índices antes de medir
+	 * @return Los bytes que retiene la librería
+	 */
+	private static long medir(Path categorias, Path libros, ModoCarga modo, boolean conConsultas) throws Exception {
+		long antes = heapUsado();
+		Libreria libreria = new Libreria(categorias.toString(), libros.toString(), modo);
+		if (conConsultas) {
+			libreria.buscarLibro("");
+			libreria.mejoresLibros(1);
+		}
+		long despues = heapUsado();
+		Reference.reachabilityFence(libreria);
+		return despues - antes;
+	}
+
+	/**
+	 * Escribe los CSV de prueba si no existen. Se hace en un método aparte para
+	 * que el generador no siga alcanzable durante las mediciones.
+	 */
+	private static void generar(Path categorias, Path libros, int cantidad) throws Exception {
+		if (!Files.exists(categorias) || !Files.exists(libros)) {
+			GeneradorCatalogo generador = new GeneradorCatalogo(SEMILLA, cantidad);
+			generador.escribirCategorias(categorias);
+			generador.escribirLibros(libros);
+		}
+	}
+
+	/**
+	 * Consulta el heap usado después de recoger la basura
+	 */
+	private static long heapUsado() throws InterruptedException {
+		for (int i = 0; i < RECOLECCIONES; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		return MEMORIA.getHeapMemoryUsage().getUsed();
+	}
+
+	private static void imprimir(String nombre, int libros, long bytes, long referencia) {
+		System.out.println(String.format(Locale.ROOT, "%-22s %,12d %,10.1f %,10.1f %8.2f", nombre, libros,
+				bytes / 1048576.0, (double) bytes / libros, (double) referencia / bytes));
+	}
+
+	// ************************************************************************
+	// Main
+	// ************************************************************************
+
+	public static void main(String[] args) throws Exception {
+		String tamanios = "100000,1000000";
+		Path datos = Paths.get(System.getProperty("java.io.tmpdir"), "benchmarks-libreria");
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+			case "--tamanios":
+				tamanios = args[i + 1];
+				break;
+			case "--datos":
+				datos = Paths.get(args[i + 1]);
+				break;
+			default:
+				throw new IllegalArgumentException("Parámetro desconocido: " + args[i]);
+			}
+		}
+
+		Files.createDirectories(datos);
+		System.out.println(String.format(Locale.ROOT, "%-22s %12s %10s %10s %8s", "modo", "libros", "MB",
+				"bytes/libro", "ahorro"));
+		boolean calentado = false;
+		for (String texto : tamanios.split(",")) {
+			int libros = Integer.parseInt(texto.trim());
+			Path categorias = datos.resolve("categorias-" + libros + ".csv");
+			Path archivoLibros = datos.resolve("libros-" + libros + ".csv");
+			generar(categorias, archivoLibros, libros);
+			if (!calentado) {
+				// La primera carga del proceso deja memoria de la JVM que no es de la
+				// librería, así que no se cuenta
+				medir(categorias, archivoLibros, ModoCarga.PARALELO, true);
+				calentado = true;
+			}
+
+			long objetos = medir(categorias, archivoLibros, ModoCarga.PARALELO, false);
+			long objetosConIndices = medir(categorias, archivoLibros, ModoCarga.PARALELO, true);
+			long columnas = medir(categorias, archivoLibros, ModoCarga.COLUMNAR, true);
+			imprimir("objetos", libros, objetos, objetosConIndices);
+			imprimir("objetos con índices", libros, objetosConIndices, objetosConIndices);
+			imprimir("columnas", libros, columnas, objetosConIndices);
+		}
+		System.out.println();
+		System.out.println("ahorro: memoria de la librería con objetos e índices dividida por la de cada fila");
+	}
+}
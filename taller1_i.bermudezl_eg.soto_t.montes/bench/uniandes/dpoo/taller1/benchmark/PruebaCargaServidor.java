@@ -0,0 +1,324 @@
+package uniandes.dpoo.taller1.benchmark;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import uniandes.dpoo.taller1.modelo.Categoria;
+import uniandes.dpoo.taller1.modelo.Libreria;
+import uniandes.dpoo.taller1.modelo.Libro;
+import uniandes.dpoo.taller1.modelo.MetricasLibreria;
+import uniandes.dpoo.taller1.modelo.ModoCarga;
+import uniandes.dpoo.taller1.servidor.ServidorConsultas;
+
+/**
+ * Prueba de carga del servidor de consultas: envía peticiones a una tasa fija
+ * y reporta los percentiles de la latencia.
+ *
+ * Las peticiones se envían en un horario fijo sin esperar las respuestas (carga
+ * abierta), y la latencia de cada una se mide desde el momento en el que se
+ * debía enviar. Así, si el servidor o el cliente se atrasan, el atraso cuenta
+ * en la latencia de las peticiones siguientes en lugar de bajar la tasa sin que
+ * se note.
+ *
+ * Las consultas se eligen al azar de un catálogo generado con
+ * GeneradorCatalogo: búsquedas por título y por parte del nombre del autor,
+ * categorías de un autor, libros de una categoría pequeña y estadísticas.
+ *
+ * Parámetros, todos opcionales:
+ *
+ * <pre>
+ * --tasa 10000          peticiones por segundo
+ * --segundos 10         duración de la medición
+ * --calentamiento 3     segundos a la misma tasa que no se miden
+ * --libros 100000       tamaño del catálogo
+ * --datos carpeta       dónde se escriben los CSV de prueba
+ * --url http://host:puerto   servidor que se prueba; si no se indica, se
+ *                            inicia uno en este proceso con el catálogo
+ * </pre>
+ *
+ * Si el servidor se inicia en este proceso con -Dlibreria.metricas=true, al
+ * final también se imprime cuánto tardó la librería en cada operación, sin
+ * contar el calentamiento.
+ */
+public class PruebaCargaServidor {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	private static final long SEMILLA = 42;
+
+	/**
+	 * Cantidad de consultas distintas que se preparan
+	 */
+	private static final int CONSULTAS = 4096;
+
+	/**
+	 * Tiempo máximo que se espera cada respuesta
+	 */
+	private static final Duration ESPERA_MAXIMA = Duration.ofSeconds(30);
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	private final HttpClient cliente;
+
+	/**
+	 * Las peticiones que se envían, en orden circular
+	 */
+	private final HttpRequest[] peticiones;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	private PruebaCargaServidor(String url, Libreria libreria) {
+		// El servidor del JDK solo habla HTTP/1.1; el cliente reutiliza las conexiones
+		this.cliente = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		this.peticiones = prepararPeticiones(url, libreria);
+	}
+
+	// ************************************************************************
+	// Métodos
+	// ************************************************************************
+
+	/**
+	 * Envía peticiones a la tasa indicada durante un tiempo y espera todas las
+	 * respuestas
+	 *
+	 * @return Las latencias de las peticiones que recibieron respuesta, en
+	 *         nanosegundos y ordenadas, y los contadores de la ejecución
+	 */
+	private Ejecucion ejecutar(int tasa, double segundos) throws InterruptedException {
+		int cantidad = (int) Math.max(1, Math.round(tasa * segundos));
+		long intervalo = 1_000_000_000L / tasa;
+		long[] latencias = new long[cantidad];
+		AtomicInteger respondidas = new AtomicInteger();
+		AtomicInteger fallidas = new AtomicInteger();
+		AtomicLong atrasoMaximo = new AtomicLong();
+		CountDownLatch pendientes = new CountDownLatch(cantidad);
+
+		long inicio = System.nanoTime();
+		for (int i = 0; i < cantidad; i++) {
+			long programada = inicio + i * intervalo;
+			esperarHasta(programada);
+			atrasoMaximo.accumulateAndGet(System.nanoTime() - programada, Math::max);
+			cliente.sendAsync(peticiones[i % peticiones.length], HttpResponse.BodyHandlers.discarding())
+					.whenComplete((respuesta, error) -> {
+						long latencia = System.nanoTime() - programada;
+						// Un 404 es una respuesta válida: la consulta no encontró nada
+						if (error == null && (respuesta.statusCode() == 200 || respuesta.statusCode() == 404)) {
+							latencias[respondidas.getAndIncrement()] = latencia;
+						} else {
+							fallidas.incrementAndGet();
+						}
+						pendientes.countDown();
+					});
+		}
+		long enviadas = System.nanoTime() - inicio;
+		if (!pendientes.await(ESPERA_MAXIMA.toSeconds(), TimeUnit.SECONDS)) {
+			System.err.println("Algunas peticiones no recibieron respuesta");
+		}
+
+		long[] medidas = Arrays.copyOf(latencias, Math.min(cantidad, respondidas.get()));
+		Arrays.sort(medidas);
+		return new Ejecucion(medidas, fallidas.get(), cantidad * 1e9 / enviadas, atrasoMaximo.get());
+	}
+
+	/**
+	 * Espera hasta el instante indicado. Duerme mientras falte más de un
+	 * milisegundo y luego espera activamente, porque dormir no es tan preciso.
+	 */
+	private static void esperarHasta(long instante) {
+		long falta;
+		while ((falta = instante - System.nanoTime()) > 0) {
+			if (falta > 1_000_000) {
+				LockSupport.parkNanos(falta - 1_000_000);
+			} else {
+				Thread.onSpinWait();
+			}
+		}
+	}
+
+	/**
+	 * Prepara las peticiones a partir del catálogo, mezclando los tipos de
+	 * consulta
+	 */
+	private static HttpRequest[] prepararPeticiones(String url, Libreria libreria) {
+		Random azar = new Random(SEMILLA);
+		List<Libro> catalogo = libreria.darLibros();
+		Categoria[] categorias = libreria.darCategorias();
+		Categoria menor = categorias[0];
+		for (Categoria c : categorias) {
+			if (c.contarLibrosEnCategoria() < menor.contarLibrosEnCategoria()) {
+				menor = c;
+			}
+		}
+
+		HttpRequest[] peticiones = new HttpRequest[CONSULTAS];
+		for (int i = 0; i < CONSULTAS; i++) {
+			Libro libro = catalogo.get(azar.nextInt(catalogo.size()));
+			String ruta;
+			int tipo = azar.nextInt(100);
+			if (tipo < 50) {
+				ruta = "/libros/titulo?titulo=" + codificar(libro.darTitulo());
+			} else if (tipo < 75) {
+				String autor = libro.darAutor();
+				int inicio = azar.nextInt(Math.max(1, autor.length() - 6));
+				ruta = "/libros/autor?q=" + codificar(autor.substring(inicio, Math.min(autor.length(), inicio + 6)));
+			} else if (tipo < 95) {
+				ruta = "/categorias/autor?autor=" + codificar(libro.darAutor());
+			} else if (tipo < 99) {
+				ruta = "/libros/categoria?nombre=" + codificar(menor.darNombre());
+			} else {
+				ruta = "/estadisticas";
+			}
+			peticiones[i] = HttpRequest.newBuilder(URI.create(url + ruta)).timeout(ESPERA_MAXIMA).GET().build();
+		}
+		return peticiones;
+	}
+
+	private static String codificar(String valor) {
+		return URLEncoder.encode(valor, StandardCharsets.UTF_8);
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * Lo que se midió en una ejecución
+	 */
+	private static final class Ejecucion {
+		private final long[] latencias;
+		private final int fallidas;
+		private final double tasaEnviada;
+		private final long atrasoMaximo;
+
+		Ejecucion(long[] latencias, int fallidas, double tasaEnviada, long atrasoMaximo) {
+			this.latencias = latencias;
+			this.fallidas = fallidas;
+			this.tasaEnviada = tasaEnviada;
+			this.atrasoMaximo = atrasoMaximo;
+		}
+
+		/**
+		 * Retorna el percentil indicado de las latencias, en milisegundos
+		 */
+		double percentil(double p) {
+			if (latencias.length == 0) {
+				return Double.NaN;
+			}
+			int posicion = (int) Math.ceil(p / 100 * latencias.length) - 1;
+			return latencias[Math.max(0, Math.min(latencias.length - 1, posicion))] / 1e6;
+		}
+
+		void imprimir() {
+			System.out.println(String.format(Locale.ROOT, "tasa enviada   %.0f req/s", tasaEnviada));
+			System.out.println(String.format(Locale.ROOT, "respondidas    %d", latencias.length));
+			System.out.println(String.format(Locale.ROOT, "fallidas       %d", fallidas));
+			System.out.println(String.format(Locale.ROOT, "atraso máximo  %.3f ms", atrasoMaximo / 1e6));
+			for (double p : new double[] { 50, 90, 99, 99.9, 100 }) {
+				System.out.println(String.format(Locale.ROOT, "%-14s %.3f ms", p == 100 ? "max" : "p" + formatear(p),
+						percentil(p)));
+			}
+		}
+
+		private static String formatear(double p) {
+			return p == Math.rint(p) ? Long.toString((long) p) : Double.toString(p);
+		}
+	}
+
+	// ************************************************************************
+	// Main
+	// ************************************************************************
+
+	/**
+	 * Ejecuta la prueba de carga
+	 *
+	 * @param args Los parámetros descritos en la documentación de la clase
+	 * @throws Exception Si no se pueden generar los datos o iniciar el servidor
+	 */
+	public static void main(String[] args) throws Exception {
+		int tasa = 10_000;
+		double segundos = 10;
+		double calentamiento = 3;
+		int libros = 100_000;
+		Path datos = Paths.get(System.getProperty("java.io.tmpdir"), "benchmarks-libreria");
+		String url = null;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+			case "--tasa":
+				tasa = Integer.parseInt(args[i + 1]);
+				break;
+			case "--segundos":
+				segundos = Double.parseDouble(args[i + 1]);
+				break;
+			case "--calentamiento":
+				calentamiento = Double.parseDouble(args[i + 1]);
+				break;
+			case "--libros":
+				libros = Integer.parseInt(args[i + 1]);
+				break;
+			case "--datos":
+				datos = Paths.get(args[i + 1]);
+				break;
+			case "--url":
+				url = args[i + 1];
+				break;
+			default:
+				throw new IllegalArgumentException("Parámetro desconocido: " + args[i]);
+			}
+		}
+
+		Files.createDirectories(datos);
+		Path categorias = datos.resolve("categorias-" + libros + ".csv");
+		Path archivoLibros = datos.resolve("libros-" + libros + ".csv");
+		if (!Files.exists(categorias) || !Files.exists(archivoLibros)) {
+			GeneradorCatalogo generador = new GeneradorCatalogo(SEMILLA, libros);
+			generador.escribirCategorias(categorias);
+			generador.escribirLibros(archivoLibros);
+		}
+		Libreria libreria = new Libreria(categorias.toString(), archivoLibros.toString(), ModoCarga.PARALELO);
+
+		ServidorConsultas servidor = null;
+		if (url == null) {
+			servidor = new ServidorConsultas(libreria, 0);
+			servidor.iniciar();
+			url = "http://localhost:" + servidor.darPuerto();
+		}
+
+		PruebaCargaServidor prueba = new PruebaCargaServidor(url, libreria);
+		System.out.println("Probando " + url + " a " + tasa + " req/s durante " + segundos + " s");
+		if (calentamiento > 0) {
+			prueba.ejecutar(tasa, calentamiento);
+		}
+		MetricasLibreria.darInstancia().reiniciar();
+		prueba.ejecutar(tasa, segundos).imprimir();
+
+		if (servidor != null) {
+			servidor.detener();
+			if (MetricasLibreria.darInstancia().isActivas()) {
+				System.out.println();
+				System.out.print(MetricasLibreria.darInstancia().volcar());
+			}
+		}
+	}
+}
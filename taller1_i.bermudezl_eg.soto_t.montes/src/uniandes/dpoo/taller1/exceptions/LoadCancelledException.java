@@ -0,0 +1,15 @@
+package uniandes.dpoo.taller1.exceptions;
+
+import java.io.IOException;
+
+/**
+ * Se lanza cuando el usuario cancela la carga de una librería antes de que
+ * termine
+ */
+@SuppressWarnings("serial")
+public class LoadCancelledException extends IOException {
+
+    public LoadCancelledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,417 @@
+package uniandes.dpoo.taller1.interfaz;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+
+/**
+ * Esta clase decodifica las imágenes de las portadas en hilos aparte del hilo
+ * de eventos de Swing (EDT) y guarda las imágenes ya decodificadas.
+ *
+ * Las imágenes se reducen al tamaño en el que se van a mostrar antes de
+ * guardarlas. El caché tiene un presupuesto en bytes: cuando se supera se
+ * descartan las imágenes que se usaron hace más tiempo. Además, las imágenes se
+ * guardan con referencias suaves (SoftReference), así que la JVM las puede
+ * liberar si se queda sin memoria.
+ *
+ * Las imágenes que se piden para mostrar de inmediato pasan antes que las que
+ * solo se precargan. Cada una de las dos colas atiende primero lo último que se
+ * pidió y tiene un límite: al pasarse se descarta lo más viejo, que ya no le
+ * interesa a nadie porque el usuario siguió navegando.
+ */
+public class CacheImagenes
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Cantidad de hilos que decodifican imágenes
+	 */
+	private static final int HILOS = 2;
+
+	/**
+	 * Cantidad máxima de imágenes que esperan en cada una de las colas
+	 */
+	private static final int MAXIMO_EN_COLA = 8;
+
+	/**
+	 * Bytes que ocupa cada pixel de una imagen decodificada
+	 */
+	private static final int BYTES_POR_PIXEL = 4;
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * La carpeta relativa a la que están las rutas de las imágenes
+	 */
+	private String carpeta;
+
+	/**
+	 * Cantidad máxima de bytes que pueden ocupar las imágenes guardadas
+	 */
+	private long presupuestoBytes;
+
+	/**
+	 * Cantidad de bytes que ocupan las imágenes guardadas
+	 */
+	private long bytesUsados;
+
+	/**
+	 * Las imágenes guardadas, de la menos a la más recientemente usada
+	 */
+	private LinkedHashMap<String, Entrada> imagenes;
+
+	/**
+	 * Las llaves de las imágenes que se están decodificando en este momento
+	 */
+	private HashSet<String> pendientes;
+
+	/**
+	 * Las imágenes que se van a mostrar de inmediato y que esperan un hilo, de la
+	 * más vieja a la más reciente. Su monitor protege las dos colas.
+	 */
+	private ArrayDeque<Carga> cargas;
+
+	/**
+	 * Las imágenes que se precargan y que esperan un hilo, de la más vieja a la
+	 * más reciente
+	 */
+	private ArrayDeque<Carga> precargas;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye un caché vacío
+	 *
+	 * @param carpeta          La carpeta relativa a la que están las rutas de las
+	 *                         imágenes
+	 * @param presupuestoBytes Cantidad máxima de bytes que pueden ocupar las
+	 *                         imágenes guardadas
+	 */
+	public CacheImagenes(String carpeta, long presupuestoBytes)
+	{
+		this.carpeta = carpeta;
+		this.presupuestoBytes = presupuestoBytes;
+		imagenes = new LinkedHashMap<String, Entrada>(16, 0.75f, true);
+		pendientes = new HashSet<String>();
+		cargas = new ArrayDeque<Carga>();
+		precargas = new ArrayDeque<Carga>();
+		for (int i = 0; i < HILOS; i++)
+		{
+			Thread hilo = new Thread(this::decodificarEnCola, "decodificador-portadas");
+			hilo.setDaemon(true);
+			hilo.start();
+		}
+	}
+
+	// ************************************************************************
+	// Métodos
+	// ************************************************************************
+
+	/**
+	 * Busca una imagen que ya esté decodificada
+	 *
+	 * @param ruta  La ruta de la imagen, relativa a la carpeta
+	 * @param ancho El ancho máximo con el que se va a mostrar, o 0 si no hay máximo
+	 * @param alto  El alto máximo con el que se va a mostrar, o 0 si no hay máximo
+	 * @return La imagen, o null si no está en el caché
+	 */
+	public synchronized ImageIcon buscar(String ruta, int ancho, int alto)
+	{
+		String llave = llave(ruta, ancho, alto);
+		Entrada entrada = imagenes.get(llave);
+		if (entrada == null)
+		{
+			return null;
+		}
+		ImageIcon icono = entrada.icono.get();
+		if (icono == null)
+		{
+			// La JVM liberó la imagen
+			imagenes.remove(llave);
+			bytesUsados -= entrada.bytes;
+		}
+		return icono;
+	}
+
+	/**
+	 * Entrega una imagen reducida al tamaño indicado. Si la imagen ya está en el
+	 * caché, se entrega de inmediato; si no, se decodifica en otro hilo y se
+	 * entrega después desde el EDT.
+	 *
+	 * @param ruta        La ruta de la imagen, relativa a la carpeta
+	 * @param ancho       El ancho máximo con el que se va a mostrar, o 0 si no hay
+	 *                    máximo
+	 * @param alto        El alto máximo con el que se va a mostrar, o 0 si no hay
+	 *                    máximo
+	 * @param alTerminar  Recibe la imagen, o null si no se pudo leer o si se
+	 *                    descartó porque se pidieron muchas imágenes después. Se
+	 *                    invoca siempre desde el EDT.
+	 */
+	public void cargar(String ruta, int ancho, int alto, Consumer<ImageIcon> alTerminar)
+	{
+		ImageIcon icono = buscar(ruta, ancho, alto);
+		if (icono != null)
+		{
+			alTerminar.accept(icono);
+			return;
+		}
+		encolar(cargas, new Carga(ruta, ancho, alto, alTerminar));
+	}
+
+	/**
+	 * Decodifica una imagen en otro hilo para que quede en el caché, si no está
+	 * ya en el caché o decodificándose. La imagen espera a que no haya imágenes
+	 * por mostrar.
+	 *
+	 * @param ruta  La ruta de la imagen, relativa a la carpeta
+	 * @param ancho El ancho máximo con el que se va a mostrar, o 0 si no hay máximo
+	 * @param alto  El alto máximo con el que se va a mostrar, o 0 si no hay máximo
+	 */
+	public void precargar(String ruta, int ancho, int alto)
+	{
+		synchronized (this)
+		{
+			String llave = llave(ruta, ancho, alto);
+			if (imagenes.containsKey(llave) || pendientes.contains(llave))
+			{
+				return;
+			}
+		}
+		encolar(precargas, new Carga(ruta, ancho, alto, null));
+	}
+
+	/**
+	 * Agrega una imagen al final de una cola y despierta a un hilo. Si la cola ya
+	 * está llena, descarta la imagen más vieja.
+	 */
+	private void encolar(ArrayDeque<Carga> cola, Carga carga)
+	{
+		Carga descartada = null;
+		synchronized (cargas)
+		{
+			if (cola.size() >= MAXIMO_EN_COLA)
+			{
+				descartada = cola.pollFirst();
+			}
+			cola.addLast(carga);
+			cargas.notify();
+		}
+		if (descartada != null && descartada.alTerminar != null)
+		{
+			Consumer<ImageIcon> alTerminar = descartada.alTerminar;
+			SwingUtilities.invokeLater(() -> alTerminar.accept(null));
+		}
+	}
+
+	/**
+	 * Lo que hace cada hilo decodificador: toma la imagen más reciente de las que
+	 * se van a mostrar o, si no hay, la más reciente de las precargas
+	 */
+	private void decodificarEnCola()
+	{
+		while (true)
+		{
+			Carga carga;
+			synchronized (cargas)
+			{
+				while (cargas.isEmpty() && precargas.isEmpty())
+				{
+					try
+					{
+						cargas.wait();
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+				}
+				carga = cargas.isEmpty() ? precargas.pollLast() : cargas.pollLast();
+			}
+			ImageIcon decodificado = decodificar(carga.ruta, carga.ancho, carga.alto);
+			if (carga.alTerminar != null)
+			{
+				Consumer<ImageIcon> alTerminar = carga.alTerminar;
+				SwingUtilities.invokeLater(() -> alTerminar.accept(decodificado));
+			}
+		}
+	}
+
+	/**
+	 * Lee la imagen del archivo, la reduce y la guarda en el caché. Si otro hilo ya
+	 * la está decodificando, la espera en lugar de decodificarla otra vez.
+	 */
+	private ImageIcon decodificar(String ruta, int ancho, int alto)
+	{
+		String llave = llave(ruta, ancho, alto);
+		synchronized (this)
+		{
+			while (pendientes.contains(llave))
+			{
+				try
+				{
+					wait();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					return null;
+				}
+			}
+			ImageIcon icono = buscar(ruta, ancho, alto);
+			if (icono != null)
+			{
+				return icono;
+			}
+			pendientes.add(llave);
+		}
+
+		ImageIcon icono = null;
+		try
+		{
+			BufferedImage imagen = ImageIO.read(new File(carpeta + ruta));
+			if (imagen != null)
+			{
+				icono = new ImageIcon(reducir(imagen, ancho, alto));
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			// La imagen no existe o no se puede leer. Con algunas imágenes dañadas
+			// los decodificadores de ImageIO lanzan excepciones no verificadas.
+		}
+		finally
+		{
+			// Aunque la decodificación falle, quienes esperan esta imagen deben seguir
+			synchronized (this)
+			{
+				pendientes.remove(llave);
+				if (icono != null)
+				{
+					guardar(llave, icono);
+				}
+				notifyAll();
+			}
+		}
+		return icono;
+	}
+
+	/**
+	 * Guarda una imagen y descarta las menos usadas mientras se supere el
+	 * presupuesto
+	 */
+	private synchronized void guardar(String llave, ImageIcon icono)
+	{
+		long bytes = (long) icono.getIconWidth() * icono.getIconHeight() * BYTES_POR_PIXEL;
+		Entrada anterior = imagenes.put(llave, new Entrada(icono, bytes));
+		if (anterior != null)
+		{
+			bytesUsados -= anterior.bytes;
+		}
+		bytesUsados += bytes;
+
+		Iterator<Map.Entry<String, Entrada>> iterador = imagenes.entrySet().iterator();
+		while (bytesUsados > presupuestoBytes && iterador.hasNext())
+		{
+			Map.Entry<String, Entrada> masVieja = iterador.next();
+			if (masVieja.getKey().equals(llave))
+			{
+				continue;
+			}
+			bytesUsados -= masVieja.getValue().bytes;
+			iterador.remove();
+		}
+	}
+
+	/**
+	 * Reduce la imagen para que quepa en el tamaño indicado, conservando la
+	 * proporción. Las imágenes que ya caben no se modifican.
+	 */
+	private static BufferedImage reducir(BufferedImage imagen, int ancho, int alto)
+	{
+		double escala = 1;
+		if (ancho > 0)
+		{
+			escala = Math.min(escala, (double) ancho / imagen.getWidth());
+		}
+		if (alto > 0)
+		{
+			escala = Math.min(escala, (double) alto / imagen.getHeight());
+		}
+		if (escala >= 1)
+		{
+			return imagen;
+		}
+
+		int nuevoAncho = Math.max(1, (int) Math.round(imagen.getWidth() * escala));
+		int nuevoAlto = Math.max(1, (int) Math.round(imagen.getHeight() * escala));
+		BufferedImage reducida = new BufferedImage(nuevoAncho, nuevoAlto, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = reducida.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.drawImage(imagen, 0, 0, nuevoAncho, nuevoAlto, null);
+		g.dispose();
+		return reducida;
+	}
+
+	private static String llave(String ruta, int ancho, int alto)
+	{
+		return ruta + "@" + ancho + "x" + alto;
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * Una imagen que espera a ser decodificada y quién la recibe, o null si solo
+	 * se precarga
+	 */
+	private static final class Carga
+	{
+		private final String ruta;
+		private final int ancho;
+		private final int alto;
+		private final Consumer<ImageIcon> alTerminar;
+
+		Carga(String ruta, int ancho, int alto, Consumer<ImageIcon> alTerminar)
+		{
+			this.ruta = ruta;
+			this.ancho = ancho;
+			this.alto = alto;
+			this.alTerminar = alTerminar;
+		}
+	}
+
+	/**
+	 * Una imagen guardada en el caché y los bytes que ocupa
+	 */
+	private static final class Entrada
+	{
+		private final SoftReference<ImageIcon> icono;
+		private final long bytes;
+
+		Entrada(ImageIcon icono, long bytes)
+		{
+			this.icono = new SoftReference<ImageIcon>(icono);
+			this.bytes = bytes;
+		}
+	}
+}
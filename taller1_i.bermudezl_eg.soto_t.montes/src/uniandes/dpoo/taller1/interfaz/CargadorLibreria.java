@@ -0,0 +1,152 @@
+package uniandes.dpoo.taller1.interfaz;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingWorker;
+
+import uniandes.dpoo.taller1.modelo.Libreria;
+import uniandes.dpoo.taller1.modelo.ModoCarga;
+import uniandes.dpoo.taller1.modelo.ProgresoCarga;
+
+/**
+ * Esta clase carga una librería en un hilo aparte del hilo de eventos de Swing
+ * (EDT), para que la ventana siga respondiendo mientras se leen los archivos.
+ *
+ * El avance se publica como la propiedad "progress" del SwingWorker, de 0 a
+ * 100, según los bytes leídos. Las filas que no se pueden interpretar se saltan
+ * y se cuentan. Cuando la carga termina, se le entrega el resultado a la
+ * ventana principal desde el EDT.
+ */
+public class CargadorLibreria extends SwingWorker<Libreria, Void> implements ProgresoCarga
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Cantidad máxima de filas descartadas que se guardan para mostrarle al
+	 * usuario
+	 */
+	private static final int MAXIMO_EJEMPLOS = 5;
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * La ventana que recibe la librería cargada
+	 */
+	private InterfazLibreria ventana;
+
+	/**
+	 * El archivo con las categorías
+	 */
+	private File archivoCategorias;
+
+	/**
+	 * El archivo con los libros
+	 */
+	private File archivoLibros;
+
+	/**
+	 * El nombre del archivo con la copia binaria de la librería
+	 */
+	private String nombreArchivoSnapshot;
+
+	/**
+	 * Cantidad de filas del archivo de libros que no se pudieron cargar
+	 */
+	private int filasDescartadas;
+
+	/**
+	 * Descripción de las primeras filas que no se pudieron cargar
+	 */
+	private ArrayList<String> ejemplosDescartados;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Prepara la carga de una librería. La carga empieza cuando se invoca el
+	 * método execute.
+	 *
+	 * @param ventana               La ventana que recibe la librería cargada
+	 * @param archivoCategorias     El archivo con las categorías
+	 * @param archivoLibros         El archivo con los libros
+	 * @param nombreArchivoSnapshot El nombre del archivo con la copia binaria de la
+	 *                              librería
+	 */
+	public CargadorLibreria(InterfazLibreria ventana, File archivoCategorias, File archivoLibros,
+			String nombreArchivoSnapshot)
+	{
+		this.ventana = ventana;
+		this.archivoCategorias = archivoCategorias;
+		this.archivoLibros = archivoLibros;
+		this.nombreArchivoSnapshot = nombreArchivoSnapshot;
+		ejemplosDescartados = new ArrayList<String>();
+	}
+
+	// ************************************************************************
+	// Métodos de SwingWorker
+	// ************************************************************************
+
+	@Override
+	protected Libreria doInBackground() throws Exception
+	{
+		return Libreria.abrir(archivoCategorias.getPath(), archivoLibros.getPath(), nombreArchivoSnapshot,
+				ModoCarga.PARALELO, this, true);
+	}
+
+	@Override
+	protected void done()
+	{
+		if (isCancelled())
+		{
+			ventana.cargaCancelada();
+			return;
+		}
+		try
+		{
+			ventana.cargaTerminada(get(), filasDescartadas, ejemplosDescartados);
+		}
+		catch (ExecutionException e)
+		{
+			ventana.cargaFallida(e.getCause());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			ventana.cargaFallida(e);
+		}
+	}
+
+	// ************************************************************************
+	// Métodos implementados de ProgresoCarga
+	// ************************************************************************
+
+	@Override
+	public void avance(long bytesLeidos, long bytesTotales)
+	{
+		int porcentaje = bytesTotales <= 0 ? 100 : (int) (bytesLeidos * 100 / bytesTotales);
+		setProgress(Math.max(0, Math.min(100, porcentaje)));
+	}
+
+	@Override
+	public boolean cancelado()
+	{
+		return isCancelled();
+	}
+
+	@Override
+	public void filaDescartada(long numeroLinea, String linea, RuntimeException causa)
+	{
+		filasDescartadas++;
+		if (ejemplosDescartados.size() < MAXIMO_EJEMPLOS)
+		{
+			ejemplosDescartados.add("Línea " + numeroLinea + ": " + causa);
+		}
+	}
+}
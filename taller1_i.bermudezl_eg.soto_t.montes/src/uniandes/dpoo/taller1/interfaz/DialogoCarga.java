@@ -0,0 +1,141 @@
+package uniandes.dpoo.taller1.interfaz;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingWorker;
+
+/**
+ * Este diálogo muestra el avance de la carga de una librería y permite
+ * cancelarla.
+ *
+ * El diálogo no es modal, así que la librería que ya estaba cargada se puede
+ * seguir usando mientras se carga la nueva. Se cierra solo cuando la carga
+ * termina.
+ */
+@SuppressWarnings("serial")
+public class DialogoCarga extends JDialog implements ActionListener, PropertyChangeListener
+{
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * La carga cuyo avance se muestra
+	 */
+	private CargadorLibreria carga;
+
+	// ************************************************************************
+	// Elementos de la interfaz
+	// ************************************************************************
+
+	/**
+	 * La barra con el porcentaje del archivo que se ha leído
+	 */
+	private JProgressBar barraProgreso;
+
+	/**
+	 * El botón para cancelar la carga
+	 */
+	private JButton botonCancelar;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye el diálogo y lo muestra
+	 *
+	 * @param ventana La ventana principal de la aplicación
+	 * @param carga   La carga cuyo avance se muestra
+	 * @param archivo El nombre del archivo que se está cargando
+	 */
+	public DialogoCarga(InterfazLibreria ventana, CargadorLibreria carga, String archivo)
+	{
+		super(ventana, "Cargando librería", false);
+		this.carga = carga;
+
+		JPanel panel = new JPanel(new BorderLayout(5, 5));
+		panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+		add(panel);
+
+		panel.add(new JLabel("Leyendo " + archivo), BorderLayout.NORTH);
+
+		barraProgreso = new JProgressBar(0, 100);
+		barraProgreso.setStringPainted(true);
+		panel.add(barraProgreso, BorderLayout.CENTER);
+
+		JPanel panelBoton = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+		botonCancelar = new JButton("Cancelar");
+		botonCancelar.addActionListener(this);
+		panelBoton.add(botonCancelar);
+		panel.add(panelBoton, BorderLayout.SOUTH);
+
+		// Cerrar el diálogo también cancela la carga
+		setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+		addWindowListener(new WindowAdapter()
+		{
+			@Override
+			public void windowClosing(WindowEvent e)
+			{
+				cancelar();
+			}
+		});
+
+		carga.addPropertyChangeListener(this);
+
+		pack();
+		setSize(Math.max(getWidth(), 400), getHeight());
+		setLocationRelativeTo(ventana);
+		setVisible(true);
+	}
+
+	// ************************************************************************
+	// Métodos
+	// ************************************************************************
+
+	/**
+	 * Pide que se cancele la carga. La carga se detiene la próxima vez que revise
+	 * si fue cancelada.
+	 */
+	private void cancelar()
+	{
+		botonCancelar.setEnabled(false);
+		carga.cancel(false);
+	}
+
+	// ************************************************************************
+	// Métodos implementados de las interfaces
+	// ************************************************************************
+
+	@Override
+	public void actionPerformed(ActionEvent e)
+	{
+		cancelar();
+	}
+
+	@Override
+	public void propertyChange(PropertyChangeEvent evt)
+	{
+		if ("progress".equals(evt.getPropertyName()))
+		{
+			barraProgreso.setValue((Integer) evt.getNewValue());
+		}
+		else if ("state".equals(evt.getPropertyName()) && evt.getNewValue() == SwingWorker.StateValue.DONE)
+		{
+			dispose();
+		}
+	}
+}
@@ -5,10 +5,15 @@ import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
@@ -16,6 +21,8 @@ import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.UIManager;
 import javax.swing.UIManager.LookAndFeelInfo;
 import javax.swing.UnsupportedLookAndFeelException;
@@ -24,6 +31,7 @@ import uniandes.dpoo.taller1.exceptions.SomeAuthorsNotFoundException;
 import uniandes.dpoo.taller1.modelo.Categoria;
 import uniandes.dpoo.taller1.modelo.Libreria;
 import uniandes.dpoo.taller1.modelo.Libro;
+import uniandes.dpoo.taller1.modelo.VigilanteCatalogo;
 
 /**
  * Esta clase representa a la ventana principal de la aplicación
@@ -32,6 +40,22 @@ import uniandes.dpoo.taller1.modelo.Libro;
 public class InterfazLibreria extends JFrame
 {
 
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Extensión que se le agrega al nombre del archivo de libros para guardar la
+	 * copia binaria de la librería
+	 */
+	private static final String EXTENSION_SNAPSHOT = ".snapshot";
+
+	/**
+	 * Extensión que se le agrega al nombre del archivo de libros para guardar el
+	 * registro de los cambios que se le hacen a la librería
+	 */
+	private static final String EXTENSION_REGISTRO = ".cambios";
+
 	// ************************************************************************
 	// Atributos
 	// ************************************************************************
@@ -41,6 +65,45 @@ public class InterfazLibreria extends JFrame
 	 */
 	private Libreria libreria;
 
+	/**
+	 * La carga que está en curso, o null si no se está cargando ninguna librería
+	 */
+	private CargadorLibreria carga;
+
+	/**
+	 * Los archivos de los que se cargó la librería, o null si no se ha cargado
+	 * ninguna
+	 */
+	private File archivoCategorias;
+
+	private File archivoLibros;
+
+	/**
+	 * Los archivos de la carga que está en curso
+	 */
+	private File categoriasEnCarga;
+
+	private File librosEnCarga;
+
+	/**
+	 * Aplica a la librería los cambios de sus archivos, o null si no se están
+	 * vigilando
+	 */
+	private VigilanteCatalogo vigilante;
+
+	/**
+	 * Construye el vigilante en otro hilo, o null si no se está construyendo
+	 * ninguno
+	 */
+	private SwingWorker<VigilanteCatalogo, Void> preparacionVigilante;
+
+	/**
+	 * Abre el registro de cambios de la librería recién cargada y le repite los
+	 * cambios guardados en otro hilo, o null si no se está abriendo. Mientras
+	 * tanto no se puede cambiar la librería ni cargar otra.
+	 */
+	private SwingWorker<Void, Void> aperturaRegistro;
+
 	// ************************************************************************
 	// Elementos de la interfaz
 	// ************************************************************************
@@ -62,6 +125,12 @@ public class InterfazLibreria extends JFrame
 	 */
 	private JMenuItem menuAbrir;
 
+	/**
+	 * Este componente corresponde a la opción para aplicar automáticamente los
+	 * cambios de los archivos de la librería
+	 */
+	private JCheckBoxMenuItem menuVigilar;
+
 	/**
 	 * Este componente corresponde a la opción para salir de la aplicación
 	 */
@@ -113,6 +182,13 @@ public class InterfazLibreria extends JFrame
 		menuAbrir.addActionListener(new ListenerMenu(this));
 		menuArchivo.add(menuAbrir);
 
+		menuVigilar = new JCheckBoxMenuItem("Vigilar archivos");
+		menuVigilar.setMnemonic(KeyEvent.VK_V);
+		menuVigilar.setEnabled(false);
+		menuVigilar.setActionCommand(ListenerMenu.VIGILAR_ARCHIVOS);
+		menuVigilar.addActionListener(new ListenerMenu(this));
+		menuArchivo.add(menuVigilar);
+
 		menuSalir = new JMenuItem("Salir", KeyEvent.VK_Q);
 		menuSalir.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Q, ActionEvent.CTRL_MASK));
 		menuSalir.addActionListener(new ActionListener()
@@ -120,7 +196,7 @@ public class InterfazLibreria extends JFrame
 			@Override
 			public void actionPerformed(ActionEvent e)
 			{
-				System.exit(0);
+				salir();
 			}
 		});
 		menuArchivo.add(menuSalir);
@@ -147,7 +223,15 @@ public class InterfazLibreria extends JFrame
 		panelAbajo.add(panelBotones, BorderLayout.CENTER);
 		add(panelAbajo, BorderLayout.SOUTH);
 
-		setDefaultCloseOperation(EXIT_ON_CLOSE);
+		setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+		addWindowListener(new WindowAdapter()
+		{
+			@Override
+			public void windowClosing(WindowEvent e)
+			{
+				salir();
+			}
+		});
 		setTitle("Librería");
 		setSize(1200, 700);
 		setVisible(true);
@@ -158,9 +242,14 @@ public class InterfazLibreria extends JFrame
 	// ************************************************************************
 
 	/**
-	 * Carga la información de una librería a partir de los archivos datos,
-	 * construye un objeto Librería con esa información y lo deja en el atributo
-	 * llamado 'libreria'
+	 * Empieza a cargar la información de una librería a partir de los archivos
+	 * dados. La carga se hace en otro hilo y su avance se muestra en un diálogo
+	 * que permite cancelarla; cuando termina, la nueva librería reemplaza a la
+	 * del atributo 'libreria'. Mientras tanto se puede seguir usando la librería
+	 * anterior.
+	 * 
+	 * Junto al archivo de libros se guarda una copia binaria de la librería, que
+	 * se usa la próxima vez mientras los archivos CSV no cambien.
 	 * 
 	 * @param archivo_categorias El archivo que tiene la información de las
 	 *                           categorías que se usarán para los libros
@@ -168,19 +257,305 @@ public class InterfazLibreria extends JFrame
 	 */
 	public void cargarArchivos(File archivo_categorias, File archivo_libros)
 	{
+		if (carga != null || aperturaRegistro != null)
+		{
+			return;
+		}
+		menuAbrir.setEnabled(false);
+		categoriasEnCarga = archivo_categorias;
+		librosEnCarga = archivo_libros;
+		carga = new CargadorLibreria(this, archivo_categorias, archivo_libros,
+				archivo_libros.getPath() + EXTENSION_SNAPSHOT);
+		new DialogoCarga(this, carga, archivo_libros.getName());
+		carga.execute();
+	}
+
+	/**
+	 * Reemplaza la librería que se muestra por la que se acaba de cargar.
+	 * 
+	 * En el mismo paso la librería anterior deja de guardar sus cambios, después
+	 * de escribir los que tenía pendientes, así que ningún cambio hecho antes del
+	 * reemplazo se pierde. Solo después la nueva librería abre el registro de
+	 * cambios, que puede ser el mismo archivo, y repite los que ya estaban
+	 * guardados. Eso se hace en otro hilo; cuando termina se actualizan los
+	 * paneles y se le informa al usuario si hubo filas que no se pudieron cargar.
+	 * 
+	 * @param nuevaLibreria    La librería cargada
+	 * @param filasDescartadas Cantidad de filas del archivo de libros que no se
+	 *                         pudieron cargar
+	 * @param ejemplos         Descripción de algunas de las filas descartadas
+	 */
+	public void cargaTerminada(Libreria nuevaLibreria, int filasDescartadas, List<String> ejemplos)
+	{
+		carga = null;
+		detenerVigilancia();
+		menuVigilar.setEnabled(false);
+		Libreria anterior = libreria;
+		libreria = nuevaLibreria;
+		archivoCategorias = categoriasEnCarga;
+		archivoLibros = librosEnCarga;
+		if (anterior != null)
+		{
+			try
+			{
+				anterior.cerrarRegistroCambios();
+			}
+			catch (IOException e)
+			{
+				JOptionPane.showMessageDialog(this,
+						"No se pudieron guardar los últimos cambios a la librería anterior.", "Error de escritura",
+						JOptionPane.ERROR_MESSAGE);
+				e.printStackTrace();
+			}
+		}
+		panelCategorias.actualizarCategorias(libreria.darCategorias());
+
+		Libreria abierta = libreria;
+		String nombreArchivoRegistro = archivoLibros.getPath() + EXTENSION_REGISTRO;
+		aperturaRegistro = new SwingWorker<Void, Void>()
+		{
+			@Override
+			protected Void doInBackground() throws IOException
+			{
+				abierta.abrirRegistroCambios(nombreArchivoRegistro);
+				return null;
+			}
+
+			@Override
+			protected void done()
+			{
+				registroAbierto(this, filasDescartadas, ejemplos);
+			}
+		};
+		aperturaRegistro.execute();
+	}
+
+	/**
+	 * Termina de mostrar la librería recién cargada cuando ya abrió su registro
+	 * de cambios y repitió los cambios guardados
+	 * 
+	 * @param apertura         El hilo que abrió el registro
+	 * @param filasDescartadas Cantidad de filas del archivo de libros que no se
+	 *                         pudieron cargar
+	 * @param ejemplos         Descripción de algunas de las filas descartadas
+	 */
+	private void registroAbierto(SwingWorker<Void, Void> apertura, int filasDescartadas, List<String> ejemplos)
+	{
+		aperturaRegistro = null;
+		menuAbrir.setEnabled(true);
 		try
 		{
-			libreria = new Libreria(archivo_categorias.getPath(), archivo_libros.getPath());
-			panelCategorias.actualizarCategorias(libreria.darCategorias());
-			hayMasCategorias(); 
+			apertura.get();
+		}
+		catch (ExecutionException e)
+		{
+			JOptionPane.showMessageDialog(this,
+					"No se pudo abrir el registro de cambios. Los cambios a la librería no se van a guardar.",
+					"Error de lectura", JOptionPane.ERROR_MESSAGE);
+			e.getCause().printStackTrace();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		menuVigilar.setEnabled(true);
+		if (menuVigilar.isSelected())
+		{
+			iniciarVigilancia();
+		}
+		panelCategorias.actualizarCategorias(libreria.darCategorias());
+		if (filasDescartadas > 0)
+		{
+			String mensaje = "No se pudieron cargar " + filasDescartadas + " filas del archivo de libros:";
+			for (String ejemplo : ejemplos)
+			{
+				mensaje += "\n " + ejemplo;
+			}
+			if (filasDescartadas > ejemplos.size())
+			{
+				mensaje += "\n ...";
+			}
+			JOptionPane.showMessageDialog(this, mensaje, "Carga parcial", JOptionPane.WARNING_MESSAGE);
 		}
-		catch (Exception e)
+		hayMasCategorias();
+	}
+
+	/**
+	 * Le informa al usuario que la carga de la librería falló. Se sigue mostrando
+	 * la librería anterior.
+	 * 
+	 * @param causa El problema que detuvo la carga
+	 */
+	public void cargaFallida(Throwable causa)
+	{
+		carga = null;
+		menuAbrir.setEnabled(true);
+		JOptionPane.showMessageDialog(this, "Hubo un error leyendo los archivos", "Error de lectura",
+				JOptionPane.ERROR_MESSAGE);
+		causa.printStackTrace();
+	}
+
+	/**
+	 * Registra que el usuario canceló la carga. Se sigue mostrando la librería
+	 * anterior.
+	 */
+	public void cargaCancelada()
+	{
+		carga = null;
+		menuAbrir.setEnabled(true);
+	}
+
+	/**
+	 * Empieza o deja de vigilar los archivos de la librería, según lo que indique
+	 * la opción del menú
+	 */
+	public void cambiarVigilancia()
+	{
+		if (menuVigilar.isSelected())
+		{
+			iniciarVigilancia();
+		}
+		else
+		{
+			detenerVigilancia();
+		}
+	}
+
+	/**
+	 * Empieza a vigilar los archivos de los que se cargó la librería. Cada vez que
+	 * cambian, se le aplican a la librería solo las filas que cambiaron y se
+	 * actualizan las categorías.
+	 * 
+	 * El vigilante lee el archivo de libros completo al construirse, así que se
+	 * construye en otro hilo y se empieza a usar cuando está listo.
+	 */
+	private void iniciarVigilancia()
+	{
+		Libreria vigilada = libreria;
+		String nombreArchivoCategorias = archivoCategorias.getPath();
+		String nombreArchivoLibros = archivoLibros.getPath();
+		VigilanteCatalogo.OyenteCambios oyente = new VigilanteCatalogo.OyenteCambios()
 		{
-			JOptionPane.showMessageDialog(this, "Hubo un error leyendo los archivos", "Error de lectura",
-					JOptionPane.ERROR_MESSAGE);
+			@Override
+			public void cambiosAplicados(int librosAgregados, int librosQuitados)
+			{
+				SwingUtilities.invokeLater(() -> archivosCambiados(vigilada));
+			}
+
+			@Override
+			public void revisionFallida(Exception causa)
+			{
+				causa.printStackTrace();
+			}
+		};
+		preparacionVigilante = new SwingWorker<VigilanteCatalogo, Void>()
+		{
+			@Override
+			protected VigilanteCatalogo doInBackground() throws IOException
+			{
+				VigilanteCatalogo nuevo = new VigilanteCatalogo(vigilada, nombreArchivoCategorias,
+						nombreArchivoLibros, oyente);
+				try
+				{
+					nuevo.iniciar();
+				}
+				catch (IOException e)
+				{
+					nuevo.close();
+					throw e;
+				}
+				return nuevo;
+			}
+
+			@Override
+			protected void done()
+			{
+				vigilanteListo(this);
+			}
+		};
+		preparacionVigilante.execute();
+	}
+
+	/**
+	 * Empieza a usar un vigilante que se terminó de construir. Si mientras tanto
+	 * se dejaron de vigilar los archivos o se cargó otra librería, lo cierra.
+	 * 
+	 * @param preparacion El hilo que construyó el vigilante
+	 */
+	private void vigilanteListo(SwingWorker<VigilanteCatalogo, Void> preparacion)
+	{
+		boolean vigente = preparacion == preparacionVigilante;
+		if (vigente)
+		{
+			preparacionVigilante = null;
+		}
+		try
+		{
+			VigilanteCatalogo nuevo = preparacion.get();
+			if (vigente)
+			{
+				vigilante = nuevo;
+			}
+			else
+			{
+				nuevo.close();
+			}
+		}
+		catch (ExecutionException | IOException e)
+		{
+			if (vigente)
+			{
+				menuVigilar.setSelected(false);
+				JOptionPane.showMessageDialog(this, "No se pueden vigilar los archivos de la librería",
+						"Error de lectura", JOptionPane.ERROR_MESSAGE);
+			}
 			e.printStackTrace();
 		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
 
+	/**
+	 * Deja de vigilar los archivos de la librería, si se estaban vigilando
+	 */
+	private void detenerVigilancia()
+	{
+		// Si se está construyendo un vigilante, se cierra cuando esté listo
+		preparacionVigilante = null;
+		if (vigilante != null)
+		{
+			try
+			{
+				vigilante.close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+			vigilante = null;
+		}
+	}
+
+	/**
+	 * Muestra las categorías y los libros de la categoría seleccionada después de
+	 * que se aplicaron cambios de los archivos o del usuario
+	 * 
+	 * @param vigilada La librería a la que se le aplicaron los cambios
+	 */
+	private void archivosCambiados(Libreria vigilada)
+	{
+		if (vigilada == libreria)
+		{
+			Categoria seleccionada = panelCategorias.refrescarCategorias(libreria.darCategorias());
+			if (seleccionada != null)
+			{
+				ArrayList<Libro> libros = libreria.darLibros(seleccionada.darNombre());
+				panelLibros.actualizarLibros(libros);
+				mostrarLibro(libros.isEmpty() ? null : libros.get(0));
+			}
+		}
 	}
 
 	/**
@@ -207,6 +582,16 @@ public class InterfazLibreria extends JFrame
 		panelLibro.actualizarLibro(libro);
 	}
 
+	/**
+	 * Prepara la portada de un libro que probablemente se va a mostrar pronto
+	 * 
+	 * @param libro El libro cuya portada se quiere tener lista
+	 */
+	public void precargarLibro(Libro libro)
+	{
+		panelLibro.precargar(libro);
+	}
+
 	/**
 	 * Le pide al usuario el título de un libro y lo busca en la librería.
 	 * 
@@ -260,11 +645,13 @@ public class InterfazLibreria extends JFrame
 		String nombreCategoria= JOptionPane.showInputDialog(this, "Escriba el nombre de la clase que quiere cambiar", "nombreCategoria");
 		String nombreNuevo=JOptionPane.showInputDialog(this, "Escriba el nuevo nombre para la clase", "nombreNuevo");
 	
-		if (nombreCategoria != null && nombreNuevo!= null)
+		if (nombreCategoria != null && nombreNuevo!= null && puedeCambiar())
 		{
 			
 			try {
-				this.libreria.cambiarNombreCategoria(nombreNuevo, nombreCategoria);
+				this.libreria.cambiarNombreCategoria(nombreNuevo, nombreCategoria, false);
+				archivosCambiados(libreria);
+				guardarCambio(libreria);
 			}
 			catch(Exception e) {
 				JOptionPane.showMessageDialog(this, e.getMessage(), "Error",JOptionPane.INFORMATION_MESSAGE);
@@ -384,11 +771,12 @@ public class InterfazLibreria extends JFrame
 	public void borrarLibrosPorAutor()
 	{
 		String autores = JOptionPane.showInputDialog(this, "Digite los autores separados por el caracter \",\"", "autor1,autor2");
-		if (autores != null)
+		if (autores != null && puedeCambiar())
 		{
 			try {
-				libreria.borrarLibrosPorAutor(autores.split(","));
+				libreria.borrarLibrosPorAutor(autores.split(","), false);
 				panelLibros.actualizarLibros(libreria.darLibros());
+				guardarCambio(libreria);
 			} catch (SomeAuthorsNotFoundException ex) {
 				String msg = " Autores encontrados: %s\n Autores no encontrados: %s";
 				String found = "";
@@ -406,6 +794,84 @@ public class InterfazLibreria extends JFrame
 		}
 	}
 	
+	/**
+	 * Revisa si se puede cambiar la librería. Mientras se repiten los cambios
+	 * guardados en el registro no se puede, y se le avisa al usuario.
+	 * 
+	 * @return true si se puede cambiar la librería
+	 */
+	private boolean puedeCambiar()
+	{
+		if (aperturaRegistro != null)
+		{
+			JOptionPane.showMessageDialog(this,
+					"Espere a que se terminen de aplicar los cambios guardados de la librería.", "Aviso",
+					JOptionPane.INFORMATION_MESSAGE);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Espera en otro hilo a que los cambios que se le hicieron a la librería estén
+	 * en el registro de cambios. Los cambios ya se ven en la ventana; si no se
+	 * pudieron guardar, se le avisa al usuario.
+	 * 
+	 * @param editada La librería que se cambió
+	 */
+	private void guardarCambio(Libreria editada)
+	{
+		new SwingWorker<Void, Void>()
+		{
+			@Override
+			protected Void doInBackground() throws IOException
+			{
+				editada.esperarRegistroCambios();
+				return null;
+			}
+
+			@Override
+			protected void done()
+			{
+				try
+				{
+					get();
+				}
+				catch (ExecutionException e)
+				{
+					JOptionPane.showMessageDialog(InterfazLibreria.this,
+							"El cambio se aplicó a la librería, pero no se pudo guardar en el registro de cambios. Se va a perder al cerrar la aplicación.",
+							"Error de escritura", JOptionPane.ERROR_MESSAGE);
+					e.getCause().printStackTrace();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+		}.execute();
+	}
+
+	/**
+	 * Termina la aplicación después de escribir en el registro los cambios que
+	 * todavía no estén en el disco
+	 */
+	private void salir()
+	{
+		if (libreria != null)
+		{
+			try
+			{
+				libreria.cerrarRegistroCambios();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+		System.exit(0);
+	}
+
 	// ************************************************************************
 	// Main
 	// ************************************************************************
@@ -9,7 +9,7 @@ import javax.swing.filechooser.FileFilter;
 
 /**
  * Esta clase implementa un listener (ActionListener) para los eventos
- * relacionados con abrir los archivos de una librería.
+ * relacionados con abrir y vigilar los archivos de una librería.
  */
 public class ListenerMenu implements ActionListener
 {
@@ -20,6 +20,8 @@ public class ListenerMenu implements ActionListener
 
 	public static final String ABRIR_LIBROS = "ABRIR_LIBROS";
 
+	public static final String VIGILAR_ARCHIVOS = "VIGILAR_ARCHIVOS";
+
 	// ************************************************************************
 	// Atributos
 	// ************************************************************************
@@ -73,6 +75,10 @@ public class ListenerMenu implements ActionListener
 				}
 			}
 		}
+		else if (VIGILAR_ARCHIVOS.equals(comando))
+		{
+			ventana.cambiarVigilancia();
+		}
 
 	}
 
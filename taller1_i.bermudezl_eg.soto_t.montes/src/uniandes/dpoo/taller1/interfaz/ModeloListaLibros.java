@@ -0,0 +1,77 @@
+package uniandes.dpoo.taller1.interfaz;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.AbstractListModel;
+
+import uniandes.dpoo.taller1.modelo.Libro;
+
+/**
+ * Modelo de una lista de libros que muestra directamente una lista existente,
+ * sin copiar sus elementos.
+ *
+ * Al cambiar la lista completa se lanza un solo evento, sin importar cuántos
+ * libros tenga la lista nueva.
+ */
+@SuppressWarnings("serial")
+public class ModeloListaLibros extends AbstractListModel<Libro>
+{
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Los libros que se muestran
+	 */
+	private List<Libro> libros;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye un modelo sin libros
+	 */
+	public ModeloListaLibros()
+	{
+		libros = new ArrayList<Libro>();
+	}
+
+	// ************************************************************************
+	// Métodos
+	// ************************************************************************
+
+	/**
+	 * Cambia los libros que se muestran. La lista no se copia, así que no se debe
+	 * modificar mientras se esté mostrando.
+	 *
+	 * @param nuevosLibros Los libros que se deben mostrar
+	 */
+	public void cambiarLibros(List<Libro> nuevosLibros)
+	{
+		int tamanioAnterior = libros.size();
+		libros = nuevosLibros;
+		int mayor = Math.max(tamanioAnterior, libros.size());
+		if (mayor > 0)
+		{
+			fireContentsChanged(this, 0, mayor - 1);
+		}
+	}
+
+	// ************************************************************************
+	// Métodos implementados de AbstractListModel
+	// ************************************************************************
+
+	@Override
+	public int getSize()
+	{
+		return libros.size();
+	}
+
+	@Override
+	public Libro getElementAt(int index)
+	{
+		return libros.get(index);
+	}
+}
@@ -25,6 +25,11 @@ public class PanelCategorias extends JPanel implements ItemListener
 	 */
 	private InterfazLibreria ventana;
 
+	/**
+	 * Indica si se están cambiando las categorías sin avisarle a la ventana
+	 */
+	private boolean refrescando;
+
 	// ************************************************************************
 	// Componentes gráficos
 	// ************************************************************************
@@ -72,6 +77,30 @@ public class PanelCategorias extends JPanel implements ItemListener
 		}
 	}
 
+	/**
+	 * Actualiza las categorías que se muestran sin avisarle a la ventana. Si la
+	 * categoría seleccionada todavía está, se sigue mostrando seleccionada.
+	 * 
+	 * @param categorias Las categorías que se deben mostrar
+	 * @return La categoría seleccionada después de actualizar, o null si no hay
+	 *         ninguna
+	 */
+	public Categoria refrescarCategorias(Categoria[] categorias)
+	{
+		Object seleccionada = cbbCategorias.getSelectedItem();
+		refrescando = true;
+		try
+		{
+			actualizarCategorias(categorias);
+			cbbCategorias.setSelectedItem(seleccionada);
+		}
+		finally
+		{
+			refrescando = false;
+		}
+		return (Categoria) cbbCategorias.getSelectedItem();
+	}
+
 	// ************************************************************************
 	// Métodos implementados de la interfaz ItemListener
 	// ************************************************************************
@@ -86,7 +115,7 @@ public class PanelCategorias extends JPanel implements ItemListener
 	@Override
 	public void itemStateChanged(ItemEvent e)
 	{
-		if (e.getStateChange() == ItemEvent.SELECTED)
+		if (!refrescando && e.getStateChange() == ItemEvent.SELECTED)
 		{
 			int seleccionado = cbbCategorias.getSelectedIndex();
 			if (seleccionado != -1)
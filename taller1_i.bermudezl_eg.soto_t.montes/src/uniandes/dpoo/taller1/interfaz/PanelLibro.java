@@ -21,6 +21,22 @@ import uniandes.dpoo.taller1.modelo.Libro;
 @SuppressWarnings("serial")
 public class PanelLibro extends JPanel
 {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Cantidad máxima de bytes que pueden ocupar las portadas decodificadas que se
+	 * guardan en el caché
+	 */
+	private static final long PRESUPUESTO_PORTADAS = 64L * 1024 * 1024;
+
+	/**
+	 * La imagen por defecto ya decodificada. Se decodifica una sola vez y la
+	 * comparten todos los paneles.
+	 */
+	private static ImageIcon iconoSinPortada;
+
 	// ************************************************************************
 	// Atributos
 	// ************************************************************************
@@ -30,6 +46,11 @@ public class PanelLibro extends JPanel
 	 */
 	private Libro libro;
 
+	/**
+	 * El caché con las portadas ya decodificadas
+	 */
+	private CacheImagenes portadas;
+
 	// ************************************************************************
 	// Componentes gráficos
 	// ************************************************************************
@@ -75,6 +96,7 @@ public class PanelLibro extends JPanel
 	public PanelLibro()
 	{
 		setBorder(new TitledBorder("Libro"));
+		portadas = new CacheImagenes("./data/", PRESUPUESTO_PORTADAS);
 
 		txtTitulo = new JTextField(" ");
 		txtTitulo.setEditable(false);
@@ -153,7 +175,7 @@ public class PanelLibro extends JPanel
 			txtCategoria.setText(nuevolibro.darCategoria().darNombre());
 			txtCalificacion.setText("" + nuevolibro.darCalificacion());
 			Imagen portada = nuevolibro.darPortada();
-			labPortada.setIcon(new ImageIcon("./data/" + portada.darRutaArchivo()));
+			mostrarPortada(nuevolibro, portada);
 			labDetallesImagen.setText(portada.darRutaArchivo() + ": " + portada.darAncho() + "x" + portada.darAlto());
 		}
 		else
@@ -166,4 +188,65 @@ public class PanelLibro extends JPanel
 			labDetallesImagen.setText("");
 		}
 	}
+
+	/**
+	 * Decodifica en otro hilo la portada de un libro para que se muestre de
+	 * inmediato cuando el libro se seleccione. Se usa con los libros vecinos al
+	 * libro seleccionado.
+	 * 
+	 * @param vecino El libro cuya portada se quiere tener lista
+	 */
+	public void precargar(Libro vecino)
+	{
+		if (vecino != null && vecino.tienePortada())
+		{
+			portadas.precargar(vecino.darPortada().darRutaArchivo(), labPortada.getWidth(), labPortada.getHeight());
+		}
+	}
+
+	/**
+	 * Retorna la imagen por defecto ya decodificada, decodificándola la primera
+	 * vez que se pide
+	 * 
+	 * @return La imagen que se muestra para los libros sin portada
+	 */
+	private static synchronized ImageIcon darIconoSinPortada()
+	{
+		if (iconoSinPortada == null)
+		{
+			iconoSinPortada = new ImageIcon(Imagen.SIN_PORTADA.darRutaArchivo());
+		}
+		return iconoSinPortada;
+	}
+
+	/**
+	 * Muestra la portada del libro. Si la portada no está en el caché, se
+	 * decodifica en otro hilo y se muestra cuando esté lista, siempre que el
+	 * libro siga siendo el que se muestra en el panel.
+	 * 
+	 * @param libroPortada El libro al que pertenece la portada
+	 * @param portada      La portada que se va a mostrar
+	 */
+	private void mostrarPortada(Libro libroPortada, Imagen portada)
+	{
+		if (portada == Imagen.SIN_PORTADA)
+		{
+			labPortada.setIcon(darIconoSinPortada());
+			return;
+		}
+		String ruta = portada.darRutaArchivo();
+		int ancho = labPortada.getWidth();
+		int alto = labPortada.getHeight();
+		ImageIcon icono = portadas.buscar(ruta, ancho, alto);
+		labPortada.setIcon(icono);
+		if (icono == null)
+		{
+			portadas.cargar(ruta, ancho, alto, decodificado -> {
+				if (libro == libroPortada)
+				{
+					labPortada.setIcon(decodificado);
+				}
+			});
+		}
+	}
 }
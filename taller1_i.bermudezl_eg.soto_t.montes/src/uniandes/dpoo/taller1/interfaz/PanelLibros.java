@@ -1,9 +1,8 @@
 package uniandes.dpoo.taller1.interfaz;
 
 import java.awt.BorderLayout;
-import java.util.ArrayList;
+import java.util.List;
 
-import javax.swing.DefaultListModel;
 import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
@@ -12,6 +11,7 @@ import javax.swing.border.TitledBorder;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 
+import uniandes.dpoo.taller1.modelo.Categoria;
 import uniandes.dpoo.taller1.modelo.Libro;
 
 /**
@@ -21,6 +21,20 @@ import uniandes.dpoo.taller1.modelo.Libro;
 @SuppressWarnings("serial")
 public class PanelLibros extends JPanel implements ListSelectionListener
 {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Título del libro de ejemplo con el que se calcula el tamaño de las celdas
+	 */
+	private static final String PROTOTIPO_TITULO = "Un título de libro de un largo representativo";
+
+	/**
+	 * Autor del libro de ejemplo con el que se calcula el tamaño de las celdas
+	 */
+	private static final String PROTOTIPO_AUTOR = "Nombre Del Autor";
+
 	// ************************************************************************
 	// Atributos
 	// ************************************************************************
@@ -42,7 +56,7 @@ public class PanelLibros extends JPanel implements ListSelectionListener
 	/**
 	 * El modelo con la información que se muestra en el componente listaLibros
 	 */
-	private DefaultListModel<Libro> modeloLibros;
+	private ModeloListaLibros modeloLibros;
 
 	// ************************************************************************
 	// Constructores
@@ -59,9 +73,13 @@ public class PanelLibros extends JPanel implements ListSelectionListener
 		ventana = interfazLibreria;
 		setBorder(new TitledBorder("Libros"));
 		setLayout(new BorderLayout());
-		modeloLibros = new DefaultListModel<Libro>();
+		modeloLibros = new ModeloListaLibros();
 		listaLibros = new JList<>(modeloLibros);
 		listaLibros.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+
+		// Con un libro de ejemplo la lista fija el alto y el ancho de las celdas y no
+		// tiene que medir cada libro cuando cambia el contenido
+		listaLibros.setPrototypeCellValue(new Libro(PROTOTIPO_TITULO, PROTOTIPO_AUTOR, 0, new Categoria("", false)));
 		listaLibros.addListSelectionListener(this);
 
 		JScrollPane panel = new JScrollPane(listaLibros);
@@ -75,15 +93,14 @@ public class PanelLibros extends JPanel implements ListSelectionListener
 	/**
 	 * Actualiza la lista de libros que se muestran al usuario
 	 * 
+	 * La lista no se copia: el panel muestra directamente la lista recibida.
+	 * 
 	 * @param libros La nueva lista de libros que se debe mostrar.
 	 */
-	public void actualizarLibros(ArrayList<Libro> libros)
+	public void actualizarLibros(List<Libro> libros)
 	{
-		modeloLibros.clear();
-		for (Libro libro : libros)
-		{
-			modeloLibros.addElement(libro);
-		}
+		listaLibros.clearSelection();
+		modeloLibros.cambiarLibros(libros);
 	}
 
 	// ************************************************************************
@@ -95,6 +112,7 @@ public class PanelLibros extends JPanel implements ListSelectionListener
 	 * lista.
 	 *
 	 * Al hacer una selección, se invoca al método mostrarLibro de InterfazLibreria
+	 * y se piden por adelantado las portadas del libro anterior y del siguiente
 	 */
 	@Override
 	public void valueChanged(ListSelectionEvent e)
@@ -103,7 +121,16 @@ public class PanelLibros extends JPanel implements ListSelectionListener
 		{
 			Libro libro = listaLibros.getSelectedValue();
 			if (libro != null)
+			{
 				ventana.mostrarLibro(libro);
+
+				// Se preparan las portadas de los vecinos para navegar con las flechas
+				int indice = listaLibros.getSelectedIndex();
+				if (indice > 0)
+					ventana.precargarLibro(modeloLibros.getElementAt(indice - 1));
+				if (indice + 1 < modeloLibros.getSize())
+					ventana.precargarLibro(modeloLibros.getElementAt(indice + 1));
+			}
 		}
 	}
 }
@@ -0,0 +1,406 @@
+package uniandes.dpoo.taller1.modelo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import uniandes.dpoo.taller1.exceptions.LoadCancelledException;
+
+/**
+ * Esta clase lee el archivo CSV de libros en paralelo.
+ *
+ * El archivo se mapea a memoria y se divide en bloques que siempre terminan
+ * justo después de un salto de línea. Cada bloque se decodifica y se separa en
+ * filas dentro de un ForkJoinPool, y luego las filas se entregan en el mismo
+ * orden en el que aparecen en el archivo.
+ *
+ * Si se usa un ProgresoCarga, el avance se informa y la cancelación se revisa
+ * cada vez que se termina de entregar un bloque.
+ */
+class CargadorParalelo {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Tamaño mínimo de un bloque. Por debajo de este tamaño no vale la pena
+	 * repartir el trabajo.
+	 */
+	private static final long TAMANIO_MINIMO_BLOQUE = 1 << 20;
+
+	/**
+	 * Tamaño máximo de un bloque: un MappedByteBuffer no puede ser más grande
+	 */
+	private static final long TAMANIO_MAXIMO_BLOQUE = 1 << 30;
+
+	/**
+	 * Cantidad de bloques que se crean por cada hilo del pool, para que los hilos
+	 * que terminen antes puedan seguir trabajando
+	 */
+	private static final int BLOQUES_POR_HILO = 4;
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * El nombre del archivo CSV con los libros
+	 */
+	private String nombreArchivoLibros;
+
+	/**
+	 * Permite saber si existe el archivo de una portada. Se invoca desde los hilos
+	 * del pool.
+	 */
+	private Predicate<String> existePortada;
+
+	/**
+	 * El pool en el que se procesan los bloques
+	 */
+	private ForkJoinPool pool;
+
+	/**
+	 * El juego de caracteres con el que se decodifica el archivo. Es el mismo que
+	 * usa FileReader.
+	 */
+	private Charset charset;
+
+	/**
+	 * Cantidad de filas que se saltaron en la última carga porque no se pudieron
+	 * interpretar
+	 */
+	private int filasDescartadas;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye un nuevo cargador para el archivo indicado
+	 *
+	 * @param nombreArchivoLibros El nombre del archivo CSV con los libros
+	 * @param existePortada       Permite saber si existe el archivo de una
+	 *                            portada. Debe poder invocarse desde varios hilos.
+	 */
+	CargadorParalelo(String nombreArchivoLibros, Predicate<String> existePortada) {
+		this.nombreArchivoLibros = nombreArchivoLibros;
+		this.existePortada = existePortada;
+		this.pool = ForkJoinPool.commonPool();
+		this.charset = Charset.defaultCharset();
+	}
+
+	// ************************************************************************
+	// Otros métodos
+	// ************************************************************************
+
+	/**
+	 * Lee todas las filas del archivo, ignorando la primera línea con los títulos,
+	 * y se las entrega al destino en el orden del archivo.
+	 *
+	 * El destino se invoca siempre desde el hilo que llamó a este método, así que
+	 * no necesita ser seguro para varios hilos. Mientras se entregan las filas de
+	 * un bloque, los bloques siguientes se siguen procesando en el pool.
+	 *
+	 * @param destino Recibe cada una de las filas
+	 * @return La cantidad de filas leídas
+	 * @throws IOException Se lanza esta excepción si hay algún problema leyendo del
+	 *                     archivo
+	 */
+	int cargar(Consumer<FilaLibro> destino) throws IOException {
+		return cargar(destino, null, false);
+	}
+
+	/**
+	 * Lee todas las filas del archivo igual que cargar(destino), informando el
+	 * avance al progreso indicado.
+	 *
+	 * Si se piden saltar las filas que no se pueden interpretar, se saltan y, si
+	 * hay un progreso, se le informan; si no, la primera fila inválida detiene la
+	 * carga.
+	 *
+	 * @param destino            Recibe cada una de las filas
+	 * @param progreso           Recibe los avisos de la carga, o null
+	 * @param descartarInvalidas Indica si las filas inválidas se saltan en lugar
+	 *                           de detener la carga
+	 * @return La cantidad de filas leídas
+	 * @throws IOException Se lanza esta excepción si hay algún problema leyendo del
+	 *                     archivo. Si se cancela la carga, se lanza una
+	 *                     LoadCancelledException.
+	 */
+	int cargar(Consumer<FilaLibro> destino, ProgresoCarga progreso, boolean descartarInvalidas) throws IOException {
+		filasDescartadas = 0;
+		try (FileChannel canal = FileChannel.open(Paths.get(nombreArchivoLibros), StandardOpenOption.READ)) {
+			long[] limites = calcularLimites(canal);
+			long tamanio = limites[limites.length - 1];
+
+			List<ForkJoinTask<Bloque>> tareas = new ArrayList<ForkJoinTask<Bloque>>();
+			for (int i = 0; i + 1 < limites.length; i++) {
+				tareas.add(pool.submit(new TareaBloque(canal, limites[i], limites[i + 1], i == 0, descartarInvalidas)));
+			}
+
+			int filas = 0;
+			long primeraLinea = 1;
+			for (int i = 0; i < tareas.size(); i++) {
+				if (progreso != null && progreso.cancelado()) {
+					cancelar(tareas);
+					throw new LoadCancelledException("Se canceló la carga de " + nombreArchivoLibros);
+				}
+				Bloque bloque;
+				try {
+					bloque = tareas.get(i).join();
+				} catch (RuntimeException e) {
+					cancelar(tareas);
+					// El pool puede envolver la excepción original, así que se busca en las causas
+					for (Throwable t = e; t != null; t = t.getCause()) {
+						if (t instanceof UncheckedIOException) {
+							throw ((UncheckedIOException) t).getCause();
+						}
+					}
+					throw e;
+				}
+				// El evento se graba desde este hilo y su duración es lo que tarda el destino
+				EventoBloqueCarga evento = bloque.evento;
+				evento.begin();
+				long marca = evento.marca();
+				for (var fila : bloque.filas) {
+					destino.accept(fila);
+				}
+				evento.sumarCreacion(marca);
+				evento.terminar(limites[i + 1]);
+				if (progreso != null) {
+					for (var invalida : bloque.invalidas) {
+						progreso.filaDescartada(primeraLinea + invalida.indice, invalida.linea, invalida.causa);
+					}
+				}
+				filasDescartadas += bloque.invalidas.size();
+				filas += bloque.filas.size();
+				primeraLinea += bloque.lineas;
+				if (progreso != null) {
+					progreso.avance(limites[i + 1], tamanio);
+				}
+			}
+			return filas;
+		}
+	}
+
+	/**
+	 * Consulta cuántas filas se saltaron en la última carga porque no se pudieron
+	 * interpretar
+	 *
+	 * @return filasDescartadas
+	 */
+	int darFilasDescartadas() {
+		return filasDescartadas;
+	}
+
+	/**
+	 * Cancela las tareas que aún no han terminado
+	 *
+	 * @param tareas Las tareas de los bloques
+	 */
+	private void cancelar(List<ForkJoinTask<Bloque>> tareas) {
+		for (var tarea : tareas) {
+			tarea.cancel(false);
+		}
+	}
+
+	/**
+	 * Calcula dónde empieza y dónde termina cada bloque. Todos los límites, salvo
+	 * el primero y el último, quedan justo después de un salto de línea.
+	 *
+	 * @param canal El canal abierto sobre el archivo
+	 * @return Un arreglo con las posiciones: el bloque i va de limites[i] a
+	 *         limites[i+1]
+	 * @throws IOException Si hay algún problema leyendo del archivo
+	 */
+	private long[] calcularLimites(FileChannel canal) throws IOException {
+		long tamanio = canal.size();
+		long bloquesDeseados = Math.max(1, (long) pool.getParallelism() * BLOQUES_POR_HILO);
+		long tamanioBloque = Math.max(TAMANIO_MINIMO_BLOQUE, tamanio / bloquesDeseados);
+		tamanioBloque = Math.min(tamanioBloque, TAMANIO_MAXIMO_BLOQUE);
+
+		ArrayList<Long> limites = new ArrayList<Long>();
+		limites.add(0L);
+		long posicion = 0;
+		while (tamanio - posicion > tamanioBloque) {
+			long siguiente = buscarFinDeLinea(canal, posicion + tamanioBloque, tamanio);
+			if (siguiente - posicion > TAMANIO_MAXIMO_BLOQUE) {
+				throw new IOException("Hay una línea demasiado larga en el archivo " + nombreArchivoLibros);
+			}
+			if (siguiente >= tamanio) {
+				break;
+			}
+			limites.add(siguiente);
+			posicion = siguiente;
+		}
+		limites.add(tamanio);
+
+		long[] resultado = new long[limites.size()];
+		for (int i = 0; i < resultado.length; i++) {
+			resultado[i] = limites.get(i);
+		}
+		return resultado;
+	}
+
+	/**
+	 * Busca la posición que está justo después del primer salto de línea que se
+	 * encuentre a partir de la posición indicada
+	 *
+	 * @param canal   El canal abierto sobre el archivo
+	 * @param desde   La posición desde la que se busca
+	 * @param tamanio El tamaño del archivo
+	 * @return La posición siguiente al salto de línea, o el tamaño del archivo si
+	 *         no hay más saltos de línea
+	 * @throws IOException Si hay algún problema leyendo del archivo
+	 */
+	private long buscarFinDeLinea(FileChannel canal, long desde, long tamanio) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		long posicion = desde;
+		while (posicion < tamanio) {
+			buffer.clear();
+			int leidos = canal.read(buffer, posicion);
+			if (leidos <= 0) {
+				break;
+			}
+			for (int i = 0; i < leidos; i++) {
+				if (buffer.get(i) == '\n') {
+					return posicion + i + 1;
+				}
+			}
+			posicion += leidos;
+		}
+		return tamanio;
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * Las filas de un bloque del archivo, ya interpretadas
+	 */
+	private static final class Bloque {
+		/**
+		 * Las filas válidas, en el orden del archivo
+		 */
+		final ArrayList<FilaLibro> filas = new ArrayList<FilaLibro>();
+
+		/**
+		 * Las líneas que no se pudieron interpretar
+		 */
+		final ArrayList<LineaInvalida> invalidas = new ArrayList<LineaInvalida>();
+
+		/**
+		 * Cantidad de líneas del bloque, incluyendo los títulos y las inválidas
+		 */
+		int lineas;
+
+		/**
+		 * El evento de JFR del bloque, con los tiempos que se midieron en el pool
+		 */
+		EventoBloqueCarga evento;
+	}
+
+	/**
+	 * Una línea que no se pudo interpretar y su posición dentro del bloque,
+	 * empezando en 0
+	 */
+	private static final class LineaInvalida {
+		final int indice;
+		final String linea;
+		final RuntimeException causa;
+
+		LineaInvalida(int indice, String linea, RuntimeException causa) {
+			this.indice = indice;
+			this.linea = linea;
+			this.causa = causa;
+		}
+	}
+
+	/**
+	 * Tarea que decodifica un bloque del archivo y lo separa en filas
+	 */
+	@SuppressWarnings("serial")
+	private final class TareaBloque extends RecursiveTask<Bloque> {
+		private final FileChannel canal;
+		private final long inicio;
+		private final long fin;
+		private final boolean ignorarPrimeraLinea;
+		private final boolean descartarInvalidas;
+
+		TareaBloque(FileChannel canal, long inicio, long fin, boolean ignorarPrimeraLinea,
+				boolean descartarInvalidas) {
+			this.canal = canal;
+			this.inicio = inicio;
+			this.fin = fin;
+			this.ignorarPrimeraLinea = ignorarPrimeraLinea;
+			this.descartarInvalidas = descartarInvalidas;
+		}
+
+		@Override
+		protected Bloque compute() {
+			EventoBloqueCarga evento = EventoBloqueCarga.iniciar(nombreArchivoLibros, inicio);
+			long marca = evento.marca();
+			String texto;
+			try {
+				MappedByteBuffer bloque = canal.map(FileChannel.MapMode.READ_ONLY, inicio, fin - inicio);
+				texto = charset.decode(bloque).toString();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			Bloque bloque = new Bloque();
+			bloque.evento = evento;
+			boolean ignorar = ignorarPrimeraLinea;
+			int n = texto.length();
+			int i = 0;
+			while (i < n) {
+				// Las líneas terminan igual que en BufferedReader.readLine: \n, \r o \r\n
+				int j = i;
+				while (j < n && texto.charAt(j) != '\n' && texto.charAt(j) != '\r') {
+					j++;
+				}
+				if (ignorar) {
+					ignorar = false;
+				} else {
+					String linea = texto.substring(i, j);
+					marca = evento.sumarLectura(marca);
+					try {
+						FilaLibro fila = FilaLibro.parsear(linea);
+						marca = evento.sumarInterpretacion(marca);
+						fila.existePortada = existePortada.test(fila.archivoPortada);
+						marca = evento.sumarPortadas(marca);
+						bloque.filas.add(fila);
+					} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+						if (!descartarInvalidas) {
+							throw e;
+						}
+						marca = evento.sumarInterpretacion(marca);
+						bloque.invalidas.add(new LineaInvalida(bloque.lineas, linea, e));
+					}
+				}
+				bloque.lineas++;
+				if (j + 1 < n && texto.charAt(j) == '\r' && texto.charAt(j + 1) == '\n') {
+					j++;
+				}
+				i = j + 1;
+			}
+			evento.sumarLectura(marca);
+			evento.filas = bloque.filas.size();
+			evento.descartadas = bloque.invalidas.size();
+			return bloque;
+		}
+	}
+}
@@ -0,0 +1,759 @@
+package uniandes.dpoo.taller1.modelo;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Esta clase guarda el catálogo de una librería de solo lectura por columnas,
+ * sin crear un objeto Libro por cada libro.
+ *
+ * Cada columna es un arreglo con un valor por libro: el título, el autor, la
+ * categoría, la calificación y la portada. Los autores y las categorías se
+ * guardan como números que apuntan a un diccionario, así que cada nombre
+ * distinto existe una sola vez en memoria. Las dimensiones de la portada se
+ * empacan en un solo int.
+ *
+ * Los objetos Libro se crean solo cuando se consultan, como vistas: no
+ * pertenecen a la lista de libros de su categoría y cada consulta crea objetos
+ * nuevos. Las categorías de este catálogo no tienen libros en su lista, así que
+ * sus conteos y promedios se piden al catálogo.
+ *
+ * Como el catálogo no cambia después de cargarlo, las estadísticas se calculan
+ * una sola vez y se puede consultar desde varios hilos sin candados.
+ */
+class CatalogoColumnar {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Valor máximo que puede tener el ancho o el alto de una portada
+	 */
+	private static final int DIMENSION_MAXIMA = 0xFFFF;
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Las categorías del catálogo, compartidas con la librería
+	 */
+	private final RegistroCategorias categorias;
+
+	/**
+	 * Cantidad de libros en el catálogo
+	 */
+	private int tamanio;
+
+	/**
+	 * Título de cada libro
+	 */
+	private String[] titulos;
+
+	/**
+	 * Identificador del autor de cada libro dentro de diccionarioAutores
+	 */
+	private int[] autores;
+
+	/**
+	 * Nombre de cada autor distinto, en orden alfabético, así que el
+	 * identificador de un nombre se encuentra con búsqueda binaria
+	 */
+	private String[] diccionarioAutores;
+
+	/**
+	 * Identificador de la categoría de cada libro
+	 */
+	private int[] categoriasLibros;
+
+	/**
+	 * Calificación de cada libro
+	 */
+	private double[] calificaciones;
+
+	/**
+	 * Ruta de la portada de cada libro, o null si el libro no tiene portada
+	 */
+	private String[] rutasPortada;
+
+	/**
+	 * Ancho y alto de la portada de cada libro, empacados como (ancho << 16) | alto
+	 */
+	private int[] dimensionesPortada;
+
+	/**
+	 * Tabla hash con direccionamiento abierto que lleva de un título a la posición
+	 * del primer libro con ese título. Cada casilla guarda la posición más uno, y
+	 * cero indica una casilla vacía.
+	 */
+	private int[] tablaTitulos;
+
+	/**
+	 * Las posiciones de los libros agrupadas por categoría. Los libros de la
+	 * categoría c están entre inicioCategoria[c] e inicioCategoria[c+1], en el
+	 * orden del archivo.
+	 */
+	private int[] posicionesPorCategoria;
+
+	/**
+	 * Dónde empieza cada categoría dentro de posicionesPorCategoria
+	 */
+	private int[] inicioCategoria;
+
+	/**
+	 * Las posiciones de todos los libros de la mejor calificación a la peor y, si
+	 * hay empate, en el orden del archivo
+	 */
+	private int[] porCalificacion;
+
+	/**
+	 * Las posiciones de los libros agrupadas por categoría y, dentro de cada
+	 * categoría, en el orden de porCalificacion. Cada categoría ocupa el mismo
+	 * tramo que en posicionesPorCategoria.
+	 */
+	private int[] porCalificacionCategoria;
+
+	/**
+	 * Cantidad de filas del archivo que se saltaron porque no se pudieron
+	 * interpretar
+	 */
+	private int filasDescartadas;
+
+	/**
+	 * Estadísticas calculadas al terminar la carga
+	 */
+	private double calificacionPromedio;
+
+	private int librosSinPortada;
+
+	private Categoria categoriaConMasLibros;
+
+	private Categoria categoriaConMejoresLibros;
+
+	private boolean hayAutorEnVariasCategorias;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Carga el catálogo a partir del archivo de libros, en paralelo. Las
+	 * categorías que no están en el registro se crean igual que en Libreria.
+	 *
+	 * @param categorias          Las categorías del archivo de categorías, donde
+	 *                            se agregan las que falten
+	 * @param nombreArchivoLibros El nombre del archivo CSV que tiene la
+	 *                            información sobre los libros
+	 * @param existePortada       Permite saber si existe el archivo de una
+	 *                            portada. Debe poder invocarse desde varios hilos.
+	 * @param progreso            Recibe los avisos de la carga, o null
+	 * @param saltarInvalidas     Indica si las filas inválidas se saltan en lugar
+	 *                            de detener la carga
+	 * @throws IOException Lanza esta excepción si hay algún problema leyendo el
+	 *                     archivo. Si se cancela la carga, lanza una
+	 *                     LoadCancelledException.
+	 */
+	CatalogoColumnar(RegistroCategorias categorias, String nombreArchivoLibros, Predicate<String> existePortada,
+			ProgresoCarga progreso, boolean saltarInvalidas) throws IOException {
+		this.categorias = categorias;
+		HashMap<String, Integer> idsAutores = new HashMap<String, Integer>();
+		ArrayList<String> nombresAutores = new ArrayList<String>();
+		asegurarCapacidad(1024);
+
+		CargadorParalelo cargador = new CargadorParalelo(nombreArchivoLibros, existePortada);
+		cargador.cargar(fila -> agregarFila(fila, idsAutores, nombresAutores), progreso, saltarInvalidas);
+		filasDescartadas = cargador.darFilasDescartadas();
+
+		ordenarAutores(nombresAutores);
+		terminarCarga();
+	}
+
+	// ************************************************************************
+	// Métodos para consultar los atributos
+	// ************************************************************************
+
+	/**
+	 * Consulta la cantidad de libros del catálogo
+	 *
+	 * @return tamanio
+	 */
+	int contarLibros() {
+		return tamanio;
+	}
+
+	/**
+	 * Consulta la cantidad de autores distintos del catálogo
+	 *
+	 * @return Cantidad de autores
+	 */
+	int contarAutores() {
+		return diccionarioAutores.length;
+	}
+
+	/**
+	 * Consulta cuántas filas del archivo se saltaron porque no se pudieron
+	 * interpretar
+	 *
+	 * @return filasDescartadas
+	 */
+	int darFilasDescartadas() {
+		return filasDescartadas;
+	}
+
+	double calificacionPromedio() {
+		return calificacionPromedio;
+	}
+
+	int contarLibrosSinPortada() {
+		return librosSinPortada;
+	}
+
+	Categoria categoriaConMasLibros() {
+		return categoriaConMasLibros;
+	}
+
+	Categoria categoriaConMejoresLibros() {
+		return categoriaConMejoresLibros;
+	}
+
+	boolean hayAutorEnVariasCategorias() {
+		return hayAutorEnVariasCategorias;
+	}
+
+	// ************************************************************************
+	// Consultas
+	// ************************************************************************
+
+	/**
+	 * Crea la vista del libro que está en la posición indicada
+	 *
+	 * @param posicion La posición del libro en el catálogo
+	 * @return El libro
+	 */
+	Libro darLibro(int posicion) {
+		Imagen portada = null;
+		if (rutasPortada[posicion] != null) {
+			int dimensiones = dimensionesPortada[posicion];
+			portada = new Imagen(rutasPortada[posicion], dimensiones >>> 16, dimensiones & DIMENSION_MAXIMA);
+		}
+		return Libro.crearVista(titulos[posicion], diccionarioAutores[autores[posicion]], calificaciones[posicion],
+				categorias.darCategoria(categoriasLibros[posicion]), portada, posicion);
+	}
+
+	/**
+	 * Retorna el catálogo completo. Cada libro se crea en el momento en el que se
+	 * consulta.
+	 *
+	 * @return Una lista de solo lectura con los libros en el orden del archivo
+	 */
+	List<Libro> darLibros() {
+		return new VistaLibros(null, 0, tamanio);
+	}
+
+	/**
+	 * Retorna los libros que pertenecen a una categoría
+	 *
+	 * @param categoria La categoría, o null
+	 * @return Una lista de solo lectura con los libros de la categoría, en el orden
+	 *         del archivo. Si la categoría es null, la lista está vacía.
+	 */
+	List<Libro> darLibros(Categoria categoria) {
+		if (categoria == null) {
+			return new VistaLibros(null, 0, 0);
+		}
+		return new VistaLibros(posicionesPorCategoria, inicioCategoria[categoria.darId()],
+				inicioCategoria[categoria.darId() + 1]);
+	}
+
+	/**
+	 * Cuenta los libros de una categoría
+	 *
+	 * @param categoria La categoría
+	 * @return Cantidad de libros de la categoría
+	 */
+	int contarLibros(Categoria categoria) {
+		return inicioCategoria[categoria.darId() + 1] - inicioCategoria[categoria.darId()];
+	}
+
+	/**
+	 * Busca los libros que tienen un título, comparando los títulos de la forma
+	 * indicada. Con EXACTO se usa la tabla de títulos para encontrar el primero;
+	 * con los demás modos se recorre la columna de títulos.
+	 *
+	 * @param tituloLibro Título de los libros buscados
+	 * @param modo        La forma en la que se comparan los títulos
+	 * @param maximo      Cantidad máxima de libros que se retornan
+	 * @return Los libros con ese título, en el orden del catálogo
+	 */
+	ArrayList<Libro> buscarLibros(String tituloLibro, ModoBusquedaTitulo modo, int maximo) {
+		ArrayList<Libro> libros = new ArrayList<Libro>();
+		int desde = 0;
+		if (modo == ModoBusquedaTitulo.EXACTO) {
+			desde = buscarPrimeroConTitulo(tituloLibro);
+			if (desde < 0) {
+				return libros;
+			}
+		}
+		String llave = modo.llave(tituloLibro);
+		for (int i = desde; i < tamanio && libros.size() < maximo; i++) {
+			if (modo.llave(titulos[i]).equals(llave)) {
+				libros.add(darLibro(i));
+			}
+		}
+		return libros;
+	}
+
+	/**
+	 * Busca en la tabla de títulos la posición del primer libro con el título
+	 * exacto
+	 *
+	 * @return La posición, o -1 si no hay ningún libro con ese título
+	 */
+	private int buscarPrimeroConTitulo(String tituloLibro) {
+		int mascara = tablaTitulos.length - 1;
+		for (int i = mezclar(tituloLibro.hashCode()) & mascara; tablaTitulos[i] != 0; i = (i + 1) & mascara) {
+			int posicion = tablaTitulos[i] - 1;
+			if (titulos[posicion].equals(tituloLibro)) {
+				return posicion;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Recorre los libros cuyo autor contiene la cadena indicada, sin tener en
+	 * cuenta mayúsculas y minúsculas.
+	 *
+	 * Cada nombre distinto de autor se compara una sola vez, y luego se recorre la
+	 * columna de autores, que es un arreglo de enteros. Los libros solo se crean a
+	 * medida que se piden.
+	 *
+	 * @param cadenaAutor La cadena que se usará para consultar el autor
+	 * @return Los libros encontrados, en el mismo orden que los retornaría
+	 *         Libreria.buscarLibrosAutor con el catálogo guardado como objetos:
+	 *         por categoría y luego en el orden del archivo
+	 */
+	Stream<Libro> buscarLibrosAutor(String cadenaAutor) {
+		String cadena = cadenaAutor.toLowerCase();
+		boolean[] coincide = new boolean[diccionarioAutores.length];
+		boolean alguno = false;
+		for (int id = 0; id < coincide.length; id++) {
+			coincide[id] = diccionarioAutores[id].toLowerCase().contains(cadena);
+			alguno |= coincide[id];
+		}
+		if (!alguno) {
+			return Stream.empty();
+		}
+		return IntStream.of(posicionesPorCategoria).filter(posicion -> coincide[autores[posicion]])
+				.mapToObj(this::darLibro);
+	}
+
+	/**
+	 * Busca en qué categorías hay libros del autor indicado, cuyo nombre debe
+	 * coincidir exactamente
+	 *
+	 * @param nombreAutor El nombre del autor
+	 * @return Las categorías, en el orden de la librería
+	 */
+	ArrayList<Categoria> buscarCategoriasAutor(String nombreAutor) {
+		ArrayList<Categoria> resultado = new ArrayList<Categoria>();
+		int id = Arrays.binarySearch(diccionarioAutores, nombreAutor);
+		if (id < 0) {
+			return resultado;
+		}
+		boolean[] tiene = new boolean[categorias.tamanio()];
+		for (int i = 0; i < tamanio; i++) {
+			if (autores[i] == id) {
+				tiene[categoriasLibros[i]] = true;
+			}
+		}
+		for (int c = 0; c < tiene.length; c++) {
+			if (tiene[c]) {
+				resultado.add(categorias.darCategoria(c));
+			}
+		}
+		return resultado;
+	}
+
+	/**
+	 * Retorna los libros con mejor calificación
+	 *
+	 * @param categoria La categoría, o null para todo el catálogo
+	 * @param cantidad  Cantidad máxima de libros
+	 * @return Los libros, de la mejor calificación a la peor y en el orden del
+	 *         catálogo si hay empate
+	 */
+	ArrayList<Libro> mejores(Categoria categoria, int cantidad) {
+		return entre(categoria, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 0, cantidad);
+	}
+
+	/**
+	 * Retorna una página de los libros cuya calificación está en el rango
+	 * indicado, incluyendo los extremos. Los extremos se buscan con búsqueda
+	 * binaria, igual que en IndiceCalificaciones.
+	 *
+	 * @param categoria La categoría, o null para todo el catálogo
+	 * @param minima    La calificación mínima
+	 * @param maxima    La calificación máxima
+	 * @param desde     Cantidad de libros del rango que se saltan
+	 * @param cantidad  Cantidad máxima de libros
+	 * @return Los libros, de la mejor calificación a la peor y en el orden del
+	 *         catálogo si hay empate
+	 */
+	ArrayList<Libro> entre(Categoria categoria, double minima, double maxima, int desde, int cantidad) {
+		int[] orden = categoria == null ? porCalificacion : porCalificacionCategoria;
+		int inicio = primeroConMaximo(orden, inicioOrden(categoria), finOrden(categoria), maxima);
+		int fin = Math.max(inicio, primeroDebajoDe(orden, inicio, finOrden(categoria), minima));
+		int desdeInicio = (int) Math.min((long) inicio + desde, fin);
+		int hasta = (int) Math.min((long) desdeInicio + cantidad, fin);
+		ArrayList<Libro> libros = new ArrayList<Libro>(hasta - desdeInicio);
+		for (int i = desdeInicio; i < hasta; i++) {
+			libros.add(darLibro(orden[i]));
+		}
+		return libros;
+	}
+
+	/**
+	 * Cuenta los libros cuya calificación está en el rango indicado, incluyendo
+	 * los extremos
+	 *
+	 * @param categoria La categoría, o null para todo el catálogo
+	 * @param minima    La calificación mínima
+	 * @param maxima    La calificación máxima
+	 * @return La cantidad de libros
+	 */
+	int contarEntre(Categoria categoria, double minima, double maxima) {
+		int[] orden = categoria == null ? porCalificacion : porCalificacionCategoria;
+		int inicio = primeroConMaximo(orden, inicioOrden(categoria), finOrden(categoria), maxima);
+		return Math.max(0, primeroDebajoDe(orden, inicioOrden(categoria), finOrden(categoria), minima) - inicio);
+	}
+
+	/**
+	 * Calcula un percentil de las calificaciones con la misma definición de
+	 * IndiceCalificaciones
+	 *
+	 * @param categoria La categoría, o null para todo el catálogo
+	 * @param percentil El percentil, entre 0 y 100
+	 * @return La calificación, o NaN si no hay libros
+	 */
+	double percentil(Categoria categoria, double percentil) {
+		int[] orden = categoria == null ? porCalificacion : porCalificacionCategoria;
+		int cantidad = finOrden(categoria) - inicioOrden(categoria);
+		if (cantidad == 0) {
+			return Double.NaN;
+		}
+		// Puesto del percentil contando desde la peor calificación
+		int puesto = Math.max(0, (int) Math.ceil(percentil / 100 * cantidad) - 1);
+		return calificaciones[orden[finOrden(categoria) - 1 - Math.min(puesto, cantidad - 1)]];
+	}
+
+	private int inicioOrden(Categoria categoria) {
+		return categoria == null ? 0 : inicioCategoria[categoria.darId()];
+	}
+
+	private int finOrden(Categoria categoria) {
+		return categoria == null ? tamanio : inicioCategoria[categoria.darId() + 1];
+	}
+
+	/**
+	 * Busca con búsqueda binaria, entre inicio y fin, el primer libro cuya
+	 * calificación es menor o igual al máximo
+	 */
+	private int primeroConMaximo(int[] orden, int inicio, int fin, double maximo) {
+		int bajo = inicio;
+		int alto = fin;
+		while (bajo < alto) {
+			int medio = (bajo + alto) >>> 1;
+			if (Double.compare(calificaciones[orden[medio]], maximo) > 0) {
+				bajo = medio + 1;
+			} else {
+				alto = medio;
+			}
+		}
+		return bajo;
+	}
+
+	/**
+	 * Busca con búsqueda binaria, entre inicio y fin, el primer libro cuya
+	 * calificación es menor que el mínimo
+	 */
+	private int primeroDebajoDe(int[] orden, int inicio, int fin, double minimo) {
+		int bajo = inicio;
+		int alto = fin;
+		while (bajo < alto) {
+			int medio = (bajo + alto) >>> 1;
+			if (Double.compare(calificaciones[orden[medio]], minimo) >= 0) {
+				bajo = medio + 1;
+			} else {
+				alto = medio;
+			}
+		}
+		return bajo;
+	}
+
+	// ************************************************************************
+	// Carga
+	// ************************************************************************
+
+	/**
+	 * Agrega al final de las columnas el libro de una fila del archivo
+	 *
+	 * @param fila           La fila leída del archivo
+	 * @param idsAutores     El identificador provisional de cada autor
+	 * @param nombresAutores El nombre de cada autor, por identificador provisional
+	 */
+	private void agregarFila(FilaLibro fila, HashMap<String, Integer> idsAutores, ArrayList<String> nombresAutores) {
+		asegurarCapacidad(tamanio + 1);
+
+		Categoria categoria = categorias.buscar(fila.nombreCategoria);
+		if (categoria == null) {
+			categoria = new Categoria(fila.nombreCategoria, true);
+			categorias.agregar(categoria);
+		}
+
+		Integer idAutor = idsAutores.get(fila.autor);
+		if (idAutor == null) {
+			idAutor = nombresAutores.size();
+			idsAutores.put(fila.autor, idAutor);
+			nombresAutores.add(fila.autor);
+		}
+
+		titulos[tamanio] = fila.titulo;
+		autores[tamanio] = idAutor;
+		categoriasLibros[tamanio] = categoria.darId();
+		calificaciones[tamanio] = fila.calificacion;
+		if (fila.existePortada) {
+			if (fila.ancho < 0 || fila.ancho > DIMENSION_MAXIMA || fila.alto < 0 || fila.alto > DIMENSION_MAXIMA) {
+				throw new IllegalArgumentException("Dimensiones de portada no soportadas: " + fila.ancho + "x" + fila.alto);
+			}
+			rutasPortada[tamanio] = fila.archivoPortada;
+			dimensionesPortada[tamanio] = (fila.ancho << 16) | fila.alto;
+		}
+		tamanio++;
+	}
+
+	/**
+	 * Ordena el diccionario de autores alfabéticamente y cambia los
+	 * identificadores provisionales de la columna de autores por los definitivos.
+	 * Así no hace falta guardar un mapa de los nombres después de la carga.
+	 *
+	 * @param nombresAutores El nombre de cada autor, por identificador provisional
+	 */
+	private void ordenarAutores(ArrayList<String> nombresAutores) {
+		int cantidad = nombresAutores.size();
+		Integer[] orden = new Integer[cantidad];
+		for (int i = 0; i < cantidad; i++) {
+			orden[i] = i;
+		}
+		Arrays.sort(orden, (a, b) -> nombresAutores.get(a).compareTo(nombresAutores.get(b)));
+
+		diccionarioAutores = new String[cantidad];
+		int[] definitivo = new int[cantidad];
+		for (int id = 0; id < cantidad; id++) {
+			diccionarioAutores[id] = nombresAutores.get(orden[id]);
+			definitivo[orden[id]] = id;
+		}
+		for (int i = 0; i < tamanio; i++) {
+			autores[i] = definitivo[autores[i]];
+		}
+	}
+
+	/**
+	 * Ajusta las columnas al tamaño final, construye la tabla de títulos y la
+	 * agrupación por categorías y calcula las estadísticas
+	 */
+	private void terminarCarga() {
+		titulos = Arrays.copyOf(titulos, tamanio);
+		autores = Arrays.copyOf(autores, tamanio);
+		categoriasLibros = Arrays.copyOf(categoriasLibros, tamanio);
+		calificaciones = Arrays.copyOf(calificaciones, tamanio);
+		rutasPortada = Arrays.copyOf(rutasPortada, tamanio);
+		dimensionesPortada = Arrays.copyOf(dimensionesPortada, tamanio);
+
+		int capacidad = Integer.highestOneBit(Math.max(2, tamanio) * 2 - 1) << 1;
+		tablaTitulos = new int[capacidad];
+		for (int posicion = 0; posicion < tamanio; posicion++) {
+			int i = mezclar(titulos[posicion].hashCode()) & (capacidad - 1);
+			boolean repetido = false;
+			while (tablaTitulos[i] != 0 && !repetido) {
+				repetido = titulos[tablaTitulos[i] - 1].equals(titulos[posicion]);
+				i = (i + 1) & (capacidad - 1);
+			}
+			if (!repetido) {
+				tablaTitulos[i] = posicion + 1;
+			}
+		}
+
+		// Ordenamiento por conteo: los libros quedan agrupados por categoría y,
+		// dentro de cada categoría, en el orden del archivo
+		int nCategorias = categorias.tamanio();
+		inicioCategoria = new int[nCategorias + 1];
+		for (int posicion = 0; posicion < tamanio; posicion++) {
+			inicioCategoria[categoriasLibros[posicion] + 1]++;
+		}
+		for (int c = 0; c < nCategorias; c++) {
+			inicioCategoria[c + 1] += inicioCategoria[c];
+		}
+		int[] siguiente = Arrays.copyOf(inicioCategoria, nCategorias);
+		posicionesPorCategoria = new int[tamanio];
+		for (int posicion = 0; posicion < tamanio; posicion++) {
+			posicionesPorCategoria[siguiente[categoriasLibros[posicion]]++] = posicion;
+		}
+
+		ordenarPorCalificacion(nCategorias);
+		calcularEstadisticas(nCategorias);
+	}
+
+	/**
+	 * Ordena las posiciones de los libros por calificación, con el mismo orden de
+	 * IndiceCalificaciones: cada libro se representa con el puesto de su
+	 * calificación entre las calificaciones distintas, en los bits altos, y su
+	 * posición, en los bits bajos
+	 */
+	private void ordenarPorCalificacion(int nCategorias) {
+		double[] distintas = Arrays.copyOf(calificaciones, tamanio);
+		Arrays.sort(distintas);
+		int cantidadDistintas = 0;
+		for (int i = 0; i < distintas.length; i++) {
+			if (cantidadDistintas == 0 || Double.compare(distintas[cantidadDistintas - 1], distintas[i]) != 0) {
+				distintas[cantidadDistintas++] = distintas[i];
+			}
+		}
+		long[] llaves = new long[tamanio];
+		for (int i = 0; i < tamanio; i++) {
+			long puesto = cantidadDistintas - 1
+					- Arrays.binarySearch(distintas, 0, cantidadDistintas, calificaciones[i]);
+			llaves[i] = (puesto << 32) | i;
+		}
+		Arrays.sort(llaves);
+		porCalificacion = new int[tamanio];
+		for (int i = 0; i < tamanio; i++) {
+			porCalificacion[i] = (int) llaves[i];
+		}
+
+		// Repartir los libros ya ordenados deja ordenado el tramo de cada categoría
+		int[] siguiente = Arrays.copyOf(inicioCategoria, nCategorias);
+		porCalificacionCategoria = new int[tamanio];
+		for (int posicion : porCalificacion) {
+			porCalificacionCategoria[siguiente[categoriasLibros[posicion]]++] = posicion;
+		}
+	}
+
+	/**
+	 * Calcula las estadísticas con los mismos criterios de EstadisticasCatalogo:
+	 * las sumas en el orden del catálogo y los empates a favor de la categoría que
+	 * está antes en la librería
+	 */
+	private void calcularEstadisticas(int nCategorias) {
+		SumaCompensada total = new SumaCompensada();
+		SumaCompensada[] porCategoria = new SumaCompensada[nCategorias];
+		for (int c = 0; c < nCategorias; c++) {
+			porCategoria[c] = new SumaCompensada();
+		}
+		int[] primeraCategoriaAutor = new int[diccionarioAutores.length];
+		Arrays.fill(primeraCategoriaAutor, -1);
+		for (int i = 0; i < tamanio; i++) {
+			total.agregar(calificaciones[i]);
+			porCategoria[categoriasLibros[i]].agregar(calificaciones[i]);
+			if (rutasPortada[i] == null) {
+				librosSinPortada++;
+			}
+			int primera = primeraCategoriaAutor[autores[i]];
+			if (primera < 0) {
+				primeraCategoriaAutor[autores[i]] = categoriasLibros[i];
+			} else if (primera != categoriasLibros[i]) {
+				hayAutorEnVariasCategorias = true;
+			}
+		}
+		calificacionPromedio = total.darValor() / tamanio;
+
+		int masLibros = -1;
+		int mejores = -1;
+		double mejorPromedio = 0;
+		for (int c = 0; c < nCategorias; c++) {
+			int cantidad = inicioCategoria[c + 1] - inicioCategoria[c];
+			if (masLibros < 0 || cantidad > inicioCategoria[masLibros + 1] - inicioCategoria[masLibros]) {
+				masLibros = c;
+			}
+			if (cantidad > 0) {
+				double promedio = porCategoria[c].darValor() / cantidad;
+				if (mejores < 0 || promedio > mejorPromedio) {
+					mejores = c;
+					mejorPromedio = promedio;
+				}
+			}
+		}
+		categoriaConMasLibros = masLibros < 0 ? null : categorias.darCategoria(masLibros);
+		categoriaConMejoresLibros = mejores < 0 ? null : categorias.darCategoria(mejores);
+	}
+
+	/**
+	 * Hace crecer las columnas para que quepan por lo menos los libros indicados
+	 *
+	 * @param capacidad La cantidad de libros que deben caber
+	 */
+	private void asegurarCapacidad(int capacidad) {
+		if (titulos != null && capacidad <= titulos.length) {
+			return;
+		}
+		int nueva = titulos == null ? capacidad : Math.max(capacidad, titulos.length + (titulos.length >> 1));
+		titulos = titulos == null ? new String[nueva] : Arrays.copyOf(titulos, nueva);
+		autores = autores == null ? new int[nueva] : Arrays.copyOf(autores, nueva);
+		categoriasLibros = categoriasLibros == null ? new int[nueva] : Arrays.copyOf(categoriasLibros, nueva);
+		calificaciones = calificaciones == null ? new double[nueva] : Arrays.copyOf(calificaciones, nueva);
+		rutasPortada = rutasPortada == null ? new String[nueva] : Arrays.copyOf(rutasPortada, nueva);
+		dimensionesPortada = dimensionesPortada == null ? new int[nueva] : Arrays.copyOf(dimensionesPortada, nueva);
+	}
+
+	/**
+	 * Mezcla los bits de un hash para que las casillas de la tabla se repartan
+	 * bien aunque la tabla sea una potencia de dos
+	 */
+	private static int mezclar(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * Lista de solo lectura que crea los libros a medida que se consultan
+	 */
+	private final class VistaLibros extends AbstractList<Libro> implements RandomAccess {
+		/**
+		 * Las posiciones de los libros, o null si la vista recorre el catálogo en
+		 * orden
+		 */
+		private final int[] posiciones;
+		private final int desde;
+		private final int hasta;
+
+		VistaLibros(int[] posiciones, int desde, int hasta) {
+			this.posiciones = posiciones;
+			this.desde = desde;
+			this.hasta = hasta;
+		}
+
+		@Override
+		public Libro get(int indice) {
+			if (indice < 0 || indice >= size()) {
+				throw new IndexOutOfBoundsException("Índice: " + indice + ", tamaño: " + size());
+			}
+			return darLibro(posiciones == null ? desde + indice : posiciones[desde + indice]);
+		}
+
+		@Override
+		public int size() {
+			return hasta - desde;
+		}
+	}
+}
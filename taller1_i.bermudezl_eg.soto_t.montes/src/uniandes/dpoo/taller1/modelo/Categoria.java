@@ -1,6 +1,7 @@
 package uniandes.dpoo.taller1.modelo;
 
 import java.util.ArrayList;
+import java.util.Set;
 
 /**
  * Esta clase representa a una categoría de libros dentro de la librería. Cada
@@ -27,6 +28,28 @@ public class Categoria {
 	 */
 	private ArrayList<Libro> libros;
 
+	/**
+	 * Posición de la categoría dentro de las categorías de la librería. Es -1
+	 * mientras la categoría no pertenezca a una librería.
+	 */
+	private int id;
+
+	/**
+	 * Suma de las calificaciones de los libros de la categoría
+	 */
+	private SumaCompensada sumaCalificaciones;
+
+	/**
+	 * Cantidad de libros de la categoría que no tienen portada
+	 */
+	private int librosSinPortada;
+
+	/**
+	 * Las estadísticas de la librería a la que pertenece la categoría, a las que
+	 * hay que avisarles de los cambios. Puede ser null.
+	 */
+	private EstadisticasCatalogo estadisticas;
+
 	// ************************************************************************
 	// Constructores
 	// ************************************************************************
@@ -35,7 +58,8 @@ public class Categoria {
 		this.nombre = nombre;
 		this.ficcion = ficcion;
 		libros = new ArrayList<Libro>();
-
+		sumaCalificaciones = new SumaCompensada();
+		id = -1;
 	}
 
 	// ************************************************************************
@@ -80,7 +104,43 @@ public class Categoria {
 	 * @param nuevoLibro El nuevo libro que se va a agregar.
 	 */
 	public void agregarLibro(Libro nuevoLibro) {
+		if (estadisticas != null) {
+			estadisticas.antesDeCambiar(this);
+		}
 		libros.add(nuevoLibro);
+		sumaCalificaciones.agregar(nuevoLibro.darCalificacion());
+		if (!nuevoLibro.tienePortada()) {
+			librosSinPortada++;
+		}
+		if (estadisticas != null) {
+			estadisticas.despuesDeCambiar(this);
+		}
+	}
+
+	/**
+	 * Quita de la categoría los libros indicados. Los libros que no son de la
+	 * categoría se ignoran. La suma de las calificaciones y la cantidad de libros
+	 * sin portada se actualizan restando los libros quitados.
+	 * 
+	 * @param aBorrar Los libros que se van a quitar. Los que son de la categoría
+	 *                deben estar en ella.
+	 */
+	void quitarLibros(Set<Libro> aBorrar) {
+		if (estadisticas != null) {
+			estadisticas.antesDeCambiar(this);
+		}
+		Libreria.quitarOrdenados(libros, aBorrar);
+		for (Libro l : aBorrar) {
+			if (l.darCategoria() == this) {
+				sumaCalificaciones.quitar(l.darCalificacion());
+				if (!l.tienePortada()) {
+					librosSinPortada--;
+				}
+			}
+		}
+		if (estadisticas != null) {
+			estadisticas.despuesDeCambiar(this);
+		}
 	}
 
 	/**
@@ -98,13 +158,16 @@ public class Categoria {
 	 * @return Calificación promedio
 	 */
 	public double calificacionPromedio() {
-		double count = 0;
-
-		for (var l : libros) {
-			count += l.darCalificacion();
-		}
+		return sumaCalificaciones.darValor() / libros.size();
+	}
 
-		return count / libros.size();
+	/**
+	 * Cuenta la cantidad de libros de la categoría que no tienen portada
+	 * 
+	 * @return Cantidad de libros sin portada
+	 */
+	public int contarLibrosSinPortada() {
+		return librosSinPortada;
 	}
 
 	/**
@@ -141,9 +204,10 @@ public class Categoria {
 	 */
 	public ArrayList<Libro> buscarLibrosDeAutor(String nombreAutor) {
 		ArrayList<Libro> librosAutor = new ArrayList<Libro>();
+		String cadena = nombreAutor.toLowerCase();
 
 		for (var l : libros) {
-			if (l.darAutor().toLowerCase().contains(nombreAutor.toLowerCase())) {
+			if (l.darAutor().toLowerCase().contains(cadena)) {
 				librosAutor.add(l);
 			}
 		}
@@ -156,6 +220,46 @@ public class Categoria {
 	public String getNombre() {
 		return nombre;
 	}
+
+	/**
+	 * Consulta la posición de la categoría dentro de las categorías de la librería
+	 * 
+	 * @return id
+	 */
+	int darId() {
+		return id;
+	}
+
+	/**
+	 * Cambia las estadísticas a las que la categoría les avisa de sus cambios
+	 * 
+	 * @param nuevasEstadisticas Las estadísticas de la librería
+	 */
+	void cambiarEstadisticas(EstadisticasCatalogo nuevasEstadisticas) {
+		estadisticas = nuevasEstadisticas;
+	}
+
+	/**
+	 * Registra que uno de los libros de la categoría ganó o perdió su portada
+	 * 
+	 * @param teniaPortada Indica si el libro tenía portada antes del cambio
+	 */
+	void portadaCambiada(boolean teniaPortada) {
+		librosSinPortada += teniaPortada ? 1 : -1;
+		if (estadisticas != null) {
+			estadisticas.portadaCambiada(teniaPortada);
+		}
+	}
+
+	/**
+	 * Cambia la posición de la categoría dentro de las categorías de la librería
+	 * 
+	 * @param nuevoId La nueva posición
+	 */
+	void cambiarId(int nuevoId) {
+		id = nuevoId;
+	}
+
 	// ************************************************************************
 	// Métodos sobrecargados
 	// ************************************************************************
@@ -0,0 +1,97 @@
+package uniandes.dpoo.taller1.modelo;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Recorre el resultado de una consulta de la librería pidiéndolo por páginas, a
+ * medida que se necesita. Es la base de los Stream que retorna Libreria.
+ *
+ * Cada página se pide con el último libro de la página anterior, y la consulta
+ * continúa justo después de ese libro. Así cada página se lee con el candado de
+ * la librería por separado y, si entre dos páginas se borran libros, el
+ * recorrido no repite ni se salta ninguno de los que quedan.
+ */
+class CursorLibros extends Spliterators.AbstractSpliterator<Libro> {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Cantidad de libros que se piden en cada página
+	 */
+	static final int TAMANIO_PAGINA = 256;
+
+	// ************************************************************************
+	// Interfaces
+	// ************************************************************************
+
+	/**
+	 * Consulta una página del resultado
+	 */
+	@FunctionalInterface
+	interface Pagina {
+		/**
+		 * @param despuesDe El último libro de la página anterior, o null para la
+		 *                  primera página
+		 * @param cantidad  Cantidad máxima de libros de la página
+		 * @return Los libros que siguen, en orden. Si hay menos que la cantidad
+		 *         pedida, es la última página.
+		 */
+		List<Libro> leer(Libro despuesDe, int cantidad);
+	}
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	private final Pagina pagina;
+
+	/**
+	 * La página actual
+	 */
+	private List<Libro> libros;
+
+	/**
+	 * La posición del siguiente libro dentro de la página actual
+	 */
+	private int siguiente;
+
+	/**
+	 * Indica si la página actual es la última
+	 */
+	private boolean ultima;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	CursorLibros(Pagina pagina) {
+		super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+		this.pagina = pagina;
+	}
+
+	// ************************************************************************
+	// Métodos
+	// ************************************************************************
+
+	@Override
+	public boolean tryAdvance(Consumer<? super Libro> accion) {
+		if (libros == null || siguiente == libros.size()) {
+			if (ultima) {
+				return false;
+			}
+			Libro ultimoLeido = libros == null || libros.isEmpty() ? null : libros.get(libros.size() - 1);
+			libros = pagina.leer(ultimoLeido, TAMANIO_PAGINA);
+			siguiente = 0;
+			ultima = libros.size() < TAMANIO_PAGINA;
+			if (libros.isEmpty()) {
+				return false;
+			}
+		}
+		accion.accept(libros.get(siguiente++));
+		return true;
+	}
+}
@@ -0,0 +1,220 @@
+package uniandes.dpoo.taller1.modelo;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.TreeSet;
+
+/**
+ * Esta clase mantiene las estadísticas del catálogo de una librería para que no
+ * haya que recorrer el catálogo cada vez que se consultan.
+ *
+ * Se guardan la suma de las calificaciones, la cantidad de libros y la cantidad
+ * de libros sin portada del catálogo, y dos clasificaciones de las categorías:
+ * por cantidad de libros y por calificación promedio. Cuando se agregan o se
+ * quitan libros, los totales se actualizan con solo esos libros. Las categorías
+ * le avisan a esta clase antes y después de cambiar para que las
+ * clasificaciones sigan ordenadas.
+ */
+class EstadisticasCatalogo {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Ordena las categorías de la que tiene más libros a la que tiene menos. Si hay
+	 * empate, queda primero la que está antes en la librería.
+	 */
+	private static final Comparator<Categoria> POR_CANTIDAD = Comparator
+			.comparingInt((Categoria c) -> -c.contarLibrosEnCategoria()).thenComparingInt(Categoria::darId);
+
+	/**
+	 * Ordena las categorías de la que tiene mejor calificación promedio a la que
+	 * tiene la peor. Si hay empate, queda primero la que está antes en la
+	 * librería.
+	 */
+	private static final Comparator<Categoria> POR_PROMEDIO = Comparator
+			.comparingDouble((Categoria c) -> -c.calificacionPromedio()).thenComparingInt(Categoria::darId);
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Suma de las calificaciones de los libros del catálogo
+	 */
+	private SumaCompensada sumaCalificaciones;
+
+	/**
+	 * Cantidad de libros en el catálogo
+	 */
+	private int cantidadLibros;
+
+	/**
+	 * Cantidad de libros del catálogo que no tienen portada
+	 */
+	private int librosSinPortada;
+
+	/**
+	 * Todas las categorías, ordenadas por cantidad de libros
+	 */
+	private TreeSet<Categoria> porCantidad;
+
+	/**
+	 * Las categorías que tienen al menos un libro, ordenadas por calificación
+	 * promedio
+	 */
+	private TreeSet<Categoria> porPromedio;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Calcula las estadísticas del catálogo y de las categorías, y se registra en
+	 * cada categoría para que le avise de sus cambios
+	 *
+	 * @param catalogo   Los libros del catálogo
+	 * @param categorias Las categorías de la librería
+	 */
+	EstadisticasCatalogo(Collection<Libro> catalogo, Iterable<Categoria> categorias) {
+		porCantidad = new TreeSet<Categoria>(POR_CANTIDAD);
+		porPromedio = new TreeSet<Categoria>(POR_PROMEDIO);
+		sumaCalificaciones = new SumaCompensada();
+		recalcularCatalogo(catalogo);
+		for (Categoria c : categorias) {
+			registrar(c);
+		}
+	}
+
+	// ************************************************************************
+	// Métodos para consultar los atributos
+	// ************************************************************************
+
+	/**
+	 * Calcula la calificación promedio de los libros del catálogo
+	 *
+	 * @return La calificación promedio, o NaN si el catálogo está vacío
+	 */
+	double calificacionPromedio() {
+		return sumaCalificaciones.darValor() / cantidadLibros;
+	}
+
+	/**
+	 * Consulta la cantidad de libros del catálogo sin portada
+	 *
+	 * @return librosSinPortada
+	 */
+	int contarLibrosSinPortada() {
+		return librosSinPortada;
+	}
+
+	/**
+	 * Consulta la categoría con más libros
+	 *
+	 * @return La categoría con más libros, o null si no hay categorías
+	 */
+	Categoria categoriaConMasLibros() {
+		return porCantidad.isEmpty() ? null : porCantidad.first();
+	}
+
+	/**
+	 * Consulta la categoría con la mejor calificación promedio
+	 *
+	 * @return La categoría con la mejor calificación promedio, o null si ninguna
+	 *         categoría tiene libros
+	 */
+	Categoria categoriaConMejoresLibros() {
+		return porPromedio.isEmpty() ? null : porPromedio.first();
+	}
+
+	// ************************************************************************
+	// Otros métodos
+	// ************************************************************************
+
+	/**
+	 * Empieza a seguir una categoría en las clasificaciones
+	 *
+	 * @param categoria La categoría
+	 */
+	void registrar(Categoria categoria) {
+		categoria.cambiarEstadisticas(this);
+		despuesDeCambiar(categoria);
+	}
+
+	/**
+	 * Calcula las estadísticas del catálogo recorriéndolo completo
+	 *
+	 * @param catalogo Los libros del catálogo
+	 */
+	private void recalcularCatalogo(Collection<Libro> catalogo) {
+		sumaCalificaciones.reiniciar();
+		librosSinPortada = 0;
+		for (Libro l : catalogo) {
+			sumaCalificaciones.agregar(l.darCalificacion());
+			if (!l.tienePortada()) {
+				librosSinPortada++;
+			}
+		}
+		cantidadLibros = catalogo.size();
+	}
+
+	/**
+	 * Registra un libro que se agregó al final del catálogo
+	 *
+	 * El libro se cuenta como sin portada porque los libros se crean sin ella: si
+	 * después se le puso, su categoría ya lo avisó con portadaCambiada.
+	 *
+	 * @param libro El libro nuevo
+	 */
+	void agregarLibro(Libro libro) {
+		sumaCalificaciones.agregar(libro.darCalificacion());
+		librosSinPortada++;
+		cantidadLibros++;
+	}
+
+	/**
+	 * Registra un libro que se quitó del catálogo, restándolo de los totales
+	 *
+	 * @param libro El libro quitado
+	 */
+	void quitarLibro(Libro libro) {
+		sumaCalificaciones.quitar(libro.darCalificacion());
+		if (!libro.tienePortada()) {
+			librosSinPortada--;
+		}
+		cantidadLibros--;
+	}
+
+	/**
+	 * Registra que un libro del catálogo ganó o perdió su portada
+	 *
+	 * @param teniaPortada Indica si el libro tenía portada antes del cambio
+	 */
+	void portadaCambiada(boolean teniaPortada) {
+		librosSinPortada += teniaPortada ? 1 : -1;
+	}
+
+	/**
+	 * Saca a la categoría de las clasificaciones. Se debe invocar antes de cambiar
+	 * los libros de la categoría.
+	 *
+	 * @param categoria La categoría que va a cambiar
+	 */
+	void antesDeCambiar(Categoria categoria) {
+		porCantidad.remove(categoria);
+		porPromedio.remove(categoria);
+	}
+
+	/**
+	 * Vuelve a poner a la categoría en las clasificaciones. Se debe invocar
+	 * después de cambiar los libros de la categoría.
+	 *
+	 * @param categoria La categoría que cambió
+	 */
+	void despuesDeCambiar(Categoria categoria) {
+		porCantidad.add(categoria);
+		if (categoria.contarLibrosEnCategoria() > 0) {
+			porPromedio.add(categoria);
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package uniandes.dpoo.taller1.modelo;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Evento de JDK Flight Recorder para un bloque del archivo de libros. Además de
+ * las filas y los bytes del bloque, dice en qué se fue el tiempo: leer y separar
+ * las líneas, interpretarlas (split y Double.parseDouble en FilaLibro.parsear),
+ * revisar si existen las portadas y crear los libros (incluye buscarCategoria).
+ *
+ * En la carga secuencial un bloque son FILAS_POR_AVISO líneas y todo pasa en el
+ * mismo hilo. En la carga paralela un bloque es uno de los de CargadorParalelo:
+ * se lee, se interpreta y se revisan las portadas en un hilo del pool, y los
+ * libros se crean después en el hilo que carga. En ese caso el evento se graba
+ * desde el hilo que carga y su duración es solo la creación de los libros; lo
+ * que tardó el pool está en los otros campos.
+ *
+ * Separar los tiempos necesita leer el reloj varias veces por fila, así que
+ * solo se hace si el evento está activo en la grabación.
+ */
+@Name("uniandes.dpoo.taller1.BloqueCarga")
+@Label("Bloque del archivo de libros")
+@Category({ "Librería", "Carga" })
+@StackTrace(false)
+class EventoBloqueCarga extends Event {
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * El archivo de libros
+	 */
+	@Label("Archivo")
+	String archivo;
+
+	/**
+	 * Posición del bloque en el archivo
+	 */
+	@Label("Posición")
+	@DataAmount
+	long posicion;
+
+	/**
+	 * Tamaño del bloque. En la carga secuencial es aproximado porque el lector lee
+	 * por adelantado.
+	 */
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+
+	/**
+	 * Cantidad de libros creados a partir del bloque
+	 */
+	@Label("Filas")
+	int filas;
+
+	/**
+	 * Cantidad de líneas que no se pudieron interpretar
+	 */
+	@Label("Descartadas")
+	int descartadas;
+
+	@Label("Lectura")
+	@Description("Leer el archivo y separar las líneas")
+	@Timespan
+	long lectura;
+
+	@Label("Interpretación")
+	@Description("Separar los campos y convertir los números")
+	@Timespan
+	long interpretacion;
+
+	@Label("Portadas")
+	@Description("Revisar si existen los archivos de las portadas")
+	@Timespan
+	long portadas;
+
+	@Label("Creación")
+	@Description("Buscar las categorías y crear los libros")
+	@Timespan
+	long creacion;
+
+	/**
+	 * Indica si se separan los tiempos
+	 */
+	private transient boolean medir;
+
+	// ************************************************************************
+	// Métodos
+	// ************************************************************************
+
+	/**
+	 * Marca el inicio de un bloque
+	 *
+	 * @param archivo  El archivo de libros
+	 * @param posicion Posición del bloque en el archivo
+	 * @return El evento del bloque
+	 */
+	static EventoBloqueCarga iniciar(String archivo, long posicion) {
+		EventoBloqueCarga evento = new EventoBloqueCarga();
+		evento.medir = evento.isEnabled();
+		evento.archivo = archivo;
+		evento.posicion = posicion;
+		evento.begin();
+		return evento;
+	}
+
+	/**
+	 * @return Indica si el evento está activo en la grabación
+	 */
+	boolean medir() {
+		return medir;
+	}
+
+	/**
+	 * @return El instante actual, o 0 si no se separan los tiempos
+	 */
+	long marca() {
+		return medir ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Suma a la lectura el tiempo que pasó desde una marca
+	 *
+	 * @param desde La marca anterior
+	 * @return La marca nueva
+	 */
+	long sumarLectura(long desde) {
+		if (!medir) {
+			return 0;
+		}
+		long ahora = System.nanoTime();
+		lectura += ahora - desde;
+		return ahora;
+	}
+
+	/**
+	 * Suma a la interpretación el tiempo que pasó desde una marca
+	 *
+	 * @param desde La marca anterior
+	 * @return La marca nueva
+	 */
+	long sumarInterpretacion(long desde) {
+		if (!medir) {
+			return 0;
+		}
+		long ahora = System.nanoTime();
+		interpretacion += ahora - desde;
+		return ahora;
+	}
+
+	/**
+	 * Suma a la revisión de portadas el tiempo que pasó desde una marca
+	 *
+	 * @param desde La marca anterior
+	 * @return La marca nueva
+	 */
+	long sumarPortadas(long desde) {
+		if (!medir) {
+			return 0;
+		}
+		long ahora = System.nanoTime();
+		portadas += ahora - desde;
+		return ahora;
+	}
+
+	/**
+	 * Suma a la creación de libros el tiempo que pasó desde una marca
+	 *
+	 * @param desde La marca anterior
+	 * @return La marca nueva
+	 */
+	long sumarCreacion(long desde) {
+		if (!medir) {
+			return 0;
+		}
+		long ahora = System.nanoTime();
+		creacion += ahora - desde;
+		return ahora;
+	}
+
+	/**
+	 * Marca el final del bloque y lo graba si el evento está activo
+	 *
+	 * @param fin Posición en el archivo donde termina el bloque
+	 */
+	void terminar(long fin) {
+		if (shouldCommit()) {
+			bytes = fin - posicion;
+			commit();
+		}
+	}
+}
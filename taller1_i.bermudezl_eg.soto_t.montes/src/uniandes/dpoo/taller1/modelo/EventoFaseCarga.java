@@ -0,0 +1,95 @@
+package uniandes.dpoo.taller1.modelo;
+
+import java.io.File;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de JDK Flight Recorder para una fase de la carga de la librería: leer
+ * las categorías, leer los libros, leer la copia binaria o construir los
+ * índices. La duración del evento es lo que tardó la fase.
+ */
+@Name("uniandes.dpoo.taller1.FaseCarga")
+@Label("Fase de la carga")
+@Category({ "Librería", "Carga" })
+@StackTrace(false)
+class EventoFaseCarga extends Event {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	static final String CATEGORIAS = "categorías";
+
+	static final String LIBROS = "libros";
+
+	static final String COPIA = "copia binaria";
+
+	static final String INDICES = "índices";
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * El nombre de la fase
+	 */
+	@Label("Fase")
+	String fase;
+
+	/**
+	 * El archivo que se lee en la fase, o null si no se lee ninguno
+	 */
+	@Label("Archivo")
+	String archivo;
+
+	/**
+	 * Cantidad de categorías o de libros que resultaron de la fase
+	 */
+	@Label("Filas")
+	int filas;
+
+	/**
+	 * Tamaño del archivo leído
+	 */
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+
+	// ************************************************************************
+	// Métodos
+	// ************************************************************************
+
+	/**
+	 * Marca el inicio de una fase
+	 *
+	 * @param fase    El nombre de la fase
+	 * @param archivo El archivo que se lee, o null
+	 * @return El evento de la fase
+	 */
+	static EventoFaseCarga iniciar(String fase, String archivo) {
+		EventoFaseCarga evento = new EventoFaseCarga();
+		evento.fase = fase;
+		evento.archivo = archivo;
+		evento.begin();
+		return evento;
+	}
+
+	/**
+	 * Marca el final de la fase. El tamaño del archivo solo se consulta si el
+	 * evento se va a grabar.
+	 *
+	 * @param cantidadFilas Cantidad de categorías o de libros que resultaron
+	 */
+	void terminar(int cantidadFilas) {
+		if (shouldCommit()) {
+			filas = cantidadFilas;
+			bytes = archivo == null ? 0 : new File(archivo).length();
+			commit();
+		}
+	}
+}
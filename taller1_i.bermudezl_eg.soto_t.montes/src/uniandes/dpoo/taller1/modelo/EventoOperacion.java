@@ -0,0 +1,86 @@
+package uniandes.dpoo.taller1.modelo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import uniandes.dpoo.taller1.modelo.MetricasLibreria.Operacion;
+
+/**
+ * Evento de JDK Flight Recorder para una operación pública de Libreria: una
+ * carga, una consulta o un cambio. La duración del evento es lo que tardó la
+ * operación.
+ *
+ * Cada operación medida crea uno de estos eventos con iniciar y lo termina con
+ * terminar, que además la registra en MetricasLibreria. Así las métricas y los
+ * eventos siempre cubren las mismas operaciones. Si no hay una grabación de JFR
+ * activa con este evento, terminar no lo guarda.
+ */
+@Name("uniandes.dpoo.taller1.Operacion")
+@Label("Operación de la librería")
+@Category("Librería")
+@StackTrace(false)
+class EventoOperacion extends Event {
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * El nombre de la operación
+	 */
+	@Label("Operación")
+	String operacion;
+
+	/**
+	 * Cantidad de resultados de la operación
+	 */
+	@Label("Resultados")
+	@Description("Cantidad de resultados de la operación, o el tamaño del catálogo en una carga")
+	int resultados;
+
+	/**
+	 * La operación que se mide. No se graba: se graba su nombre.
+	 */
+	private transient Operacion tipo;
+
+	/**
+	 * Lo que retornó MetricasLibreria.iniciar al empezar la operación
+	 */
+	private transient long inicio;
+
+	// ************************************************************************
+	// Métodos
+	// ************************************************************************
+
+	/**
+	 * Marca el inicio de una operación
+	 *
+	 * @param tipo La operación que empieza
+	 * @return El evento de la operación
+	 */
+	static EventoOperacion iniciar(Operacion tipo) {
+		EventoOperacion evento = new EventoOperacion();
+		evento.tipo = tipo;
+		evento.inicio = MetricasLibreria.iniciar();
+		evento.begin();
+		return evento;
+	}
+
+	/**
+	 * Marca el final de una operación que terminó normalmente
+	 *
+	 * @param cantidadResultados Cantidad de resultados de la operación, o el
+	 *                           tamaño del catálogo en una carga
+	 */
+	void terminar(int cantidadResultados) {
+		MetricasLibreria.registrar(tipo, inicio, cantidadResultados);
+		if (shouldCommit()) {
+			operacion = tipo.name();
+			resultados = cantidadResultados;
+			commit();
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package uniandes.dpoo.taller1.modelo;
+
+/**
+ * Esta clase agrupa los valores de una fila del archivo CSV de libros, ya
+ * separados y convertidos, antes de construir el libro correspondiente.
+ *
+ * El formato de cada fila es: Titulo,Autor,Calificacion,Categoria,Portada,Ancho,Alto
+ */
+class FilaLibro {
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Título del libro
+	 */
+	final String titulo;
+
+	/**
+	 * Autor o autores del libro
+	 */
+	final String autor;
+
+	/**
+	 * Calificación del libro
+	 */
+	final double calificacion;
+
+	/**
+	 * Nombre de la categoría a la que pertenece el libro
+	 */
+	final String nombreCategoria;
+
+	/**
+	 * Nombre del archivo con la portada, relativo a la carpeta "data"
+	 */
+	final String archivoPortada;
+
+	/**
+	 * Ancho en pixeles de la portada
+	 */
+	final int ancho;
+
+	/**
+	 * Alto en pixeles de la portada
+	 */
+	final int alto;
+
+	/**
+	 * Indica si el archivo de la portada existe. Solo tiene sentido si quien leyó
+	 * la fila ya hizo la verificación.
+	 */
+	boolean existePortada;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	private FilaLibro(String titulo, String autor, double calificacion, String nombreCategoria,
+			String archivoPortada, int ancho, int alto) {
+		this.titulo = titulo;
+		this.autor = autor;
+		this.calificacion = calificacion;
+		this.nombreCategoria = nombreCategoria;
+		this.archivoPortada = archivoPortada;
+		this.ancho = ancho;
+		this.alto = alto;
+	}
+
+	// ************************************************************************
+	// Otros métodos
+	// ************************************************************************
+
+	/**
+	 * Separa y convierte una línea del archivo de libros.
+	 *
+	 * @param linea La línea leída del archivo, sin el salto de línea
+	 * @return La fila con los valores de la línea
+	 * @throws NumberFormatException          Si la calificación, el ancho o el
+	 *                                        alto no son números válidos
+	 * @throws ArrayIndexOutOfBoundsException Si la línea no tiene todas las
+	 *                                        columnas
+	 */
+	static FilaLibro parsear(String linea) {
+		String[] partes = linea.trim().split(",");
+		String elTitulo = partes[0];
+		String elAutor = partes[1];
+		double laCalificacion = Double.parseDouble(partes[2]);
+		String nombreCategoria = partes[3];
+		String archivoPortada = partes[4];
+		int ancho = Integer.parseInt(partes[5]);
+		int alto = Integer.parseInt(partes[6]);
+		return new FilaLibro(elTitulo, elAutor, laCalificacion, nombreCategoria, archivoPortada, ancho, alto);
+	}
+}
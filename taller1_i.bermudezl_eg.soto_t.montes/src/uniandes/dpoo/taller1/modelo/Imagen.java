@@ -1,10 +1,21 @@
 package uniandes.dpoo.taller1.modelo;
 
 /**
- * Esta clase agrupa la información de una imagen
+ * Esta clase agrupa la información de una imagen. Las imágenes no se pueden
+ * modificar una vez creadas, así que se pueden compartir.
  */
 public class Imagen
 {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * La imagen de 85x85 pixeles que se usa para los libros que no tienen portada.
+	 * Es la misma instancia para todos los libros.
+	 */
+	public static final Imagen SIN_PORTADA = new Imagen("./data/imagenes/missing.png", 85, 85);
+
 	// ************************************************************************
 	// Atributos
 	// ************************************************************************
@@ -12,17 +23,17 @@ public class Imagen
 	/**
 	 * Ruta en la que se encuentra el archivo con la imagen
 	 */
-	private String rutaArchivo;
+	private final String rutaArchivo;
 
 	/**
 	 * Ancho en pixeles de la imagen
 	 */
-	private int ancho;
+	private final int ancho;
 
 	/**
 	 * Alto en pixeles de la imagen
 	 */
-	private int alto;
+	private final int alto;
 
 	// ************************************************************************
 	// Constructores
@@ -0,0 +1,304 @@
+package uniandes.dpoo.taller1.modelo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Índice de trigramas sobre los nombres de los autores, en minúsculas.
+ *
+ * Cada nombre distinto de autor recibe un identificador. Para cada secuencia de
+ * tres caracteres (trigrama) se guarda la lista ordenada de los autores cuyo
+ * nombre la contiene. Para buscar una cadena solo se revisan los autores del
+ * trigrama de la cadena que aparece en menos autores, en lugar de revisar todos
+ * los libros del catálogo.
+ */
+class IndiceAutores {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Orden en el que Libreria.buscarLibrosAutor siempre ha retornado los libros:
+	 * primero por categoría y dentro de cada categoría en el orden de su lista
+	 */
+	private static final Comparator<Libro> ORDEN_CATEGORIAS = Comparator
+			.comparingInt((Libro l) -> l.darCategoria().darId()).thenComparingInt(Libro::darPosicion);
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Identificador de cada nombre de autor en minúsculas
+	 */
+	private HashMap<String, Integer> idsAutores;
+
+	/**
+	 * Nombre en minúsculas de cada autor, por identificador
+	 */
+	private ArrayList<String> autores;
+
+	/**
+	 * Libros de cada autor, por identificador, ordenados por categoría y luego por
+	 * su posición en el catálogo
+	 */
+	private ArrayList<ArrayList<Libro>> librosAutores;
+
+	/**
+	 * Para cada trigrama, los identificadores de los autores que lo contienen, en
+	 * orden ascendente y sin repetidos
+	 */
+	private HashMap<Long, ListaEnteros> trigramas;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye un índice vacío
+	 */
+	IndiceAutores() {
+		idsAutores = new HashMap<String, Integer>();
+		autores = new ArrayList<String>();
+		librosAutores = new ArrayList<ArrayList<Libro>>();
+		trigramas = new HashMap<Long, ListaEnteros>();
+	}
+
+	// ************************************************************************
+	// Otros métodos
+	// ************************************************************************
+
+	/**
+	 * Agrega un libro al índice, en su lugar entre los libros de su autor
+	 *
+	 * @param libro El libro que se va a agregar
+	 */
+	void agregar(Libro libro) {
+		String nombre = libro.darAutor().toLowerCase();
+		Integer id = idsAutores.get(nombre);
+		if (id == null) {
+			id = autores.size();
+			idsAutores.put(nombre, id);
+			autores.add(nombre);
+			librosAutores.add(new ArrayList<Libro>(1));
+			for (int i = 0; i + 3 <= nombre.length(); i++) {
+				ListaEnteros conTrigrama = trigramas.get(trigrama(nombre, i));
+				if (conTrigrama == null) {
+					conTrigrama = new ListaEnteros();
+					trigramas.put(trigrama(nombre, i), conTrigrama);
+				}
+				conTrigrama.agregarSinRepetir(id);
+			}
+		}
+		ArrayList<Libro> libros = librosAutores.get(id);
+		if (libros.isEmpty() || ORDEN_CATEGORIAS.compare(libros.get(libros.size() - 1), libro) < 0) {
+			libros.add(libro);
+		} else {
+			// Un libro agregado después de la carga puede ir antes que otros del autor
+			libros.add(primeroDespuesDe(libros, libro), libro);
+		}
+	}
+
+	/**
+	 * Quita los libros indicados del índice. Los autores que se quedan sin libros
+	 * conservan su identificador, pero ya no aportan resultados.
+	 *
+	 * @param aBorrar Los libros que se van a quitar
+	 */
+	void quitar(Set<Libro> aBorrar) {
+		HashSet<Integer> afectados = new HashSet<Integer>();
+		for (Libro libro : aBorrar) {
+			Integer id = idsAutores.get(libro.darAutor().toLowerCase());
+			if (id != null) {
+				afectados.add(id);
+			}
+		}
+		for (int id : afectados) {
+			librosAutores.get(id).removeIf(aBorrar::contains);
+		}
+	}
+
+	/**
+	 * Busca los libros cuyo autor contiene la cadena indicada, sin tener en cuenta
+	 * mayúsculas y minúsculas
+	 *
+	 * @param cadenaAutor La cadena que se busca en el nombre del autor
+	 * @return Una lista con los libros encontrados, ordenados por categoría y luego
+	 *         por su posición dentro de la categoría
+	 */
+	ArrayList<Libro> buscar(String cadenaAutor) {
+		ArrayList<Libro> resultado = new ArrayList<Libro>();
+		ListaEnteros coincidentes = buscarAutores(cadenaAutor.toLowerCase());
+		for (int i = 0; i < coincidentes.tamanio; i++) {
+			resultado.addAll(librosAutores.get(coincidentes.datos[i]));
+		}
+		resultado.sort(ORDEN_CATEGORIAS);
+		return resultado;
+	}
+
+	/**
+	 * Busca una página de los libros cuyo autor contiene la cadena indicada, en el
+	 * mismo orden que buscar(cadena), sin construir la lista completa.
+	 *
+	 * Los libros de cada autor ya están en ese orden, así que se mezclan las listas
+	 * de los autores encontrados y se para al completar la página.
+	 *
+	 * @param cadenaAutor La cadena que se busca en el nombre del autor
+	 * @param despuesDe   Si no es null, solo se consideran los libros que van
+	 *                    después de este en el orden del resultado
+	 * @param desde       Cantidad de libros que se saltan
+	 * @param cantidad    Cantidad máxima de libros de la página
+	 * @return Los libros de la página
+	 */
+	ArrayList<Libro> buscar(String cadenaAutor, Libro despuesDe, int desde, int cantidad) {
+		ArrayList<Libro> resultado = new ArrayList<Libro>(Math.min(cantidad, 1024));
+		ListaEnteros coincidentes = buscarAutores(cadenaAutor.toLowerCase());
+
+		PriorityQueue<CursorAutor> cursores = new PriorityQueue<CursorAutor>(Math.max(1, coincidentes.tamanio));
+		for (int i = 0; i < coincidentes.tamanio; i++) {
+			ArrayList<Libro> libros = librosAutores.get(coincidentes.datos[i]);
+			int inicio = despuesDe == null ? 0 : primeroDespuesDe(libros, despuesDe);
+			if (inicio < libros.size()) {
+				cursores.add(new CursorAutor(libros, inicio));
+			}
+		}
+
+		long saltar = desde;
+		while (resultado.size() < cantidad && !cursores.isEmpty()) {
+			CursorAutor menor = cursores.poll();
+			if (saltar > 0) {
+				saltar--;
+			} else {
+				resultado.add(menor.actual());
+			}
+			if (menor.avanzar()) {
+				cursores.add(menor);
+			}
+		}
+		return resultado;
+	}
+
+	/**
+	 * Retorna los identificadores de los autores cuyo nombre contiene la cadena,
+	 * que ya debe estar en minúsculas
+	 */
+	private ListaEnteros buscarAutores(String cadena) {
+		ListaEnteros coincidentes = new ListaEnteros();
+
+		if (cadena.length() < 3) {
+			// No hay un trigrama para filtrar: se revisan todos los nombres distintos
+			for (int id = 0; id < autores.size(); id++) {
+				if (autores.get(id).contains(cadena)) {
+					coincidentes.agregarSinRepetir(id);
+				}
+			}
+			return coincidentes;
+		}
+
+		ListaEnteros candidatos = null;
+		for (int i = 0; i + 3 <= cadena.length(); i++) {
+			ListaEnteros conTrigrama = trigramas.get(trigrama(cadena, i));
+			if (conTrigrama == null) {
+				return coincidentes;
+			}
+			if (candidatos == null || conTrigrama.tamanio < candidatos.tamanio) {
+				candidatos = conTrigrama;
+			}
+		}
+		for (int i = 0; i < candidatos.tamanio; i++) {
+			int id = candidatos.datos[i];
+			if (autores.get(id).contains(cadena)) {
+				coincidentes.agregarSinRepetir(id);
+			}
+		}
+		return coincidentes;
+	}
+
+	/**
+	 * Busca con búsqueda binaria la posición del primer libro de la lista que va
+	 * después del indicado en el orden del resultado
+	 */
+	private static int primeroDespuesDe(ArrayList<Libro> libros, Libro despuesDe) {
+		int bajo = 0;
+		int alto = libros.size();
+		while (bajo < alto) {
+			int medio = (bajo + alto) >>> 1;
+			if (ORDEN_CATEGORIAS.compare(libros.get(medio), despuesDe) <= 0) {
+				bajo = medio + 1;
+			} else {
+				alto = medio;
+			}
+		}
+		return bajo;
+	}
+
+	/**
+	 * Empaca los tres caracteres que empiezan en la posición indicada en un solo
+	 * número
+	 */
+	private static long trigrama(String cadena, int i) {
+		return ((long) cadena.charAt(i) << 32) | ((long) cadena.charAt(i + 1) << 16) | cadena.charAt(i + 2);
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * Recorre los libros de un autor durante la mezcla de una página
+	 */
+	private static final class CursorAutor implements Comparable<CursorAutor> {
+		private final ArrayList<Libro> libros;
+		private int posicion;
+
+		CursorAutor(ArrayList<Libro> libros, int posicion) {
+			this.libros = libros;
+			this.posicion = posicion;
+		}
+
+		Libro actual() {
+			return libros.get(posicion);
+		}
+
+		/**
+		 * Pasa al siguiente libro del autor
+		 *
+		 * @return false si ya no quedan libros
+		 */
+		boolean avanzar() {
+			return ++posicion < libros.size();
+		}
+
+		@Override
+		public int compareTo(CursorAutor otro) {
+			return ORDEN_CATEGORIAS.compare(actual(), otro.actual());
+		}
+	}
+
+	/**
+	 * Lista de enteros que crece según se necesite, sin crear un objeto por número
+	 */
+	private static final class ListaEnteros {
+		private int[] datos = new int[2];
+		private int tamanio;
+
+		/**
+		 * Agrega un número al final, a menos que ya sea el último de la lista
+		 */
+		void agregarSinRepetir(int valor) {
+			if (tamanio > 0 && datos[tamanio - 1] == valor) {
+				return;
+			}
+			if (tamanio == datos.length) {
+				int[] nuevos = new int[datos.length * 2];
+				System.arraycopy(datos, 0, nuevos, 0, tamanio);
+				datos = nuevos;
+			}
+			datos[tamanio++] = valor;
+		}
+	}
+}
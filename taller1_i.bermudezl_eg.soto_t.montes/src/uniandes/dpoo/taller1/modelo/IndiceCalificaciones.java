@@ -0,0 +1,443 @@
+package uniandes.dpoo.taller1.modelo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * Índice de los libros del catálogo ordenados por calificación, para todo el
+ * catálogo y para cada categoría.
+ *
+ * Los libros quedan de la mejor calificación a la peor y, si hay empate, en el
+ * orden del catálogo. Así los K mejores libros son los K primeros y se
+ * consultan sin ordenar nada. Las calificaciones se guardan además en un
+ * arreglo de double en el mismo orden, en el que se buscan con búsqueda binaria
+ * los rangos de calificaciones y los percentiles.
+ *
+ * El índice se construye la primera vez que se usa y desde ese momento se
+ * mantiene actualizado cuando se agregan o se quitan libros.
+ */
+class IndiceCalificaciones {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Orden del índice: de la mejor calificación a la peor y luego por la posición
+	 * en el catálogo
+	 */
+	static final Comparator<Libro> ORDEN = Comparator.comparingDouble((Libro l) -> -l.darCalificacion())
+			.thenComparingInt(Libro::darPosicion);
+
+	/**
+	 * La lista de las categorías que no tienen libros en el índice
+	 */
+	private static final ListaOrdenada VACIA = new ListaOrdenada(new Libro[0]);
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Los libros indexados, en el orden del catálogo, que es también el de sus
+	 * posiciones. Se usan para construir el índice.
+	 */
+	private Collection<Libro> catalogo;
+
+	/**
+	 * Todos los libros del catálogo en el orden del índice, o null si el índice
+	 * aún no se ha construido
+	 */
+	private ListaOrdenada global;
+
+	/**
+	 * Los libros de cada categoría en el orden del índice, por identificador de la
+	 * categoría
+	 */
+	private ArrayList<ListaOrdenada> porCategoria;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Prepara el índice sin construirlo
+	 *
+	 * @param catalogo Los libros del catálogo. El índice guarda la referencia
+	 *                 para construirse la primera vez que se use.
+	 */
+	IndiceCalificaciones(Collection<Libro> catalogo) {
+		this.catalogo = catalogo;
+	}
+
+	// ************************************************************************
+	// Otros métodos
+	// ************************************************************************
+
+	/**
+	 * Indica si ya se construyó el índice
+	 *
+	 * @return true si el índice ya existe
+	 */
+	boolean estaConstruido() {
+		return global != null;
+	}
+
+	/**
+	 * Construye el índice si aún no existe
+	 */
+	void preparar() {
+		if (global != null) {
+			return;
+		}
+		Libro[] libros = catalogo.toArray(new Libro[0]);
+
+		// Se ordenan números en lugar de libros: cada libro se representa con el
+		// puesto de su calificación entre las calificaciones distintas, en los bits
+		// altos, y su posición en el catálogo, en los bits bajos
+		double[] distintas = new double[libros.length];
+		for (int i = 0; i < libros.length; i++) {
+			distintas[i] = libros[i].darCalificacion();
+		}
+		Arrays.sort(distintas);
+		int cantidadDistintas = 0;
+		for (int i = 0; i < distintas.length; i++) {
+			if (cantidadDistintas == 0 || Double.compare(distintas[cantidadDistintas - 1], distintas[i]) != 0) {
+				distintas[cantidadDistintas++] = distintas[i];
+			}
+		}
+		long[] llaves = new long[libros.length];
+		for (int i = 0; i < libros.length; i++) {
+			long puesto = cantidadDistintas - 1
+					- Arrays.binarySearch(distintas, 0, cantidadDistintas, libros[i].darCalificacion());
+			llaves[i] = (puesto << 32) | i;
+		}
+		Arrays.sort(llaves);
+		Libro[] ordenados = new Libro[libros.length];
+		for (int i = 0; i < llaves.length; i++) {
+			ordenados[i] = libros[(int) llaves[i]];
+		}
+		global = new ListaOrdenada(ordenados);
+
+		// Repartir los libros ya ordenados deja ordenada la lista de cada categoría
+		porCategoria = new ArrayList<ListaOrdenada>();
+		for (Libro l : ordenados) {
+			listaDe(l.darCategoria()).agregarAlFinal(l);
+		}
+	}
+
+	/**
+	 * Agrega libros en su lugar del índice. Cada lista se recorre una sola vez,
+	 * sin importar cuántos libros se agreguen. No hace nada si el índice aún no se
+	 * ha construido, porque al construirlo se toman del catálogo.
+	 *
+	 * @param libros Los libros nuevos
+	 */
+	void agregar(Collection<Libro> libros) {
+		if (global == null || libros.isEmpty()) {
+			return;
+		}
+		Libro[] nuevos = libros.toArray(new Libro[0]);
+		Arrays.sort(nuevos, ORDEN);
+		global.mezclar(nuevos, nuevos.length);
+
+		// Los libros ya ordenados se reparten por categoría sin volver a ordenarlos
+		HashMap<Categoria, ArrayList<Libro>> porCategoriaNuevos = new HashMap<Categoria, ArrayList<Libro>>();
+		for (Libro l : nuevos) {
+			porCategoriaNuevos.computeIfAbsent(l.darCategoria(), c -> new ArrayList<Libro>()).add(l);
+		}
+		for (var entrada : porCategoriaNuevos.entrySet()) {
+			Libro[] deCategoria = entrada.getValue().toArray(new Libro[0]);
+			listaDe(entrada.getKey()).mezclar(deCategoria, deCategoria.length);
+		}
+	}
+
+	/**
+	 * Quita del índice los libros indicados
+	 *
+	 * @param aBorrar Los libros que se van a quitar
+	 */
+	void quitar(Set<Libro> aBorrar) {
+		if (global == null) {
+			return;
+		}
+		global.quitar(aBorrar);
+		boolean[] afectadas = new boolean[porCategoria.size()];
+		for (Libro l : aBorrar) {
+			int id = l.darCategoria().darId();
+			if (id >= 0 && id < afectadas.length && !afectadas[id]) {
+				afectadas[id] = true;
+				porCategoria.get(id).quitar(aBorrar);
+			}
+		}
+	}
+
+	/**
+	 * Retorna los libros con mejor calificación del catálogo
+	 *
+	 * @param cantidad Cantidad máxima de libros
+	 * @return Los libros, del mejor al peor y en el orden del catálogo si hay
+	 *         empate
+	 */
+	ArrayList<Libro> mejores(int cantidad) {
+		preparar();
+		return global.primeros(cantidad);
+	}
+
+	/**
+	 * Retorna los libros con mejor calificación de una categoría
+	 *
+	 * @param categoria La categoría
+	 * @param cantidad  Cantidad máxima de libros
+	 * @return Los libros, del mejor al peor y en el orden del catálogo si hay
+	 *         empate
+	 */
+	ArrayList<Libro> mejores(Categoria categoria, int cantidad) {
+		return lista(categoria).primeros(cantidad);
+	}
+
+	/**
+	 * Retorna una página de los libros cuya calificación está en el rango
+	 * indicado, incluyendo los extremos
+	 *
+	 * @param categoria La categoría, o null para todo el catálogo
+	 * @param minima    La calificación mínima
+	 * @param maxima    La calificación máxima
+	 * @param desde     Cantidad de libros del rango que se saltan
+	 * @param cantidad  Cantidad máxima de libros
+	 * @return Los libros, de la mejor calificación a la peor y en el orden del
+	 *         catálogo si hay empate
+	 */
+	ArrayList<Libro> entre(Categoria categoria, double minima, double maxima, int desde, int cantidad) {
+		ListaOrdenada libros = lista(categoria);
+		int inicio = libros.primeroConMaximo(maxima);
+		int fin = Math.max(inicio, libros.primeroDebajoDe(minima));
+		int desdeInicio = (int) Math.min((long) inicio + desde, fin);
+		return libros.copiar(desdeInicio, (int) Math.min((long) desdeInicio + cantidad, fin));
+	}
+
+	/**
+	 * Cuenta los libros cuya calificación está en el rango indicado, incluyendo
+	 * los extremos
+	 *
+	 * @param categoria La categoría, o null para todo el catálogo
+	 * @param minima    La calificación mínima
+	 * @param maxima    La calificación máxima
+	 * @return La cantidad de libros
+	 */
+	int contarEntre(Categoria categoria, double minima, double maxima) {
+		ListaOrdenada libros = lista(categoria);
+		return Math.max(0, libros.primeroDebajoDe(minima) - libros.primeroConMaximo(maxima));
+	}
+
+	/**
+	 * Calcula un percentil de las calificaciones: la menor calificación tal que al
+	 * menos ese porcentaje de los libros tiene una calificación menor o igual
+	 *
+	 * @param categoria  La categoría, o null para todo el catálogo
+	 * @param percentil  El percentil, entre 0 y 100
+	 * @return La calificación, o NaN si no hay libros
+	 */
+	double percentil(Categoria categoria, double percentil) {
+		ListaOrdenada libros = lista(categoria);
+		if (libros.tamanio == 0) {
+			return Double.NaN;
+		}
+		// Puesto del percentil contando desde la peor calificación
+		int puesto = Math.max(0, (int) Math.ceil(percentil / 100 * libros.tamanio) - 1);
+		return libros.calificaciones[libros.tamanio - 1 - Math.min(puesto, libros.tamanio - 1)];
+	}
+
+	/**
+	 * Retorna la lista de una categoría, o la de todo el catálogo si la categoría
+	 * es null. Construye el índice si aún no existe.
+	 */
+	private ListaOrdenada lista(Categoria categoria) {
+		preparar();
+		if (categoria == null) {
+			return global;
+		}
+		int id = categoria.darId();
+		if (id < 0 || id >= porCategoria.size()) {
+			return VACIA;
+		}
+		return porCategoria.get(id);
+	}
+
+	/**
+	 * Retorna la lista de una categoría, creándola si la categoría es nueva
+	 */
+	private ListaOrdenada listaDe(Categoria categoria) {
+		int id = categoria.darId();
+		while (porCategoria.size() <= id) {
+			porCategoria.add(new ListaOrdenada(new Libro[0]));
+		}
+		return porCategoria.get(id);
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * Libros en el orden del índice. Las calificaciones se guardan aparte en un
+	 * arreglo de double para buscar en ellas sin tocar los libros.
+	 */
+	private static final class ListaOrdenada {
+		private Libro[] libros;
+		private double[] calificaciones;
+		private int tamanio;
+
+		/**
+		 * @param ordenados Los libros, ya en el orden del índice. El arreglo pasa a
+		 *                  ser de la lista.
+		 */
+		ListaOrdenada(Libro[] ordenados) {
+			libros = ordenados;
+			tamanio = ordenados.length;
+			calificaciones = new double[Math.max(tamanio, 4)];
+			for (int i = 0; i < tamanio; i++) {
+				calificaciones[i] = ordenados[i].darCalificacion();
+			}
+		}
+
+		/**
+		 * Agrega un libro que va después de todos los que ya están
+		 */
+		void agregarAlFinal(Libro libro) {
+			asegurarEspacio();
+			libros[tamanio] = libro;
+			calificaciones[tamanio] = libro.darCalificacion();
+			tamanio++;
+		}
+
+		/**
+		 * Mezcla libros nuevos con los de la lista. La mezcla se hace desde el final
+		 * hacia el inicio, en el mismo arreglo, así que cada libro se mueve una sola
+		 * vez.
+		 *
+		 * @param nuevos   Los libros nuevos, ya en el orden del índice
+		 * @param cantidad Cantidad de libros nuevos
+		 */
+		void mezclar(Libro[] nuevos, int cantidad) {
+			int total = tamanio + cantidad;
+			if (total > libros.length) {
+				libros = Arrays.copyOf(libros, Math.max(total, libros.length * 2));
+			}
+			if (total > calificaciones.length) {
+				calificaciones = Arrays.copyOf(calificaciones, Math.max(total, calificaciones.length * 2));
+			}
+			int i = tamanio - 1;
+			int j = cantidad - 1;
+			for (int k = total - 1; j >= 0; k--) {
+				if (i >= 0 && ORDEN.compare(libros[i], nuevos[j]) > 0) {
+					libros[k] = libros[i];
+					calificaciones[k] = calificaciones[i];
+					i--;
+				} else {
+					libros[k] = nuevos[j];
+					calificaciones[k] = nuevos[j].darCalificacion();
+					j--;
+				}
+			}
+			tamanio = total;
+		}
+
+		/**
+		 * Quita los libros indicados. Cada libro se busca con búsqueda binaria y los
+		 * que quedan se corren una sola vez, desde el primer libro quitado, así que
+		 * no se recorre la lista completa. Los libros que no están se ignoran.
+		 */
+		void quitar(Set<Libro> aBorrar) {
+			int[] indices = new int[aBorrar.size()];
+			int cantidad = 0;
+			for (Libro l : aBorrar) {
+				int i = Arrays.binarySearch(libros, 0, tamanio, l, ORDEN);
+				if (i >= 0 && libros[i] == l) {
+					indices[cantidad++] = i;
+				}
+			}
+			if (cantidad == 0) {
+				return;
+			}
+			Arrays.sort(indices, 0, cantidad);
+			int destino = indices[0];
+			for (int k = 0; k < cantidad; k++) {
+				int desde = indices[k] + 1;
+				int hasta = k + 1 < cantidad ? indices[k + 1] : tamanio;
+				System.arraycopy(libros, desde, libros, destino, hasta - desde);
+				System.arraycopy(calificaciones, desde, calificaciones, destino, hasta - desde);
+				destino += hasta - desde;
+			}
+			Arrays.fill(libros, destino, tamanio, null);
+			tamanio = destino;
+		}
+
+		/**
+		 * Retorna una copia de los primeros libros de la lista
+		 */
+		ArrayList<Libro> primeros(int cantidad) {
+			return copiar(0, Math.min(cantidad, tamanio));
+		}
+
+		/**
+		 * Retorna una copia de los libros entre las posiciones indicadas, sin incluir
+		 * la final
+		 */
+		ArrayList<Libro> copiar(int inicio, int fin) {
+			ArrayList<Libro> resultado = new ArrayList<Libro>(fin - inicio);
+			for (int i = inicio; i < fin; i++) {
+				resultado.add(libros[i]);
+			}
+			return resultado;
+		}
+
+		/**
+		 * Busca con búsqueda binaria la posición del primer libro cuya calificación
+		 * es menor o igual al máximo
+		 */
+		int primeroConMaximo(double maximo) {
+			int bajo = 0;
+			int alto = tamanio;
+			while (bajo < alto) {
+				int medio = (bajo + alto) >>> 1;
+				if (Double.compare(calificaciones[medio], maximo) > 0) {
+					bajo = medio + 1;
+				} else {
+					alto = medio;
+				}
+			}
+			return bajo;
+		}
+
+		/**
+		 * Busca con búsqueda binaria la posición del primer libro cuya calificación
+		 * es menor que el mínimo
+		 */
+		int primeroDebajoDe(double minimo) {
+			int bajo = 0;
+			int alto = tamanio;
+			while (bajo < alto) {
+				int medio = (bajo + alto) >>> 1;
+				if (Double.compare(calificaciones[medio], minimo) >= 0) {
+					bajo = medio + 1;
+				} else {
+					alto = medio;
+				}
+			}
+			return bajo;
+		}
+
+		private void asegurarEspacio() {
+			if (tamanio == libros.length) {
+				libros = Arrays.copyOf(libros, Math.max(4, tamanio * 2));
+			}
+			if (tamanio == calificaciones.length) {
+				calificaciones = Arrays.copyOf(calificaciones, Math.max(4, tamanio * 2));
+			}
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package uniandes.dpoo.taller1.modelo;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * Índice de las categorías en las que tiene libros cada autor, a partir del
+ * nombre exacto del autor.
+ *
+ * Las categorías de cada autor se guardan como un BitSet indexado por el
+ * identificador de la categoría, que no cambia si se le cambia el nombre. El
+ * índice lleva además la cuenta de cuántos autores tienen libros en más de una
+ * categoría, para responder sin recorrer nada si hay alguno.
+ */
+class IndiceCategoriasAutor {
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Las categorías de cada autor. Solo están los autores que tienen libros.
+	 */
+	private HashMap<String, BitSet> categoriasPorAutor;
+
+	/**
+	 * Cantidad de autores que tienen libros en más de una categoría
+	 */
+	private int autoresEnVariasCategorias;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye un índice vacío
+	 */
+	IndiceCategoriasAutor() {
+		categoriasPorAutor = new HashMap<String, BitSet>();
+	}
+
+	// ************************************************************************
+	// Otros métodos
+	// ************************************************************************
+
+	/**
+	 * Registra la categoría de un libro en las categorías de su autor
+	 *
+	 * @param libro El libro que se agregó a la librería
+	 */
+	void agregar(Libro libro) {
+		BitSet categorias = categoriasPorAutor.get(libro.darAutor());
+		if (categorias == null) {
+			categorias = new BitSet();
+			categoriasPorAutor.put(libro.darAutor(), categorias);
+		}
+		int id = libro.darCategoria().darId();
+		if (!categorias.get(id)) {
+			if (categorias.cardinality() == 1) {
+				autoresEnVariasCategorias++;
+			}
+			categorias.set(id);
+		}
+	}
+
+	/**
+	 * Vuelve a calcular las categorías de un autor a partir de los libros que le
+	 * quedan, después de quitarle libros
+	 *
+	 * @param autor        El nombre exacto del autor
+	 * @param librosAutor  Los libros que le quedan al autor, o null si no le
+	 *                     queda ninguno
+	 */
+	void recalcular(String autor, Collection<Libro> librosAutor) {
+		BitSet anteriores = categoriasPorAutor.remove(autor);
+		if (anteriores != null && anteriores.cardinality() > 1) {
+			autoresEnVariasCategorias--;
+		}
+		if (librosAutor != null) {
+			for (Libro libro : librosAutor) {
+				agregar(libro);
+			}
+		}
+	}
+
+	/**
+	 * Retorna las categorías en las que el autor tiene libros
+	 *
+	 * @param autor El nombre exacto del autor
+	 * @return Los identificadores de las categorías, o null si el autor no tiene
+	 *         libros. El BitSet es del índice y no se debe modificar.
+	 */
+	BitSet darCategorias(String autor) {
+		return categoriasPorAutor.get(autor);
+	}
+
+	/**
+	 * Indica si hay algún autor con libros en más de una categoría
+	 *
+	 * @return true si hay al menos uno
+	 */
+	boolean hayAutorEnVariasCategorias() {
+		return autoresEnVariasCategorias > 0;
+	}
+}
@@ -0,0 +1,144 @@
+package uniandes.dpoo.taller1.modelo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+
+/**
+ * Índice de los libros del catálogo a partir de su título.
+ * 
+ * El índice exacto siempre existe. Los índices para los demás modos de búsqueda
+ * se construyen la primera vez que se usan y desde ese momento se mantienen
+ * actualizados igual que el exacto.
+ * 
+ * Para cada título se guardan los libros en el mismo orden en el que están en
+ * el catálogo.
+ */
+class IndiceTitulos {
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Para cada modo de búsqueda, el mapa de la llave del título a los libros que
+	 * la tienen
+	 */
+	private EnumMap<ModoBusquedaTitulo, HashMap<String, ArrayList<Libro>>> indices;
+
+	/**
+	 * Los libros indexados, en el orden del catálogo. Se usan para construir los
+	 * índices de los demás modos.
+	 */
+	private Collection<Libro> catalogo;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye el índice exacto para los libros del catálogo
+	 * 
+	 * @param catalogo Los libros del catálogo, en orden. El índice guarda la
+	 *                 referencia para construir después los otros modos.
+	 */
+	IndiceTitulos(Collection<Libro> catalogo) {
+		this.catalogo = catalogo;
+		this.indices = new EnumMap<ModoBusquedaTitulo, HashMap<String, ArrayList<Libro>>>(ModoBusquedaTitulo.class);
+		indices.put(ModoBusquedaTitulo.EXACTO, construir(ModoBusquedaTitulo.EXACTO));
+	}
+
+	// ************************************************************************
+	// Otros métodos
+	// ************************************************************************
+
+	/**
+	 * Busca los libros que tienen el título indicado
+	 * 
+	 * @param titulo El título buscado
+	 * @param modo   La forma en la que se comparan los títulos
+	 * @return Los libros con ese título, en el orden del catálogo, o null si no
+	 *         hay ninguno. La lista es del índice y no se debe modificar.
+	 */
+	ArrayList<Libro> buscar(String titulo, ModoBusquedaTitulo modo) {
+		preparar(modo);
+		return indices.get(modo).get(modo.llave(titulo));
+	}
+
+	/**
+	 * Indica si ya se construyó el índice de un modo
+	 * 
+	 * @param modo La forma en la que se comparan los títulos
+	 * @return true si el índice ya existe
+	 */
+	boolean estaConstruido(ModoBusquedaTitulo modo) {
+		return indices.containsKey(modo);
+	}
+
+	/**
+	 * Construye el índice de un modo si aún no existe
+	 * 
+	 * @param modo La forma en la que se comparan los títulos
+	 */
+	void preparar(ModoBusquedaTitulo modo) {
+		if (!indices.containsKey(modo)) {
+			indices.put(modo, construir(modo));
+		}
+	}
+
+	/**
+	 * Agrega un libro al final de los libros con su título
+	 * 
+	 * @param libro El libro nuevo
+	 */
+	void agregar(Libro libro) {
+		for (var entrada : indices.entrySet()) {
+			agregar(entrada.getValue(), entrada.getKey(), libro);
+		}
+	}
+
+	/**
+	 * Quita del índice los libros indicados
+	 * 
+	 * @param libros Los libros que se van a quitar
+	 */
+	void quitar(Collection<Libro> libros) {
+		for (var entrada : indices.entrySet()) {
+			HashMap<String, ArrayList<Libro>> indice = entrada.getValue();
+			for (Libro libro : libros) {
+				String llave = entrada.getKey().llave(libro.darTitulo());
+				ArrayList<Libro> conTitulo = indice.get(llave);
+				if (conTitulo != null) {
+					conTitulo.remove(libro);
+					if (conTitulo.isEmpty()) {
+						indice.remove(llave);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Construye el índice de un modo a partir de los libros del catálogo
+	 * 
+	 * @param modo El modo de búsqueda
+	 * @return El mapa de llaves a libros
+	 */
+	private HashMap<String, ArrayList<Libro>> construir(ModoBusquedaTitulo modo) {
+		HashMap<String, ArrayList<Libro>> indice = new HashMap<String, ArrayList<Libro>>();
+		for (Libro libro : catalogo) {
+			agregar(indice, modo, libro);
+		}
+		return indice;
+	}
+
+	private static void agregar(HashMap<String, ArrayList<Libro>> indice, ModoBusquedaTitulo modo, Libro libro) {
+		String llave = modo.llave(libro.darTitulo());
+		ArrayList<Libro> conTitulo = indice.get(llave);
+		if (conTitulo == null) {
+			conTitulo = new ArrayList<Libro>(1);
+			indice.put(llave, conTitulo);
+		}
+		conTitulo.add(libro);
+	}
+}
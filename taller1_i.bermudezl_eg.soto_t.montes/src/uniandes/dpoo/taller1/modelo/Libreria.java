@@ -1,13 +1,33 @@
 package uniandes.dpoo.taller1.modelo;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Set;
 import java.io.BufferedReader;
-import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
+import java.io.InputStreamReader;
+import uniandes.dpoo.taller1.exceptions.LoadCancelledException;
 import uniandes.dpoo.taller1.exceptions.SomeAuthorsNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import uniandes.dpoo.taller1.modelo.MetricasLibreria.Operacion;
 
 /**
  * Esta clase agrupa toda la información de una librería: las categorías que se
@@ -15,24 +35,155 @@ import java.util.ArrayList;
  * 
  * Adicionalmente esta clase es capaz de calcular y hacer búsquedas sobre las
  * categorías y sobre el catálogo de libros.
+ * 
+ * Una librería ya construida se puede usar desde varios hilos a la vez. Las
+ * consultas hacen una lectura optimista con un StampedLock: no bloquean a las
+ * otras consultas y, si una modificación ocurrió mientras tanto, se repiten con
+ * el candado de lectura. Las modificaciones (cambiar el nombre de una categoría
+ * y borrar libros) toman el candado de escritura, así que ninguna consulta ve
+ * una modificación a medias. Los objetos Categoria y Libro que se retornan son
+ * los de la librería, así que pueden cambiar después de retornados.
+ * 
+ * Si se carga con ModoCarga.COLUMNAR, el catálogo se guarda por columnas en un
+ * CatalogoColumnar y la librería es de solo lectura: los métodos que la
+ * cambian, el registro de cambios y las copias binarias lanzan
+ * UnsupportedOperationException. Las consultas retornan los mismos libros en el
+ * mismo orden que con los otros modos, pero cada consulta crea objetos Libro
+ * nuevos, y las listas de libros de las categorías están vacías.
  */
 public class Libreria { 
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Carpeta en la que se encuentran los archivos de las portadas. Por defecto
+	 * es "./data/", y se puede cambiar al iniciar la aplicación con
+	 * -Dlibreria.datos=carpeta, por ejemplo para las pruebas de rendimiento.
+	 */
+	static final String CARPETA_DATOS = System.getProperty("libreria.datos", "./data/");
+
+	/**
+	 * Cada cuántas filas se informa el avance y se revisa si se canceló la carga
+	 */
+	static final int FILAS_POR_AVISO = 4096;
+
+	/**
+	 * Cantidad máxima de libros que quitarOrdenados quita uno por uno. Con más
+	 * libros, la lista se recorre una vez desde el primero que se quita.
+	 */
+	private static final int TRAMOS_QUITAR = 32;
+
 	// ************************************************************************
 	// Atributos
 	// ************************************************************************
 
 	/**
-	 * El arreglo con las categorías que hay en la librería
+	 * El registro con las categorías que hay en la librería, en orden y por nombre
 	 */
+	private RegistroCategorias categorias;
 
-	private Categoria[] categorias;
 	/**
 	 * Una lista con los libros disponibles en la librería
 	 */
 	private ArrayList<Libro> catalogo;
+
+	/**
+	 * El catálogo guardado por columnas si la librería se cargó con
+	 * ModoCarga.COLUMNAR, o null. Si no es null, catalogo y los índices son null.
+	 */
+	private CatalogoColumnar columnas;
+
+	/**
+	 * Índice de los libros del catálogo por título
+	 */
+	private IndiceTitulos indiceTitulos;
+
+	/**
+	 * Índice de trigramas sobre los nombres de los autores
+	 */
+	private IndiceAutores indiceAutores;
+
+	/**
+	 * Índice de los libros ordenados por calificación, del catálogo y de cada
+	 * categoría
+	 */
+	private IndiceCalificaciones indiceCalificaciones;
+
+	/**
+	 * Los libros de cada autor, a partir del nombre exacto del autor, en el orden
+	 * del catálogo
+	 */
+	private HashMap<String, ArrayList<Libro>> librosPorAutor;
+
+	/**
+	 * Las categorías en las que tiene libros cada autor, a partir del nombre
+	 * exacto del autor
+	 */
+	private IndiceCategoriasAutor indiceCategoriasAutor;
+
+	/**
+	 * Estadísticas del catálogo y clasificaciones de las categorías
+	 */
+	private EstadisticasCatalogo estadisticas;
 	
 	private int categoriasOnCsv;
 
+	/**
+	 * Cantidad de filas por segundo que se procesaron al cargar el catálogo
+	 */
+	private double filasPorSegundo;
+
+	/**
+	 * Cantidad de filas del archivo de libros que no se pudieron interpretar y
+	 * que se saltaron al cargarlo
+	 */
+	private int filasDescartadas;
+
+	/**
+	 * La posición que va a tener el próximo libro que se agregue al catálogo. Las
+	 * posiciones de los libros que se borran no se vuelven a usar.
+	 */
+	private int siguientePosicion;
+
+	/**
+	 * Permite saber si existen los archivos de las portadas durante la carga
+	 */
+	private ResolutorPortadas portadas;
+
+	/**
+	 * Cómo estaban los archivos CSV de categorías y de libros cuando se cargaron,
+	 * o null si no se sabe o si la librería cambió después. Se guardan en la
+	 * copia binaria para saber si sigue al día.
+	 */
+	private SnapshotLibreria.Firma firmaCategorias;
+
+	private SnapshotLibreria.Firma firmaLibros;
+
+	/**
+	 * Candado que protege el estado de la librería una vez construida
+	 */
+	private final StampedLock candado = new StampedLock();
+
+	/**
+	 * El registro en disco de los cambios, o null si los cambios no se guardan
+	 */
+	private RegistroCambios registro;
+
+	/**
+	 * Las categorías a las que se les cambió el nombre, a partir del primer nombre
+	 * que tenían. Las filas que llegan de los archivos con ese nombre van a la
+	 * categoría renombrada, igual que si se volviera a cargar la librería y a
+	 * aplicarle el registro de cambios.
+	 */
+	private HashMap<String, Categoria> categoriasRenombradas = new HashMap<String, Categoria>();
+
+	/**
+	 * Los autores cuyos libros se borraron. Las filas de estos autores que llegan
+	 * de los archivos no se agregan.
+	 */
+	private HashSet<String> autoresBorrados = new HashSet<String>();
+
 	// ************************************************************************
 	// Constructores
 	// ************************************************************************
@@ -49,41 +200,292 @@ public class Libreria {
 	 *                     archivo
 	 */
 	public Libreria(String nombreArchivoCategorias, String nombreArchivoLibros) throws IOException {
+		this(nombreArchivoCategorias, nombreArchivoLibros, ModoCarga.SECUENCIAL);
+	}
+
+	/**
+	 * Construye una nueva librería a partir de la información de los parámetros y
+	 * de la información contenida en los archivos, leyendo el archivo de libros de
+	 * la forma indicada.
+	 * 
+	 * Sin importar el modo de carga, los libros y las categorías quedan en el mismo
+	 * orden.
+	 * 
+	 * @param nombreArchivoCategorias El nombre del archivo CSV que tiene la
+	 *                                información sobre las categorías de libros
+	 * @param nombreArchivoLibros     El nombre del archivo CSV que tiene la
+	 *                                información sobre los libros
+	 * @param modoCarga               La forma en la que se lee el archivo de
+	 *                                libros
+	 * @throws IOException Lanza esta excepción si hay algún problema leyendo un
+	 *                     archivo
+	 */
+	public Libreria(String nombreArchivoCategorias, String nombreArchivoLibros, ModoCarga modoCarga)
+			throws IOException {
+		this(nombreArchivoCategorias, nombreArchivoLibros, modoCarga, null, false);
+	}
+
+	/**
+	 * Construye una nueva librería a partir de la información de los parámetros y
+	 * de la información contenida en los archivos, informando el avance de la
+	 * lectura del archivo de libros.
+	 * 
+	 * Si se piden saltar las filas inválidas, las filas del archivo de libros que
+	 * no se pueden interpretar se saltan y, si hay un progreso, se le informan. Si
+	 * no, la primera fila inválida detiene la carga.
+	 * 
+	 * @param nombreArchivoCategorias El nombre del archivo CSV que tiene la
+	 *                                información sobre las categorías de libros
+	 * @param nombreArchivoLibros     El nombre del archivo CSV que tiene la
+	 *                                información sobre los libros
+	 * @param modoCarga               La forma en la que se lee el archivo de
+	 *                                libros
+	 * @param progreso                Recibe los avisos de la carga, o null
+	 * @param saltarFilasInvalidas    Indica si las filas inválidas se saltan en
+	 *                                lugar de detener la carga
+	 * @throws IOException Lanza esta excepción si hay algún problema leyendo un
+	 *                     archivo. Si se cancela la carga, lanza una
+	 *                     LoadCancelledException.
+	 */
+	public Libreria(String nombreArchivoCategorias, String nombreArchivoLibros, ModoCarga modoCarga,
+			ProgresoCarga progreso, boolean saltarFilasInvalidas) throws IOException {
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.CARGAR_CATALOGO);
+		// Se revisan antes de leerlos, así un cambio durante la carga deja la copia vieja
+		this.firmaCategorias = SnapshotLibreria.Firma.de(Paths.get(nombreArchivoCategorias));
+		this.firmaLibros = SnapshotLibreria.Firma.de(Paths.get(nombreArchivoLibros));
+		EventoFaseCarga fase = EventoFaseCarga.iniciar(EventoFaseCarga.CATEGORIAS, nombreArchivoCategorias);
 		this.categorias = cargarCategorias(nombreArchivoCategorias);
-		this.catalogo = cargarCatalogo(nombreArchivoLibros);
+		this.categoriasOnCsv = categorias.tamanio();
+		fase.terminar(categoriasOnCsv);
+		fase = EventoFaseCarga.iniciar(EventoFaseCarga.LIBROS, nombreArchivoLibros);
+		long inicio = System.nanoTime();
+		this.portadas = new ResolutorPortadas(CARPETA_DATOS);
+		int cantidad;
+		if (modoCarga == ModoCarga.COLUMNAR) {
+			this.columnas = new CatalogoColumnar(categorias, nombreArchivoLibros, this::existeArchivo, progreso,
+					saltarFilasInvalidas);
+			this.filasDescartadas = columnas.darFilasDescartadas();
+			cantidad = columnas.contarLibros();
+		} else {
+			if (modoCarga == ModoCarga.PARALELO) {
+				this.catalogo = cargarCatalogoParalelo(nombreArchivoLibros, progreso, saltarFilasInvalidas);
+			} else {
+				this.catalogo = cargarCatalogo(nombreArchivoLibros, progreso, saltarFilasInvalidas);
+			}
+			cantidad = catalogo.size();
+		}
+		long nanos = Math.max(1, System.nanoTime() - inicio);
+		this.filasPorSegundo = cantidad * 1e9 / nanos;
+		fase.terminar(cantidad);
+		revisarCancelacion(progreso, nombreArchivoLibros);
+		if (columnas == null) {
+			indexarCatalogo();
+		} else {
+			MetricasLibreria.catalogoCambiado(cantidad);
+		}
+		medicion.terminar(cantidad);
 	}
 	
+	/**
+	 * Construye una librería con categorías y libros que ya están creados, por
+	 * ejemplo a partir de una copia binaria
+	 * 
+	 * @param categorias      Las categorías de la librería
+	 * @param categoriasOnCsv Cuántas de las categorías venían en el archivo de
+	 *                        categorías
+	 * @param catalogo        Los libros de la librería, que ya deben estar en
+	 *                        las listas de sus categorías
+	 * @param firmaCategorias Cómo estaba el archivo de categorías del que salió
+	 *                        la librería, o null
+	 * @param firmaLibros     Cómo estaba el archivo de libros del que salió la
+	 *                        librería, o null
+	 * @param filasDescartadas Cuántas filas del archivo de libros se saltaron
+	 *                         porque no se pudieron interpretar
+	 */
+	Libreria(RegistroCategorias categorias, int categoriasOnCsv, ArrayList<Libro> catalogo,
+			SnapshotLibreria.Firma firmaCategorias, SnapshotLibreria.Firma firmaLibros, int filasDescartadas) {
+		this.categorias = categorias;
+		this.categoriasOnCsv = categoriasOnCsv;
+		this.catalogo = catalogo;
+		this.firmaCategorias = firmaCategorias;
+		this.firmaLibros = firmaLibros;
+		this.filasDescartadas = filasDescartadas;
+		indexarCatalogo();
+	}
+
+	/**
+	 * Abre una librería usando una copia binaria de la última carga si está al
+	 * día.
+	 * 
+	 * Si la copia existe y es más reciente que los dos archivos CSV, la librería
+	 * se construye a partir de la copia, sin leer los CSV ni revisar si existen
+	 * las portadas. Si no existe, si alguno de los CSV es más reciente o si la
+	 * copia no se puede leer, la librería se carga de los CSV y se escribe una
+	 * copia nueva. Si la copia nueva no se puede escribir, la librería se retorna
+	 * de todas formas.
+	 * 
+	 * @param nombreArchivoCategorias El nombre del archivo CSV que tiene la
+	 *                                información sobre las categorías de libros
+	 * @param nombreArchivoLibros     El nombre del archivo CSV que tiene la
+	 *                                información sobre los libros
+	 * @param nombreArchivoSnapshot   El nombre del archivo con la copia binaria
+	 * @param modoCarga               La forma en la que se lee el archivo de
+	 *                                libros si hay que leer los CSV
+	 * @return La librería
+	 * @throws IOException Lanza esta excepción si hay algún problema leyendo los
+	 *                     archivos CSV
+	 */
+	public static Libreria abrir(String nombreArchivoCategorias, String nombreArchivoLibros,
+			String nombreArchivoSnapshot, ModoCarga modoCarga) throws IOException {
+		return abrir(nombreArchivoCategorias, nombreArchivoLibros, nombreArchivoSnapshot, modoCarga, null, false);
+	}
+
+	/**
+	 * Abre una librería igual que abrir(categorías, libros, snapshot, modo),
+	 * informando el avance de la lectura de la copia o del archivo de libros.
+	 * 
+	 * Las filas inválidas del archivo de libros se tratan igual que en el
+	 * constructor. Una copia de una carga en la que se saltaron filas solo se usa
+	 * si también se piden saltar, así que abrir sin saltarlas vuelve a leer el CSV
+	 * y falla en la primera fila inválida.
+	 * 
+	 * Con ModoCarga.COLUMNAR no se usa ni se escribe la copia, porque la copia
+	 * guarda los libros como objetos: la librería siempre se carga de los CSV.
+	 * 
+	 * @param nombreArchivoCategorias El nombre del archivo CSV que tiene la
+	 *                                información sobre las categorías de libros
+	 * @param nombreArchivoLibros     El nombre del archivo CSV que tiene la
+	 *                                información sobre los libros
+	 * @param nombreArchivoSnapshot   El nombre del archivo con la copia binaria
+	 * @param modoCarga               La forma en la que se lee el archivo de
+	 *                                libros si hay que leer los CSV
+	 * @param progreso                Recibe los avisos de la carga, o null
+	 * @param saltarFilasInvalidas    Indica si las filas inválidas se saltan en
+	 *                                lugar de detener la carga
+	 * @return La librería
+	 * @throws IOException Lanza esta excepción si hay algún problema leyendo los
+	 *                     archivos CSV. Si se cancela la carga, lanza una
+	 *                     LoadCancelledException.
+	 */
+	public static Libreria abrir(String nombreArchivoCategorias, String nombreArchivoLibros,
+			String nombreArchivoSnapshot, ModoCarga modoCarga, ProgresoCarga progreso, boolean saltarFilasInvalidas)
+			throws IOException {
+		if (modoCarga == ModoCarga.COLUMNAR) {
+			return new Libreria(nombreArchivoCategorias, nombreArchivoLibros, modoCarga, progreso,
+					saltarFilasInvalidas);
+		}
+		Path snapshot = Paths.get(nombreArchivoSnapshot);
+		if (SnapshotLibreria.alDia(snapshot, Paths.get(nombreArchivoCategorias), Paths.get(nombreArchivoLibros),
+				saltarFilasInvalidas)) {
+			try {
+				EventoOperacion medicion = EventoOperacion.iniciar(Operacion.CARGAR_SNAPSHOT);
+				EventoFaseCarga fase = EventoFaseCarga.iniciar(EventoFaseCarga.COPIA, nombreArchivoSnapshot);
+				long inicio = System.nanoTime();
+				Libreria libreria = SnapshotLibreria.leer(snapshot, progreso);
+				long nanos = Math.max(1, System.nanoTime() - inicio);
+				libreria.filasPorSegundo = libreria.catalogo.size() * 1e9 / nanos;
+				fase.terminar(libreria.catalogo.size());
+				medicion.terminar(libreria.catalogo.size());
+				return libreria;
+			} catch (LoadCancelledException e) {
+				throw e;
+			} catch (IOException e) {
+				// La copia no sirve: se cargan los CSV y se reemplaza la copia
+			}
+		}
+
+		Libreria libreria = new Libreria(nombreArchivoCategorias, nombreArchivoLibros, modoCarga, progreso,
+				saltarFilasInvalidas);
+		try {
+			libreria.guardarSnapshot(nombreArchivoSnapshot);
+		} catch (IOException e) {
+			// No poder escribir la copia no impide usar la librería
+		}
+		return libreria;
+	}
+
+	/**
+	 * Guarda una copia binaria del estado actual de la librería, que luego se
+	 * puede abrir con el método abrir.
+	 * 
+	 * La copia guarda cómo estaban los archivos CSV cuando se cargó la librería, y
+	 * abrir solo la usa si los CSV siguen igual. Si la librería cambió después de
+	 * cargarla, la copia se escribe pero abrir no la usa.
+	 * 
+	 * @param nombreArchivoSnapshot El nombre del archivo donde se guarda la copia
+	 * @throws IOException Lanza esta excepción si hay algún problema escribiendo
+	 *                     el archivo
+	 * @throws UnsupportedOperationException Si la librería es de solo lectura
+	 */
+	public void guardarSnapshot(String nombreArchivoSnapshot) throws IOException {
+		rechazarSiEsSoloLectura();
+		long sello = candado.readLock();
+		try {
+			SnapshotLibreria.escribir(Paths.get(nombreArchivoSnapshot), firmaCategorias, firmaLibros, categorias,
+					categoriasOnCsv, catalogo, filasDescartadas);
+		} finally {
+			candado.unlockRead(sello);
+		}
+	}
+
 	//se encarga de casi todo el rq2
 	
 	public void cambiarNombreCategoria(String nombreNuevaCategoria,String nombreCategoriaCambiar ) throws Exception {
+		cambiarNombreCategoria(nombreNuevaCategoria, nombreCategoriaCambiar, true);
+	}
+
+	/**
+	 * Le cambia el nombre a una categoría. Si hay un registro de cambios, el
+	 * cambio se agrega a él.
+	 * 
+	 * @param nombreNuevaCategoria   El nombre nuevo
+	 * @param nombreCategoriaCambiar El nombre actual de la categoría
+	 * @param esperarRegistro        Indica si se espera a que el cambio esté en el
+	 *                               disco. Si no, se puede esperar después con
+	 *                               esperarRegistroCambios.
+	 * @throws Exception Si algún nombre está vacío, si no existe la categoría o si
+	 *                   ya hay una con el nombre nuevo. Si se espera al registro y
+	 *                   el cambio no se pudo guardar, lanza una IOException; la
+	 *                   categoría sí cambia de nombre en la librería. Si la
+	 *                   librería es de solo lectura, lanza una
+	 *                   UnsupportedOperationException.
+	 */
+	public void cambiarNombreCategoria(String nombreNuevaCategoria, String nombreCategoriaCambiar,
+			boolean esperarRegistro) throws Exception {
+		rechazarSiEsSoloLectura();
 		if (nombreNuevaCategoria.equals("")||nombreCategoriaCambiar.equals("")) {
 			throw new Exception("Hay inputs vacios");
 		}
-		if (contieneCategoria(nombreCategoriaCambiar)) {
-			if (!contieneCategoria(nombreNuevaCategoria)) {		
-				for (Categoria categoria:categorias) {
-					if (categoria.getNombre().equals(nombreCategoriaCambiar))
-					{
-						categoria.cambiaarNombre(nombreNuevaCategoria);
-					}
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.CAMBIAR_NOMBRE_CATEGORIA);
+		RegistroCambios registroCambio;
+		long cambio = 0;
+		long sello = candado.writeLock();
+		try {
+			if (categorias.buscar(nombreCategoriaCambiar) != null) {
+				if (categorias.buscar(nombreNuevaCategoria) == null) {
+					renombrar(categorias.buscar(nombreCategoriaCambiar), nombreNuevaCategoria);
+				}
+				else {
+					throw new Exception("Ya hay una categoria con ese nombre");
 				}
 			}
 			else {
-				throw new Exception("Ya hay una categoria con ese nombre");
+				throw new Exception("No se encontro la categoria");
 			}
+			registroCambio = registro;
+			if (registroCambio != null) {
+				cambio = registroCambio.agregarRenombrarCategoria(nombreCategoriaCambiar, nombreNuevaCategoria);
+			}
+		} finally {
+			candado.unlockWrite(sello);
 		}
-		else {
-			throw new Exception("No se encontro la categoria");
+		if (registroCambio != null && esperarRegistro) {
+			registroCambio.esperar(cambio);
 		}
+		medicion.terminar(1);
 	}
 	public boolean contieneCategoria(String nombreCategoria) {
-		for (Categoria categoria:categorias) {
-			if (categoria.getNombre().equals(nombreCategoria))
-			{
-				return true;
-			}
-		}
-		return false;
+		return leer(() -> categorias.buscar(nombreCategoria) != null);
 	}
 
 	// ************************************************************************
@@ -96,59 +498,88 @@ public class Libreria {
 	 * @return categorias
 	 */
 	public Categoria[] darCategorias() {
-		return categorias;
+		Categoria[] arreglo = leer(categorias::arregloVigente);
+		if (arreglo != null) {
+			return arreglo;
+		}
+
+		// El arreglo no está al día y crearlo modifica el registro
+		long sello = candado.writeLock();
+		try {
+			return categorias.comoArreglo();
+		} finally {
+			candado.unlockWrite(sello);
+		}
 	}
 
 	/**
-	 * Retorna el catálogo completo de libros de la librería
+	 * Retorna una copia del catálogo completo de libros de la librería. La copia
+	 * no cambia si después se borran libros.
 	 * 
 	 * @return catalogo
 	 */
 	public ArrayList<Libro> darLibros() {
-		return catalogo;
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.DAR_LIBROS);
+		ArrayList<Libro> libros = columnas != null ? new ArrayList<Libro>(columnas.darLibros())
+				: leer(() -> new ArrayList<Libro>(catalogo));
+		medicion.terminar(libros.size());
+		return libros;
 	}
 
 	// ************************************************************************
 	// Otros métodos
 	// ************************************************************************
 
+	/**
+	 * Consulta si la librería es de solo lectura, porque se cargó con
+	 * ModoCarga.COLUMNAR
+	 * 
+	 * @return true si la librería no se puede cambiar
+	 */
+	public boolean esSoloLectura() {
+		return columnas != null;
+	}
+
+	/**
+	 * Lanza una excepción si la librería es de solo lectura. Los métodos que
+	 * cambian la librería lo invocan antes de hacer cualquier cosa.
+	 * 
+	 * @throws UnsupportedOperationException Si la librería es de solo lectura
+	 */
+	private void rechazarSiEsSoloLectura() {
+		if (columnas != null) {
+			throw new UnsupportedOperationException("La librería se cargó por columnas y es de solo lectura");
+		}
+	}
+
 	/**
 	 * Carga la información sobre las categorías disponibles a partir de un archivo
 	 * 
 	 * @param nombreArchivoCategorias El nombre del archivo CSV que contiene la
 	 *                                información de las categorías
-	 * @return Un arreglo con las categorías que se encontraron en el archivo
+	 * @return Un registro con las categorías que se encontraron en el archivo
 	 * @throws IOException Se lanza esta excepción si hay algún problema leyendo del
 	 *                     archivo
 	 */
-	private Categoria[] cargarCategorias(String nombreArchivoCategorias) throws IOException {
-		ArrayList<Categoria> listaCategorias = new ArrayList<Categoria>();
+	static RegistroCategorias cargarCategorias(String nombreArchivoCategorias) throws IOException {
+		RegistroCategorias registro = new RegistroCategorias();
 
 		BufferedReader br = new BufferedReader(new FileReader(nombreArchivoCategorias));
 		String linea = br.readLine(); // Ignorar la primera línea porque tiene los títulos
 
 		linea = br.readLine();
-		int ncategoriasOnCsv=0;
 		while (linea != null) {
-			ncategoriasOnCsv++;
 			String[] partes = linea.trim().split(",");
 			String nombreCat = partes[0];
 			boolean esFiccion = partes[1].equals("true");
 
-			// Crear una nueva categoría y agregarla a la lista
-			listaCategorias.add(new Categoria(nombreCat, esFiccion));
+			// Crear una nueva categoría y agregarla al registro
+			registro.agregar(new Categoria(nombreCat, esFiccion));
 			linea = br.readLine();
 		}
-		this.categoriasOnCsv=ncategoriasOnCsv;
 		br.close();
 
-		// Convertir la lista de categorías a un arreglo
-		Categoria[] arregloCategorias = new Categoria[listaCategorias.size()];
-		for (int i = 0; i < listaCategorias.size(); i++) {
-			arregloCategorias[i] = listaCategorias.get(i);
-		}
-
-		return arregloCategorias;
+		return registro;
 	}
 
 	/**
@@ -159,47 +590,178 @@ public class Libreria {
 	 * 
 	 * @param nombreArchivoLibros El nombre del archivo CSV que contiene la
 	 *                            información de los libros
+	 * @param progreso            Recibe los avisos de la carga, o null
+	 * @param saltarInvalidas     Indica si las filas inválidas se saltan en lugar
+	 *                            de detener la carga
 	 * @return Una lista con los libros que se cargaron a partir del archivo
 	 * @throws IOException Se lanza esta excepción si hay algún problema leyendo del
 	 *                     archivo
 	 */
-	private ArrayList<Libro> cargarCatalogo(String nombreArchivoLibros) throws IOException {
+	private ArrayList<Libro> cargarCatalogo(String nombreArchivoLibros, ProgresoCarga progreso,
+			boolean saltarInvalidas) throws IOException {
 		ArrayList<Libro> libros = new ArrayList<Libro>();
 
-		BufferedReader br = new BufferedReader(new FileReader(nombreArchivoLibros));
-		String linea = br.readLine(); // Ignorar la primera línea porque tiene los títulos:
-										// Titulo,Autor,Calificacion,Categoria,Portada,Ancho,Alto
+		FileInputStream entrada = new FileInputStream(nombreArchivoLibros);
+		// La posición del canal dice cuántos bytes ha leído el BufferedReader
+		FileChannel canal = entrada.getChannel();
+		long tamanio = canal.size();
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(entrada, Charset.defaultCharset()))) {
+			EventoBloqueCarga bloque = EventoBloqueCarga.iniciar(nombreArchivoLibros, 0);
+			long marca = bloque.marca();
+			String linea = br.readLine(); // Ignorar la primera línea porque tiene los títulos:
+											// Titulo,Autor,Calificacion,Categoria,Portada,Ancho,Alto
+			long numeroLinea = 1;
 
-		linea = br.readLine();
-		while (linea != null) {
-			String[] partes = linea.trim().split(",");
-			String elTitulo = partes[0];
-			String elAutor = partes[1];
-			double laCalificacion = Double.parseDouble(partes[2]);
-			String nombreCategoria = partes[3];
-			Categoria laCategoria = buscarCategoria(nombreCategoria);
-			String archivoPortada = partes[4];
-			int ancho = Integer.parseInt(partes[5]);
-			int alto = Integer.parseInt(partes[6]);
+			linea = br.readLine();
+			marca = bloque.sumarLectura(marca);
+			while (linea != null) {
+				numeroLinea++;
+				if (numeroLinea % FILAS_POR_AVISO == 0 && (progreso != null || bloque.medir())) {
+					long posicion = canal.position();
+					bloque.terminar(posicion);
+					bloque = EventoBloqueCarga.iniciar(nombreArchivoLibros, posicion);
+					marca = bloque.marca();
+					if (progreso != null) {
+						revisarCancelacion(progreso, nombreArchivoLibros);
+						progreso.avance(posicion, tamanio);
+					}
+				}
 
-			// Crear un nuevo libro
-			Libro nuevo = new Libro(elTitulo, elAutor, laCalificacion, laCategoria);
-			libros.add(nuevo);
+				FilaLibro fila = null;
+				try {
+					fila = FilaLibro.parsear(linea);
+				} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+					if (!saltarInvalidas) {
+						throw e;
+					}
+					if (progreso != null) {
+						progreso.filaDescartada(numeroLinea, linea, e);
+					}
+					filasDescartadas++;
+					bloque.descartadas++;
+				}
+				marca = bloque.sumarInterpretacion(marca);
+				if (fila != null) {
+					fila.existePortada = existeArchivo(fila.archivoPortada);
+					marca = bloque.sumarPortadas(marca);
+					libros.add(crearLibro(fila, libros.size()));
+					marca = bloque.sumarCreacion(marca);
+					bloque.filas++;
+				}
 
-			// Si existe el archivo de la portada, ponérselo al libro
-			if (existeArchivo(archivoPortada)) {
-				Imagen portada = new Imagen(archivoPortada, ancho, alto);
-				nuevo.cambiarPortada(portada);
+				linea = br.readLine();
+				marca = bloque.sumarLectura(marca);
 			}
-
-			linea = br.readLine();
+			bloque.terminar(tamanio);
+		}
+		if (progreso != null) {
+			progreso.avance(tamanio, tamanio);
 		}
 
-		br.close();
+		return libros;
+	}
 
+	/**
+	 * Carga la información sobre los libros disponibles en la librería usando
+	 * varios hilos. El resultado es el mismo que el de cargarCatalogo.
+	 * 
+	 * Se deben haber cargado antes las categorías e inicializado el atributo
+	 * 'categorias'.
+	 * 
+	 * @param nombreArchivoLibros El nombre del archivo CSV que contiene la
+	 *                            información de los libros
+	 * @param progreso            Recibe los avisos de la carga, o null
+	 * @param saltarInvalidas     Indica si las filas inválidas se saltan en lugar
+	 *                            de detener la carga
+	 * @return Una lista con los libros que se cargaron a partir del archivo
+	 * @throws IOException Se lanza esta excepción si hay algún problema leyendo del
+	 *                     archivo
+	 */
+	private ArrayList<Libro> cargarCatalogoParalelo(String nombreArchivoLibros, ProgresoCarga progreso,
+			boolean saltarInvalidas) throws IOException {
+		ArrayList<Libro> libros = new ArrayList<Libro>();
+		CargadorParalelo cargador = new CargadorParalelo(nombreArchivoLibros, this::existeArchivo);
+		// Las categorías y los libros se crean en este hilo, en el orden del archivo
+		cargador.cargar(fila -> libros.add(crearLibro(fila, libros.size())), progreso, saltarInvalidas);
+		filasDescartadas = cargador.darFilasDescartadas();
 		return libros;
 	}
 
+	/**
+	 * Termina la carga si quien la pidió la canceló
+	 * 
+	 * @param progreso Recibe los avisos de la carga, o null
+	 * @param archivo  El archivo que se está cargando
+	 * @throws LoadCancelledException Si la carga se canceló
+	 */
+	static void revisarCancelacion(ProgresoCarga progreso, Object archivo) throws LoadCancelledException {
+		if (progreso != null && progreso.cancelado()) {
+			throw new LoadCancelledException("Se canceló la carga de " + archivo);
+		}
+	}
+
+	/**
+	 * Crea el libro que corresponde a una fila del archivo de libros y le pone la
+	 * portada si el archivo de la portada existe.
+	 * 
+	 * @param fila     La fila leída del archivo
+	 * @param posicion La posición que va a tener el libro en el catálogo
+	 * @return El nuevo libro
+	 */
+	private Libro crearLibro(FilaLibro fila, int posicion) {
+		return crearLibro(fila, buscarCategoria(fila.nombreCategoria), posicion);
+	}
+
+	/**
+	 * Crea el libro que corresponde a una fila del archivo de libros en la
+	 * categoría indicada, sin importar la categoría que dice la fila
+	 * 
+	 * @param fila        La fila leída del archivo
+	 * @param laCategoria La categoría del libro
+	 * @param posicion    La posición que va a tener el libro en el catálogo
+	 * @return El nuevo libro
+	 */
+	private Libro crearLibro(FilaLibro fila, Categoria laCategoria, int posicion) {
+		// Crear un nuevo libro
+		Libro nuevo = new Libro(fila.titulo, fila.autor, fila.calificacion, laCategoria);
+		nuevo.cambiarPosicion(posicion);
+
+		// Si existe el archivo de la portada, ponérselo al libro
+		if (fila.existePortada) {
+			Imagen portada = new Imagen(fila.archivoPortada, fila.ancho, fila.alto);
+			nuevo.cambiarPortada(portada);
+		}
+		return nuevo;
+	}
+
+	/**
+	 * Construye los índices sobre el catálogo. Se debe invocar una vez que el
+	 * catálogo está cargado.
+	 */
+	private void indexarCatalogo() {
+		EventoFaseCarga fase = EventoFaseCarga.iniciar(EventoFaseCarga.INDICES, null);
+		indiceTitulos = new IndiceTitulos(catalogo);
+		indiceCalificaciones = new IndiceCalificaciones(catalogo);
+		librosPorAutor = new HashMap<String, ArrayList<Libro>>();
+		indiceCategoriasAutor = new IndiceCategoriasAutor();
+		for (var l : catalogo) {
+			librosPorAutor.computeIfAbsent(l.darAutor(), a -> new ArrayList<Libro>(1)).add(l);
+			indiceCategoriasAutor.agregar(l);
+		}
+		indiceAutores = new IndiceAutores();
+		for (var c : categorias) {
+			for (var l : c.darLibros()) {
+				indiceAutores.agregar(l);
+			}
+		}
+		estadisticas = new EstadisticasCatalogo(catalogo, categorias);
+		// Las categorías que se crearon durante la carga quedan en el arreglo de una vez
+		categorias.comoArreglo();
+		siguientePosicion = catalogo.isEmpty() ? 0 : catalogo.get(catalogo.size() - 1).darPosicion() + 1;
+		MetricasLibreria.catalogoCambiado(catalogo.size());
+		fase.terminar(catalogo.size());
+	}
+
 	/**
 	 * Busca una categoría a partir de su nombre
 	 * 
@@ -207,10 +769,9 @@ public class Libreria {
 	 * @return La categoría que tiene el nombre dado
 	 */
 	private Categoria buscarCategoria(String nombreCategoria) {
-		for (var c : categorias) {
-			if (c.darNombre().equals(nombreCategoria)) {
-				return c;
-			}
+		Categoria c = categorias.buscar(nombreCategoria);
+		if (c != null) {
+			return c;
 		}
 		Categoria catInexistente = crearCategoriaInexistente(nombreCategoria);
 		return catInexistente;
@@ -218,82 +779,500 @@ public class Libreria {
 
 	/**
 	 * Verifica si existe el archivo con el nombre indicado dentro de la carpeta
-	 * "data".
+	 * "data". La carpeta se revisa una sola vez al empezar la carga, así que esta
+	 * verificación no hace una llamada al sistema de archivos por cada libro.
 	 * 
 	 * @param nombreArchivo El nombre del archivo que se va a buscar.
-	 * @return
+	 * @return Retorna true si el archivo existe. Retorna false en caso contrario.
 	 */
 	private boolean existeArchivo(String nombreArchivo) {
-		File archivo = new File("./data/" + nombreArchivo);
-		return archivo.exists();
+		return portadas.existe(nombreArchivo);
 	}
 	
 	private Categoria crearCategoriaInexistente(String nombreCategoria) {
 		Categoria catInexistente = new Categoria(nombreCategoria,true);
-		int tamanioNuevoCat = categorias.length+1;
-		Categoria[] catConInex = new Categoria[tamanioNuevoCat];
-		for (int i = 0; i < categorias.length; i++) {
-			catConInex[i] = categorias[i];
+		categorias.agregar(catInexistente);
+		if (estadisticas != null) {
+			estadisticas.registrar(catInexistente);
 		}
-		catConInex[categorias.length] = catInexistente;
-		categorias = catConInex;
 		return catInexistente;
 		
 	}
 
+	/**
+	 * Hace una consulta sobre la librería. Primero se intenta sin bloquear, con una
+	 * lectura optimista; si mientras tanto hubo una modificación, el resultado se
+	 * descarta y la consulta se repite con el candado de lectura.
+	 * 
+	 * La consulta no debe modificar nada. Durante la lectura optimista puede ver
+	 * las estructuras a medio modificar y fallar; en ese caso también se repite con
+	 * el candado.
+	 * 
+	 * @param consulta La consulta
+	 * @return El resultado de la consulta
+	 */
+	private <T> T leer(Supplier<T> consulta) {
+		long sello = candado.tryOptimisticRead();
+		if (sello != 0) {
+			try {
+				T resultado = consulta.get();
+				if (candado.validate(sello)) {
+					return resultado;
+				}
+			} catch (RuntimeException e) {
+				if (candado.validate(sello)) {
+					// Nadie modificó la librería: el error es de la consulta misma
+					throw e;
+				}
+			}
+		}
+		sello = candado.readLock();
+		try {
+			return consulta.get();
+		} finally {
+			candado.unlockRead(sello);
+		}
+	}
+
 	/**
 	 * Retorna una lista con los libros que pertenecen a la categoría indicada en el
 	 * parámetro
 	 * 
+	 * Si la categoría no existe se crea, salvo que la librería sea de solo
+	 * lectura.
+	 * 
 	 * @param nombreCategoria El nombre de la categoría de interés
 	 * @return Una lista donde todos los libros pertenecen a la categoría indicada
 	 */
 	public ArrayList<Libro> darLibros(String nombreCategoria) {
-		ArrayList<Libro> seleccionados = new ArrayList<Libro>();
-		Categoria c = buscarCategoria(nombreCategoria);
-		seleccionados.addAll(c.darLibros());
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.DAR_LIBROS_CATEGORIA);
+		if (columnas != null) {
+			ArrayList<Libro> libros = new ArrayList<Libro>(columnas.darLibros(categorias.buscar(nombreCategoria)));
+			medicion.terminar(libros.size());
+			return libros;
+		}
+		ArrayList<Libro> seleccionados = leer(() -> {
+			Categoria c = categorias.buscar(nombreCategoria);
+			return c == null ? null : new ArrayList<Libro>(c.darLibros());
+		});
+		if (seleccionados == null) {
+			// Si la categoría no existe se crea, así que hace falta el candado de escritura
+			long sello = candado.writeLock();
+			try {
+				seleccionados = new ArrayList<Libro>(buscarCategoria(nombreCategoria).darLibros());
+			} finally {
+				candado.unlockWrite(sello);
+			}
+		}
+		medicion.terminar(seleccionados.size());
 		return seleccionados;
 	}
 
 	/**
-	 * Busca un libro a partir de su título
+	 * Retorna una página de los libros de la categoría indicada, copiando solo los
+	 * libros de la página.
 	 * 
-	 * @param tituloLibro Título del libro buscado
-	 * @return Retorna un libro con el título indicado o null si no se encontró un
-	 *         libro con ese título
+	 * A diferencia de darLibros(nombreCategoria), si la categoría no existe no se
+	 * crea.
+	 * 
+	 * @param nombreCategoria El nombre de la categoría de interés
+	 * @param desde           Cantidad de libros de la categoría que se saltan
+	 * @param cantidad        Cantidad máxima de libros que se retornan
+	 * @return Una lista con los libros de la página, en el orden de la categoría.
+	 *         Si la categoría no existe o no tiene tantos libros, retorna una lista
+	 *         vacía.
 	 */
-	public Libro buscarLibro(String tituloLibro) {
-		for (var l : catalogo) {
-			if (l.darTitulo().equals(tituloLibro)) {
-				return l;
+	public ArrayList<Libro> darLibros(String nombreCategoria, int desde, int cantidad) {
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.DAR_LIBROS_CATEGORIA);
+		revisarPagina(desde, cantidad);
+		ArrayList<Libro> pagina = leer(() -> {
+			Categoria c = categorias.buscar(nombreCategoria);
+			if (c == null) {
+				return new ArrayList<Libro>();
 			}
-		}
-
-		return null;
+			List<Libro> libros = columnas != null ? columnas.darLibros(c) : c.darLibros();
+			int inicio = Math.min(desde, libros.size());
+			int fin = (int) Math.min((long) inicio + cantidad, libros.size());
+			return new ArrayList<Libro>(libros.subList(inicio, fin));
+		});
+		medicion.terminar(pagina.size());
+		return pagina;
 	}
 
 	/**
-	 * Busca en la librería los libros escritos por el autor indicado.
+	 * Recorre los libros de la categoría indicada a medida que se piden, sin
+	 * copiar la lista completa. Si el recorrido se detiene antes, por ejemplo con
+	 * limit o findFirst, solo se leen los libros necesarios.
 	 * 
-	 * El nombre del autor puede estar incompleto, y la búsqueda no debe tener en
-	 * cuenta mayúsculas y minúsculas. Por ejemplo, si se buscara por "ulio v"
-	 * deberían encontrarse los libros donde el autor sea "Julio Verne".
+	 * Los libros se leen por páginas, cada una con el candado de la librería. Si
+	 * se borran libros durante el recorrido, los que falten ya no aparecen, pero
+	 * ningún libro se repite ni se salta. Si la categoría no existe no se crea.
 	 * 
-	 * @param cadenaAutor La cadena que se usará para consultar el autor. No
-	 *                    necesariamente corresponde al nombre completo de un autor.
-	 * @return Una lista con todos los libros cuyo autor coincida con la cadena
-	 *         indicada
+	 * @param nombreCategoria El nombre de la categoría de interés
+	 * @return Los libros de la categoría, en el orden de la categoría
 	 */
-	public ArrayList<Libro> buscarLibrosAutor(String cadenaAutor) {
-		ArrayList<Libro> librosAutor = new ArrayList<Libro>();
-
-		for (var c : categorias) {
-			ArrayList<Libro> l = c.buscarLibrosDeAutor(cadenaAutor);
-			if (l != null) {
-				librosAutor.addAll(l);
-			}
+	public Stream<Libro> darLibrosStream(String nombreCategoria) {
+		// Se guarda la categoría y no su nombre, por si le cambian el nombre
+		Categoria c = leer(() -> categorias.buscar(nombreCategoria));
+		if (c == null) {
+			return Stream.empty();
+		}
+		if (columnas != null) {
+			return columnas.darLibros(c).stream();
 		}
-		return librosAutor;
+		return StreamSupport.stream(new CursorLibros((despuesDe, cantidad) -> leer(() -> {
+			ArrayList<Libro> libros = c.darLibros();
+			int inicio = despuesDe == null ? 0 : primeroDespuesDe(libros, despuesDe);
+			int fin = (int) Math.min((long) inicio + cantidad, libros.size());
+			return new ArrayList<Libro>(libros.subList(inicio, fin));
+		})), false);
+	}
+
+	/**
+	 * Busca con búsqueda binaria la posición del primer libro de una categoría que
+	 * está después del libro indicado en el catálogo
+	 */
+	private static int primeroDespuesDe(ArrayList<Libro> librosCategoria, Libro despuesDe) {
+		int bajo = 0;
+		int alto = librosCategoria.size();
+		while (bajo < alto) {
+			int medio = (bajo + alto) >>> 1;
+			if (librosCategoria.get(medio).darPosicion() <= despuesDe.darPosicion()) {
+				bajo = medio + 1;
+			} else {
+				alto = medio;
+			}
+		}
+		return bajo;
+	}
+
+	/**
+	 * Verifica los límites de una página
+	 * 
+	 * @throws IllegalArgumentException Si alguno es negativo
+	 */
+	private static void revisarPagina(int desde, int cantidad) {
+		if (desde < 0 || cantidad < 0) {
+			throw new IllegalArgumentException("La página no puede empezar ni tener un tamaño negativo");
+		}
+	}
+
+	/**
+	 * Busca un libro a partir de su título
+	 * 
+	 * @param tituloLibro Título del libro buscado
+	 * @return Retorna un libro con el título indicado o null si no se encontró un
+	 *         libro con ese título
+	 */
+	public Libro buscarLibro(String tituloLibro) {
+		return buscarLibro(tituloLibro, ModoBusquedaTitulo.EXACTO);
+	}
+
+	/**
+	 * Busca un libro a partir de su título, comparando los títulos de la forma
+	 * indicada
+	 * 
+	 * @param tituloLibro Título del libro buscado
+	 * @param modo        La forma en la que se comparan los títulos
+	 * @return Retorna el primer libro del catálogo con el título indicado o null si
+	 *         no se encontró un libro con ese título
+	 */
+	public Libro buscarLibro(String tituloLibro, ModoBusquedaTitulo modo) {
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.BUSCAR_LIBRO);
+		if (columnas != null) {
+			ArrayList<Libro> conTitulo = columnas.buscarLibros(tituloLibro, modo, 1);
+			medicion.terminar(conTitulo.size());
+			return conTitulo.isEmpty() ? null : conTitulo.get(0);
+		}
+		prepararIndiceTitulos(modo);
+		Libro libro = leer(() -> {
+			ArrayList<Libro> conTitulo = indiceTitulos.buscar(tituloLibro, modo);
+			return conTitulo == null ? null : conTitulo.get(0);
+		});
+		medicion.terminar(libro == null ? 0 : 1);
+		return libro;
+	}
+
+	/**
+	 * Busca todos los libros que tienen un título, comparando los títulos de la
+	 * forma indicada
+	 * 
+	 * @param tituloLibro Título de los libros buscados
+	 * @param modo        La forma en la que se comparan los títulos
+	 * @return Una lista con los libros que tienen ese título, en el orden del
+	 *         catálogo. Si no hay ninguno, retorna una lista vacía.
+	 */
+	public ArrayList<Libro> buscarLibros(String tituloLibro, ModoBusquedaTitulo modo) {
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.BUSCAR_LIBROS);
+		if (columnas != null) {
+			ArrayList<Libro> libros = columnas.buscarLibros(tituloLibro, modo, Integer.MAX_VALUE);
+			medicion.terminar(libros.size());
+			return libros;
+		}
+		prepararIndiceTitulos(modo);
+		ArrayList<Libro> libros = leer(() -> {
+			ArrayList<Libro> conTitulo = indiceTitulos.buscar(tituloLibro, modo);
+			return conTitulo == null ? new ArrayList<Libro>() : new ArrayList<Libro>(conTitulo);
+		});
+		medicion.terminar(libros.size());
+		return libros;
+	}
+
+	/**
+	 * Construye el índice de títulos del modo indicado si aún no existe. Como
+	 * construirlo modifica la librería, se hace con el candado de escritura y no
+	 * dentro de una lectura optimista.
+	 */
+	private void prepararIndiceTitulos(ModoBusquedaTitulo modo) {
+		if (leer(() -> indiceTitulos.estaConstruido(modo))) {
+			return;
+		}
+		long sello = candado.writeLock();
+		try {
+			indiceTitulos.preparar(modo);
+		} finally {
+			candado.unlockWrite(sello);
+		}
+	}
+
+	/**
+	 * Retorna los libros del catálogo con mejor calificación
+	 * 
+	 * @param cantidad Cantidad máxima de libros que se retornan
+	 * @return Una lista con los libros, de la mejor calificación a la peor. Si hay
+	 *         empate, quedan en el orden del catálogo.
+	 */
+	public ArrayList<Libro> mejoresLibros(int cantidad) {
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.MEJORES_LIBROS);
+		revisarPagina(0, cantidad);
+		ArrayList<Libro> libros;
+		if (columnas != null) {
+			libros = columnas.mejores(null, cantidad);
+		} else {
+			prepararIndiceCalificaciones();
+			libros = leer(() -> indiceCalificaciones.mejores(cantidad));
+		}
+		medicion.terminar(libros.size());
+		return libros;
+	}
+
+	/**
+	 * Retorna los libros con mejor calificación de la categoría indicada. Si la
+	 * categoría no existe no se crea.
+	 * 
+	 * @param nombreCategoria El nombre de la categoría de interés
+	 * @param cantidad        Cantidad máxima de libros que se retornan
+	 * @return Una lista con los libros, de la mejor calificación a la peor. Si hay
+	 *         empate, quedan en el orden del catálogo. Si la categoría no existe,
+	 *         retorna una lista vacía.
+	 */
+	public ArrayList<Libro> mejoresLibros(String nombreCategoria, int cantidad) {
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.MEJORES_LIBROS);
+		revisarPagina(0, cantidad);
+		if (columnas == null) {
+			prepararIndiceCalificaciones();
+		}
+		ArrayList<Libro> libros = leer(() -> {
+			Categoria c = categorias.buscar(nombreCategoria);
+			if (c == null) {
+				return new ArrayList<Libro>();
+			}
+			return columnas != null ? columnas.mejores(c, cantidad) : indiceCalificaciones.mejores(c, cantidad);
+		});
+		medicion.terminar(libros.size());
+		return libros;
+	}
+
+	/**
+	 * Busca los libros del catálogo cuya calificación está entre la mínima y la
+	 * máxima, incluyéndolas
+	 * 
+	 * @param minima La calificación mínima
+	 * @param maxima La calificación máxima
+	 * @return Una lista con los libros, de la mejor calificación a la peor. Si hay
+	 *         empate, quedan en el orden del catálogo.
+	 */
+	public ArrayList<Libro> buscarLibrosPorCalificacion(double minima, double maxima) {
+		return buscarLibrosPorCalificacion(null, minima, maxima, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Retorna una página de los libros cuya calificación está entre la mínima y la
+	 * máxima, incluyéndolas. Solo se copian los libros de la página.
+	 * 
+	 * @param nombreCategoria El nombre de la categoría de interés, o null para
+	 *                        buscar en todo el catálogo. Si la categoría no
+	 *                        existe no se crea.
+	 * @param minima          La calificación mínima
+	 * @param maxima          La calificación máxima
+	 * @param desde           Cantidad de libros del resultado que se saltan
+	 * @param cantidad        Cantidad máxima de libros que se retornan
+	 * @return Una lista con los libros de la página, de la mejor calificación a la
+	 *         peor. Si hay empate, quedan en el orden del catálogo.
+	 */
+	public ArrayList<Libro> buscarLibrosPorCalificacion(String nombreCategoria, double minima, double maxima,
+			int desde, int cantidad) {
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.BUSCAR_POR_CALIFICACION);
+		revisarPagina(desde, cantidad);
+		if (columnas == null) {
+			prepararIndiceCalificaciones();
+		}
+		ArrayList<Libro> libros = leer(() -> {
+			Categoria c = nombreCategoria == null ? null : categorias.buscar(nombreCategoria);
+			if (nombreCategoria != null && c == null) {
+				return new ArrayList<Libro>();
+			}
+			if (columnas != null) {
+				return columnas.entre(c, minima, maxima, desde, cantidad);
+			}
+			return indiceCalificaciones.entre(c, minima, maxima, desde, cantidad);
+		});
+		medicion.terminar(libros.size());
+		return libros;
+	}
+
+	/**
+	 * Cuenta los libros cuya calificación está entre la mínima y la máxima,
+	 * incluyéndolas
+	 * 
+	 * @param nombreCategoria El nombre de la categoría de interés, o null para
+	 *                        contar en todo el catálogo. Si la categoría no existe
+	 *                        no se crea.
+	 * @param minima          La calificación mínima
+	 * @param maxima          La calificación máxima
+	 * @return Cantidad de libros
+	 */
+	public int contarLibrosPorCalificacion(String nombreCategoria, double minima, double maxima) {
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.CONTAR_POR_CALIFICACION);
+		if (columnas == null) {
+			prepararIndiceCalificaciones();
+		}
+		int cantidad = leer(() -> {
+			Categoria c = nombreCategoria == null ? null : categorias.buscar(nombreCategoria);
+			if (nombreCategoria != null && c == null) {
+				return 0;
+			}
+			if (columnas != null) {
+				return columnas.contarEntre(c, minima, maxima);
+			}
+			return indiceCalificaciones.contarEntre(c, minima, maxima);
+		});
+		medicion.terminar(1);
+		return cantidad;
+	}
+
+	/**
+	 * Calcula un percentil de las calificaciones de los libros: la menor
+	 * calificación tal que al menos ese porcentaje de los libros tiene una
+	 * calificación menor o igual. Por ejemplo, el percentil 50 es la mediana.
+	 * 
+	 * @param nombreCategoria El nombre de la categoría de interés, o null para
+	 *                        todo el catálogo. Si la categoría no existe no se
+	 *                        crea.
+	 * @param percentil       El percentil, entre 0 y 100
+	 * @return La calificación, o NaN si no hay libros
+	 * @throws IllegalArgumentException Si el percentil no está entre 0 y 100
+	 */
+	public double percentilCalificacion(String nombreCategoria, double percentil) {
+		if (!(percentil >= 0 && percentil <= 100)) {
+			throw new IllegalArgumentException("El percentil debe estar entre 0 y 100: " + percentil);
+		}
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.PERCENTIL_CALIFICACION);
+		if (columnas == null) {
+			prepararIndiceCalificaciones();
+		}
+		double calificacion = leer(() -> {
+			Categoria c = nombreCategoria == null ? null : categorias.buscar(nombreCategoria);
+			if (nombreCategoria != null && c == null) {
+				return Double.NaN;
+			}
+			if (columnas != null) {
+				return columnas.percentil(c, percentil);
+			}
+			return indiceCalificaciones.percentil(c, percentil);
+		});
+		medicion.terminar(Double.isNaN(calificacion) ? 0 : 1);
+		return calificacion;
+	}
+
+	/**
+	 * Construye el índice de calificaciones si aún no existe, con el candado de
+	 * escritura igual que prepararIndiceTitulos
+	 */
+	private void prepararIndiceCalificaciones() {
+		if (leer(indiceCalificaciones::estaConstruido)) {
+			return;
+		}
+		long sello = candado.writeLock();
+		try {
+			indiceCalificaciones.preparar();
+		} finally {
+			candado.unlockWrite(sello);
+		}
+	}
+
+	/**
+	 * Busca en la librería los libros escritos por el autor indicado.
+	 * 
+	 * El nombre del autor puede estar incompleto, y la búsqueda no debe tener en
+	 * cuenta mayúsculas y minúsculas. Por ejemplo, si se buscara por "ulio v"
+	 * deberían encontrarse los libros donde el autor sea "Julio Verne".
+	 * 
+	 * @param cadenaAutor La cadena que se usará para consultar el autor. No
+	 *                    necesariamente corresponde al nombre completo de un autor.
+	 * @return Una lista con todos los libros cuyo autor coincida con la cadena
+	 *         indicada
+	 */
+	public ArrayList<Libro> buscarLibrosAutor(String cadenaAutor) {
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.BUSCAR_LIBROS_AUTOR);
+		ArrayList<Libro> libros = columnas != null
+				? columnas.buscarLibrosAutor(cadenaAutor).collect(Collectors.toCollection(ArrayList::new))
+				: leer(() -> indiceAutores.buscar(cadenaAutor));
+		medicion.terminar(libros.size());
+		return libros;
+	}
+
+	/**
+	 * Retorna una página del resultado de buscarLibrosAutor(cadenaAutor), sin
+	 * calcular el resultado completo: solo se recorren los libros hasta el último
+	 * de la página.
+	 * 
+	 * @param cadenaAutor La cadena que se usará para consultar el autor
+	 * @param desde       Cantidad de libros del resultado que se saltan
+	 * @param cantidad    Cantidad máxima de libros que se retornan
+	 * @return Una lista con los libros de la página, en el mismo orden de
+	 *         buscarLibrosAutor(cadenaAutor)
+	 */
+	public ArrayList<Libro> buscarLibrosAutor(String cadenaAutor, int desde, int cantidad) {
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.BUSCAR_LIBROS_AUTOR);
+		revisarPagina(desde, cantidad);
+		ArrayList<Libro> libros = columnas != null
+				? columnas.buscarLibrosAutor(cadenaAutor).skip(desde).limit(cantidad)
+						.collect(Collectors.toCollection(ArrayList::new))
+				: leer(() -> indiceAutores.buscar(cadenaAutor, null, desde, cantidad));
+		medicion.terminar(libros.size());
+		return libros;
+	}
+
+	/**
+	 * Recorre el resultado de buscarLibrosAutor(cadenaAutor) a medida que se pide,
+	 * sin calcularlo completo. Si el recorrido se detiene antes, solo se leen los
+	 * libros necesarios.
+	 * 
+	 * Los libros se leen por páginas, cada una con el candado de la librería. Si
+	 * se borran libros durante el recorrido, los que falten ya no aparecen, pero
+	 * ningún libro se repite ni se salta.
+	 * 
+	 * @param cadenaAutor La cadena que se usará para consultar el autor
+	 * @return Los libros cuyo autor coincide con la cadena, en el mismo orden de
+	 *         buscarLibrosAutor(cadenaAutor)
+	 */
+	public Stream<Libro> buscarLibrosAutorStream(String cadenaAutor) {
+		if (columnas != null) {
+			return columnas.buscarLibrosAutor(cadenaAutor);
+		}
+		return StreamSupport.stream(new CursorLibros((despuesDe, cantidad) -> leer(
+				() -> indiceAutores.buscar(cadenaAutor, despuesDe, 0, cantidad))), false);
 	}
 
 	/**
@@ -308,15 +1287,26 @@ public class Libreria {
 	 *         retorna una lista vacía.
 	 */
 	public ArrayList<Categoria> buscarCategoriasAutor(String nombreAutor) {
-		ArrayList<Categoria> resultado = new ArrayList<Categoria>();
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.BUSCAR_CATEGORIAS_AUTOR);
+		if (columnas != null) {
+			ArrayList<Categoria> encontradas = columnas.buscarCategoriasAutor(nombreAutor);
+			medicion.terminar(encontradas.size());
+			return encontradas;
+		}
+		ArrayList<Categoria> encontradas = leer(() -> {
+			ArrayList<Categoria> resultado = new ArrayList<Categoria>();
 
-		for (var c : categorias) {
-			if (c.hayLibroDeAutor(nombreAutor)) {
-				resultado.add(c);
+			BitSet ids = indiceCategoriasAutor.darCategorias(nombreAutor);
+			if (ids != null) {
+				for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+					resultado.add(categorias.darCategoria(id));
+				}
 			}
-		}
 
-		return resultado;
+			return resultado;
+		});
+		medicion.terminar(encontradas.size());
+		return encontradas;
 	}
 
 	/**
@@ -326,12 +1316,11 @@ public class Libreria {
 	 * @return Calificación promedio del catálogo
 	 */
 	public double calificacionPromedio() {
-		double count = 0;
-		for (var l : catalogo) {
-			count += l.darCalificacion();
-		}
-
-		return count / catalogo.size();
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.CALIFICACION_PROMEDIO);
+		double promedio = columnas != null ? columnas.calificacionPromedio()
+				: leer(estadisticas::calificacionPromedio);
+		medicion.terminar(1);
+		return promedio;
 	}
 
 	/**
@@ -342,16 +1331,11 @@ public class Libreria {
 	 *         retorna null.
 	 */
 	public Categoria categoriaConMasLibros() {
-		Categoria catMax = null;
-		int max = Integer.MIN_VALUE;
-		for (var c : categorias) {
-			int nLibros = c.contarLibrosEnCategoria();
-			if (max < nLibros) {
-				max = nLibros;
-				catMax = c;
-			}
-		}
-		return catMax;
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.CATEGORIA_CON_MAS_LIBROS);
+		Categoria categoria = columnas != null ? columnas.categoriaConMasLibros()
+				: leer(estadisticas::categoriaConMasLibros);
+		medicion.terminar(categoria == null ? 0 : 1);
+		return categoria;
 	}
 
 	/**
@@ -361,17 +1345,11 @@ public class Libreria {
 	 * @return Categoría con los mejores libros
 	 */
 	public Categoria categoriaConMejoresLibros() {
-		Categoria catMax = null;
-		double max = -Double.MAX_VALUE;
-
-		for (var c : categorias) {
-			double cal = c.calificacionPromedio();
-			if (max < cal) {
-				max = cal;
-				catMax = c;
-			}
-		}
-		return catMax;
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.CATEGORIA_CON_MEJORES_LIBROS);
+		Categoria categoria = columnas != null ? columnas.categoriaConMejoresLibros()
+				: leer(estadisticas::categoriaConMejoresLibros);
+		medicion.terminar(categoria == null ? 0 : 1);
+		return categoria;
 	}
 
 	/**
@@ -380,14 +1358,11 @@ public class Libreria {
 	 * @return Cantidad de libros sin portada
 	 */
 	public int contarLibrosSinPortada() {
-		int count = 0;
-		for (var l : catalogo) {
-			if (!l.tienePortada()) {
-				count++;
-			}
-		}
-
-		return count;
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.CONTAR_LIBROS_SIN_PORTADA);
+		int cantidad = columnas != null ? columnas.contarLibrosSinPortada()
+				: leer(estadisticas::contarLibrosSinPortada);
+		medicion.terminar(1);
+		return cantidad;
 	}
 
 	/**
@@ -397,116 +1372,544 @@ public class Libreria {
 	 *         categorías diferentes. Retorna false en caso contrario.
 	 */
 	public boolean hayAutorEnVariasCategorias() {
-		HashMap<String, String> t = new HashMap<String, String>();
-
-//		boolean cond = false;
-//		for (var c : categorias) {
-//			ArrayList<Libro> libros = c.darLibros();
-//			for (var l : libros) {
-//				String autor = l.darAutor();
-//				if (t.containsKey(autor)) {
-//					String res = t.get(autor);
-//					if (!res.equals(c.darNombre())) {
-//						cond = true;
-//					}
-//				} else {
-//					t.put(autor, c.darNombre());
-//				}
-//			}
-//		}
-		
-		boolean cond = false;
-		for (var l : catalogo) {
-			String autor = l.darAutor();
-			if (t.containsKey(autor)) {
-				String res = t.get(autor);
-				if (!res.equals(l.darCategoria().darNombre())) {
-					cond = true;
-					break;
-				}
-			} else {
-				t.put(autor, l.darCategoria().darNombre());
-			}
-		}
-
-		return cond;
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.HAY_AUTOR_EN_VARIAS_CATEGORIAS);
+		boolean hay = columnas != null ? columnas.hayAutorEnVariasCategorias()
+				: leer(indiceCategoriasAutor::hayAutorEnVariasCategorias);
+		medicion.terminar(1);
+		return hay;
 	}
 	
 	private boolean existeAutorEnCatalogo(String nombreAutor) {
-		for (Libro lb : catalogo) {
-			if (lb.darAutor().equals(nombreAutor)) {
-				return true;
-			}
-		}
-		return false;
+		return librosPorAutor.containsKey(nombreAutor);
 	}
 	
 	private ArrayList<Libro> darLibrosAutor(String nombreAutor) {
-		ArrayList<Libro> librosAutor = new ArrayList<Libro>();
-		for (Libro lb : catalogo) {
-			if (lb.darAutor().equals(nombreAutor)) {
-				librosAutor.add(lb);
-			}
-		}
-		return librosAutor;
+		ArrayList<Libro> librosAutor = librosPorAutor.get(nombreAutor);
+		return librosAutor == null ? new ArrayList<Libro>() : librosAutor;
 	}
 	
 	/**
 	 * Elimina de los libros aquellos cuyo autor está en la lista de autores
 	 * 
+	 * Los libros se quitan del catálogo, de sus categorías y de todos los índices.
+	 * 
 	 * @param autores Nombres de los autores
+	 * @throws SomeAuthorsNotFoundException Si alguno de los autores no tiene libros
+	 *                                      en el catálogo. En ese caso no se borra
+	 *                                      ningún libro.
+	 * @throws UncheckedIOException         Si hay un registro de cambios y el
+	 *                                      borrado no se pudo guardar en él. Los
+	 *                                      libros sí se borran de la librería.
 	 */
 	public void borrarLibrosPorAutor(String[] autores) throws SomeAuthorsNotFoundException{
-		SomeAuthorsNotFoundException exception = new SomeAuthorsNotFoundException("Algunos autores digitados no existen");
-		for (String autor : autores) {
-			if (existeAutorEnCatalogo(autor)) {
-				exception.addAuthorFound(autor);
+		borrarLibrosPorAutor(autores, true);
+	}
+
+	/**
+	 * Elimina de los libros aquellos cuyo autor está en la lista de autores, igual
+	 * que borrarLibrosPorAutor(autores), pero permite no esperar a que el borrado
+	 * esté en el registro de cambios
+	 * 
+	 * @param autores         Nombres de los autores
+	 * @param esperarRegistro Indica si se espera a que el borrado esté en el
+	 *                        disco. Si no, se puede esperar después con
+	 *                        esperarRegistroCambios.
+	 * @throws SomeAuthorsNotFoundException Si alguno de los autores no tiene libros
+	 *                                      en el catálogo. En ese caso no se borra
+	 *                                      ningún libro.
+	 * @throws UncheckedIOException         Si se espera al registro y el borrado no
+	 *                                      se pudo guardar en él. Los libros sí se
+	 *                                      borran de la librería.
+	 */
+	public void borrarLibrosPorAutor(String[] autores, boolean esperarRegistro) throws SomeAuthorsNotFoundException {
+		rechazarSiEsSoloLectura();
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.BORRAR_LIBROS_POR_AUTOR);
+		RegistroCambios registroCambio;
+		long cambio = 0;
+		int borrados;
+		long sello = candado.writeLock();
+		try {
+			SomeAuthorsNotFoundException exception = new SomeAuthorsNotFoundException("Algunos autores digitados no existen");
+			for (String autor : autores) {
+				if (existeAutorEnCatalogo(autor)) {
+					exception.addAuthorFound(autor);
+				} else {
+					exception.addAuthorNotFound(autor);
+				}
+			}
+			if (exception.getAuthorsNotFound().isEmpty()) { //Están todos los autores
+				HashSet<Libro> aBorrar = new HashSet<Libro>();
+				for (String autor : autores) {
+					aBorrar.addAll(darLibrosAutor(autor));
+					autoresBorrados.add(autor);
+				}
+				quitarLibros(aBorrar);
+				borrados = aBorrar.size();
 			} else {
-				exception.addAuthorNotFound(autor);
+				throw exception;
+			}
+			registroCambio = registro;
+			if (registroCambio != null) {
+				cambio = registroCambio.agregarBorrarAutores(autores);
+			}
+		} finally {
+			candado.unlockWrite(sello);
+		}
+		if (registroCambio != null && esperarRegistro) {
+			try {
+				registroCambio.esperar(cambio);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
 		}
-		if (exception.getAuthorsNotFound().isEmpty()) { //Están todos los autores
+		medicion.terminar(borrados);
+	}
+
+	// ************************************************************************
+	// Registro de cambios
+	// ************************************************************************
+
+	/**
+	 * Empieza a guardar en un registro en disco los cambios de nombre de las
+	 * categorías y los borrados de libros por autor, para que no se pierdan al
+	 * cerrar la aplicación. Los métodos que hacen esos cambios retornan cuando el
+	 * cambio ya está en disco, salvo que se les pida no esperar.
+	 * 
+	 * Los cambios que ya estaban en el registro se vuelven a aplicar sobre la
+	 * librería, en el orden en el que se hicieron, hasta donde se pueda: un cambio
+	 * de nombre de una categoría que no existe o a un nombre que ya se usa se
+	 * ignora, y de un borrado solo se borran los libros de los autores que
+	 * existen.
+	 * 
+	 * La librería debe estar recién cargada de los CSV o abierta con abrir, sin
+	 * ningún cambio, porque el registro tiene todos los cambios desde los CSV. Así
+	 * los cambios se conservan aunque los CSV se vuelvan a escribir.
+	 * 
+	 * Cuando el registro crece demasiado, se compacta con
+	 * compactarRegistroCambios.
+	 * 
+	 * @param nombreArchivoRegistro El nombre del archivo del registro. Si no
+	 *                              existe, se crea.
+	 * @throws IOException Si hay algún problema con el archivo del registro
+	 * @throws UnsupportedOperationException Si la librería es de solo lectura
+	 */
+	public void abrirRegistroCambios(String nombreArchivoRegistro) throws IOException {
+		rechazarSiEsSoloLectura();
+		RegistroCambios.Destino destino = new RegistroCambios.Destino() {
+			@Override
+			public void renombrarCategoria(String nombreActual, String nombreNuevo) {
+				repetirCambioNombre(nombreActual, nombreNuevo);
+			}
+
+			@Override
+			public void borrarLibrosPorAutor(String[] autores) {
+				repetirBorrado(autores);
+			}
+		};
+		RegistroCambios nuevo = new RegistroCambios(Paths.get(nombreArchivoRegistro), destino, () -> {
+			try {
+				compactarRegistroCambios();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		RegistroCambios anterior;
+		long sello = candado.writeLock();
+		try {
+			anterior = registro;
+			registro = nuevo;
+		} finally {
+			candado.unlockWrite(sello);
+		}
+		if (anterior != null) {
+			anterior.close();
+		}
+	}
+
+	/**
+	 * Espera a que estén en disco todos los cambios que se le han hecho a la
+	 * librería hasta ahora. Si no hay registro de cambios, retorna de una vez.
+	 * 
+	 * @throws IOException Si alguno de los cambios no se pudo guardar en el
+	 *                     registro
+	 */
+	public void esperarRegistroCambios() throws IOException {
+		RegistroCambios registroCambio = leer(() -> registro);
+		if (registroCambio != null) {
+			registroCambio.esperarTodos();
+		}
+	}
+
+	/**
+	 * Reescribe el registro de cambios con un cambio de nombre por cada uno que se
+	 * hizo y un solo borrado con todos los autores borrados, que tienen el mismo
+	 * efecto sobre los CSV. Mientras tanto la librería se puede consultar, pero no
+	 * cambiar.
+	 * 
+	 * @throws IOException Si hay algún problema escribiendo el registro
+	 * @throws UnsupportedOperationException Si la librería es de solo lectura
+	 */
+	public void compactarRegistroCambios() throws IOException {
+		rechazarSiEsSoloLectura();
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.COMPACTAR_REGISTRO);
+		long sello = candado.readLock();
+		try {
+			if (registro != null) {
+				registro.compactar();
+			}
+		} finally {
+			candado.unlockRead(sello);
+		}
+		medicion.terminar(catalogo.size());
+	}
+
+	/**
+	 * Deja de guardar los cambios en el registro, después de escribir los que
+	 * estén pendientes
+	 * 
+	 * @throws IOException Si hay algún problema escribiendo el registro
+	 */
+	public void cerrarRegistroCambios() throws IOException {
+		RegistroCambios anterior;
+		long sello = candado.writeLock();
+		try {
+			anterior = registro;
+			registro = null;
+		} finally {
+			candado.unlockWrite(sello);
+		}
+		if (anterior != null) {
+			anterior.close();
+		}
+	}
+
+	/**
+	 * Vuelve a aplicar un cambio de nombre guardado en el registro, si todavía se
+	 * puede
+	 */
+	private void repetirCambioNombre(String nombreActual, String nombreNuevo) {
+		long sello = candado.writeLock();
+		try {
+			Categoria categoria = categorias.buscar(nombreActual);
+			if (categoria != null && categorias.buscar(nombreNuevo) == null) {
+				renombrar(categoria, nombreNuevo);
+			}
+		} finally {
+			candado.unlockWrite(sello);
+		}
+	}
+
+	/**
+	 * Le cambia el nombre a una categoría y recuerda el nombre anterior para las
+	 * filas que lleguen después de los archivos. Se debe invocar con el candado de
+	 * escritura.
+	 */
+	private void renombrar(Categoria categoria, String nombreNuevo) {
+		categoriasRenombradas.putIfAbsent(categoria.darNombre(), categoria);
+		categorias.renombrar(categoria, nombreNuevo);
+		separarDeArchivos();
+	}
+
+	/**
+	 * Vuelve a aplicar un borrado guardado en el registro, con los autores que
+	 * todavía tienen libros
+	 */
+	private void repetirBorrado(String[] autores) {
+		long sello = candado.writeLock();
+		try {
+			HashSet<Libro> aBorrar = new HashSet<Libro>();
 			for (String autor : autores) {
-				ArrayList<Libro> librosAutor = darLibrosAutor(autor);
-				catalogo.removeAll(librosAutor);
+				aBorrar.addAll(darLibrosAutor(autor));
+				autoresBorrados.add(autor);
 			}
-		} else {
-			throw exception;
+			quitarLibros(aBorrar);
+		} finally {
+			candado.unlockWrite(sello);
 		}
 	}
 
+	/**
+	 * Aplica a la librería los cambios encontrados en sus archivos: agrega las
+	 * categorías nuevas, quita los libros indicados y agrega al final del catálogo
+	 * los libros de las filas nuevas, actualizando las categorías y todos los
+	 * índices. Todo se hace con el candado de escritura, así que ninguna consulta
+	 * ve los cambios a medias.
+	 * 
+	 * Los cambios que se le hicieron a la librería tienen prioridad sobre los
+	 * archivos, para que el resultado sea el mismo que daría volver a cargar los
+	 * archivos y aplicarles el registro de cambios: las filas de una categoría
+	 * renombrada van a la categoría con su nombre nuevo, y las filas de los autores
+	 * borrados no se agregan. Una categoría del archivo con el nombre anterior de
+	 * una categoría renombrada tampoco se agrega.
+	 * 
+	 * @param categoriasNuevas Las categorías que se agregan. Se ignoran las que
+	 *                         tienen el nombre de una categoría que ya existe.
+	 * @param aBorrar          Los libros que se quitan. Se ignoran los que ya no
+	 *                         están en el catálogo.
+	 * @param filasNuevas      Las filas de los libros que se agregan, con la
+	 *                         existencia de la portada ya revisada
+	 * @return Los libros agregados, en el orden de las filas, con null en lugar de
+	 *         las filas de autores borrados
+	 */
+	ArrayList<Libro> aplicarCambios(Collection<Categoria> categoriasNuevas, Collection<Libro> aBorrar,
+			List<FilaLibro> filasNuevas) {
+		rechazarSiEsSoloLectura();
+		EventoOperacion medicion = EventoOperacion.iniciar(Operacion.APLICAR_CAMBIOS);
+		long sello = candado.writeLock();
+		try {
+			for (Categoria c : categoriasNuevas) {
+				if (categorias.buscar(c.darNombre()) == null && !categoriasRenombradas.containsKey(c.darNombre())) {
+					categorias.agregar(c);
+					estadisticas.registrar(c);
+				}
+			}
+
+			HashSet<Libro> presentes = new HashSet<Libro>();
+			for (Libro l : aBorrar) {
+				if (estaEnCatalogo(l)) {
+					presentes.add(l);
+				}
+			}
+			quitarLibros(presentes);
+
+			if (!categoriasNuevas.isEmpty() || !filasNuevas.isEmpty()) {
+				separarDeArchivos();
+			}
+			ArrayList<Libro> agregados = new ArrayList<Libro>(filasNuevas.size());
+			ArrayList<Libro> nuevos = new ArrayList<Libro>(filasNuevas.size());
+			for (FilaLibro fila : filasNuevas) {
+				if (autoresBorrados.contains(fila.autor)) {
+					agregados.add(null);
+					continue;
+				}
+				Categoria laCategoria = categoriasRenombradas.get(fila.nombreCategoria);
+				if (laCategoria == null) {
+					laCategoria = buscarCategoria(fila.nombreCategoria);
+				}
+				Libro nuevo = crearLibro(fila, laCategoria, siguientePosicion++);
+				catalogo.add(nuevo);
+				estadisticas.agregarLibro(nuevo);
+				librosPorAutor.computeIfAbsent(nuevo.darAutor(), a -> new ArrayList<Libro>(1)).add(nuevo);
+				indiceCategoriasAutor.agregar(nuevo);
+				indiceTitulos.agregar(nuevo);
+				indiceAutores.agregar(nuevo);
+				agregados.add(nuevo);
+				nuevos.add(nuevo);
+			}
+			indiceCalificaciones.agregar(nuevos);
+			categorias.comoArreglo();
+			MetricasLibreria.catalogoCambiado(catalogo.size());
+			medicion.terminar(nuevos.size() + presentes.size());
+			return agregados;
+		} finally {
+			candado.unlockWrite(sello);
+		}
+	}
+
+	/**
+	 * Indica si un libro sigue en el catálogo. Como el catálogo está ordenado por
+	 * posición, se busca con búsqueda binaria.
+	 */
+	private boolean estaEnCatalogo(Libro libro) {
+		return buscarPorPosicion(catalogo, libro) >= 0;
+	}
+
+	/**
+	 * Busca un libro con búsqueda binaria en una lista ordenada por posición, como
+	 * el catálogo y los libros de cada categoría
+	 *
+	 * @return El índice del libro en la lista, o -1 si no está
+	 */
+	private static int buscarPorPosicion(ArrayList<Libro> libros, Libro libro) {
+		int bajo = 0;
+		int alto = libros.size() - 1;
+		while (bajo <= alto) {
+			int medio = (bajo + alto) >>> 1;
+			int posicion = libros.get(medio).darPosicion();
+			if (posicion < libro.darPosicion()) {
+				bajo = medio + 1;
+			} else if (posicion > libro.darPosicion()) {
+				alto = medio - 1;
+			} else {
+				return libros.get(medio) == libro ? medio : -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Quita de una lista ordenada por posición los libros indicados. Cada libro se
+	 * busca con búsqueda binaria, así que el trabajo depende de cuántos libros se
+	 * quitan y de dónde están, no de recorrer la lista completa. Los libros que no
+	 * están en la lista se ignoran.
+	 *
+	 * @param libros  La lista, que queda en el mismo orden
+	 * @param aBorrar Los libros que se van a quitar
+	 * @return Cantidad de libros quitados
+	 */
+	static int quitarOrdenados(ArrayList<Libro> libros, Collection<Libro> aBorrar) {
+		int[] indices = new int[aBorrar.size()];
+		int cantidad = 0;
+		for (Libro l : aBorrar) {
+			int i = buscarPorPosicion(libros, l);
+			if (i >= 0) {
+				indices[cantidad++] = i;
+			}
+		}
+		Arrays.sort(indices, 0, cantidad);
+		if (cantidad <= TRAMOS_QUITAR) {
+			// Cada libro quitado corre con una sola copia los que están después
+			for (int k = cantidad - 1; k >= 0; k--) {
+				libros.remove(indices[k]);
+			}
+		} else if (cantidad > 0) {
+			// Con muchos libros se corren los que quedan una sola vez, desde el primero
+			int destino = indices[0];
+			int siguiente = 0;
+			for (int i = indices[0]; i < libros.size(); i++) {
+				if (siguiente < cantidad && indices[siguiente] == i) {
+					siguiente++;
+				} else {
+					libros.set(destino++, libros.get(i));
+				}
+			}
+			libros.subList(destino, libros.size()).clear();
+		}
+		return cantidad;
+	}
+
+	/**
+	 * Marca que la librería ya no corresponde a los archivos CSV de los que se
+	 * cargó, para que una copia que se guarde desde ahora no se use en lugar de
+	 * ellos. Se debe invocar con el candado de escritura.
+	 */
+	private void separarDeArchivos() {
+		firmaCategorias = null;
+		firmaLibros = null;
+	}
+
+	/**
+	 * Quita los libros indicados del catálogo, de sus categorías y de todos los
+	 * índices. Los libros se buscan por posición y las estadísticas se actualizan
+	 * restándolos, así que el trabajo depende de los libros quitados y no del
+	 * tamaño del catálogo.
+	 * 
+	 * @param aBorrar Los libros que se van a quitar
+	 */
+	private void quitarLibros(Set<Libro> aBorrar) {
+		if (aBorrar.isEmpty()) {
+			return;
+		}
+		separarDeArchivos();
+		HashSet<Categoria> categoriasAfectadas = new HashSet<Categoria>();
+		HashSet<String> autoresAfectados = new HashSet<String>();
+		for (Libro l : aBorrar) {
+			categoriasAfectadas.add(l.darCategoria());
+			autoresAfectados.add(l.darAutor());
+		}
+
+		quitarOrdenados(catalogo, aBorrar);
+		for (Libro l : aBorrar) {
+			estadisticas.quitarLibro(l);
+		}
+		for (Categoria c : categoriasAfectadas) {
+			c.quitarLibros(aBorrar);
+		}
+
+		for (String autor : autoresAfectados) {
+			ArrayList<Libro> librosAutor = librosPorAutor.get(autor);
+			librosAutor.removeIf(aBorrar::contains);
+			if (librosAutor.isEmpty()) {
+				librosPorAutor.remove(autor);
+				indiceCategoriasAutor.recalcular(autor, null);
+			} else {
+				indiceCategoriasAutor.recalcular(autor, librosAutor);
+			}
+		}
+		indiceTitulos.quitar(aBorrar);
+		indiceCalificaciones.quitar(aBorrar);
+		indiceAutores.quitar(aBorrar);
+		MetricasLibreria.catalogoCambiado(catalogo.size());
+	}
+
+	/**
+	 * Consulta para cuántos libros se encontró el archivo de la portada durante la
+	 * última carga de los archivos CSV
+	 * 
+	 * @return Cantidad de portadas encontradas, o 0 si la librería no se cargó de
+	 *         los archivos CSV
+	 */
+	public long darPortadasEncontradas() {
+		return portadas == null ? 0 : portadas.darEncontradas();
+	}
+
+	/**
+	 * Consulta para cuántos libros no se encontró el archivo de la portada durante
+	 * la última carga de los archivos CSV
+	 * 
+	 * @return Cantidad de portadas no encontradas, o 0 si la librería no se cargó
+	 *         de los archivos CSV
+	 */
+	public long darPortadasNoEncontradas() {
+		return portadas == null ? 0 : portadas.darNoEncontradas();
+	}
+
+	/**
+	 * Consulta cuántas filas por segundo se procesaron al cargar el catálogo de
+	 * libros
+	 * 
+	 * @return filasPorSegundo
+	 */
+	public double darFilasPorSegundo() {
+		return filasPorSegundo;
+	}
+
+	/**
+	 * Consulta cuántas filas del archivo de libros se saltaron al cargarlo porque
+	 * no se pudieron interpretar
+	 * 
+	 * @return filasDescartadas
+	 */
+	public int darFilasDescartadas() {
+		return filasDescartadas;
+	}
+
 	public int getCategoriasOnCsv() {
 		return categoriasOnCsv;
 	}
 	
 	public String hayMasCategorias(int tamanioOnCsv, int tamanioActualCat, int tamanioCatNew){
-		String mensaje = "Se cargaron "+ String.valueOf(tamanioCatNew)+" categorias inexistentes en el arcivo de categorias";
-		HashMap<String,Integer> categoriasInexistentes = new HashMap<String,Integer>();
-		int indice =tamanioActualCat-tamanioCatNew;
-		if (tamanioOnCsv < tamanioActualCat){
-			for (int i = indice; i < tamanioActualCat; i++) {
-				Categoria catActual = categorias[i];
-				String nombreCatActual = catActual.darNombre();
-				Integer numLibrosCatActual = Integer.valueOf(catActual.contarLibrosEnCategoria());
+		return leer(() -> {
+			String mensaje = "Se cargaron "+ String.valueOf(tamanioCatNew)+" categorias inexistentes en el arcivo de categorias";
+			HashMap<String,Integer> categoriasInexistentes = new HashMap<String,Integer>();
+			int indice =tamanioActualCat-tamanioCatNew;
+			if (tamanioOnCsv < tamanioActualCat){
+				for (int i = indice; i < tamanioActualCat; i++) {
+					Categoria catActual = categorias.darCategoria(i);
+					String nombreCatActual = catActual.darNombre();
+					int libros = columnas != null ? columnas.contarLibros(catActual) : catActual.contarLibrosEnCategoria();
+					Integer numLibrosCatActual = Integer.valueOf(libros);
 				
-				categoriasInexistentes.put(nombreCatActual, numLibrosCatActual);
-			}
-		Set<String> keys = categoriasInexistentes.keySet();
-		String[] categoriasArray=keys.toArray(new String[keys.size()]);
-		for (int a = 0; a < categoriasArray.length; a++) {
-			String categoria= categoriasArray[a];
-			int cantidadLibros = categoriasInexistentes.get(categoria).intValue();
-			String libroOlibros;
-			if (cantidadLibros > 1) {
-				libroOlibros = "Libros";
-			}
-			else {
-				libroOlibros = "Libro";
-			}
-			mensaje = mensaje+ "\n" + categoria + ": " + String.valueOf(cantidadLibros)+" "+libroOlibros;
+					categoriasInexistentes.put(nombreCatActual, numLibrosCatActual);
+				}
+			Set<String> keys = categoriasInexistentes.keySet();
+			String[] categoriasArray=keys.toArray(new String[keys.size()]);
+			for (int a = 0; a < categoriasArray.length; a++) {
+				String categoria= categoriasArray[a];
+				int cantidadLibros = categoriasInexistentes.get(categoria).intValue();
+				String libroOlibros;
+				if (cantidadLibros > 1) {
+					libroOlibros = "Libros";
+				}
+				else {
+					libroOlibros = "Libro";
+				}
+				mensaje = mensaje+ "\n" + categoria + ": " + String.valueOf(cantidadLibros)+" "+libroOlibros;
+				}
 			}
-		}
-		return mensaje;
+			return mensaje;
+		});
 	}
 	
 
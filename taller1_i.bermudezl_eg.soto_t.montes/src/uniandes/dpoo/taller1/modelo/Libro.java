@@ -34,6 +34,12 @@ public class Libro {
 	 */
 	private Imagen portada;
 
+	/**
+	 * Posición del libro en el orden en el que se agregó al catálogo. Los libros
+	 * de una categoría están ordenados por esta posición.
+	 */
+	private int posicion;
+
 	// ************************************************************************
 	// Constructores
 	// ************************************************************************
@@ -61,6 +67,37 @@ public class Libro {
 		portada = null;
 	}
 
+	/**
+	 * Construye un libro que no se agrega a su categoría. Se usa para crear vistas
+	 * sobre catálogos que no guardan objetos Libro.
+	 */
+	private Libro(String elTitulo, String elAutor, double laCalificacion, Categoria laCategoria, Imagen laPortada,
+			int laPosicion) {
+		titulo = elTitulo;
+		autor = elAutor;
+		calificacion = laCalificacion;
+		categoria = laCategoria;
+		portada = laPortada;
+		posicion = laPosicion;
+	}
+
+	/**
+	 * Crea una vista de un libro que está guardado en otra estructura. A
+	 * diferencia del constructor público, el libro no se agrega a la categoría.
+	 * 
+	 * @param elTitulo       Título del libro
+	 * @param elAutor        Autor o autores del libro
+	 * @param laCalificacion Calificación del libro
+	 * @param laCategoria    Categoría a la que pertenece el libro
+	 * @param laPortada      Portada del libro, o null si no tiene
+	 * @param laPosicion     Posición del libro en el catálogo
+	 * @return El libro
+	 */
+	static Libro crearVista(String elTitulo, String elAutor, double laCalificacion, Categoria laCategoria,
+			Imagen laPortada, int laPosicion) {
+		return new Libro(elTitulo, elAutor, laCalificacion, laCategoria, laPortada, laPosicion);
+	}
+
 	// ************************************************************************
 	// Métodos para consultar los atributos
 	// ************************************************************************
@@ -106,14 +143,16 @@ public class Libro {
 	 * debe retornar la imagen por defecto de 85x85 pixeles que se encuentra en el
 	 * archivo "./data/imagenes/missing.png"
 	 * 
-	 * @return La portada del libro o un objeto de tipo Imagen con la imagen del
-	 *         archivo "./data/imagenes/missing.png"
+	 * La imagen por defecto es siempre la misma instancia, Imagen.SIN_PORTADA, así
+	 * que este método no crea objetos.
+	 * 
+	 * @return La portada del libro o Imagen.SIN_PORTADA
 	 */
 	public Imagen darPortada() {
 		if (tienePortada()) {
 			return portada;
 		} else {
-			return new Imagen("./data/imagenes/missing.png", 85, 85); 
+			return Imagen.SIN_PORTADA;
 		}
 	}
 
@@ -127,7 +166,29 @@ public class Libro {
 	 * @param nuevaPortada Nueva portada para el libro
 	 */
 	public void cambiarPortada(Imagen nuevaPortada) {
+		boolean teniaPortada = tienePortada();
 		portada = nuevaPortada;
+		if (teniaPortada != tienePortada()) {
+			categoria.portadaCambiada(teniaPortada);
+		}
+	}
+
+	/**
+	 * Consulta la posición del libro en el orden en el que se agregó al catálogo
+	 * 
+	 * @return posicion
+	 */
+	int darPosicion() {
+		return posicion;
+	}
+
+	/**
+	 * Cambia la posición del libro en el orden en el que se agregó al catálogo
+	 * 
+	 * @param nuevaPosicion La nueva posición
+	 */
+	void cambiarPosicion(int nuevaPosicion) {
+		posicion = nuevaPosicion;
 	}
 
 	/**
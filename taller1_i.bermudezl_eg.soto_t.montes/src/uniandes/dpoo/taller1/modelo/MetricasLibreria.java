@@ -0,0 +1,347 @@
+package uniandes.dpoo.taller1.modelo;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Mide cuánto tardan las operaciones públicas de Libreria: para cada una lleva
+ * la cantidad de llamadas, un histograma de las duraciones y la cantidad de
+ * resultados, además del tamaño del catálogo. Los valores se pueden consultar
+ * por JMX, con el nombre NOMBRE_JMX, o como texto con volcar.
+ *
+ * Las mediciones solo se hacen si la aplicación se inicia con
+ * -Dlibreria.metricas=true. Como eso se lee una sola vez en una constante, si
+ * no está activo el compilador elimina las mediciones y no cuestan nada.
+ *
+ * Todos los contadores son LongAdder o arreglos atómicos, así que medir no
+ * necesita ningún candado. Cada histograma tiene cuatro cubetas por cada
+ * potencia de dos de nanosegundos, así que los percentiles tienen un error de
+ * a lo sumo 25 %.
+ */
+public class MetricasLibreria implements MetricasLibreriaMXBean {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Indica si se hacen las mediciones
+	 */
+	static final boolean ACTIVAS = Boolean.getBoolean("libreria.metricas");
+
+	/**
+	 * El nombre con el que se registran las métricas en JMX
+	 */
+	public static final String NOMBRE_JMX = "uniandes.dpoo.taller1:type=MetricasLibreria";
+
+	/**
+	 * Cantidad de bits después del primero que definen la cubeta de una duración
+	 */
+	private static final int BITS_SUBCUBETA = 2;
+
+	private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+
+	/**
+	 * Cantidad de cubetas de cada histograma, suficientes para cualquier long
+	 * positivo
+	 */
+	private static final int CUBETAS = (64 - BITS_SUBCUBETA) * SUBCUBETAS;
+
+	private static final MetricasLibreria INSTANCIA = new MetricasLibreria();
+
+	static {
+		if (ACTIVAS) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCIA, new ObjectName(NOMBRE_JMX));
+			} catch (JMException e) {
+				// Sin JMX las métricas se siguen pudiendo volcar como texto
+			}
+		}
+	}
+
+	// ************************************************************************
+	// Enumeraciones
+	// ************************************************************************
+
+	/**
+	 * Las operaciones que se miden
+	 */
+	public enum Operacion {
+		CARGAR_CATALOGO, CARGAR_SNAPSHOT, DAR_LIBROS, DAR_LIBROS_CATEGORIA, BUSCAR_LIBRO, BUSCAR_LIBROS, MEJORES_LIBROS,
+		BUSCAR_POR_CALIFICACION, CONTAR_POR_CALIFICACION, PERCENTIL_CALIFICACION, BUSCAR_LIBROS_AUTOR,
+		BUSCAR_CATEGORIAS_AUTOR, CALIFICACION_PROMEDIO, CATEGORIA_CON_MAS_LIBROS, CATEGORIA_CON_MEJORES_LIBROS,
+		CONTAR_LIBROS_SIN_PORTADA, HAY_AUTOR_EN_VARIAS_CATEGORIAS, CAMBIAR_NOMBRE_CATEGORIA,
+		BORRAR_LIBROS_POR_AUTOR, APLICAR_CAMBIOS, COMPACTAR_REGISTRO
+	}
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Las mediciones de cada operación
+	 */
+	private final EnumMap<Operacion, Histograma> histogramas;
+
+	/**
+	 * Cantidad de libros del catálogo después de la última carga o del último
+	 * cambio
+	 */
+	private volatile int tamanioCatalogo;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	private MetricasLibreria() {
+		histogramas = new EnumMap<Operacion, Histograma>(Operacion.class);
+		for (Operacion operacion : Operacion.values()) {
+			histogramas.put(operacion, new Histograma());
+		}
+	}
+
+	// ************************************************************************
+	// Métodos para medir
+	// ************************************************************************
+
+	/**
+	 * Marca el inicio de una operación
+	 *
+	 * @return El instante de inicio, o 0 si no se hacen mediciones
+	 */
+	static long iniciar() {
+		return ACTIVAS ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Registra una operación que terminó normalmente
+	 *
+	 * @param operacion  La operación
+	 * @param inicio     Lo que retornó iniciar al empezar la operación
+	 * @param resultados Cantidad de resultados de la operación, o el tamaño del
+	 *                   catálogo en una carga
+	 */
+	static void registrar(Operacion operacion, long inicio, int resultados) {
+		if (ACTIVAS) {
+			INSTANCIA.histogramas.get(operacion).agregar(System.nanoTime() - inicio, resultados);
+		}
+	}
+
+	/**
+	 * Registra el tamaño del catálogo después de cargarlo o cambiarlo
+	 *
+	 * @param tamanio Cantidad de libros
+	 */
+	static void catalogoCambiado(int tamanio) {
+		if (ACTIVAS) {
+			INSTANCIA.tamanioCatalogo = tamanio;
+		}
+	}
+
+	// ************************************************************************
+	// Métodos para consultar
+	// ************************************************************************
+
+	/**
+	 * Retorna las métricas de la aplicación
+	 *
+	 * @return Las métricas
+	 */
+	public static MetricasLibreria darInstancia() {
+		return INSTANCIA;
+	}
+
+	@Override
+	public boolean isActivas() {
+		return ACTIVAS;
+	}
+
+	@Override
+	public int getTamanioCatalogo() {
+		return tamanioCatalogo;
+	}
+
+	@Override
+	public Map<String, ResumenOperacion> getOperaciones() {
+		LinkedHashMap<String, ResumenOperacion> resumenes = new LinkedHashMap<String, ResumenOperacion>();
+		for (Map.Entry<Operacion, Histograma> e : histogramas.entrySet()) {
+			resumenes.put(e.getKey().name(), e.getValue().resumir());
+		}
+		return resumenes;
+	}
+
+	@Override
+	public String volcar() {
+		StringBuilder texto = new StringBuilder();
+		texto.append("Métricas de la librería").append(ACTIVAS ? "" : " (desactivadas)").append('\n');
+		texto.append("Libros en el catálogo: ").append(tamanioCatalogo).append('\n');
+		texto.append(String.format("%-32s %10s %12s %12s %12s %12s%n", "Operación", "Llamadas", "p50 (µs)",
+				"p99 (µs)", "Máximo (µs)", "Resultados"));
+		for (Map.Entry<String, ResumenOperacion> e : getOperaciones().entrySet()) {
+			ResumenOperacion r = e.getValue();
+			if (r.getLlamadas() > 0) {
+				texto.append(String.format("%-32s %10d %12.1f %12.1f %12.1f %12.1f%n", e.getKey(), r.getLlamadas(),
+						r.getP50Micros(), r.getP99Micros(), r.getMaximoMicros(), r.getResultadosPromedio()));
+			}
+		}
+		return texto.toString();
+	}
+
+	@Override
+	public void reiniciar() {
+		for (Histograma h : histogramas.values()) {
+			h.reiniciar();
+		}
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * El resumen de las mediciones de una operación
+	 */
+	public static class ResumenOperacion {
+		private final long llamadas;
+
+		private final double p50Micros;
+
+		private final double p99Micros;
+
+		private final double maximoMicros;
+
+		private final double resultadosPromedio;
+
+		ResumenOperacion(long llamadas, double p50Micros, double p99Micros, double maximoMicros,
+				double resultadosPromedio) {
+			this.llamadas = llamadas;
+			this.p50Micros = p50Micros;
+			this.p99Micros = p99Micros;
+			this.maximoMicros = maximoMicros;
+			this.resultadosPromedio = resultadosPromedio;
+		}
+
+		public long getLlamadas() {
+			return llamadas;
+		}
+
+		public double getP50Micros() {
+			return p50Micros;
+		}
+
+		public double getP99Micros() {
+			return p99Micros;
+		}
+
+		public double getMaximoMicros() {
+			return maximoMicros;
+		}
+
+		/**
+		 * @return Cantidad promedio de resultados por llamada
+		 */
+		public double getResultadosPromedio() {
+			return resultadosPromedio;
+		}
+	}
+
+	/**
+	 * Las mediciones de una operación
+	 */
+	private static final class Histograma {
+		private final LongAdder llamadas = new LongAdder();
+
+		private final LongAdder resultados = new LongAdder();
+
+		private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+		/**
+		 * Cantidad de llamadas cuya duración cae en cada cubeta
+		 */
+		private final AtomicLongArray cubetas = new AtomicLongArray(CUBETAS);
+
+		void agregar(long nanos, int cantidadResultados) {
+			nanos = Math.max(0, nanos);
+			cubetas.incrementAndGet(cubeta(nanos));
+			maximo.accumulate(nanos);
+			resultados.add(cantidadResultados);
+			llamadas.increment();
+		}
+
+		void reiniciar() {
+			for (int i = 0; i < CUBETAS; i++) {
+				cubetas.set(i, 0);
+			}
+			maximo.reset();
+			resultados.reset();
+			llamadas.reset();
+		}
+
+		/**
+		 * Calcula el resumen a partir de una copia de las cubetas. Si hay llamadas
+		 * mientras tanto, el resumen puede no incluir algunas.
+		 */
+		ResumenOperacion resumir() {
+			long[] copia = new long[CUBETAS];
+			long total = 0;
+			for (int i = 0; i < CUBETAS; i++) {
+				copia[i] = cubetas.get(i);
+				total += copia[i];
+			}
+			long max = maximo.get();
+			long cantidad = llamadas.sum();
+			return new ResumenOperacion(cantidad, percentil(copia, total, 50, max) / 1e3,
+					percentil(copia, total, 99, max) / 1e3, max / 1e3,
+					cantidad == 0 ? 0 : (double) resultados.sum() / cantidad);
+		}
+
+		/**
+		 * Retorna el límite superior de la cubeta donde está el percentil, sin pasar
+		 * del máximo medido
+		 */
+		private static long percentil(long[] copia, long total, double percentil, long max) {
+			if (total == 0) {
+				return 0;
+			}
+			long rango = Math.max(1, (long) Math.ceil(percentil / 100 * total));
+			long acumulado = 0;
+			for (int i = 0; i < CUBETAS; i++) {
+				acumulado += copia[i];
+				if (acumulado >= rango) {
+					return Math.min(limiteSuperior(i), max);
+				}
+			}
+			return max;
+		}
+
+		/**
+		 * La cubeta de una duración: las primeras SUBCUBETAS son exactas y después
+		 * cada potencia de dos se divide en SUBCUBETAS partes iguales
+		 */
+		private static int cubeta(long nanos) {
+			if (nanos < SUBCUBETAS) {
+				return (int) nanos;
+			}
+			int exponente = 63 - Long.numberOfLeadingZeros(nanos);
+			int sub = (int) (nanos >>> (exponente - BITS_SUBCUBETA)) & (SUBCUBETAS - 1);
+			return (exponente - BITS_SUBCUBETA + 1) * SUBCUBETAS + sub;
+		}
+
+		private static long limiteSuperior(int cubeta) {
+			if (cubeta < SUBCUBETAS) {
+				return cubeta;
+			}
+			int exponente = cubeta / SUBCUBETAS + BITS_SUBCUBETA - 1;
+			int sub = cubeta % SUBCUBETAS;
+			long siguiente = (long) (SUBCUBETAS + sub + 1) << (exponente - BITS_SUBCUBETA);
+			return siguiente < 0 ? Long.MAX_VALUE : siguiente - 1;
+		}
+	}
+}
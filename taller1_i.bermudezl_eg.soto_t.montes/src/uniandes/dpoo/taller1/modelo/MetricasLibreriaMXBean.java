@@ -0,0 +1,35 @@
+package uniandes.dpoo.taller1.modelo;
+
+import java.util.Map;
+
+/**
+ * Las métricas de la librería, como se ven por JMX
+ */
+public interface MetricasLibreriaMXBean {
+	/**
+	 * @return true si la aplicación se inició con -Dlibreria.metricas=true
+	 */
+	boolean isActivas();
+
+	/**
+	 * @return Cantidad de libros del catálogo después de la última carga o del
+	 *         último cambio
+	 */
+	int getTamanioCatalogo();
+
+	/**
+	 * @return El resumen de las mediciones de cada operación, según su nombre
+	 */
+	Map<String, MetricasLibreria.ResumenOperacion> getOperaciones();
+
+	/**
+	 * @return Las métricas como una tabla de texto, solo con las operaciones que
+	 *         se han llamado
+	 */
+	String volcar();
+
+	/**
+	 * Borra las mediciones hechas hasta ahora
+	 */
+	void reiniciar();
+}
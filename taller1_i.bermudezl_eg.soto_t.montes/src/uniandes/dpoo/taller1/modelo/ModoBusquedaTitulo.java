@@ -0,0 +1,39 @@
+package uniandes.dpoo.taller1.modelo;
+
+/**
+ * Indica cómo se compara el título buscado con los títulos de los libros.
+ */
+public enum ModoBusquedaTitulo {
+	/**
+	 * El título tiene que ser idéntico
+	 */
+	EXACTO,
+
+	/**
+	 * No se tienen en cuenta las mayúsculas y minúsculas
+	 */
+	SIN_MAYUSCULAS,
+
+	/**
+	 * No se tienen en cuenta las mayúsculas y minúsculas, se ignoran los espacios
+	 * al inicio y al final, y cualquier secuencia de espacios cuenta como uno solo
+	 */
+	NORMALIZADO;
+
+	/**
+	 * Calcula la llave con la que se compara un título en este modo
+	 * 
+	 * @param titulo El título
+	 * @return La llave del título
+	 */
+	String llave(String titulo) {
+		switch (this) {
+		case SIN_MAYUSCULAS:
+			return titulo.toLowerCase();
+		case NORMALIZADO:
+			return titulo.trim().replaceAll("\\s+", " ").toLowerCase();
+		default:
+			return titulo;
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package uniandes.dpoo.taller1.modelo;
+
+/**
+ * Indica la forma en la que la librería lee el archivo CSV con los libros.
+ */
+public enum ModoCarga {
+	/**
+	 * Lee el archivo línea por línea en un solo hilo
+	 */
+	SECUENCIAL,
+
+	/**
+	 * Mapea el archivo a memoria, lo divide en bloques que terminan en un salto de
+	 * línea y procesa los bloques en paralelo. Los libros quedan en el mismo orden
+	 * del archivo.
+	 */
+	PARALELO,
+
+	/**
+	 * Lee el archivo igual que PARALELO, pero guarda el catálogo por columnas, sin
+	 * un objeto Libro por libro, lo que ocupa mucha menos memoria. La librería
+	 * queda de solo lectura: no se puede cambiar, ni llevar un registro de
+	 * cambios, ni guardar una copia binaria.
+	 */
+	COLUMNAR
+}
@@ -0,0 +1,37 @@
+package uniandes.dpoo.taller1.modelo;
+
+/**
+ * Recibe los avisos de una carga de la librería que está en curso y le permite
+ * a quien la pidió cancelarla.
+ *
+ * Todos los métodos se invocan desde el hilo que está haciendo la carga.
+ */
+public interface ProgresoCarga {
+
+	/**
+	 * Informa cuánto se ha leído del archivo que se está cargando
+	 *
+	 * @param bytesLeidos  Cantidad de bytes leídos hasta el momento
+	 * @param bytesTotales Tamaño del archivo en bytes
+	 */
+	void avance(long bytesLeidos, long bytesTotales);
+
+	/**
+	 * Indica si se debe dejar de cargar. La carga revisa este método cada cierto
+	 * número de filas y, si retorna true, termina con una LoadCancelledException.
+	 *
+	 * @return true si la carga se debe cancelar
+	 */
+	boolean cancelado();
+
+	/**
+	 * Informa que una fila del archivo de libros no se pudo interpretar y que no
+	 * se cargó. La carga sigue con la fila siguiente. Solo se invoca en las cargas
+	 * que saltan las filas inválidas.
+	 *
+	 * @param numeroLinea El número de la línea en el archivo, empezando en 1
+	 * @param linea       El contenido de la línea
+	 * @param causa       El problema que se encontró en la línea
+	 */
+	void filaDescartada(long numeroLinea, String linea, RuntimeException causa);
+}
@@ -0,0 +1,613 @@
+package uniandes.dpoo.taller1.modelo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.zip.CRC32;
+
+/**
+ * Registro en disco de los cambios que se le hacen a una librería, para que no
+ * se pierdan al cerrar la aplicación sin tener que reescribir el catálogo
+ * completo. Cada cambio se agrega al final del archivo y, al abrir el registro,
+ * los cambios guardados se vuelven a aplicar sobre la librería cargada.
+ *
+ * El formato es:
+ *
+ * <pre>
+ * int     MAGICO
+ * int     VERSION
+ *         por cambio: int longitud, int crc, byte tipo y los datos del cambio
+ * </pre>
+ *
+ * La longitud y el CRC32 cubren el tipo y los datos. Un cambio de cambiar el
+ * nombre de una categoría tiene dos cadenas, el nombre actual y el nuevo; uno
+ * de borrar los libros de unos autores tiene un int con la cantidad de autores
+ * y sus nombres. Cada cadena se guarda como un int con la cantidad de bytes
+ * seguido de los bytes en UTF-8. Si el archivo termina en un cambio incompleto
+ * o dañado, por ejemplo porque la aplicación se cerró mientras se escribía, se
+ * descarta desde ese cambio en adelante.
+ *
+ * El registro es la única fuente de los cambios: la librería siempre se carga
+ * de los CSV o de una copia binaria hecha directamente a partir de ellos, y
+ * luego se le aplica el registro completo. Así los cambios sobreviven aunque
+ * los CSV se vuelvan a escribir.
+ *
+ * Para que el registro no crezca sin límite se compacta reescribiéndolo con el
+ * mismo efecto: todos los cambios de nombre, en orden, y un solo borrado con
+ * todos los autores borrados sin repetir. Los cambios de nombre solo afectan
+ * los nombres de las categorías y los borrados solo los libros de unos
+ * autores, así que el orden entre unos y otros no cambia el resultado. El
+ * registro compactado se escribe con otro nombre y luego reemplaza al actual.
+ *
+ * Los cambios se escriben en un hilo aparte. Quien hace un cambio lo agrega a la
+ * cola con el candado de la librería, que es una operación en memoria, y
+ * después, ya sin el candado, espera a que esté en disco. El hilo escribe de
+ * una vez todos los cambios que se juntaron mientras hacía la escritura
+ * anterior y hace un solo fsync por todos ellos.
+ */
+class RegistroCambios implements Closeable {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Marca que aparece al inicio de todo archivo válido
+	 */
+	private static final int MAGICO = 0x4C424331;
+
+	/**
+	 * Versión del formato. Se debe cambiar cada vez que cambie el formato.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Tamaño del encabezado del archivo
+	 */
+	private static final int TAMANIO_ENCABEZADO = 8;
+
+	/**
+	 * Tamaño de lo que va antes del tipo en cada cambio: la longitud y el CRC
+	 */
+	private static final int TAMANIO_PREFIJO = 8;
+
+	private static final byte TIPO_RENOMBRAR_CATEGORIA = 1;
+
+	private static final byte TIPO_BORRAR_AUTORES = 2;
+
+	/**
+	 * Tamaño mínimo del archivo a partir del cual se pide compactar el registro.
+	 * Después de cada compactación se espera a que el archivo doble su tamaño.
+	 */
+	static final long TAMANIO_COMPACTAR = 4 << 20;
+
+	// ************************************************************************
+	// Interfaces
+	// ************************************************************************
+
+	/**
+	 * Recibe los cambios guardados cuando se abre el registro
+	 */
+	interface Destino {
+		/**
+		 * @param nombreActual El nombre que tenía la categoría
+		 * @param nombreNuevo  El nombre nuevo
+		 */
+		void renombrarCategoria(String nombreActual, String nombreNuevo);
+
+		/**
+		 * @param autores Los autores cuyos libros se borraron
+		 */
+		void borrarLibrosPorAutor(String[] autores);
+	}
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * El archivo del registro
+	 */
+	private final Path archivo;
+
+	/**
+	 * El canal sobre el archivo. Cambia al compactar. Solo se usa con el monitor
+	 * de escritura.
+	 */
+	private FileChannel canal;
+
+	/**
+	 * Monitor que protege la escritura en el archivo
+	 */
+	private final Object escritura = new Object();
+
+	/**
+	 * Se invoca desde el hilo del registro cuando el archivo llega a
+	 * TAMANIO_COMPACTAR, o null
+	 */
+	private final Runnable compactacion;
+
+	private final Thread hilo;
+
+	/**
+	 * Los cambios en cola que todavía no se han escrito, ya codificados
+	 */
+	private ByteArrayOutputStream pendientes;
+
+	/**
+	 * Cantidad de cambios que se han agregado a la cola desde que se abrió el
+	 * registro
+	 */
+	private long encolados;
+
+	/**
+	 * Cantidad de cambios que ya están en disco
+	 */
+	private long escritos;
+
+	/**
+	 * El problema que impidió escribir los cambios, o null si no ha habido
+	 * ninguno. Una vez hay un error, ningún cambio más llega a disco.
+	 */
+	private IOException error;
+
+	private boolean cerrado;
+
+	/**
+	 * Tamaño del archivo. Solo se usa con el monitor de escritura.
+	 */
+	private long tamanio;
+
+	/**
+	 * Tamaño del archivo a partir del cual se pide compactar. Solo se usa con el
+	 * monitor de escritura.
+	 */
+	private long limiteCompactar;
+
+	/**
+	 * Los cambios de nombre del registro, incluidos los de la cola, en orden. Cada
+	 * uno es el nombre actual y el nuevo.
+	 */
+	private final ArrayList<String[]> renombres = new ArrayList<String[]>();
+
+	/**
+	 * Los autores borrados en el registro, incluidos los de la cola, sin repetir
+	 */
+	private final LinkedHashSet<String> autoresBorrados = new LinkedHashSet<String>();
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Abre el registro, le entrega al destino los cambios guardados en el orden en
+	 * el que se hicieron y empieza a aceptar cambios nuevos. Si el archivo no
+	 * existe, se crea vacío.
+	 *
+	 * @param archivo      El archivo del registro
+	 * @param destino      Recibe los cambios guardados
+	 * @param compactacion Se invoca cuando el registro crece demasiado, o null
+	 * @throws IOException Si hay algún problema con el archivo o si no es un
+	 *                     registro válido
+	 */
+	RegistroCambios(Path archivo, Destino destino, Runnable compactacion) throws IOException {
+		this.archivo = archivo;
+		this.canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		this.compactacion = compactacion;
+		this.pendientes = new ByteArrayOutputStream();
+		try {
+			tamanio = canal.size() < TAMANIO_ENCABEZADO ? escribirEncabezado() : repetir(destino);
+		} catch (IOException | RuntimeException e) {
+			canal.close();
+			throw e;
+		}
+		limiteCompactar = TAMANIO_COMPACTAR;
+		hilo = new Thread(this::escribirEnCola, "registro-cambios");
+		hilo.setDaemon(true);
+		hilo.start();
+	}
+
+	// ************************************************************************
+	// Otros métodos
+	// ************************************************************************
+
+	/**
+	 * Agrega a la cola el cambio de nombre de una categoría. Se debe invocar con
+	 * el candado de escritura de la librería, para que los cambios queden en el
+	 * mismo orden en el que se aplicaron.
+	 *
+	 * @return El número del cambio, para esperarlo con esperar
+	 */
+	synchronized long agregarRenombrarCategoria(String nombreActual, String nombreNuevo) {
+		renombres.add(new String[] { nombreActual, nombreNuevo });
+		return encolar(pendientes, TIPO_RENOMBRAR_CATEGORIA, new String[] { nombreActual, nombreNuevo }, false);
+	}
+
+	/**
+	 * Agrega a la cola el borrado de los libros de unos autores. Se debe invocar
+	 * con el candado de escritura de la librería.
+	 *
+	 * @return El número del cambio, para esperarlo con esperar
+	 */
+	synchronized long agregarBorrarAutores(String[] autores) {
+		for (String autor : autores) {
+			autoresBorrados.add(autor);
+		}
+		return encolar(pendientes, TIPO_BORRAR_AUTORES, autores, true);
+	}
+
+	/**
+	 * Espera a que un cambio esté en disco. Se debe invocar sin el candado de la
+	 * librería.
+	 *
+	 * @param cambio El número que retornó el método con el que se agregó
+	 * @throws IOException Si el cambio no se pudo escribir
+	 */
+	synchronized void esperar(long cambio) throws IOException {
+		boolean interrumpido = false;
+		while (escritos < cambio && error == null) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrumpido = true;
+			}
+		}
+		if (interrumpido) {
+			Thread.currentThread().interrupt();
+		}
+		if (escritos < cambio) {
+			throw new IOException("No se pudo escribir el registro de cambios", error);
+		}
+	}
+
+	/**
+	 * Espera a que estén en disco todos los cambios que se han agregado hasta
+	 * ahora. Se debe invocar sin el candado de la librería.
+	 *
+	 * @throws IOException Si alguno de los cambios no se pudo escribir
+	 */
+	synchronized void esperarTodos() throws IOException {
+		esperar(encolados);
+	}
+
+	/**
+	 * Escribe y lleva a disco todos los cambios que hay en la cola en este
+	 * momento. El hilo del registro lo invoca cada vez que hay cambios, pero
+	 * también se puede invocar desde cualquier otro hilo.
+	 *
+	 * @throws IOException Si los cambios no se pudieron escribir
+	 */
+	void vaciar() throws IOException {
+		synchronized (escritura) {
+			byte[] lote;
+			long hasta;
+			synchronized (this) {
+				if (error != null) {
+					throw new IOException("No se pudo escribir el registro de cambios", error);
+				}
+				if (pendientes.size() == 0) {
+					return;
+				}
+				lote = pendientes.toByteArray();
+				pendientes.reset();
+				hasta = encolados;
+			}
+			try {
+				ByteBuffer buffer = ByteBuffer.wrap(lote);
+				while (buffer.hasRemaining()) {
+					tamanio += canal.write(buffer, tamanio);
+				}
+				canal.force(false);
+			} catch (IOException e) {
+				synchronized (this) {
+					error = e;
+					notifyAll();
+				}
+				throw e;
+			}
+			synchronized (this) {
+				escritos = hasta;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Reescribe el registro con los cambios que tienen el mismo efecto, como se
+	 * explica en la documentación de la clase. Se debe invocar con el candado de
+	 * lectura de la librería, para que no se agreguen cambios mientras tanto.
+	 *
+	 * Si la aplicación se cierra a mitad de camino, queda el registro anterior o
+	 * el compactado completo, nunca uno a medias.
+	 *
+	 * @throws IOException Si hay algún problema con los archivos. Si el registro
+	 *                     compactado no llegó a reemplazar al anterior, se sigue
+	 *                     usando el anterior; si lo reemplazó pero no se pudo
+	 *                     abrir, ningún cambio más llega a disco.
+	 */
+	void compactar() throws IOException {
+		synchronized (escritura) {
+			vaciar();
+			ByteArrayOutputStream contenido = new ByteArrayOutputStream();
+			synchronized (this) {
+				contenido.write(ByteBuffer.allocate(TAMANIO_ENCABEZADO).putInt(MAGICO).putInt(VERSION).array());
+				for (String[] renombre : renombres) {
+					encolar(contenido, TIPO_RENOMBRAR_CATEGORIA, renombre, false);
+				}
+				if (!autoresBorrados.isEmpty()) {
+					encolar(contenido, TIPO_BORRAR_AUTORES, autoresBorrados.toArray(new String[0]), true);
+				}
+			}
+
+			Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+			Files.write(temporal, contenido.toByteArray());
+			forzar(temporal);
+			Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			forzar(archivo);
+
+			// El canal anterior apunta al archivo reemplazado, así que se abre el nuevo
+			FileChannel anterior = canal;
+			try {
+				canal = FileChannel.open(archivo, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			} catch (IOException e) {
+				synchronized (this) {
+					error = e;
+					notifyAll();
+				}
+				throw e;
+			}
+			anterior.close();
+			tamanio = contenido.size();
+			limiteCompactar = Math.max(TAMANIO_COMPACTAR, 2 * tamanio);
+		}
+	}
+
+	/**
+	 * Tamaño actual del archivo del registro
+	 */
+	long darTamanio() {
+		synchronized (escritura) {
+			return tamanio;
+		}
+	}
+
+	/**
+	 * Indica si el registro ya creció lo suficiente desde la última compactación
+	 * como para volver a compactarlo
+	 */
+	private boolean hayQueCompactar() {
+		synchronized (escritura) {
+			return tamanio >= limiteCompactar;
+		}
+	}
+
+	/**
+	 * Escribe los cambios que queden en la cola y cierra el registro
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			cerrado = true;
+			notifyAll();
+		}
+		try {
+			hilo.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			vaciar();
+		} finally {
+			synchronized (escritura) {
+				canal.close();
+			}
+		}
+	}
+
+	/**
+	 * Lleva a disco un archivo que se acaba de escribir y la carpeta que lo
+	 * contiene, para que el archivo sobreviva a una caída del sistema
+	 *
+	 * @param archivo El archivo
+	 * @throws IOException Si el archivo no se pudo llevar a disco
+	 */
+	static void forzar(Path archivo) throws IOException {
+		try (FileChannel c = FileChannel.open(archivo, StandardOpenOption.READ)) {
+			c.force(true);
+		}
+		Path carpeta = archivo.toAbsolutePath().getParent();
+		try (FileChannel c = FileChannel.open(carpeta, StandardOpenOption.READ)) {
+			c.force(true);
+		} catch (IOException e) {
+			// No todos los sistemas operativos permiten abrir una carpeta
+		}
+	}
+
+	/**
+	 * El ciclo del hilo del registro: espera a que haya cambios en la cola y los
+	 * escribe todos juntos
+	 */
+	private void escribirEnCola() {
+		while (true) {
+			synchronized (this) {
+				while (pendientes.size() == 0 && !cerrado) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						// Solo se termina al cerrar el registro
+					}
+				}
+				if (pendientes.size() == 0 || error != null) {
+					return;
+				}
+			}
+			try {
+				vaciar();
+				if (compactacion != null && hayQueCompactar()) {
+					compactacion.run();
+				}
+			} catch (IOException e) {
+				// Quien espera el cambio recibe el error
+			} catch (RuntimeException e) {
+				// Una compactación que falla no impide seguir registrando cambios
+			}
+		}
+	}
+
+	/**
+	 * Codifica un cambio y lo agrega al final de los bytes indicados. Si son los de
+	 * la cola, avisa al hilo del registro.
+	 *
+	 * @return El número del cambio
+	 */
+	private synchronized long encolar(ByteArrayOutputStream destino, byte tipo, String[] cadenas,
+			boolean conCantidad) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(tipo);
+			if (conCantidad) {
+				out.writeInt(cadenas.length);
+			}
+			for (String cadena : cadenas) {
+				byte[] utf8 = cadena.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(utf8.length);
+				out.write(utf8);
+			}
+			byte[] datos = bytes.toByteArray();
+			CRC32 crc = new CRC32();
+			crc.update(datos);
+
+			out = new DataOutputStream(destino);
+			out.writeInt(datos.length);
+			out.writeInt((int) crc.getValue());
+			out.write(datos);
+		} catch (IOException e) {
+			// Un ByteArrayOutputStream nunca lanza IOException
+			throw new IllegalStateException(e);
+		}
+		if (destino != pendientes) {
+			return encolados;
+		}
+		encolados++;
+		notifyAll();
+		return encolados;
+	}
+
+	private long escribirEncabezado() throws IOException {
+		ByteBuffer encabezado = ByteBuffer.allocate(TAMANIO_ENCABEZADO).putInt(MAGICO).putInt(VERSION);
+		encabezado.flip();
+		canal.truncate(0);
+		while (encabezado.hasRemaining()) {
+			canal.write(encabezado, encabezado.position());
+		}
+		canal.force(false);
+		return TAMANIO_ENCABEZADO;
+	}
+
+	/**
+	 * Lee los cambios guardados y se los entrega al destino. Si encuentra un cambio
+	 * incompleto o dañado, recorta el archivo justo antes de ese cambio.
+	 *
+	 * @return El tamaño del archivo con los cambios válidos
+	 */
+	private long repetir(Destino destino) throws IOException {
+		long largo = canal.size();
+		if (largo > Integer.MAX_VALUE) {
+			throw new IOException("El registro de cambios es demasiado grande");
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int) largo);
+		while (buffer.hasRemaining() && canal.read(buffer, buffer.position()) >= 0) {
+			// Se sigue leyendo hasta llenar el buffer
+		}
+		buffer.flip();
+		if (buffer.getInt() != MAGICO || buffer.getInt() != VERSION) {
+			throw new IOException("El archivo no es un registro de cambios válido");
+		}
+
+		int validos = buffer.position();
+		CRC32 crc = new CRC32();
+		while (buffer.remaining() >= TAMANIO_PREFIJO) {
+			int longitud = buffer.getInt();
+			int esperado = buffer.getInt();
+			if (longitud < 1 || longitud > buffer.remaining()) {
+				break;
+			}
+			crc.reset();
+			crc.update(buffer.array(), buffer.position(), longitud);
+			if ((int) crc.getValue() != esperado) {
+				break;
+			}
+			ByteBuffer datos = buffer.slice(buffer.position(), longitud);
+			buffer.position(buffer.position() + longitud);
+			if (!entregar(datos, destino)) {
+				break;
+			}
+			validos = buffer.position();
+		}
+
+		if (validos < largo) {
+			canal.truncate(validos);
+			canal.force(false);
+		}
+		return validos;
+	}
+
+	/**
+	 * Decodifica un cambio, lo recuerda para la compactación y se lo entrega al
+	 * destino
+	 *
+	 * @return false si el cambio no se puede decodificar
+	 */
+	private boolean entregar(ByteBuffer datos, Destino destino) {
+		try {
+			byte tipo = datos.get();
+			if (tipo == TIPO_RENOMBRAR_CATEGORIA) {
+				String actual = leerCadena(datos);
+				String nuevo = leerCadena(datos);
+				renombres.add(new String[] { actual, nuevo });
+				destino.renombrarCategoria(actual, nuevo);
+			} else if (tipo == TIPO_BORRAR_AUTORES) {
+				int cantidad = datos.getInt();
+				if (cantidad < 0 || cantidad > datos.remaining() / 4) {
+					return false;
+				}
+				String[] autores = new String[cantidad];
+				for (int i = 0; i < cantidad; i++) {
+					autores[i] = leerCadena(datos);
+				}
+				for (String autor : autores) {
+					autoresBorrados.add(autor);
+				}
+				destino.borrarLibrosPorAutor(autores);
+			} else {
+				return false;
+			}
+			return true;
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private static String leerCadena(ByteBuffer datos) {
+		int longitud = datos.getInt();
+		if (longitud < 0 || longitud > datos.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		String cadena = new String(datos.array(), datos.arrayOffset() + datos.position(), longitud,
+				StandardCharsets.UTF_8);
+		datos.position(datos.position() + longitud);
+		return cadena;
+	}
+}
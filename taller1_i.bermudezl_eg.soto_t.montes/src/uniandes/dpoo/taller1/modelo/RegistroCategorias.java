@@ -0,0 +1,144 @@
+package uniandes.dpoo.taller1.modelo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Registro de las categorías de una librería.
+ *
+ * Las categorías se guardan en el orden en el que se agregaron, que es también
+ * su identificador, y además en un mapa a partir de su nombre. Si hay varias
+ * categorías con el mismo nombre, el mapa apunta a la primera, que es la misma
+ * que se encontraba antes recorriendo el arreglo.
+ */
+class RegistroCategorias implements Iterable<Categoria> {
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Las categorías en el orden en el que se agregaron
+	 */
+	private ArrayList<Categoria> categorias;
+
+	/**
+	 * Las categorías a partir de su nombre
+	 */
+	private HashMap<String, Categoria> porNombre;
+
+	/**
+	 * Arreglo con las categorías, o null si se agregaron categorías después de
+	 * crearlo. Solo se vuelve a crear cuando se pide, para que agregar muchas
+	 * categorías seguidas no copie el arreglo cada vez.
+	 */
+	private Categoria[] arreglo;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye un registro vacío
+	 */
+	RegistroCategorias() {
+		categorias = new ArrayList<Categoria>();
+		porNombre = new HashMap<String, Categoria>();
+		arreglo = new Categoria[0];
+	}
+
+	// ************************************************************************
+	// Métodos para consultar los atributos
+	// ************************************************************************
+
+	/**
+	 * Busca una categoría a partir de su nombre
+	 *
+	 * @param nombre El nombre de la categoría
+	 * @return La categoría, o null si no hay una categoría con ese nombre
+	 */
+	Categoria buscar(String nombre) {
+		return porNombre.get(nombre);
+	}
+
+	/**
+	 * Retorna la categoría con el identificador indicado
+	 *
+	 * @param id El identificador, que es la posición de la categoría
+	 * @return La categoría
+	 */
+	Categoria darCategoria(int id) {
+		return categorias.get(id);
+	}
+
+	/**
+	 * Consulta cuántas categorías hay en el registro
+	 *
+	 * @return Cantidad de categorías
+	 */
+	int tamanio() {
+		return categorias.size();
+	}
+
+	/**
+	 * Retorna las categorías en un arreglo, en el orden en el que se agregaron.
+	 * Mientras no se agreguen categorías se retorna siempre el mismo arreglo.
+	 *
+	 * Si el arreglo no está al día lo vuelve a crear, así que modifica el
+	 * registro: quien lo comparte entre hilos debe invocarlo con un candado de
+	 * escritura y usar arregloVigente para las lecturas.
+	 *
+	 * @return El arreglo con las categorías
+	 */
+	Categoria[] comoArreglo() {
+		if (arreglo == null) {
+			arreglo = categorias.toArray(new Categoria[categorias.size()]);
+		}
+		return arreglo;
+	}
+
+	/**
+	 * Retorna el arreglo con las categorías sin modificar el registro
+	 *
+	 * @return El arreglo con las categorías, o null si hay que crearlo con
+	 *         comoArreglo
+	 */
+	Categoria[] arregloVigente() {
+		return arreglo;
+	}
+
+	// ************************************************************************
+	// Otros métodos
+	// ************************************************************************
+
+	/**
+	 * Agrega una categoría al final del registro y le asigna su identificador
+	 *
+	 * @param categoria La categoría nueva
+	 */
+	void agregar(Categoria categoria) {
+		categoria.cambiarId(categorias.size());
+		categorias.add(categoria);
+		porNombre.putIfAbsent(categoria.darNombre(), categoria);
+		arreglo = null;
+	}
+
+	/**
+	 * Le cambia el nombre a una categoría del registro
+	 *
+	 * @param categoria   La categoría
+	 * @param nuevoNombre El nuevo nombre, que no debe tener ninguna otra categoría
+	 */
+	void renombrar(Categoria categoria, String nuevoNombre) {
+		if (porNombre.get(categoria.darNombre()) == categoria) {
+			porNombre.remove(categoria.darNombre());
+		}
+		categoria.cambiaarNombre(nuevoNombre);
+		porNombre.put(nuevoNombre, categoria);
+	}
+
+	@Override
+	public Iterator<Categoria> iterator() {
+		return categorias.iterator();
+	}
+}
@@ -0,0 +1,186 @@
+package uniandes.dpoo.taller1.modelo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Esta clase permite saber si existe el archivo de una portada sin hacer una
+ * llamada al sistema de archivos por cada libro.
+ *
+ * Al construirse recorre una sola vez la carpeta "data" y guarda en un conjunto
+ * las rutas de todo lo que encuentra. Las rutas que quedan fuera de la carpeta
+ * se revisan directamente en el sistema de archivos, igual que antes.
+ *
+ * El recorrido sigue los enlaces simbólicos, igual que File.exists. Si alguna
+ * subcarpeta no se puede recorrer, las rutas dentro de ella también se revisan
+ * directamente en el sistema de archivos.
+ *
+ * Se puede consultar desde varios hilos a la vez.
+ */
+class ResolutorPortadas {
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * La carpeta en la que se buscan las portadas, normalizada
+	 */
+	private Path carpeta;
+
+	/**
+	 * Las rutas normalizadas de todos los archivos y carpetas que hay dentro de la
+	 * carpeta, incluyendo la carpeta misma
+	 */
+	private HashSet<Path> existentes;
+
+	/**
+	 * Las carpetas, normalizadas, que no se pudieron recorrer completas
+	 */
+	private ArrayList<Path> sinRecorrer;
+
+	/**
+	 * Cantidad de consultas para las que el archivo existía
+	 */
+	private LongAdder encontradas;
+
+	/**
+	 * Cantidad de consultas para las que el archivo no existía
+	 */
+	private LongAdder noEncontradas;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Recorre la carpeta indicada y guarda las rutas de todo lo que contiene. Si la
+	 * carpeta no existe, ningún archivo dentro de ella existe.
+	 *
+	 * @param nombreCarpeta La carpeta con las portadas
+	 * @throws IOException Si hay algún problema recorriendo la carpeta. Las
+	 *                     subcarpetas que no se pueden leer no lanzan
+	 *                     excepciones: se revisan después archivo por archivo.
+	 */
+	ResolutorPortadas(String nombreCarpeta) throws IOException {
+		carpeta = Paths.get(nombreCarpeta).normalize();
+		existentes = new HashSet<Path>();
+		sinRecorrer = new ArrayList<Path>();
+		encontradas = new LongAdder();
+		noEncontradas = new LongAdder();
+		if (Files.isDirectory(carpeta)) {
+			Files.walkFileTree(carpeta, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+					new SimpleFileVisitor<Path>() {
+						@Override
+						public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+							existentes.add(dir.normalize());
+							return FileVisitResult.CONTINUE;
+						}
+
+						@Override
+						public FileVisitResult visitFile(Path archivo, BasicFileAttributes attrs) {
+							// Un enlace simbólico que se visita como archivo apunta a algo que no
+							// existe, y para File.exists tampoco existe
+							if (!attrs.isSymbolicLink()) {
+								existentes.add(archivo.normalize());
+							}
+							return FileVisitResult.CONTINUE;
+						}
+
+						@Override
+						public FileVisitResult visitFileFailed(Path archivo, IOException e) {
+							// Puede ser una carpeta sin permisos o un ciclo de enlaces
+							sinRecorrer.add(archivo.normalize());
+							return FileVisitResult.CONTINUE;
+						}
+
+						@Override
+						public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+							if (e != null) {
+								sinRecorrer.add(dir.normalize());
+							}
+							return FileVisitResult.CONTINUE;
+						}
+					});
+		}
+	}
+
+	// ************************************************************************
+	// Métodos para consultar los atributos
+	// ************************************************************************
+
+	/**
+	 * Consulta cuántas veces se encontró el archivo de una portada
+	 *
+	 * @return Cantidad de portadas encontradas
+	 */
+	long darEncontradas() {
+		return encontradas.sum();
+	}
+
+	/**
+	 * Consulta cuántas veces no se encontró el archivo de una portada
+	 *
+	 * @return Cantidad de portadas no encontradas
+	 */
+	long darNoEncontradas() {
+		return noEncontradas.sum();
+	}
+
+	// ************************************************************************
+	// Otros métodos
+	// ************************************************************************
+
+	/**
+	 * Verifica si existe el archivo con el nombre indicado dentro de la carpeta
+	 *
+	 * @param nombreArchivo El nombre del archivo, relativo a la carpeta
+	 * @return true si el archivo existe, false de lo contrario
+	 */
+	boolean existe(String nombreArchivo) {
+		boolean existe;
+		try {
+			Path ruta = carpeta.resolve(nombreArchivo).normalize();
+			if (ruta.startsWith(carpeta) && !estaSinRecorrer(ruta)) {
+				existe = existentes.contains(ruta);
+			} else {
+				existe = new File(carpeta.toFile(), nombreArchivo).exists();
+			}
+		} catch (InvalidPathException e) {
+			existe = new File(carpeta.toFile(), nombreArchivo).exists();
+		}
+
+		if (existe) {
+			encontradas.increment();
+		} else {
+			noEncontradas.increment();
+		}
+		return existe;
+	}
+
+	/**
+	 * Indica si una ruta queda dentro de alguna carpeta que no se pudo recorrer
+	 *
+	 * @param ruta La ruta normalizada
+	 * @return true si hay que revisarla en el sistema de archivos
+	 */
+	private boolean estaSinRecorrer(Path ruta) {
+		for (Path p : sinRecorrer) {
+			if (ruta.startsWith(p)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,477 @@
+package uniandes.dpoo.taller1.modelo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Esta clase escribe y lee una copia binaria del estado de una librería: las
+ * categorías (incluyendo las que se crearon porque no estaban en el archivo de
+ * categorías), los libros y sus portadas.
+ *
+ * El formato es:
+ *
+ * <pre>
+ * int     MAGICO
+ * int     VERSION
+ * long    tamaño y long fecha de modificación del archivo de categorías
+ * long    tamaño y long fecha de modificación del archivo de libros
+ * int     cantidad de filas inválidas que se saltaron al cargar el archivo de libros
+ * int     cantidad de categorías que venían en el archivo de categorías
+ * int     cantidad de categorías
+ *         por categoría: cadena nombre, byte ficcion
+ * int     cantidad de autores distintos
+ *         por autor: cadena nombre
+ * int     cantidad de libros
+ *         por libro: cadena titulo, int autor, double calificacion, int categoria,
+ *                    byte tienePortada, y si la tiene: cadena ruta, int ancho, int alto
+ * int     MAGICO
+ * int     CRC32 de todo lo anterior
+ * </pre>
+ *
+ * Cada cadena se guarda como un int con la cantidad de bytes seguido de los
+ * bytes en UTF-8. La lectura se hace sobre el archivo mapeado a memoria.
+ *
+ * El tamaño y la fecha de los CSV son los que tenían cuando se cargó la
+ * librería, o -1 si la librería ya no corresponde a ellos. La copia solo está
+ * al día si los CSV siguen teniendo exactamente ese tamaño y esa fecha, y si
+ * no se saltaron filas inválidas o quien la abre también las salta.
+ */
+class SnapshotLibreria {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Marca que aparece al inicio y al final de todo archivo válido
+	 */
+	private static final int MAGICO = 0x4C425331;
+
+	/**
+	 * Versión del formato. Se debe cambiar cada vez que cambie el formato.
+	 */
+	private static final int VERSION = 3;
+
+	/**
+	 * Tamaño máximo de cada ventana del archivo que se mapea a memoria
+	 */
+	private static final long TAMANIO_VENTANA = 1 << 30;
+
+	/**
+	 * Tamaño del encabezado: MAGICO, VERSION, el tamaño y la fecha de los dos CSV
+	 * y la cantidad de filas inválidas
+	 */
+	private static final int TAMANIO_ENCABEZADO = 8 + 4 * Long.BYTES + Integer.BYTES;
+
+	/**
+	 * Tamaño mínimo de cada categoría y de cada libro en el archivo, para
+	 * descartar cantidades imposibles antes de reservar memoria
+	 */
+	private static final int TAMANIO_MINIMO_CATEGORIA = 5;
+
+	private static final int TAMANIO_MINIMO_LIBRO = 21;
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * El canal sobre el archivo que se está leyendo
+	 */
+	private FileChannel canal;
+
+	/**
+	 * La ventana del archivo que está mapeada en este momento
+	 */
+	private ByteBuffer ventana;
+
+	/**
+	 * La posición del archivo en la que empieza la ventana
+	 */
+	private long inicioVentana;
+
+	/**
+	 * Recibe los avisos de la lectura, o null
+	 */
+	private ProgresoCarga progreso;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	private SnapshotLibreria(FileChannel canal, ProgresoCarga progreso) {
+		this.canal = canal;
+		this.progreso = progreso;
+	}
+
+	// ************************************************************************
+	// Escritura
+	// ************************************************************************
+
+	/**
+	 * Escribe la copia binaria. El archivo se escribe primero con otro nombre y
+	 * luego se reemplaza, así que nunca queda una copia a medio escribir.
+	 *
+	 * @param archivo         El archivo donde se va a guardar la copia
+	 * @param firmaCategorias Cómo estaba el archivo de categorías cuando se cargó
+	 *                        la librería, o null si ya no corresponde a él
+	 * @param firmaLibros     Cómo estaba el archivo de libros cuando se cargó la
+	 *                        librería, o null si ya no corresponde a él
+	 * @param categorias      Las categorías de la librería
+	 * @param categoriasOnCsv Cuántas de las categorías venían en el archivo de
+	 *                        categorías
+	 * @param catalogo        Los libros de la librería
+	 * @param filasDescartadas Cuántas filas inválidas se saltaron al cargar el
+	 *                         archivo de libros
+	 * @throws IOException Si hay algún problema escribiendo el archivo
+	 */
+	static void escribir(Path archivo, Firma firmaCategorias, Firma firmaLibros, RegistroCategorias categorias,
+			int categoriasOnCsv, ArrayList<Libro> catalogo, int filasDescartadas) throws IOException {
+		Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+		CRC32 crc = new CRC32();
+		try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(temporal), 1 << 16), crc))) {
+			out.writeInt(MAGICO);
+			out.writeInt(VERSION);
+			Firma.escribir(out, firmaCategorias);
+			Firma.escribir(out, firmaLibros);
+			out.writeInt(filasDescartadas);
+			out.writeInt(categoriasOnCsv);
+
+			out.writeInt(categorias.tamanio());
+			for (Categoria c : categorias) {
+				escribirCadena(out, c.darNombre());
+				out.writeByte(c.esFiccion() ? 1 : 0);
+			}
+
+			HashMap<String, Integer> idsAutores = new HashMap<String, Integer>();
+			ArrayList<String> autores = new ArrayList<String>();
+			for (Libro l : catalogo) {
+				if (idsAutores.putIfAbsent(l.darAutor(), autores.size()) == null) {
+					autores.add(l.darAutor());
+				}
+			}
+			out.writeInt(autores.size());
+			for (String autor : autores) {
+				escribirCadena(out, autor);
+			}
+
+			out.writeInt(catalogo.size());
+			for (Libro l : catalogo) {
+				escribirCadena(out, l.darTitulo());
+				out.writeInt(idsAutores.get(l.darAutor()));
+				out.writeDouble(l.darCalificacion());
+				out.writeInt(l.darCategoria().darId());
+				out.writeByte(l.tienePortada() ? 1 : 0);
+				if (l.tienePortada()) {
+					Imagen portada = l.darPortada();
+					escribirCadena(out, portada.darRutaArchivo());
+					out.writeInt(portada.darAncho());
+					out.writeInt(portada.darAlto());
+				}
+			}
+			out.writeInt(MAGICO);
+			out.writeInt((int) crc.getValue());
+		}
+		Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void escribirCadena(DataOutputStream out, String cadena) throws IOException {
+		byte[] bytes = cadena.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	// ************************************************************************
+	// Lectura
+	// ************************************************************************
+
+	/**
+	 * Lee una copia binaria y construye la librería correspondiente
+	 *
+	 * @param archivo  El archivo con la copia
+	 * @param progreso Recibe los avisos de la lectura, o null
+	 * @return La librería
+	 * @throws IOException Si hay algún problema leyendo el archivo, si no es una
+	 *                     copia válida o si es de otra versión. Si se cancela la
+	 *                     lectura, se lanza una LoadCancelledException.
+	 */
+	static Libreria leer(Path archivo, ProgresoCarga progreso) throws IOException {
+		try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+			try {
+				return new SnapshotLibreria(canal, progreso).leerLibreria(archivo);
+			} catch (RuntimeException e) {
+				// Con una copia dañada cualquier operación puede fallar, por ejemplo al
+				// reservar un arreglo con una cantidad absurda
+				throw new IOException("La copia " + archivo + " está incompleta o dañada", e);
+			}
+		}
+	}
+
+	/**
+	 * Indica si la copia existe y se hizo a partir de los archivos CSV tal como
+	 * están ahora. Solo lee el encabezado de la copia.
+	 *
+	 * Si al cargar los CSV se saltaron filas inválidas, la copia solo sirve si
+	 * quien la va a abrir también las salta: si no, cargar los CSV debe fallar.
+	 *
+	 * @param archivo              El archivo con la copia
+	 * @param archivoCategorias    El archivo CSV de categorías
+	 * @param archivoLibros        El archivo CSV de libros
+	 * @param saltarFilasInvalidas Indica si quien abre la librería salta las filas
+	 *                             inválidas
+	 * @return true si la copia se puede usar en lugar de los CSV
+	 */
+	static boolean alDia(Path archivo, Path archivoCategorias, Path archivoLibros, boolean saltarFilasInvalidas) {
+		try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+			ByteBuffer encabezado = ByteBuffer.allocate(TAMANIO_ENCABEZADO);
+			while (encabezado.hasRemaining() && canal.read(encabezado) >= 0) {
+				// Se sigue leyendo hasta llenar el encabezado
+			}
+			encabezado.flip();
+			if (encabezado.remaining() < TAMANIO_ENCABEZADO || encabezado.getInt() != MAGICO
+					|| encabezado.getInt() != VERSION) {
+				return false;
+			}
+			Firma categorias = Firma.leer(encabezado);
+			Firma libros = Firma.leer(encabezado);
+			if (encabezado.getInt() > 0 && !saltarFilasInvalidas) {
+				return false;
+			}
+			return categorias != null && categorias.equals(Firma.de(archivoCategorias)) && libros != null
+					&& libros.equals(Firma.de(archivoLibros));
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private Libreria leerLibreria(Path archivo) throws IOException {
+		revisarCrc();
+		if (leerInt() != MAGICO) {
+			throw new IOException("El archivo no es una copia de una librería");
+		}
+		int version = leerInt();
+		if (version != VERSION) {
+			throw new IOException("La copia es de la versión " + version + " y se esperaba la versión " + VERSION);
+		}
+		asegurar(4 * Long.BYTES);
+		Firma firmaCategorias = Firma.leer(ventana);
+		Firma firmaLibros = Firma.leer(ventana);
+		int filasDescartadas = leerInt();
+		int categoriasOnCsv = leerInt();
+
+		RegistroCategorias categorias = new RegistroCategorias();
+		int nCategorias = leerCantidad(TAMANIO_MINIMO_CATEGORIA);
+		for (int i = 0; i < nCategorias; i++) {
+			String nombre = leerCadena();
+			boolean ficcion = leerByte() == 1;
+			categorias.agregar(new Categoria(nombre, ficcion));
+		}
+
+		String[] autores = new String[leerCantidad(Integer.BYTES)];
+		for (int i = 0; i < autores.length; i++) {
+			autores[i] = leerCadena();
+		}
+
+		int nLibros = leerCantidad(TAMANIO_MINIMO_LIBRO);
+		ArrayList<Libro> catalogo = new ArrayList<Libro>(nLibros);
+		for (int i = 0; i < nLibros; i++) {
+			if (progreso != null && i % Libreria.FILAS_POR_AVISO == 0) {
+				Libreria.revisarCancelacion(progreso, archivo);
+				progreso.avance(inicioVentana + ventana.position(), canal.size());
+			}
+			String titulo = leerCadena();
+			String autor = autores[leerInt()];
+			double calificacion = leerDouble();
+			Categoria categoria = categorias.darCategoria(leerInt());
+			Libro libro = new Libro(titulo, autor, calificacion, categoria);
+			libro.cambiarPosicion(i);
+			if (leerByte() == 1) {
+				String ruta = leerCadena();
+				int ancho = leerInt();
+				int alto = leerInt();
+				libro.cambiarPortada(new Imagen(ruta, ancho, alto));
+			}
+			catalogo.add(libro);
+		}
+
+		if (leerInt() != MAGICO) {
+			throw new IOException("La copia está incompleta o dañada");
+		}
+		if (progreso != null) {
+			progreso.avance(canal.size(), canal.size());
+		}
+		Libreria.revisarCancelacion(progreso, archivo);
+		return new Libreria(categorias, categoriasOnCsv, catalogo, firmaCategorias, firmaLibros, filasDescartadas);
+	}
+
+	/**
+	 * Revisa que el CRC32 guardado al final del archivo corresponda a su
+	 * contenido, antes de interpretar cualquier cosa
+	 *
+	 * @throws IOException Si el archivo está dañado
+	 */
+	private void revisarCrc() throws IOException {
+		long tamanio = canal.size();
+		if (tamanio < TAMANIO_ENCABEZADO + 2 * Integer.BYTES) {
+			throw new IOException("La copia está incompleta o dañada");
+		}
+		long fin = tamanio - Integer.BYTES;
+		CRC32 crc = new CRC32();
+		for (long posicion = 0; posicion < fin; posicion += TAMANIO_VENTANA) {
+			crc.update(canal.map(FileChannel.MapMode.READ_ONLY, posicion, Math.min(TAMANIO_VENTANA, fin - posicion)));
+		}
+		ByteBuffer guardado = ByteBuffer.allocate(Integer.BYTES);
+		while (guardado.hasRemaining() && canal.read(guardado, fin + guardado.position()) >= 0) {
+			// Se sigue leyendo hasta tener los cuatro bytes
+		}
+		guardado.flip();
+		if (guardado.remaining() < Integer.BYTES || guardado.getInt() != (int) crc.getValue()) {
+			throw new IOException("La copia está incompleta o dañada");
+		}
+	}
+
+	/**
+	 * Lee una cantidad de elementos y revisa que quepan en lo que queda del
+	 * archivo
+	 *
+	 * @param tamanioMinimo El tamaño mínimo de cada elemento en el archivo
+	 */
+	private int leerCantidad(int tamanioMinimo) throws IOException {
+		int cantidad = leerInt();
+		long restante = canal.size() - (inicioVentana + ventana.position());
+		if (cantidad < 0 || (long) cantidad * tamanioMinimo > restante) {
+			throw new IOException("La copia está incompleta o dañada");
+		}
+		return cantidad;
+	}
+
+	/**
+	 * Se asegura de que la ventana mapeada tenga por lo menos la cantidad de bytes
+	 * indicada a partir de la posición actual, moviendo la ventana si hace falta
+	 */
+	private void asegurar(int bytes) throws IOException {
+		if (ventana != null && ventana.remaining() >= bytes) {
+			return;
+		}
+		long posicion = ventana == null ? 0 : inicioVentana + ventana.position();
+		long tamanio = Math.min(canal.size() - posicion, Math.max(TAMANIO_VENTANA, bytes));
+		if (tamanio < bytes) {
+			throw new IOException("La copia está incompleta o dañada");
+		}
+		ventana = canal.map(FileChannel.MapMode.READ_ONLY, posicion, tamanio);
+		inicioVentana = posicion;
+	}
+
+	private int leerInt() throws IOException {
+		asegurar(Integer.BYTES);
+		return ventana.getInt();
+	}
+
+	private double leerDouble() throws IOException {
+		asegurar(Double.BYTES);
+		return ventana.getDouble();
+	}
+
+	private byte leerByte() throws IOException {
+		asegurar(1);
+		return ventana.get();
+	}
+
+	private String leerCadena() throws IOException {
+		int longitud = leerInt();
+		if (longitud < 0) {
+			throw new IOException("La copia está incompleta o dañada");
+		}
+		asegurar(longitud);
+		byte[] bytes = new byte[longitud];
+		ventana.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * El tamaño y la fecha de modificación de un archivo CSV, para saber si
+	 * cambió desde que se cargó
+	 */
+	static final class Firma {
+		/**
+		 * Margen en milisegundos dentro del cual una fecha de modificación no sirve
+		 * para distinguir versiones del archivo en sistemas de archivos que guardan
+		 * las fechas con precisión de uno o dos segundos
+		 */
+		private static final long MARGEN_FECHA = 2000;
+
+		private final long tamanio;
+
+		private final long modificacion;
+
+		private Firma(long tamanio, long modificacion) {
+			this.tamanio = tamanio;
+			this.modificacion = modificacion;
+		}
+
+		/**
+		 * Retorna la firma actual de un archivo, antes de leerlo.
+		 *
+		 * Si la fecha no tiene milisegundos y es de hace menos de MARGEN_FECHA, el
+		 * archivo se puede volver a escribir sin que cambie la fecha, así que no se
+		 * retorna ninguna firma y las copias que se hagan a partir de él nunca se
+		 * consideran al día.
+		 *
+		 * @param archivo El archivo
+		 * @return La firma, o null si no se puede saber cómo está el archivo
+		 */
+		static Firma de(Path archivo) {
+			try {
+				long tamanio = Files.size(archivo);
+				long modificacion = Files.getLastModifiedTime(archivo).toMillis();
+				if (modificacion % 1000 == 0 && System.currentTimeMillis() - modificacion < MARGEN_FECHA) {
+					return null;
+				}
+				return new Firma(tamanio, modificacion);
+			} catch (IOException e) {
+				return null;
+			}
+		}
+
+		private static void escribir(DataOutputStream out, Firma firma) throws IOException {
+			out.writeLong(firma == null ? -1 : firma.tamanio);
+			out.writeLong(firma == null ? -1 : firma.modificacion);
+		}
+
+		private static Firma leer(ByteBuffer buffer) {
+			long tamanio = buffer.getLong();
+			long modificacion = buffer.getLong();
+			return tamanio < 0 ? null : new Firma(tamanio, modificacion);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Firma)) {
+				return false;
+			}
+			Firma otra = (Firma) o;
+			return tamanio == otra.tamanio && modificacion == otra.modificacion;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(tamanio) * 31 + Long.hashCode(modificacion);
+		}
+	}
+}
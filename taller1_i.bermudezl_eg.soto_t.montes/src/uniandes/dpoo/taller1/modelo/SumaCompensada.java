@@ -0,0 +1,72 @@
+package uniandes.dpoo.taller1.modelo;
+
+/**
+ * Una suma de números double a la que se le pueden agregar y quitar valores sin
+ * que se acumule el error de redondeo.
+ *
+ * Se usa la suma compensada de Neumaier: además de la suma se guarda la parte
+ * de cada operación que se perdió al redondear, y se tiene en cuenta al
+ * consultar el valor. Así, después de agregar y quitar muchos valores, el
+ * resultado sigue siendo prácticamente el mismo que se obtendría al sumar desde
+ * cero los valores que quedan, sin tener que recorrerlos.
+ */
+class SumaCompensada {
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * La suma redondeada
+	 */
+	private double suma;
+
+	/**
+	 * Lo que se ha perdido al redondear la suma
+	 */
+	private double compensacion;
+
+	// ************************************************************************
+	// Métodos
+	// ************************************************************************
+
+	/**
+	 * Consulta el valor de la suma
+	 *
+	 * @return La suma de los valores agregados menos la de los quitados
+	 */
+	double darValor() {
+		return suma + compensacion;
+	}
+
+	/**
+	 * Agrega un valor a la suma
+	 *
+	 * @param valor El valor
+	 */
+	void agregar(double valor) {
+		double nueva = suma + valor;
+		if (Math.abs(suma) >= Math.abs(valor)) {
+			compensacion += (suma - nueva) + valor;
+		} else {
+			compensacion += (valor - nueva) + suma;
+		}
+		suma = nueva;
+	}
+
+	/**
+	 * Quita de la suma un valor que se había agregado
+	 *
+	 * @param valor El valor
+	 */
+	void quitar(double valor) {
+		agregar(-valor);
+	}
+
+	/**
+	 * Deja la suma en cero
+	 */
+	void reiniciar() {
+		suma = 0;
+		compensacion = 0;
+	}
+}
@@ -0,0 +1,547 @@
+package uniandes.dpoo.taller1.modelo;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Vigila los archivos de categorías y de libros de una librería y, cuando
+ * cambian, le aplica solo las diferencias: agrega los libros de las filas
+ * nuevas y quita los de las filas que ya no están. Una fila que cambió cuenta
+ * como una fila que se quitó y otra que se agregó.
+ *
+ * Para cada fila aplicada se guarda un hash de su texto y el libro que le
+ * corresponde. Si el archivo solo creció y lo que ya se había leído no cambió,
+ * se leen únicamente las filas nuevas, así que el trabajo depende del tamaño
+ * del cambio. Si el archivo se reescribió, se lee completo una vez y se compara
+ * por hash con las filas aplicadas, pero en la librería solo se tocan los
+ * libros de las filas que cambiaron.
+ *
+ * Las categorías del archivo de categorías que todavía no están en la librería
+ * se agregan. Las categorías no se quitan ni se modifican.
+ *
+ * Los cambios que se le hicieron a la librería, como los del registro de
+ * cambios, tienen prioridad sobre las filas nuevas: las filas de una categoría
+ * renombrada van a la categoría con su nombre nuevo y las de un autor cuyos
+ * libros se borraron no se agregan. Así la librería queda igual que si se
+ * volviera a cargar de los archivos y se le aplicara el registro.
+ *
+ * El vigilante se debe construir justo después de cargar la librería de los
+ * mismos archivos, para que las filas correspondan a los libros del catálogo.
+ */
+public class VigilanteCatalogo implements Closeable {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Tiempo que se espera después de un aviso de cambio antes de revisar los
+	 * archivos, para que quien los escribe termine y para juntar varios avisos en
+	 * una sola revisión
+	 */
+	private static final long ESPERA_MILIS = 200;
+
+	/**
+	 * Cantidad máxima de bytes del final de la parte aplicada del archivo de
+	 * libros que se guardan para saber si el archivo solo creció
+	 */
+	private static final int TAMANIO_FINAL = 4096;
+
+	/**
+	 * Tamaño del buffer con el que se lee el archivo de libros
+	 */
+	private static final int TAMANIO_BUFFER = 1 << 16;
+
+	private static final long FNV_BASE = 0xcbf29ce484222325L;
+
+	private static final long FNV_PRIMO = 0x100000001b3L;
+
+	// ************************************************************************
+	// Interfaces
+	// ************************************************************************
+
+	/**
+	 * Recibe los avisos del vigilante. Los avisos llegan desde el hilo del
+	 * vigilante, no desde el hilo de la interfaz.
+	 */
+	public interface OyenteCambios {
+		/**
+		 * Avisa que se aplicaron cambios a la librería
+		 *
+		 * @param librosAgregados Cantidad de libros que se agregaron
+		 * @param librosQuitados  Cantidad de libros de las filas que ya no están
+		 */
+		void cambiosAplicados(int librosAgregados, int librosQuitados);
+
+		/**
+		 * Avisa que no se pudieron revisar los archivos. La librería queda como
+		 * estaba y el vigilante lo vuelve a intentar con el siguiente cambio.
+		 *
+		 * @param causa El problema que se encontró
+		 */
+		void revisionFallida(Exception causa);
+	}
+
+	/**
+	 * Recibe las líneas leídas del archivo de libros
+	 */
+	@FunctionalInterface
+	private interface ConsumidorLinea {
+		/**
+		 * @param hash     El hash de los bytes de la línea
+		 * @param bytes    Los bytes de la línea, sin el salto de línea. El arreglo
+		 *                 se reutiliza para la siguiente línea.
+		 * @param longitud Cantidad de bytes de la línea
+		 */
+		void aceptar(long hash, byte[] bytes, int longitud);
+	}
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	private final Libreria libreria;
+
+	private final Path archivoCategorias;
+
+	private final Path archivoLibros;
+
+	/**
+	 * Recibe los avisos, o null
+	 */
+	private final OyenteCambios oyente;
+
+	/**
+	 * Los libros de las filas aplicadas, según el hash del texto de cada fila. Las
+	 * filas repetidas comparten la lista y las que no se pudieron interpretar o no
+	 * tienen libro se guardan con null.
+	 */
+	private HashMap<Long, ArrayList<Libro>> librosPorFila;
+
+	/**
+	 * Cantidad de bytes del archivo de libros que ya se aplicaron
+	 */
+	private long tamanioAplicado;
+
+	/**
+	 * Los últimos bytes de la parte aplicada del archivo de libros
+	 */
+	private byte[] finalAplicado;
+
+	/**
+	 * La fecha de modificación del archivo de libros cuando se revisó por última
+	 * vez
+	 */
+	private FileTime modificacionLibros;
+
+	/**
+	 * La fecha de modificación y el tamaño del archivo de categorías cuando se
+	 * revisó por última vez
+	 */
+	private FileTime modificacionCategorias;
+
+	private long tamanioCategorias;
+
+	private WatchService servicio;
+
+	private Thread hilo;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Prepara el vigilante de los archivos de una librería. Lee una vez el archivo
+	 * de libros para asociar cada fila con su libro del catálogo, pero no empieza
+	 * a vigilar hasta que se llame iniciar.
+	 *
+	 * @param libreria                La librería que se cargó de los archivos
+	 * @param nombreArchivoCategorias El archivo CSV de categorías
+	 * @param nombreArchivoLibros     El archivo CSV de libros
+	 * @param oyente                  Recibe los avisos, o null
+	 * @throws IOException Si hay algún problema leyendo los archivos
+	 * @throws UnsupportedOperationException Si la librería es de solo lectura
+	 */
+	public VigilanteCatalogo(Libreria libreria, String nombreArchivoCategorias, String nombreArchivoLibros,
+			OyenteCambios oyente) throws IOException {
+		if (libreria.esSoloLectura()) {
+			throw new UnsupportedOperationException("No se puede vigilar una librería de solo lectura");
+		}
+		this.libreria = libreria;
+		this.archivoCategorias = Paths.get(nombreArchivoCategorias).toAbsolutePath().normalize();
+		this.archivoLibros = Paths.get(nombreArchivoLibros).toAbsolutePath().normalize();
+		this.oyente = oyente;
+		this.librosPorFila = new HashMap<Long, ArrayList<Libro>>();
+		this.modificacionCategorias = Files.getLastModifiedTime(archivoCategorias);
+		this.tamanioCategorias = Files.size(archivoCategorias);
+
+		ArrayList<Libro> catalogo = libreria.darLibros();
+		int[] siguiente = new int[1];
+		Charset juego = Charset.defaultCharset();
+		try (FileChannel canal = FileChannel.open(archivoLibros, StandardOpenOption.READ)) {
+			FileTime modificacion = Files.getLastModifiedTime(archivoLibros);
+			long tamanio = leerLineas(canal, 0, true, (hash, bytes, longitud) -> {
+				Libro libro = null;
+				FilaLibro fila = interpretar(new String(bytes, 0, longitud, juego));
+				if (fila != null && siguiente[0] < catalogo.size() && corresponde(fila, catalogo.get(siguiente[0]))) {
+					libro = catalogo.get(siguiente[0]++);
+				}
+				agregar(librosPorFila, hash, libro);
+			});
+			marcarAplicado(canal, tamanio, modificacion);
+		}
+	}
+
+	// ************************************************************************
+	// Otros métodos
+	// ************************************************************************
+
+	/**
+	 * Empieza a vigilar los archivos en un hilo aparte. Cada vez que cambian se
+	 * revisan como en revisar.
+	 *
+	 * @throws IOException Si no se pueden vigilar las carpetas de los archivos
+	 */
+	public synchronized void iniciar() throws IOException {
+		if (servicio != null) {
+			return;
+		}
+		servicio = FileSystems.getDefault().newWatchService();
+		Path carpetaLibros = archivoLibros.getParent();
+		carpetaLibros.register(servicio, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		Path carpetaCategorias = archivoCategorias.getParent();
+		if (!carpetaCategorias.equals(carpetaLibros)) {
+			carpetaCategorias.register(servicio, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+		}
+		hilo = new Thread(this::vigilar, "vigilante-catalogo");
+		hilo.setDaemon(true);
+		hilo.start();
+	}
+
+	/**
+	 * Deja de vigilar los archivos
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (servicio != null) {
+			servicio.close();
+			hilo.interrupt();
+		}
+	}
+
+	/**
+	 * Revisa los archivos ahora mismo y le aplica a la librería los cambios que
+	 * encuentre. Si hay un oyente y hubo cambios, se le avisa.
+	 *
+	 * @throws IOException Si hay algún problema leyendo los archivos. En ese caso
+	 *                     la librería queda como estaba.
+	 */
+	public synchronized void revisar() throws IOException {
+		FileTime modificacionCat = Files.getLastModifiedTime(archivoCategorias);
+		long tamanioCat = Files.size(archivoCategorias);
+		boolean cambiaronCategorias = !modificacionCat.equals(modificacionCategorias) || tamanioCat != tamanioCategorias;
+		ArrayList<Categoria> categoriasNuevas = cambiaronCategorias ? leerCategoriasNuevas() : new ArrayList<Categoria>();
+
+		ArrayList<Long> hashesNuevos = new ArrayList<Long>();
+		ArrayList<FilaLibro> filasNuevas = new ArrayList<FilaLibro>();
+		ArrayList<Libro> aBorrar = new ArrayList<Libro>();
+		Charset juego = Charset.defaultCharset();
+		ConsumidorLinea nueva = (hash, bytes, longitud) -> {
+			hashesNuevos.add(hash);
+			filasNuevas.add(interpretar(new String(bytes, 0, longitud, juego)));
+		};
+
+		try (FileChannel canal = FileChannel.open(archivoLibros, StandardOpenOption.READ)) {
+			FileTime modificacion = Files.getLastModifiedTime(archivoLibros);
+			long tamanio = canal.size();
+			boolean cambiaronLibros = tamanio != tamanioAplicado || !modificacion.equals(modificacionLibros);
+			if (!cambiaronLibros && !cambiaronCategorias) {
+				return;
+			}
+
+			HashMap<Long, ArrayList<Libro>> aplicadas;
+			long leido;
+			if (!cambiaronLibros) {
+				aplicadas = librosPorFila;
+				leido = tamanioAplicado;
+			} else if (soloCrecio(canal, tamanio)) {
+				// Se leen solo las líneas completas que se agregaron
+				aplicadas = librosPorFila;
+				leido = leerLineas(canal, tamanioAplicado, false, nueva);
+			} else {
+				// Cada línea del archivo consume una fila aplicada con el mismo hash. Las
+				// filas aplicadas que sobran son las que se quitaron.
+				aplicadas = new HashMap<Long, ArrayList<Libro>>();
+				try {
+					leido = leerLineas(canal, 0, true, (hash, bytes, longitud) -> {
+						ArrayList<Libro> anteriores = librosPorFila.get(hash);
+						if (anteriores == null) {
+							nueva.aceptar(hash, bytes, longitud);
+						} else {
+							agregar(aplicadas, hash, anteriores.remove(anteriores.size() - 1));
+							if (anteriores.isEmpty()) {
+								librosPorFila.remove(hash);
+							}
+						}
+					});
+				} catch (IOException | RuntimeException e) {
+					devolver(aplicadas, librosPorFila);
+					throw e;
+				}
+				for (ArrayList<Libro> sobrantes : librosPorFila.values()) {
+					for (Libro l : sobrantes) {
+						if (l != null) {
+							aBorrar.add(l);
+						}
+					}
+				}
+			}
+
+			ArrayList<FilaLibro> validas = new ArrayList<FilaLibro>(filasNuevas.size());
+			for (FilaLibro fila : filasNuevas) {
+				if (fila != null) {
+					fila.existePortada = new File(Libreria.CARPETA_DATOS, fila.archivoPortada).exists();
+					validas.add(fila);
+				}
+			}
+			ArrayList<Libro> agregados;
+			try {
+				agregados = libreria.aplicarCambios(categoriasNuevas, aBorrar, validas);
+			} catch (RuntimeException e) {
+				if (aplicadas != librosPorFila) {
+					devolver(aplicadas, librosPorFila);
+				}
+				throw e;
+			}
+
+			int siguiente = 0;
+			for (int i = 0; i < hashesNuevos.size(); i++) {
+				agregar(aplicadas, hashesNuevos.get(i), filasNuevas.get(i) == null ? null : agregados.get(siguiente++));
+			}
+			librosPorFila = aplicadas;
+			marcarAplicado(canal, leido, modificacion);
+			modificacionCategorias = modificacionCat;
+			tamanioCategorias = tamanioCat;
+
+			// Las filas de autores borrados no agregan libros
+			int librosAgregados = siguiente - Collections.frequency(agregados, null);
+			if (oyente != null && (librosAgregados > 0 || !aBorrar.isEmpty() || !categoriasNuevas.isEmpty())) {
+				oyente.cambiosAplicados(librosAgregados, aBorrar.size());
+			}
+		}
+	}
+
+	/**
+	 * Atiende los avisos del sistema de archivos hasta que se cierre el vigilante
+	 */
+	private void vigilar() {
+		try {
+			while (true) {
+				WatchKey clave = servicio.take();
+				boolean cambio = esDeLosArchivos(clave);
+				Thread.sleep(ESPERA_MILIS);
+				while ((clave = servicio.poll()) != null) {
+					cambio |= esDeLosArchivos(clave);
+				}
+				if (cambio) {
+					try {
+						revisar();
+					} catch (IOException | RuntimeException e) {
+						if (oyente != null) {
+							oyente.revisionFallida(e);
+						}
+					}
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// Se cerró el vigilante
+		}
+	}
+
+	/**
+	 * Indica si alguno de los avisos de la clave es de los archivos vigilados
+	 */
+	private boolean esDeLosArchivos(WatchKey clave) {
+		boolean cambio = false;
+		Path carpeta = (Path) clave.watchable();
+		for (WatchEvent<?> evento : clave.pollEvents()) {
+			if (evento.kind() == StandardWatchEventKinds.OVERFLOW) {
+				cambio = true;
+			} else {
+				Path archivo = carpeta.resolve((Path) evento.context());
+				cambio |= archivo.equals(archivoLibros) || archivo.equals(archivoCategorias);
+			}
+		}
+		clave.reset();
+		return cambio;
+	}
+
+	/**
+	 * Lee el archivo de categorías
+	 *
+	 * @return Las categorías del archivo que todavía no están en la librería
+	 */
+	private ArrayList<Categoria> leerCategoriasNuevas() throws IOException {
+		ArrayList<Categoria> nuevas = new ArrayList<Categoria>();
+		for (Categoria c : Libreria.cargarCategorias(archivoCategorias.toString())) {
+			if (!libreria.contieneCategoria(c.darNombre())) {
+				nuevas.add(c);
+			}
+		}
+		return nuevas;
+	}
+
+	/**
+	 * Indica si el archivo de libros solo creció desde la última revisión: es más
+	 * grande, la parte aplicada terminaba en un salto de línea y su final no
+	 * cambió
+	 */
+	private boolean soloCrecio(FileChannel canal, long tamanio) throws IOException {
+		return tamanioAplicado > 0 && tamanio > tamanioAplicado && finalAplicado[finalAplicado.length - 1] == '\n'
+				&& Arrays.equals(finalAplicado, leerFinal(canal, tamanioAplicado));
+	}
+
+	/**
+	 * Guarda hasta dónde se aplicó el archivo de libros
+	 */
+	private void marcarAplicado(FileChannel canal, long tamanio, FileTime modificacion) throws IOException {
+		tamanioAplicado = tamanio;
+		finalAplicado = leerFinal(canal, tamanio);
+		modificacionLibros = modificacion;
+	}
+
+	/**
+	 * Lee los últimos bytes antes de una posición del archivo
+	 */
+	private static byte[] leerFinal(FileChannel canal, long hasta) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(TAMANIO_FINAL, hasta));
+		long posicion = hasta - buffer.capacity();
+		while (buffer.hasRemaining()) {
+			int leidos = canal.read(buffer, posicion + buffer.position());
+			if (leidos < 0) {
+				// El archivo se acortó: el final ya no puede coincidir
+				return new byte[0];
+			}
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Lee las líneas del archivo de libros a partir de una posición. Si la
+	 * posición es 0 se salta la primera línea, que tiene los títulos.
+	 *
+	 * @param canal              El archivo
+	 * @param desde              La posición en la que empieza una línea
+	 * @param incluirIncompleta  Indica si se entrega la última línea aunque no
+	 *                           termine en un salto de línea
+	 * @param consumidor         Recibe las líneas
+	 * @return La posición justo después de la última línea entregada
+	 */
+	private static long leerLineas(FileChannel canal, long desde, boolean incluirIncompleta,
+			ConsumidorLinea consumidor) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(TAMANIO_BUFFER);
+		byte[] linea = new byte[256];
+		int longitud = 0;
+		boolean encabezado = desde == 0;
+		long posicion = desde;
+		long finLinea = desde;
+		int leidos;
+		while ((leidos = canal.read(buffer, posicion)) >= 0) {
+			byte[] bytes = buffer.array();
+			for (int i = 0; i < leidos; i++) {
+				if (bytes[i] == '\n') {
+					if (!encabezado) {
+						entregar(consumidor, linea, longitud);
+					}
+					encabezado = false;
+					longitud = 0;
+					finLinea = posicion + i + 1;
+				} else {
+					if (longitud == linea.length) {
+						linea = Arrays.copyOf(linea, longitud * 2);
+					}
+					linea[longitud++] = bytes[i];
+				}
+			}
+			posicion += leidos;
+			buffer.clear();
+		}
+		if (incluirIncompleta && posicion > finLinea) {
+			if (!encabezado) {
+				entregar(consumidor, linea, longitud);
+			}
+			finLinea = posicion;
+		}
+		return finLinea;
+	}
+
+	/**
+	 * Le entrega una línea al consumidor, sin el retorno de carro final
+	 */
+	private static void entregar(ConsumidorLinea consumidor, byte[] linea, int longitud) {
+		if (longitud > 0 && linea[longitud - 1] == '\r') {
+			longitud--;
+		}
+		long hash = FNV_BASE;
+		for (int i = 0; i < longitud; i++) {
+			hash = (hash ^ (linea[i] & 0xff)) * FNV_PRIMO;
+		}
+		consumidor.aceptar(hash, linea, longitud);
+	}
+
+	/**
+	 * Interpreta una línea del archivo de libros
+	 *
+	 * @return La fila, o null si la línea no se puede interpretar
+	 */
+	private static FilaLibro interpretar(String linea) {
+		try {
+			return FilaLibro.parsear(linea);
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Indica si un libro se creó a partir de una fila
+	 */
+	private static boolean corresponde(FilaLibro fila, Libro libro) {
+		return fila.titulo.equals(libro.darTitulo()) && fila.autor.equals(libro.darAutor())
+				&& fila.calificacion == libro.darCalificacion();
+	}
+
+	private static void agregar(HashMap<Long, ArrayList<Libro>> filas, long hash, Libro libro) {
+		filas.computeIfAbsent(hash, h -> new ArrayList<Libro>(1)).add(libro);
+	}
+
+	/**
+	 * Devuelve las filas de un mapa a otro, para deshacer una revisión que falló
+	 */
+	private static void devolver(HashMap<Long, ArrayList<Libro>> desde, HashMap<Long, ArrayList<Libro>> hacia) {
+		for (Map.Entry<Long, ArrayList<Libro>> e : desde.entrySet()) {
+			for (Libro l : e.getValue()) {
+				agregar(hacia, e.getKey(), l);
+			}
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package uniandes.dpoo.taller1.servidor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+
+import uniandes.dpoo.taller1.modelo.Categoria;
+import uniandes.dpoo.taller1.modelo.Libro;
+
+/**
+ * Escribe JSON directamente sobre un Writer, a medida que se recorren los
+ * datos, sin construir el documento completo en memoria.
+ *
+ * Se encarga de poner las comas entre los elementos: quien lo usa solo indica
+ * dónde empiezan y terminan los objetos y los arreglos.
+ */
+class EscritorJson {
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Donde se escribe el JSON
+	 */
+	private final Writer salida;
+
+	/**
+	 * Por cada objeto o arreglo abierto, si ya tiene algún elemento
+	 */
+	private final ArrayDeque<Boolean> tieneElementos;
+
+	/**
+	 * Indica si se acaba de escribir el nombre de un campo, así que el siguiente
+	 * valor no lleva coma
+	 */
+	private boolean despuesDeNombre;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	EscritorJson(Writer salida) {
+		this.salida = salida;
+		this.tieneElementos = new ArrayDeque<Boolean>();
+	}
+
+	// ************************************************************************
+	// Estructura
+	// ************************************************************************
+
+	EscritorJson objeto() throws IOException {
+		antesDeValor();
+		salida.write('{');
+		tieneElementos.push(false);
+		return this;
+	}
+
+	EscritorJson finObjeto() throws IOException {
+		tieneElementos.pop();
+		salida.write('}');
+		return this;
+	}
+
+	EscritorJson arreglo() throws IOException {
+		antesDeValor();
+		salida.write('[');
+		tieneElementos.push(false);
+		return this;
+	}
+
+	EscritorJson finArreglo() throws IOException {
+		tieneElementos.pop();
+		salida.write(']');
+		return this;
+	}
+
+	/**
+	 * Escribe el nombre de un campo del objeto abierto. Después se debe escribir
+	 * su valor.
+	 */
+	EscritorJson nombre(String nombre) throws IOException {
+		antesDeValor();
+		escribirCadena(nombre);
+		salida.write(':');
+		despuesDeNombre = true;
+		return this;
+	}
+
+	// ************************************************************************
+	// Valores
+	// ************************************************************************
+
+	EscritorJson valor(String valor) throws IOException {
+		antesDeValor();
+		if (valor == null) {
+			salida.write("null");
+		} else {
+			escribirCadena(valor);
+		}
+		return this;
+	}
+
+	EscritorJson valor(double valor) throws IOException {
+		antesDeValor();
+		salida.write(Double.isFinite(valor) ? Double.toString(valor) : "null");
+		return this;
+	}
+
+	EscritorJson valor(long valor) throws IOException {
+		antesDeValor();
+		salida.write(Long.toString(valor));
+		return this;
+	}
+
+	EscritorJson valor(boolean valor) throws IOException {
+		antesDeValor();
+		salida.write(valor ? "true" : "false");
+		return this;
+	}
+
+	/**
+	 * Escribe un libro como objeto
+	 */
+	EscritorJson valor(Libro libro) throws IOException {
+		objeto();
+		nombre("titulo").valor(libro.darTitulo());
+		nombre("autor").valor(libro.darAutor());
+		nombre("calificacion").valor(libro.darCalificacion());
+		nombre("categoria").valor(libro.darCategoria().darNombre());
+		nombre("portada").valor(libro.tienePortada() ? libro.darPortada().darRutaArchivo() : null);
+		return finObjeto();
+	}
+
+	/**
+	 * Escribe una categoría como objeto
+	 */
+	EscritorJson valor(Categoria categoria) throws IOException {
+		objeto();
+		nombre("nombre").valor(categoria.darNombre());
+		nombre("ficcion").valor(categoria.esFiccion());
+		return finObjeto();
+	}
+
+	// ************************************************************************
+	// Métodos auxiliares
+	// ************************************************************************
+
+	/**
+	 * Pone la coma antes de un elemento si no es el primero de su objeto o
+	 * arreglo
+	 */
+	private void antesDeValor() throws IOException {
+		if (despuesDeNombre) {
+			despuesDeNombre = false;
+			return;
+		}
+		if (!tieneElementos.isEmpty()) {
+			if (tieneElementos.peek()) {
+				salida.write(',');
+			} else {
+				tieneElementos.pop();
+				tieneElementos.push(true);
+			}
+		}
+	}
+
+	private void escribirCadena(String cadena) throws IOException {
+		salida.write('"');
+		for (int i = 0; i < cadena.length(); i++) {
+			char c = cadena.charAt(i);
+			switch (c) {
+			case '"':
+				salida.write("\\\"");
+				break;
+			case '\\':
+				salida.write("\\\\");
+				break;
+			case '\n':
+				salida.write("\\n");
+				break;
+			case '\r':
+				salida.write("\\r");
+				break;
+			case '\t':
+				salida.write("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					salida.write(String.format("\\u%04x", (int) c));
+				} else {
+					salida.write(c);
+				}
+			}
+		}
+		salida.write('"');
+	}
+}
@@ -0,0 +1,522 @@
+package uniandes.dpoo.taller1.servidor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import uniandes.dpoo.taller1.modelo.Categoria;
+import uniandes.dpoo.taller1.modelo.Libreria;
+import uniandes.dpoo.taller1.modelo.Libro;
+import uniandes.dpoo.taller1.modelo.ModoBusquedaTitulo;
+import uniandes.dpoo.taller1.modelo.ModoCarga;
+
+/**
+ * Servidor HTTP que responde consultas sobre el catálogo de una librería, sin
+ * interfaz gráfica.
+ *
+ * Todas las consultas son GET y responden JSON:
+ *
+ * <pre>
+ * /libros/titulo?titulo=...[&amp;modo=EXACTO|SIN_MAYUSCULAS|NORMALIZADO]  un libro
+ * /libros/autor?q=...                 libros cuyo autor contiene la cadena
+ * /libros/categoria?nombre=...        libros de una categoría
+ * /libros/mejores?[categoria=...&amp;]cantidad=...   los libros mejor calificados
+ * /libros/calificacion?minima=...&amp;maxima=...[&amp;categoria=...]   libros en un rango
+ * /calificaciones?[minima=...&amp;maxima=...&amp;][categoria=...]   cantidad y percentiles
+ * /categorias/autor?autor=...         categorías con libros del autor
+ * /categorias                         todas las categorías
+ * /estadisticas                       las estadísticas del catálogo
+ * </pre>
+ *
+ * Las consultas que retornan listas de libros aceptan además los parámetros
+ * desde y limite para pedir una página. Sin limite, el resultado se lee de la
+ * librería por partes a medida que se escribe la respuesta.
+ *
+ * Cada petición se atiende en su propio hilo virtual si la JVM los tiene (Java
+ * 21 o posterior) y si no en un grupo de hilos que crece según la demanda.
+ * Nunca se tiene el candado de la librería mientras se escribe en la red: cada
+ * consulta o cada página se lee completa y luego se escribe. La respuesta se envía
+ * por partes (chunked) a medida que se escribe, sin armar el documento en
+ * memoria, y la conexión queda abierta para las siguientes peticiones del
+ * mismo cliente.
+ */
+public class ServidorConsultas {
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Puerto en el que escucha el servidor si no se indica otro
+	 */
+	public static final int PUERTO_POR_DEFECTO = 8080;
+
+	/**
+	 * Cantidad de libros que retorna /libros/mejores si no se indica otra
+	 */
+	private static final int CANTIDAD_MEJORES = 50;
+
+	/**
+	 * Percentiles de las calificaciones que retorna /calificaciones
+	 */
+	private static final int[] PERCENTILES = { 50, 90, 99 };
+
+	/**
+	 * Cantidad de conexiones que pueden esperar a ser aceptadas
+	 */
+	private static final int CONEXIONES_EN_ESPERA = 1024;
+
+	/**
+	 * Tamaño del buffer con el que se escribe cada respuesta
+	 */
+	private static final int TAMANIO_BUFFER = 8192;
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * La librería que se consulta
+	 */
+	private final Libreria libreria;
+
+	/**
+	 * El servidor HTTP del JDK
+	 */
+	private final HttpServer servidor;
+
+	/**
+	 * Los hilos en los que se atienden las peticiones
+	 */
+	private final ExecutorService hilos;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye un servidor para consultar la librería. El servidor no atiende
+	 * peticiones hasta que se llame a iniciar.
+	 *
+	 * @param libreria La librería que se consulta
+	 * @param puerto   El puerto en el que escucha, o 0 para usar uno libre
+	 * @throws IOException Si no se puede abrir el puerto
+	 */
+	public ServidorConsultas(Libreria libreria, int puerto) throws IOException {
+		this.libreria = libreria;
+		this.servidor = HttpServer.create(new InetSocketAddress(puerto), CONEXIONES_EN_ESPERA);
+		this.hilos = crearHilos();
+		servidor.setExecutor(hilos);
+
+		registrar("/libros/titulo", this::consultarTitulo);
+		registrar("/libros/autor", this::consultarAutor);
+		registrar("/libros/categoria", this::consultarCategoria);
+		registrar("/libros/mejores", this::consultarMejores);
+		registrar("/libros/calificacion", this::consultarRangoCalificacion);
+		registrar("/calificaciones", this::consultarCalificaciones);
+		registrar("/categorias/autor", this::consultarCategoriasAutor);
+		registrar("/categorias", parametros -> json -> {
+			json.arreglo();
+			for (Categoria c : libreria.darCategorias()) {
+				json.valor(c);
+			}
+			json.finArreglo();
+		});
+		registrar("/estadisticas", this::consultarEstadisticas);
+	}
+
+	// ************************************************************************
+	// Métodos
+	// ************************************************************************
+
+	/**
+	 * Empieza a atender peticiones
+	 */
+	public void iniciar() {
+		servidor.start();
+	}
+
+	/**
+	 * Deja de atender peticiones, esperando hasta un segundo a que terminen las
+	 * que están en curso
+	 */
+	public void detener() {
+		servidor.stop(1);
+		hilos.shutdown();
+	}
+
+	/**
+	 * Retorna el puerto en el que escucha el servidor
+	 *
+	 * @return El puerto
+	 */
+	public int darPuerto() {
+		return servidor.getAddress().getPort();
+	}
+
+	// ************************************************************************
+	// Consultas
+	// ************************************************************************
+
+	private Respuesta consultarTitulo(HashMap<String, String> parametros) throws ErrorConsulta {
+		String titulo = requerido(parametros, "titulo");
+		ModoBusquedaTitulo modo = ModoBusquedaTitulo.EXACTO;
+		String nombreModo = parametros.get("modo");
+		if (nombreModo != null) {
+			try {
+				modo = ModoBusquedaTitulo.valueOf(nombreModo.toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				throw new ErrorConsulta(400, "Modo de búsqueda desconocido: " + nombreModo);
+			}
+		}
+		Libro libro = libreria.buscarLibro(titulo, modo);
+		if (libro == null) {
+			throw new ErrorConsulta(404, "No hay un libro con el título " + titulo);
+		}
+		return json -> json.valor(libro);
+	}
+
+	private Respuesta consultarAutor(HashMap<String, String> parametros) throws ErrorConsulta {
+		String cadena = requerido(parametros, "q");
+		int desde = entero(parametros, "desde", 0);
+		int limite = entero(parametros, "limite", -1);
+		if (limite >= 0) {
+			ArrayList<Libro> libros = libreria.buscarLibrosAutor(cadena, desde, limite);
+			return json -> escribirLibros(json, libros.iterator());
+		}
+		// Sin límite, el resultado se lee por páginas mientras se escribe
+		return json -> escribirLibros(json, libreria.buscarLibrosAutorStream(cadena).skip(desde).iterator());
+	}
+
+	private Respuesta consultarCategoria(HashMap<String, String> parametros) throws ErrorConsulta {
+		String nombre = requerido(parametros, "nombre");
+		int desde = entero(parametros, "desde", 0);
+		int limite = entero(parametros, "limite", -1);
+		// Se revisa antes de responder para poder enviar un 404
+		if (!libreria.contieneCategoria(nombre)) {
+			throw new ErrorConsulta(404, "No existe la categoría " + nombre);
+		}
+		if (limite >= 0) {
+			ArrayList<Libro> libros = libreria.darLibros(nombre, desde, limite);
+			return json -> escribirLibros(json, libros.iterator());
+		}
+		return json -> escribirLibros(json, libreria.darLibrosStream(nombre).skip(desde).iterator());
+	}
+
+	private Respuesta consultarMejores(HashMap<String, String> parametros) throws ErrorConsulta {
+		int cantidad = entero(parametros, "cantidad", CANTIDAD_MEJORES);
+		String categoria = parametros.get("categoria");
+		if (categoria == null) {
+			ArrayList<Libro> libros = libreria.mejoresLibros(cantidad);
+			return json -> escribirLibros(json, libros.iterator());
+		}
+		if (!libreria.contieneCategoria(categoria)) {
+			throw new ErrorConsulta(404, "No existe la categoría " + categoria);
+		}
+		ArrayList<Libro> libros = libreria.mejoresLibros(categoria, cantidad);
+		return json -> escribirLibros(json, libros.iterator());
+	}
+
+	private Respuesta consultarRangoCalificacion(HashMap<String, String> parametros) throws ErrorConsulta {
+		double minima = decimal(parametros, "minima", Double.NEGATIVE_INFINITY);
+		double maxima = decimal(parametros, "maxima", Double.POSITIVE_INFINITY);
+		String categoria = categoriaOpcional(parametros);
+		ArrayList<Libro> libros = libreria.buscarLibrosPorCalificacion(categoria, minima, maxima,
+				entero(parametros, "desde", 0), entero(parametros, "limite", Integer.MAX_VALUE));
+		return json -> escribirLibros(json, libros.iterator());
+	}
+
+	private Respuesta consultarCalificaciones(HashMap<String, String> parametros) throws ErrorConsulta {
+		double minima = decimal(parametros, "minima", Double.NEGATIVE_INFINITY);
+		double maxima = decimal(parametros, "maxima", Double.POSITIVE_INFINITY);
+		String categoria = categoriaOpcional(parametros);
+		int cantidad = libreria.contarLibrosPorCalificacion(categoria, minima, maxima);
+		double[] percentiles = new double[PERCENTILES.length];
+		for (int i = 0; i < PERCENTILES.length; i++) {
+			percentiles[i] = libreria.percentilCalificacion(categoria, PERCENTILES[i]);
+		}
+		return json -> {
+			json.objeto();
+			json.nombre("cantidad").valor(cantidad);
+			for (int i = 0; i < PERCENTILES.length; i++) {
+				json.nombre("p" + PERCENTILES[i]).valor(percentiles[i]);
+			}
+			json.finObjeto();
+		};
+	}
+
+	/**
+	 * Retorna el parámetro categoria, que puede no estar
+	 *
+	 * @throws ErrorConsulta Si la categoría indicada no existe
+	 */
+	private String categoriaOpcional(HashMap<String, String> parametros) throws ErrorConsulta {
+		String categoria = parametros.get("categoria");
+		if (categoria != null && !libreria.contieneCategoria(categoria)) {
+			throw new ErrorConsulta(404, "No existe la categoría " + categoria);
+		}
+		return categoria;
+	}
+
+	private Respuesta consultarCategoriasAutor(HashMap<String, String> parametros) throws ErrorConsulta {
+		ArrayList<Categoria> categorias = libreria.buscarCategoriasAutor(requerido(parametros, "autor"));
+		return json -> {
+			json.arreglo();
+			for (Categoria c : categorias) {
+				json.valor(c);
+			}
+			json.finArreglo();
+		};
+	}
+
+	private Respuesta consultarEstadisticas(HashMap<String, String> parametros) {
+		double promedio = libreria.calificacionPromedio();
+		Categoria masLibros = libreria.categoriaConMasLibros();
+		Categoria mejores = libreria.categoriaConMejoresLibros();
+		int sinPortada = libreria.contarLibrosSinPortada();
+		boolean autorEnVarias = libreria.hayAutorEnVariasCategorias();
+		return json -> {
+			json.objeto();
+			json.nombre("calificacionPromedio").valor(promedio);
+			json.nombre("categoriaConMasLibros").valor(masLibros == null ? null : masLibros.darNombre());
+			json.nombre("categoriaConMejoresLibros").valor(mejores == null ? null : mejores.darNombre());
+			json.nombre("librosSinPortada").valor(sinPortada);
+			json.nombre("hayAutorEnVariasCategorias").valor(autorEnVarias);
+			json.finObjeto();
+		};
+	}
+
+	private static void escribirLibros(EscritorJson json, Iterator<Libro> libros) throws IOException {
+		json.arreglo();
+		while (libros.hasNext()) {
+			json.valor(libros.next());
+		}
+		json.finArreglo();
+	}
+
+	/**
+	 * Retorna un parámetro obligatorio de la consulta
+	 *
+	 * @throws ErrorConsulta Si el parámetro no está o está vacío
+	 */
+	private static String requerido(HashMap<String, String> parametros, String nombre) throws ErrorConsulta {
+		String valor = parametros.get(nombre);
+		if (valor == null || valor.isEmpty()) {
+			throw new ErrorConsulta(400, "Falta el parámetro " + nombre);
+		}
+		return valor;
+	}
+
+	/**
+	 * Retorna un parámetro entero no negativo de la consulta
+	 *
+	 * @param porDefecto El valor si el parámetro no está
+	 * @throws ErrorConsulta Si el parámetro no es un entero no negativo
+	 */
+	private static int entero(HashMap<String, String> parametros, String nombre, int porDefecto)
+			throws ErrorConsulta {
+		String valor = parametros.get(nombre);
+		if (valor == null) {
+			return porDefecto;
+		}
+		try {
+			int numero = Integer.parseInt(valor);
+			if (numero >= 0) {
+				return numero;
+			}
+		} catch (NumberFormatException e) {
+			// Se reporta abajo
+		}
+		throw new ErrorConsulta(400, "El parámetro " + nombre + " debe ser un entero no negativo");
+	}
+
+	/**
+	 * Retorna un parámetro decimal de la consulta
+	 *
+	 * @param porDefecto El valor si el parámetro no está
+	 * @throws ErrorConsulta Si el parámetro no es un número
+	 */
+	private static double decimal(HashMap<String, String> parametros, String nombre, double porDefecto)
+			throws ErrorConsulta {
+		String valor = parametros.get(nombre);
+		if (valor == null) {
+			return porDefecto;
+		}
+		try {
+			return Double.parseDouble(valor);
+		} catch (NumberFormatException e) {
+			throw new ErrorConsulta(400, "El parámetro " + nombre + " debe ser un número");
+		}
+	}
+
+	// ************************************************************************
+	// Métodos auxiliares
+	// ************************************************************************
+
+	/**
+	 * Registra una consulta en una ruta. Solo se aceptan las peticiones GET cuya
+	 * ruta sea exactamente la indicada.
+	 */
+	private void registrar(String ruta, Consulta consulta) {
+		servidor.createContext(ruta, intercambio -> atender(intercambio, ruta, consulta));
+	}
+
+	/**
+	 * Atiende una petición: hace la consulta y luego escribe la respuesta, o el
+	 * error si la consulta falla
+	 */
+	private static void atender(HttpExchange intercambio, String ruta, Consulta consulta) throws IOException {
+		try {
+			Respuesta respuesta;
+			int codigo = 200;
+			try {
+				if (!ruta.equals(intercambio.getRequestURI().getPath())) {
+					throw new ErrorConsulta(404, "No existe la ruta " + intercambio.getRequestURI().getPath());
+				}
+				if (!"GET".equals(intercambio.getRequestMethod())) {
+					intercambio.getResponseHeaders().set("Allow", "GET");
+					throw new ErrorConsulta(405, "Solo se aceptan peticiones GET");
+				}
+				respuesta = consulta.preparar(leerParametros(intercambio.getRequestURI().getRawQuery()));
+			} catch (ErrorConsulta e) {
+				codigo = e.codigo;
+				String mensaje = e.getMessage();
+				respuesta = json -> json.objeto().nombre("error").valor(mensaje).finObjeto();
+			}
+
+			intercambio.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+			// Longitud 0: la respuesta se envía por partes a medida que se escribe
+			intercambio.sendResponseHeaders(codigo, 0);
+			try (Writer salida = new BufferedWriter(
+					new OutputStreamWriter(intercambio.getResponseBody(), StandardCharsets.UTF_8), TAMANIO_BUFFER)) {
+				respuesta.escribir(new EscritorJson(salida));
+			}
+		} finally {
+			// Cerrar el intercambio deja la conexión lista para la siguiente petición
+			intercambio.close();
+		}
+	}
+
+	/**
+	 * Lee los parámetros de la parte de consulta de una URL, sin decodificar
+	 */
+	private static HashMap<String, String> leerParametros(String consulta) throws ErrorConsulta {
+		HashMap<String, String> parametros = new HashMap<String, String>();
+		if (consulta == null) {
+			return parametros;
+		}
+		try {
+			for (String par : consulta.split("&")) {
+				if (par.isEmpty()) {
+					continue;
+				}
+				int igual = par.indexOf('=');
+				String nombre = igual < 0 ? par : par.substring(0, igual);
+				String valor = igual < 0 ? "" : par.substring(igual + 1);
+				parametros.putIfAbsent(URLDecoder.decode(nombre, StandardCharsets.UTF_8),
+						URLDecoder.decode(valor, StandardCharsets.UTF_8));
+			}
+		} catch (IllegalArgumentException e) {
+			throw new ErrorConsulta(400, "La consulta está mal codificada");
+		}
+		return parametros;
+	}
+
+	/**
+	 * Crea un ejecutor que usa un hilo virtual por petición. Los hilos virtuales
+	 * existen desde Java 21, así que se buscan por reflexión para que el servidor
+	 * compile y funcione con versiones anteriores; en ese caso se usa un grupo de
+	 * hilos que crece según la demanda y reutiliza los hilos libres.
+	 */
+	private static ExecutorService crearHilos() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			return Executors.newCachedThreadPool(tarea -> {
+				Thread hilo = new Thread(tarea, "servidor-consultas");
+				hilo.setDaemon(true);
+				return hilo;
+			});
+		}
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * Una consulta. Lee la librería y retorna la respuesta ya calculada, de modo
+	 * que escribirla no vuelve a consultar la librería.
+	 */
+	@FunctionalInterface
+	private interface Consulta {
+		Respuesta preparar(HashMap<String, String> parametros) throws ErrorConsulta;
+	}
+
+	/**
+	 * Escribe el cuerpo de una respuesta
+	 */
+	@FunctionalInterface
+	private interface Respuesta {
+		void escribir(EscritorJson json) throws IOException;
+	}
+
+	/**
+	 * Una consulta que no se puede responder, con el código HTTP que se envía
+	 */
+	private static final class ErrorConsulta extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		private final int codigo;
+
+		ErrorConsulta(int codigo, String mensaje) {
+			super(mensaje);
+			this.codigo = codigo;
+		}
+	}
+
+	// ************************************************************************
+	// Main
+	// ************************************************************************
+
+	/**
+	 * Carga la librería y atiende consultas hasta que se termine el proceso.
+	 *
+	 * Uso: ServidorConsultas [--columnar] categorias.csv libros.csv [puerto]
+	 *
+	 * Con --columnar la librería se carga con ModoCarga.COLUMNAR, que ocupa menos
+	 * memoria. Como el servidor solo consulta la librería, no le afecta que sea de
+	 * solo lectura.
+	 *
+	 * @param args Los archivos de categorías y de libros, y opcionalmente el puerto
+	 * @throws IOException Si no se pueden leer los archivos o abrir el puerto
+	 */
+	public static void main(String[] args) throws IOException {
+		List<String> argumentos = new ArrayList<String>(Arrays.asList(args));
+		boolean columnar = argumentos.remove("--columnar");
+		if (argumentos.size() < 2) {
+			System.err.println("Uso: ServidorConsultas [--columnar] categorias.csv libros.csv [puerto]");
+			System.exit(2);
+		}
+		int puerto = argumentos.size() > 2 ? Integer.parseInt(argumentos.get(2)) : PUERTO_POR_DEFECTO;
+		Libreria libreria = Libreria.abrir(argumentos.get(0), argumentos.get(1), argumentos.get(1) + ".snapshot",
+				columnar ? ModoCarga.COLUMNAR : ModoCarga.PARALELO);
+		ServidorConsultas servidor = new ServidorConsultas(libreria, puerto);
+		servidor.iniciar();
+		System.out.println("Atendiendo consultas en http://localhost:" + servidor.darPuerto() + "/");
+	}
+}